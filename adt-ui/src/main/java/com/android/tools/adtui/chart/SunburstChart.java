@@ -15,6 +15,7 @@
  */
 package com.android.tools.adtui.chart;
 
+import com.android.annotations.VisibleForTesting;
 import com.android.tools.adtui.LegacyAnimatedComponent;
 import com.android.tools.adtui.Choreographer;
 import com.android.tools.adtui.ValuedTreeNode;
@@ -34,6 +35,11 @@ import java.util.List;
  * Component which renders a
  * <a href="https://en.wikipedia.org/wiki/Pie_chart#Ring_chart_.2F_Sunburst_chart_.2F_Multilevel_pie_chart">
  * sunburst chart</a> that can be unrolled by setting its angle.
+ * <p>
+ * The shape of every slice is cached along with the geometry it was built for, so a frame only rebuilds the shapes
+ * of the slices that moved. Runs of adjacent slices narrower than {@link #MIN_SLICE_LENGTH} pixels are drawn as a
+ * single slice without their descendants, and hovering walks down the rings drawn in the last frame with a binary
+ * search over the angular range of the children of every slice.
  */
 public final class SunburstChart extends LegacyAnimatedComponent {
 
@@ -63,6 +69,9 @@ public final class SunburstChart extends LegacyAnimatedComponent {
     new Color(0xbdbdbd),
   };
 
+  /** Slices whose outer arc is shorter than this many pixels are merged with their neighbours */
+  private static final float MIN_SLICE_LENGTH = 1.0f;
+
   private ValuedTreeNode mData;
 
   private Slice mSlice;
@@ -116,6 +125,15 @@ public final class SunburstChart extends LegacyAnimatedComponent {
 
   private Map<Color, Path2D.Float> mPaths;
 
+  /** Values of the layout the slice shapes were built for, and its version */
+  private float[] mLayout = new float[0];
+
+  private int mLayoutVersion;
+
+  private int mBuiltShapes;
+
+  private int mMergedSlices;
+
   public SunburstChart(@NotNull ValuedTreeNode data) {
     mData = data;
     mSlice = new Slice(0.0f);
@@ -154,7 +172,15 @@ public final class SunburstChart extends LegacyAnimatedComponent {
     g.setColor(getBackground());
     g.fillRect(0, 0, dim.width, dim.height);
 
+    float[] layout = {mX, mY, mCenterX, mCenterY, mCurrentAngle, mStart, mSliceWidth, mGap, mDelta, mFixed, mMaxDepth, mSeparator};
+    if (!Arrays.equals(layout, mLayout)) {
+      mLayout = layout;
+      mLayoutVersion++;
+    }
+
     mPaths.clear();
+    mBuiltShapes = 0;
+    mMergedSlices = 0;
     drawSlice(mSlice, 0.0f, 0.0f, 1.0f);
     for (Map.Entry<Color, Path2D.Float> entry : mPaths.entrySet()) {
       g.setColor(entry.getKey());
@@ -199,7 +225,7 @@ public final class SunburstChart extends LegacyAnimatedComponent {
   }
 
   private void updateSelection() {
-    Point mouse = getMousePosition();
+    Point mouse = isShowing() ? getMousePosition() : null;
     if (!myLockSelection) {
       boolean selection = false;
       if (mouse != null) {
@@ -223,7 +249,7 @@ public final class SunburstChart extends LegacyAnimatedComponent {
           depth = -depth / mSliceWidth;
           value = -value / length + 0.5f;
         }
-        selection = updateSelectedSlice(mSlice, depth, value, 0);
+        selection = updateSelectedSlice(depth, value);
       }
       if (!selection) {
         mySelectionLevel = -1;
@@ -270,37 +296,61 @@ public final class SunburstChart extends LegacyAnimatedComponent {
     return zoom;
   }
 
-  private boolean updateSelectedSlice(Slice slice, float depth, float value, int level) {
-    if (depth < 0.0f || value < 0.0f || value > 1.0f) {
+  /**
+   * Selects the slice drawn at the given depth and value in the last frame.
+   */
+  private boolean updateSelectedSlice(float depth, float value) {
+    Slice slice = findSliceAt(depth, value);
+    if (slice == null) {
       return false;
     }
-    else if (depth < slice.getDepth()) {
-      mySelectionLevel = level;
-      if (mySelection != slice) {
-        mySelection = slice;
-        fireSliceSelected(new SliceSelectionEvent(slice.node));
-      }
-      return true;
+    int level = 0;
+    for (Slice parent = slice.parent; parent != null; parent = parent.parent) {
+      level++;
     }
-    else {
-      depth -= slice.getDepth();
-      float total = 0.0f;
-      for (Slice child : slice.getChildren()) {
-        total += child.getValue();
+    mySelectionLevel = level;
+    if (mySelection != slice) {
+      mySelection = slice;
+      fireSliceSelected(new SliceSelectionEvent(slice.node));
+    }
+    return true;
+  }
+
+  /**
+   * Returns the slice drawn at the given depth and value in the last frame, going down one ring at a time, or null if
+   * there is none or it was merged with its neighbours.
+   */
+  @VisibleForTesting
+  Slice findSliceAt(float depth, float value) {
+    if (depth < 0.0f || value < 0.0f || value > 1.0f) {
+      return null;
+    }
+    Slice slice = mSlice;
+    while (depth >= slice.drawnDepth + slice.getDepth()) {
+      if (slice.merged || slice.getChildrenCount() == 0) {
+        return null;
       }
-      float current = 0.0f;
-      for (int i = 0; i < slice.getChildrenCount(); i++) {
-        Slice child = slice.getChild(i);
-        float val = child.getValue() / total;
-        if (value < current + val || i == slice.getChildrenCount() - 1) {
-          value = (value - current) / val;
-          return updateSelectedSlice(child, depth, value, level + 1);
-        }
-        current += val;
+      slice = slice.getChild(findChildAt(slice, value));
+    }
+    return slice;
+  }
 
+  /**
+   * Returns the index of the child of the given slice drawn at the given value, or of the last child if it ends before.
+   */
+  private static int findChildAt(Slice slice, float value) {
+    int low = 0;
+    int high = slice.getChildrenCount() - 1;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (slice.getChild(mid).drawnTo <= value) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
       }
     }
-    return false;
+    return low;
   }
 
   private void fireSliceSelected(SliceSelectionEvent event) {
@@ -314,6 +364,8 @@ public final class SunburstChart extends LegacyAnimatedComponent {
     super.debugDraw(g2d);
     addDebugInfo("Total slices: %d", mData.getCount());
     addDebugInfo("Paths %d", mPaths.size());
+    addDebugInfo("Built shapes %d", mBuiltShapes);
+    addDebugInfo("Merged slices %d", mMergedSlices);
     g2d.setColor(Color.GREEN);
     drawArrow(g2d, mX, mY, mDirection.x, mDirection.y, mMaxDepth, Color.MAGENTA);
     drawArrow(g2d, mX, mY, mDirection.y, -mDirection.x, mMaxSide, Color.MAGENTA);
@@ -435,6 +487,9 @@ public final class SunburstChart extends LegacyAnimatedComponent {
   }
 
   private void drawSlice(Slice slice, float depth, float from, float to) {
+    slice.drawnDepth = depth;
+    slice.drawnTo = to;
+    slice.merged = false;
     if (slice.getDepth() > 0.0f) { // Optimization for zero width slices
       Color c = COLORS[slice.color];
       float s = slice.selected;
@@ -442,71 +497,9 @@ public final class SunburstChart extends LegacyAnimatedComponent {
       c = new Color((int)(b.getRed() * s + c.getRed() * (1 - s)),
                     (int)(b.getGreen() * s + c.getGreen() * (1 - s)),
                     (int)(b.getBlue() * s + c.getBlue() * (1 - s)));
-      Path2D.Float path = getPath(c);
-      if (mCurrentAngle == 0) {
-        float length = (float)(Math.PI * 2.0f * mFixed);
-        float delta = mGap + depth * mSliceWidth - mMaxDepth + mSeparator * 0.5f
-                      + slice.getBorder() * mSliceWidth;
-        float up = length * (0.5f - from) - mSeparator * 0.5f;
-        float down = length * (0.5f - to) + mSeparator * 0.5f;
-        float size = mSliceWidth * slice.getDepth() - mSeparator
-                     - slice.getBorder() * mSliceWidth * 2.0f;
-
-        float deltaX = mDirection.x * delta;
-        float deltaY = mDirection.y * delta;
-        float upX = mDirection.y * up;
-        float upY = -mDirection.x * up;
-        float downX = mDirection.y * down;
-        float downY = -mDirection.x * down;
-        float sizeX = mDirection.x * size;
-        float sizeY = mDirection.y * size;
-
-        if (up > down) {
-          path.moveTo(mX - deltaX + upX, mY - deltaY + upY);
-          path.lineTo(mX - deltaX + upX - sizeX, mY - deltaY + upY - sizeY);
-          path.lineTo(mX - deltaX + downX - sizeX, mY - deltaY + downY - sizeY);
-          path.lineTo(mX - deltaX + downX, mY - deltaY + downY);
-          path.closePath();
-        }
-      }
-      else {
-        float angle = (360.0f - mCurrentAngle) * 0.5f + mCurrentAngle * from + mStart;
-        float arc = mCurrentAngle * (to - from);
-
-        float radius = mSliceWidth * depth + mGap + mDelta;
-
-        float outerLen = (radius + mSliceWidth * slice.getDepth()) * (float)Math.toRadians(
-          arc);
-        if (outerLen < 1) {
-          path = getPath(Color.RED);
-        }
-        float outerRadius = radius + mSliceWidth * slice.getDepth() - mSeparator * 0.5f
-                            - slice.getBorder() * mSliceWidth;
-        float innerRadius = radius + mSeparator * 0.5f + slice.getBorder() * mSliceWidth;
-        float outerAngle = (float)Math.toDegrees(Math.asin(mSeparator / outerRadius));
-        if (outerAngle < arc && outerRadius > innerRadius) {
-          Arc2D.Float outer = new Arc2D.Float();
-          outer.setArcByCenter(mCenterX, mCenterY, outerRadius,
-                               angle + outerAngle * 0.5f, arc - outerAngle, Arc2D.OPEN);
-          path.append(outer, false);
-
-          float innerAngle = (float)Math.toDegrees(Math.asin(mSeparator / innerRadius));
-          if (innerAngle < arc) {
-            Arc2D.Float inner = new Arc2D.Float();
-            inner.setArcByCenter(mCenterX, mCenterY, innerRadius,
-                                 angle + innerAngle * 0.5f + arc - innerAngle, -(arc - innerAngle),
-                                 Arc2D.OPEN);
-            path.append(inner, true);
-          }
-          else {
-            float r = (float)(mSeparator * 0.5f / Math
-              .sin(Math.toRadians(arc * 0.5f)));
-            float dx = (float)(Math.cos(Math.toRadians(angle + arc * 0.5f)) * r);
-            float dy = (float)(Math.sin(Math.toRadians(angle + arc * 0.5f)) * r);
-            path.lineTo(mCenterX + dx, mCenterY - dy);
-          }
-          path.lineTo(outer.getStartPoint().getX(), outer.getStartPoint().getY());
-        }
+      Path2D.Float shape = getShape(slice, depth, from, to);
+      if (shape != null) {
+        getPath(c).append(shape, false);
       }
     }
 
@@ -514,15 +507,151 @@ public final class SunburstChart extends LegacyAnimatedComponent {
     for (Slice child : slice.getChildren()) {
       total += child.getValue();
     }
+    float childDepth = depth + slice.getDepth();
     float value = 0.0f;
+    // Run of adjacent children too narrow to be drawn on their own
+    Slice run = null;
+    float runFrom = 0.0f;
+    float runTo = 0.0f;
+    float runDepth = 0.0f;
     for (Slice child : slice.getChildren()) {
       float childFrom = from + (value / total) * (to - from);
       float childTo = from + ((value + child.getValue()) / total) * (to - from);
 
-      drawSlice(child, depth + slice.getDepth(), childFrom, childTo);
+      if (child.getDepth() > 0.0f && getLength(childDepth + child.getDepth(), childFrom, childTo) < MIN_SLICE_LENGTH) {
+        child.drawnDepth = childDepth;
+        child.drawnTo = childTo;
+        child.merged = true;
+        mMergedSlices++;
+        if (run == null) {
+          run = child;
+          runFrom = childFrom;
+        }
+        runTo = childTo;
+        runDepth = Math.max(runDepth, child.getDepth());
+      }
+      else {
+        if (run != null) {
+          drawMergedSlices(run, childDepth, runDepth, runFrom, runTo);
+          run = null;
+          runDepth = 0.0f;
+        }
+        drawSlice(child, childDepth, childFrom, childTo);
+      }
 
       value += child.getValue();
     }
+    if (run != null) {
+      drawMergedSlices(run, childDepth, runDepth, runFrom, runTo);
+    }
+  }
+
+  private void drawMergedSlices(Slice first, float depth, float size, float from, float to) {
+    Path2D.Float shape = createShape(depth, size, 0.0f, from, to);
+    if (shape != null) {
+      getPath(COLORS[first.color]).append(shape, false);
+    }
+  }
+
+  /**
+   * Returns the length in pixels of the arc between the given values at the given depth.
+   */
+  private float getLength(float depth, float from, float to) {
+    if (mCurrentAngle == 0) {
+      return (float)(Math.PI * 2.0f * mFixed) * (to - from);
+    }
+    return (mSliceWidth * depth + mGap + mDelta) * (float)Math.toRadians(mCurrentAngle * (to - from));
+  }
+
+  /**
+   * Returns the shape of the given slice, rebuilding it only if the slice or the layout changed since it was built.
+   */
+  private Path2D.Float getShape(Slice slice, float depth, float from, float to) {
+    float size = slice.getDepth();
+    float border = slice.getBorder();
+    if (slice.shapeVersion != mLayoutVersion || slice.shapeDepth != depth || slice.shapeSize != size
+        || slice.shapeBorder != border || slice.shapeFrom != from || slice.shapeTo != to) {
+      slice.shape = createShape(depth, size, border, from, to);
+      slice.shapeVersion = mLayoutVersion;
+      slice.shapeDepth = depth;
+      slice.shapeSize = size;
+      slice.shapeBorder = border;
+      slice.shapeFrom = from;
+      slice.shapeTo = to;
+      mBuiltShapes++;
+    }
+    return slice.shape;
+  }
+
+  /**
+   * Builds the shape of a slice of the given size and border starting at the given depth, or returns null if the
+   * slice is too small to be drawn.
+   */
+  private Path2D.Float createShape(float depth, float sliceDepth, float border, float from, float to) {
+    Path2D.Float path = new Path2D.Float();
+    if (mCurrentAngle == 0) {
+      float length = (float)(Math.PI * 2.0f * mFixed);
+      float delta = mGap + depth * mSliceWidth - mMaxDepth + mSeparator * 0.5f
+                    + border * mSliceWidth;
+      float up = length * (0.5f - from) - mSeparator * 0.5f;
+      float down = length * (0.5f - to) + mSeparator * 0.5f;
+      float size = mSliceWidth * sliceDepth - mSeparator
+                   - border * mSliceWidth * 2.0f;
+
+      float deltaX = mDirection.x * delta;
+      float deltaY = mDirection.y * delta;
+      float upX = mDirection.y * up;
+      float upY = -mDirection.x * up;
+      float downX = mDirection.y * down;
+      float downY = -mDirection.x * down;
+      float sizeX = mDirection.x * size;
+      float sizeY = mDirection.y * size;
+
+      if (up <= down) {
+        return null;
+      }
+      path.moveTo(mX - deltaX + upX, mY - deltaY + upY);
+      path.lineTo(mX - deltaX + upX - sizeX, mY - deltaY + upY - sizeY);
+      path.lineTo(mX - deltaX + downX - sizeX, mY - deltaY + downY - sizeY);
+      path.lineTo(mX - deltaX + downX, mY - deltaY + downY);
+      path.closePath();
+    }
+    else {
+      float angle = (360.0f - mCurrentAngle) * 0.5f + mCurrentAngle * from + mStart;
+      float arc = mCurrentAngle * (to - from);
+
+      float radius = mSliceWidth * depth + mGap + mDelta;
+
+      float outerRadius = radius + mSliceWidth * sliceDepth - mSeparator * 0.5f
+                          - border * mSliceWidth;
+      float innerRadius = radius + mSeparator * 0.5f + border * mSliceWidth;
+      float outerAngle = (float)Math.toDegrees(Math.asin(mSeparator / outerRadius));
+      if (!(outerAngle < arc && outerRadius > innerRadius)) {
+        return null;
+      }
+      Arc2D.Float outer = new Arc2D.Float();
+      outer.setArcByCenter(mCenterX, mCenterY, outerRadius,
+                           angle + outerAngle * 0.5f, arc - outerAngle, Arc2D.OPEN);
+      path.append(outer, false);
+
+      float innerAngle = (float)Math.toDegrees(Math.asin(mSeparator / innerRadius));
+      if (innerAngle < arc) {
+        Arc2D.Float inner = new Arc2D.Float();
+        inner.setArcByCenter(mCenterX, mCenterY, innerRadius,
+                             angle + innerAngle * 0.5f + arc - innerAngle, -(arc - innerAngle),
+                             Arc2D.OPEN);
+        path.append(inner, true);
+      }
+      else {
+        float r = (float)(mSeparator * 0.5f / Math
+          .sin(Math.toRadians(arc * 0.5f)));
+        float dx = (float)(Math.cos(Math.toRadians(angle + arc * 0.5f)) * r);
+        float dy = (float)(Math.sin(Math.toRadians(angle + arc * 0.5f)) * r);
+        path.lineTo(mCenterX + dx, mCenterY - dy);
+      }
+      path.lineTo(outer.getStartPoint().getX(), outer.getStartPoint().getY());
+    }
+    return path;
   }
 
   public void setGap(float gap) {
@@ -590,6 +719,23 @@ public final class SunburstChart extends LegacyAnimatedComponent {
     myUseCount = useCount;
   }
 
+  @VisibleForTesting
+  Slice getRootSlice() {
+    return mSlice;
+  }
+
+  /** Returns the number of slice shapes built in the last frame */
+  @VisibleForTesting
+  int getBuiltShapeCount() {
+    return mBuiltShapes;
+  }
+
+  /** Returns the number of slices merged with their neighbours in the last frame */
+  @VisibleForTesting
+  int getMergedSliceCount() {
+    return mMergedSlices;
+  }
+
   public void addSelectionListener(SliceSelectionListener listener) {
     mListeners.add(listener);
   }
@@ -620,6 +766,28 @@ public final class SunburstChart extends LegacyAnimatedComponent {
 
     ValuedTreeNode node;
 
+    // Where the slice was drawn in the last frame, used for hit testing
+    float drawnDepth;
+
+    float drawnTo;
+
+    boolean merged;
+
+    // Cached shape and the geometry it was built for
+    Path2D.Float shape;
+
+    int shapeVersion = -1;
+
+    float shapeDepth;
+
+    float shapeSize;
+
+    float shapeBorder;
+
+    float shapeFrom;
+
+    float shapeTo;
+
     public float getValue() {
       return value * visible;
     }
@@ -32,9 +32,9 @@ import java.awt.event.*;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Queue;
+import java.util.Map;
 
 /**
  * A chart which renders nodes using a horizontal flow. That is, while normal trees are vertical,
@@ -75,11 +75,12 @@ public class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
   @NotNull
   private final Range myYRange;
 
+  /**
+   * Index of the nodes of {@link #myRoot} by depth and time, rebuilt when the tree changes. Drawing and hit-testing
+   * only visit the nodes of the visible rows that intersect the visible range through it.
+   */
   @NotNull
-  private final List<Rectangle2D.Float> myRectangles;
-
-  @NotNull
-  private final List<N> myNodes;
+  private HTreeChartIndex<N> myIndex;
 
   private boolean myRootVisible;
 
@@ -92,6 +93,20 @@ public class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
   @NotNull
   private final List<N> myDrawnNodes;
 
+  /**
+   * For every drawn depth, the [from, to) range of its nodes in {@link #myDrawnNodes}, which are sorted by x within a
+   * depth. Null when the reducer didn't keep the nodes in that order, in which case hit-testing scans the drawn nodes.
+   */
+  @Nullable
+  private Map<Integer, int[]> myDrawnDepthRanges;
+
+  /** The height of the canvas and the vertical scroll position when the drawn rectangles were computed */
+  private int myDrawnHeight;
+  private double myDrawnYMin;
+
+  /** The number of nodes visited by the last traversal of the index */
+  private int myVisitedNodeCount;
+
   @NotNull
   private final HTreeChartReducer<N> myReducer;
 
@@ -113,8 +128,7 @@ public class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
    */
   @VisibleForTesting
   public HTreeChart(@Nullable Range globalXRange, @NotNull Range viewXRange, Orientation orientation, @NotNull HTreeChartReducer<N> reducer) {
-    myRectangles = new ArrayList<>();
-    myNodes = new ArrayList<>();
+    myIndex = new HTreeChartIndex<>(null);
     myDrawnNodes = new ArrayList<>();
     myDrawnRectangles = new ArrayList<>();
     myGlobalXRange = globalXRange != null ? globalXRange : new Range(-Double.MAX_VALUE, Double.MAX_VALUE);
@@ -189,7 +203,8 @@ public class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
     }
     UIUtil.drawImage(g, myCanvas, 0, 0, null);
     addDebugInfo("Draw time %.2fms", (System.nanoTime() - startTime) / 1e6);
-    addDebugInfo("# of nodes %d", myNodes.size());
+    addDebugInfo("# of nodes %d", myIndex.size());
+    addDebugInfo("# of visited nodes %d", myVisitedNodeCount);
     addDebugInfo("# of reduced nodes %d", myDrawnNodes.size());
   }
 
@@ -205,25 +220,18 @@ public class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
     }
     g.setFont(getFont());
     myDrawnNodes.clear();
-    myDrawnNodes.addAll(myNodes);
-
     myDrawnRectangles.clear();
-    // Transform
-    for (Rectangle2D.Float rect : myRectangles) {
-      Rectangle2D.Float newRect = new Rectangle2D.Float();
-      newRect.x = rect.x * (float)dim.getWidth();
-      newRect.y = rect.y;
-      newRect.width = Math.max(0, rect.width * (float)dim.getWidth() - BORDER_PLUS_PADDING);
-      newRect.height = rect.height;
-
-      if (myOrientation == HTreeChart.Orientation.BOTTOM_UP) {
-        newRect.y = (float)(dim.getHeight() - newRect.y - newRect.getHeight());
-      }
-
-      myDrawnRectangles.add(newRect);
+    myDrawnHeight = dim.height;
+    myDrawnYMin = getYRange().getMin();
+
+    // The default reducer only merges consecutive rectangles within a pixel column, so it runs while traversing the
+    // index instead of on a copy of every visible rectangle.
+    boolean coalesce = myReducer instanceof DefaultHTreeChartReducer;
+    collectVisibleNodes(dim, coalesce);
+    if (!coalesce) {
+      myReducer.reduce(myDrawnRectangles, myDrawnNodes);
     }
-
-    myReducer.reduce(myDrawnRectangles, myDrawnNodes);
+    myDrawnDepthRanges = computeDepthRanges(myDrawnNodes, myDrawnRectangles);
 
     assert myDrawnRectangles.size() == myDrawnNodes.size();
     assert myRenderer != null;
@@ -236,53 +244,120 @@ public class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
   }
 
   private void updateNodesAndClearCanvas() {
-    myNodes.clear();
-    myRectangles.clear();
     myCanvas = null;
-    if (myRoot == null) {
-      return;
-    }
+  }
 
-    if (inRange(myRoot)) {
-      myNodes.add(myRoot);
-      myRectangles.add(createRectangle(myRoot));
+  /**
+   * Adds the nodes that intersect the visible range and rows, along with their rectangles in canvas coordinates, to
+   * {@link #myDrawnNodes} and {@link #myDrawnRectangles}, depth by depth and sorted by x within a depth.
+   *
+   * @param coalesce whether to merge the consecutive rectangles of a depth that fall in the same pixel column,
+   *                 like {@link DefaultHTreeChartReducer} does
+   */
+  private void collectVisibleNodes(@NotNull Dimension dim, boolean coalesce) {
+    myVisitedNodeCount = 0;
+    if (myRoot == null || myXRange.getLength() == 0) {
+      return;
     }
 
-    int head = 0;
-    while (head < myNodes.size()) {
-      N curNode = myNodes.get(head++);
+    int rowHeight = mDefaultFontMetrics.getHeight();
+    int rowPitch = rowHeight + BORDER_PLUS_PADDING;
+    double yMin = getYRange().getMin();
+    // A row is visible if it intersects [0, height] once shifted by the vertical scroll position
+    int firstDepth = Math.max(myIndex.getMinDepth(), (int)Math.floor((yMin - rowHeight) / rowPitch));
+    int lastDepth = Math.min(myIndex.getMaxDepth(), (int)Math.ceil((dim.height + yMin) / rowPitch));
+    double min = myXRange.getMin();
+    double max = myXRange.getMax();
+
+    for (int depth = firstDepth; depth <= lastDepth; depth++) {
+      List<N> nodes = myIndex.getNodes(depth);
+      Rectangle2D.Float pendingRect = null;
+      N pendingNode = null;
+      double pendingPixel = 0;
+
+      for (int i = myIndex.firstIndexEndingAfter(depth, min); i < nodes.size(); i++) {
+        N node = nodes.get(i);
+        if (node.getStart() > max) {
+          break;
+        }
+        myVisitedNodeCount++;
+        if (node.getEnd() < min || (node == myRoot && !myRootVisible)) {
+          continue;
+        }
 
-      for (int i = 0; i < curNode.getChildCount(); ++i) {
-        N child = curNode.getChildAt(i);
-        if (inRange(child)) {
-          myNodes.add(child);
-          myRectangles.add(createRectangle(child));
+        Rectangle2D.Float rect = createRectangle(node, dim);
+        double pixel = Math.floor(rect.getMaxX());
+        if (!coalesce || Math.floor(rect.getMinX()) < pixel) {
+          // Crossing several pixels on X axis
+          addPending(pendingNode, pendingRect);
+          pendingNode = null;
+          pendingRect = null;
+          myDrawnNodes.add(node);
+          myDrawnRectangles.add(rect);
+        }
+        else if (pendingRect != null && pendingPixel == pixel) {
+          // Whole rectangle inside the same pixel as the previous one: combine them
+          pendingRect.width = (float)(rect.getMaxX() - pendingRect.getMinX());
+        }
+        else {
+          addPending(pendingNode, pendingRect);
+          pendingNode = node;
+          pendingRect = rect;
+          pendingPixel = pixel;
         }
       }
-    }
-    if (!myRootVisible && !myNodes.isEmpty()) {
-      myNodes.remove(0);
-      myRectangles.remove(0);
+      addPending(pendingNode, pendingRect);
     }
   }
 
-  private boolean inRange(@NotNull N node) {
-    return node.getStart() <= myXRange.getMax() && node.getEnd() >= myXRange.getMin();
+  private void addPending(@Nullable N node, @Nullable Rectangle2D.Float rect) {
+    if (node != null && rect != null) {
+      myDrawnNodes.add(node);
+      myDrawnRectangles.add(rect);
+    }
   }
 
   @NotNull
-  private Rectangle2D.Float createRectangle(@NotNull N node) {
+  private Rectangle2D.Float createRectangle(@NotNull N node, @NotNull Dimension dim) {
     float left = (float)Math.max(0, (node.getStart() - myXRange.getMin()) / myXRange.getLength());
     float right = (float)Math.min(1, (node.getEnd() - myXRange.getMin()) / myXRange.getLength());
     Rectangle2D.Float rect = new Rectangle2D.Float();
-    rect.x = left;
+    rect.x = left * (float)dim.getWidth();
     rect.y = (float)((mDefaultFontMetrics.getHeight() + BORDER_PLUS_PADDING) * node.getDepth()
                      - getYRange().getMin());
-    rect.width = right - left;
+    rect.width = Math.max(0, (right - left) * (float)dim.getWidth() - BORDER_PLUS_PADDING);
     rect.height = mDefaultFontMetrics.getHeight();
+
+    if (myOrientation == HTreeChart.Orientation.BOTTOM_UP) {
+      rect.y = (float)(dim.getHeight() - rect.y - rect.getHeight());
+    }
     return rect;
   }
 
+  /**
+   * Returns the range of every depth in the given drawn nodes, or null if the nodes are not grouped by depth and
+   * sorted by x within a depth.
+   */
+  @Nullable
+  private static <N extends HNode<N>> Map<Integer, int[]> computeDepthRanges(@NotNull List<N> nodes,
+                                                                             @NotNull List<Rectangle2D.Float> rectangles) {
+    Map<Integer, int[]> ranges = new HashMap<>();
+    int from = 0;
+    for (int i = 1; i <= nodes.size(); i++) {
+      if (i < nodes.size() && nodes.get(i).getDepth() == nodes.get(from).getDepth()) {
+        if (rectangles.get(i).x < rectangles.get(i - 1).x) {
+          return null;
+        }
+        continue;
+      }
+      if (ranges.put(nodes.get(from).getDepth(), new int[]{from, i}) != null) {
+        return null;
+      }
+      from = i;
+    }
+    return ranges;
+  }
+
   private double positionToRange(double x) {
     return x / getWidth() * myXRange.getLength() + myXRange.getMin();
   }
@@ -293,17 +368,50 @@ public class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
 
   public void setHTree(@Nullable N root) {
     this.myRoot = root;
+    myIndex = new HTreeChartIndex<>(root);
     changed();
   }
 
   @Nullable
   public N getNodeAt(Point point) {
-    if (point != null) {
+    if (point == null) {
+      return null;
+    }
+    if (myDrawnDepthRanges == null) {
       for (int i = 0; i < myDrawnNodes.size(); ++i) {
         if (contains(myDrawnRectangles.get(i), point)) {
           return myDrawnNodes.get(i);
         }
       }
+      return null;
+    }
+
+    // Rows are inclusive of both edges, so a point on the boundary of two rows can hit either of them
+    double rowPitch = mDefaultFontMetrics.getHeight() + BORDER_PLUS_PADDING;
+    double y = myOrientation == Orientation.BOTTOM_UP ? myDrawnHeight - point.getY() : point.getY();
+    int depth = (int)Math.floor((y + myDrawnYMin) / rowPitch);
+    for (int d = depth - 1; d <= depth; d++) {
+      int[] range = myDrawnDepthRanges.get(d);
+      if (range == null) {
+        continue;
+      }
+      // Find the last rectangle of the row starting at or before the point, then check it and the one before it
+      int low = range[0];
+      int high = range[1];
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (myDrawnRectangles.get(mid).getMinX() <= point.getX()) {
+          low = mid + 1;
+        }
+        else {
+          high = mid;
+        }
+      }
+      for (int i = Math.max(range[0], low - 2); i < low; i++) {
+        if (contains(myDrawnRectangles.get(i), point)) {
+          return myDrawnNodes.get(i);
+        }
+      }
     }
     return null;
   }
@@ -447,23 +555,7 @@ public class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
     if (myRoot == null) {
       return 0;
     }
-
-    int maxDepth = -1;
-    Queue<N> queue = new LinkedList<>();
-    queue.add(myRoot);
-
-    while (!queue.isEmpty()) {
-      N n = queue.poll();
-      if (n.getDepth() > maxDepth) {
-        maxDepth = n.getDepth();
-      }
-
-      for (int i = 0; i < n.getChildCount(); ++i) {
-        queue.add(n.getChildAt(i));
-      }
-    }
-    maxDepth += 1;
-    return (mDefaultFontMetrics.getHeight() + BORDER_PLUS_PADDING) * maxDepth;
+    return (mDefaultFontMetrics.getHeight() + BORDER_PLUS_PADDING) * (myIndex.getMaxDepth() + 1);
   }
 
   public enum Orientation {TOP_DOWN, BOTTOM_UP}
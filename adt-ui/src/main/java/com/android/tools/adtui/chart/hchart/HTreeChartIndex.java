@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.chart.hchart;
+
+import com.android.tools.adtui.model.HNode;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Interval index of the nodes of a {@link HTreeChart}, with one level per node depth.
+ * <p>
+ * The nodes of a level are sorted by start, and the level keeps the running maximum of their ends, so the first node
+ * that can intersect a range is found with a binary search even if some nodes of the level overlap. This lets the
+ * chart visit only the nodes of the visible rows that intersect the visible range instead of walking the whole tree.
+ *
+ * @param <N> The type of the node used by the tree chart
+ */
+class HTreeChartIndex<N extends HNode<N>> {
+  private static final Comparator<HNode<?>> START_COMPARATOR = Comparator.comparingLong(HNode::getStart);
+
+  @NotNull private final List<List<N>> myLevels = new ArrayList<>();
+  @NotNull private final List<long[]> myMaxEnds = new ArrayList<>();
+  private final int myMinDepth;
+  private int mySize;
+
+  HTreeChartIndex(@Nullable N root) {
+    myMinDepth = root != null ? root.getDepth() : 0;
+    if (root == null) {
+      return;
+    }
+
+    List<N> queue = new ArrayList<>();
+    queue.add(root);
+    for (int head = 0; head < queue.size(); head++) {
+      N node = queue.get(head);
+      int level = Math.max(0, node.getDepth() - myMinDepth);
+      while (myLevels.size() <= level) {
+        myLevels.add(new ArrayList<>());
+      }
+      myLevels.get(level).add(node);
+      for (int i = 0; i < node.getChildCount(); ++i) {
+        queue.add(node.getChildAt(i));
+      }
+    }
+    mySize = queue.size();
+
+    for (List<N> nodes : myLevels) {
+      // Breadth first order already sorts the levels of well formed trees; this is only a safety net
+      if (!isSorted(nodes)) {
+        nodes.sort(START_COMPARATOR);
+      }
+      long[] maxEnds = new long[nodes.size()];
+      long maxEnd = Long.MIN_VALUE;
+      for (int i = 0; i < maxEnds.length; i++) {
+        maxEnd = Math.max(maxEnd, nodes.get(i).getEnd());
+        maxEnds[i] = maxEnd;
+      }
+      myMaxEnds.add(maxEnds);
+    }
+  }
+
+  private static boolean isSorted(@NotNull List<? extends HNode<?>> nodes) {
+    for (int i = 1; i < nodes.size(); i++) {
+      if (nodes.get(i - 1).getStart() > nodes.get(i).getStart()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns the number of nodes in the tree */
+  int size() {
+    return mySize;
+  }
+
+  int getMinDepth() {
+    return myMinDepth;
+  }
+
+  /** Returns the deepest depth of the tree, or {@code getMinDepth() - 1} if the tree is empty */
+  int getMaxDepth() {
+    return myMinDepth + myLevels.size() - 1;
+  }
+
+  /** Returns the nodes at the given depth, sorted by start */
+  @NotNull
+  List<N> getNodes(int depth) {
+    int level = depth - myMinDepth;
+    return level >= 0 && level < myLevels.size() ? myLevels.get(level) : Collections.emptyList();
+  }
+
+  /**
+   * Returns the index in {@link #getNodes(int)} of the first node at the given depth that can end at or after
+   * {@code min}. All the nodes before it end before {@code min}.
+   */
+  int firstIndexEndingAfter(int depth, double min) {
+    int level = depth - myMinDepth;
+    if (level < 0 || level >= myMaxEnds.size()) {
+      return 0;
+    }
+    long[] maxEnds = myMaxEnds.get(level);
+    int low = 0;
+    int high = maxEnds.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (maxEnds[mid] < min) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
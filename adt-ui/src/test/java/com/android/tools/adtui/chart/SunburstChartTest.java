@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.chart;
+
+import com.android.tools.adtui.ValuedTreeNode;
+import org.junit.Test;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class SunburstChartTest {
+  private static final int SIZE = 400;
+
+  @Test
+  public void testShapesAreRebuiltOnlyWhenTheLayoutChanges() {
+    SunburstChart chart = createChart(createTree(3, 3));
+    int slices = countSlices(chart.getRootSlice()) - 1; // The root slice has no depth and is not drawn
+    assertThat(chart.getBuiltShapeCount()).isEqualTo(slices);
+
+    // Nothing moved since the last frame
+    updateAndDraw(chart);
+    assertThat(chart.getBuiltShapeCount()).isEqualTo(0);
+
+    chart.setGap(20);
+    updateAndDraw(chart);
+    assertThat(chart.getBuiltShapeCount()).isEqualTo(slices);
+
+    chart.setSize(SIZE / 2, SIZE / 2);
+    updateAndDraw(chart);
+    assertThat(chart.getBuiltShapeCount()).isEqualTo(slices);
+
+    updateAndDraw(chart);
+    assertThat(chart.getBuiltShapeCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void testTinySlicesAreMerged() {
+    // The outer arc of each small slice is a fraction of a pixel long
+    Node root = new Node(0);
+    root.addNode(new Node(100000));
+    for (int i = 0; i < 1000; i++) {
+      Node small = new Node(1);
+      small.addNode(new Node(1));
+      root.addNode(small);
+    }
+    SunburstChart chart = createChart(root);
+
+    assertThat(chart.getMergedSliceCount()).isEqualTo(1000);
+    // Only the large slice gets a shape of its own, the merged slices are drawn without their children
+    assertThat(chart.getBuiltShapeCount()).isEqualTo(1);
+    assertThat(chart.findSliceAt(1.5f, 0.9999f)).isNull();
+  }
+
+  @Test
+  public void testHitTestingMatchesLinearSearch() {
+    SunburstChart chart = createChart(createTree(3, 4));
+    assertThat(chart.getMergedSliceCount()).isEqualTo(0);
+
+    SunburstChart.Slice root = chart.getRootSlice();
+    for (int i = 0; i < 45; i++) {
+      float depth = (i + 0.5f) * 0.1f - 0.2f;
+      for (int j = 0; j < 200; j++) {
+        float value = (j + 0.37f) / 200.0f;
+        assertThat(chart.findSliceAt(depth, value)).isSameAs(findSliceLinearly(root, depth, value));
+      }
+    }
+  }
+
+  /**
+   * The hit testing done by {@link SunburstChart} before the drawn ranges were recorded: it recomputes the range of
+   * every child of every slice on the way down.
+   */
+  private static SunburstChart.Slice findSliceLinearly(SunburstChart.Slice slice, float depth, float value) {
+    if (depth < 0.0f || value < 0.0f || value > 1.0f) {
+      return null;
+    }
+    if (depth < slice.getDepth()) {
+      return slice;
+    }
+    depth -= slice.getDepth();
+    float total = 0.0f;
+    for (SunburstChart.Slice child : slice.getChildren()) {
+      total += child.getValue();
+    }
+    float current = 0.0f;
+    for (int i = 0; i < slice.getChildrenCount(); i++) {
+      SunburstChart.Slice child = slice.getChild(i);
+      float val = child.getValue() / total;
+      if (value < current + val || i == slice.getChildrenCount() - 1) {
+        return findSliceLinearly(child, depth, (value - current) / val);
+      }
+      current += val;
+    }
+    return null;
+  }
+
+  private static SunburstChart createChart(ValuedTreeNode data) {
+    SunburstChart chart = new SunburstChart(data);
+    chart.setSize(SIZE, SIZE);
+    updateAndDraw(chart);
+    return chart;
+  }
+
+  private static void updateAndDraw(SunburstChart chart) {
+    // A long frame makes all the animated values reach their targets at once
+    chart.update(TimeUnit.SECONDS.toNanos(10));
+    Graphics2D g = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB).createGraphics();
+    try {
+      chart.draw(g, chart.getSize());
+    }
+    finally {
+      g.dispose();
+    }
+  }
+
+  private static int countSlices(SunburstChart.Slice slice) {
+    int count = 1;
+    for (SunburstChart.Slice child : slice.getChildren()) {
+      count += countSlices(child);
+    }
+    return count;
+  }
+
+  /**
+   * Creates a tree of the given depth where the i-th child of every node has a value proportional to i + 1.
+   */
+  private static Node createTree(int depth, int children) {
+    Node node = new Node(0);
+    for (int i = 0; i < children; i++) {
+      Node child = depth > 1 ? createTree(depth - 1, children) : new Node(0);
+      child.add(i + 1);
+      node.addNode(child);
+    }
+    return node;
+  }
+
+  private static class Node extends DefaultMutableTreeNode implements ValuedTreeNode {
+    private int myValue;
+
+    Node(int value) {
+      myValue = value;
+    }
+
+    @Override
+    public int getCount() {
+      return myValue;
+    }
+
+    @Override
+    public int getValue() {
+      return myValue;
+    }
+
+    void add(int value) {
+      myValue += value;
+      if (parent instanceof Node) {
+        ((Node)parent).add(value);
+      }
+    }
+
+    void addNode(Node node) {
+      super.add(node);
+      add(node.getValue());
+    }
+  }
+}
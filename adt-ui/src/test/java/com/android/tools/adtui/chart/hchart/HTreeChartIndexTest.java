@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.chart.hchart;
+
+import com.android.tools.adtui.model.DefaultHNode;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HTreeChartIndexTest {
+  /**
+   * The structure of the tree:
+   *   0   10   20   30   40   50   60   70   80   90   100
+   *   A+++++++++++++++++++++++++++++++++++++++++++++++++
+   *   B++++++++++++++++++++     C++++++++++++++++++++++++
+   *   D+++++ E+++++   F++++     G++++          H++++++++
+   */
+  private static DefaultHNode<String> createTree() {
+    DefaultHNode<String> a = createNode("A", 0, 100, 0);
+    DefaultHNode<String> b = createNode("B", 0, 40, 1);
+    DefaultHNode<String> c = createNode("C", 50, 100, 1);
+    a.addChild(b);
+    a.addChild(c);
+    b.addChild(createNode("D", 0, 10, 2));
+    b.addChild(createNode("E", 12, 22, 2));
+    b.addChild(createNode("F", 30, 38, 2));
+    c.addChild(createNode("G", 50, 60, 2));
+    c.addChild(createNode("H", 80, 100, 2));
+    return a;
+  }
+
+  private static DefaultHNode<String> createNode(String id, long start, long end, int depth) {
+    DefaultHNode<String> node = new DefaultHNode<>(id, start, end);
+    node.setDepth(depth);
+    return node;
+  }
+
+  private static String visit(HTreeChartIndex<DefaultHNode<String>> index, int depth, double min, double max) {
+    StringBuilder visited = new StringBuilder();
+    List<DefaultHNode<String>> nodes = index.getNodes(depth);
+    for (int i = index.firstIndexEndingAfter(depth, min); i < nodes.size() && nodes.get(i).getStart() <= max; i++) {
+      if (nodes.get(i).getEnd() >= min) {
+        visited.append(nodes.get(i).getData());
+      }
+    }
+    return visited.toString();
+  }
+
+  @Test
+  public void testLevels() {
+    HTreeChartIndex<DefaultHNode<String>> index = new HTreeChartIndex<>(createTree());
+    assertEquals(8, index.size());
+    assertEquals(0, index.getMinDepth());
+    assertEquals(2, index.getMaxDepth());
+    assertEquals(1, index.getNodes(0).size());
+    assertEquals(2, index.getNodes(1).size());
+    assertEquals(5, index.getNodes(2).size());
+    assertTrue(index.getNodes(3).isEmpty());
+    assertTrue(index.getNodes(-1).isEmpty());
+  }
+
+  @Test
+  public void testEmptyTree() {
+    HTreeChartIndex<DefaultHNode<String>> index = new HTreeChartIndex<>(null);
+    assertEquals(0, index.size());
+    assertEquals(index.getMinDepth() - 1, index.getMaxDepth());
+    assertTrue(index.getNodes(0).isEmpty());
+    assertEquals(0, index.firstIndexEndingAfter(0, 10));
+  }
+
+  @Test
+  public void testRangeQueries() {
+    HTreeChartIndex<DefaultHNode<String>> index = new HTreeChartIndex<>(createTree());
+    assertEquals("A", visit(index, 0, 20, 30));
+    assertEquals("B", visit(index, 1, 20, 30));
+    assertEquals("E", visit(index, 2, 20, 30));
+    assertEquals("FG", visit(index, 2, 35, 55));
+    assertEquals("", visit(index, 2, 62, 78));
+    assertEquals("DEFGH", visit(index, 2, 0, 100));
+    assertEquals(5, index.firstIndexEndingAfter(2, 101));
+  }
+
+  @Test
+  public void testOverlappingNodes() {
+    // A long node followed by short ones: the running maximum of the ends keeps the long node visible
+    DefaultHNode<String> root = createNode("A", 0, 100, 0);
+    root.addChild(createNode("B", 0, 90, 1));
+    root.addChild(createNode("C", 10, 20, 1));
+    root.addChild(createNode("D", 30, 40, 1));
+    HTreeChartIndex<DefaultHNode<String>> index = new HTreeChartIndex<>(root);
+    assertEquals("B", visit(index, 1, 50, 60));
+    assertEquals("BD", visit(index, 1, 35, 60));
+  }
+
+  @Test
+  public void testUnsortedChildren() {
+    DefaultHNode<String> root = createNode("A", 0, 100, 3);
+    root.addChild(createNode("C", 50, 100, 4));
+    root.addChild(createNode("B", 0, 40, 4));
+    HTreeChartIndex<DefaultHNode<String>> index = new HTreeChartIndex<>(root);
+    assertEquals(3, index.getMinDepth());
+    assertEquals(4, index.getMaxDepth());
+    assertEquals("B", index.getNodes(4).get(0).getData());
+    assertEquals("C", visit(index, 4, 45, 60));
+  }
+}
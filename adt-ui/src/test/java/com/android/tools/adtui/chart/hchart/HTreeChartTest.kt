@@ -22,6 +22,10 @@ import com.google.common.truth.Truth.assertThat
 import org.junit.Before
 import org.junit.Test
 import java.awt.Dimension
+import java.awt.Graphics2D
+import java.awt.Point
+import java.awt.geom.Rectangle2D
+import java.awt.image.BufferedImage
 
 class HTreeChartTest {
   private lateinit var myUi: FakeUi
@@ -300,6 +304,40 @@ class HTreeChartTest {
     assertThat(myRange.max).isWithin(EPSILON).of(100.0)
   }
 
+  @Test
+  fun testGetNodeAtUsesDrawnRows() {
+    setUp(HTreeChart.Orientation.TOP_DOWN)
+    val root = DefaultHNode("A", 0, 100)
+    root.addChild(DefaultHNode("B", 0, 40).also { it.depth = 1 })
+    root.addChild(DefaultHNode("C", 60, 100).also { it.depth = 1 })
+    myChart.setHTree(root)
+    myChart.setHRenderer(object : HRenderer<DefaultHNode<String>> {
+      override fun render(g: Graphics2D, node: DefaultHNode<String>, drawingArea: Rectangle2D, isFocused: Boolean) {}
+    })
+    myChart.yRange.set(0.0, 0.0)
+    paint()
+
+    // Every row is 15 pixels tall, borders included
+    assertThat(myChart.getNodeAt(Point(50, 5))?.data).isEqualTo("A")
+    assertThat(myChart.getNodeAt(Point(20, 20))?.data).isEqualTo("B")
+    assertThat(myChart.getNodeAt(Point(80, 20))?.data).isEqualTo("C")
+    assertThat(myChart.getNodeAt(Point(50, 20))).isNull()
+    assertThat(myChart.getNodeAt(Point(50, 40))).isNull()
+
+    // Scrolling down by one row shows the children in the first row
+    myChart.yRange.set(15.0, 15.0)
+    paint()
+    assertThat(myChart.getNodeAt(Point(20, 5))?.data).isEqualTo("B")
+    assertThat(myChart.getNodeAt(Point(50, 5))).isNull()
+  }
+
+  private fun paint() {
+    val image = BufferedImage(myChart.width, myChart.height, BufferedImage.TYPE_INT_ARGB)
+    val g = image.createGraphics()
+    myChart.paint(g)
+    g.dispose()
+  }
+
   companion object {
     private const val EPSILON = 1e-3
   }
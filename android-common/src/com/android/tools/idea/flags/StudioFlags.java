@@ -109,6 +109,11 @@ public final class StudioFlags {
     "For Android O or newer, allocations are tracked all the time while inside the Memory Profiler.",
     true);
 
+  public static final Flag<Boolean> PROFILER_LIVE_ALLOCATION_AGGREGATION = Flag.create(
+    PROFILER, "memory.livealloc.aggregate", "Aggregate live allocations",
+    "Only load the allocation counts and sizes of each class for a selection, and load the instances of a class when it is selected.",
+    false);
+
   public static final Flag<Boolean> PROFILER_MEMORY_SNAPSHOT = Flag.create(
     PROFILER, "memory.livealloc.snapshot", "Enable Memory Class Histogram Display",
     "For Android O or newer, supports single-point selection which shows a snapshot of the heap at the specific time.",
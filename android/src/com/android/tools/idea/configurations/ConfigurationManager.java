@@ -84,6 +84,7 @@ public class ConfigurationManager implements Disposable {
   private IAndroidTarget myTarget;
   private int myStateVersion;
   private ResourceResolverCache myResolverCache;
+  private final ConfigurationMatchIndex myMatchIndex = new ConfigurationMatchIndex();
   private long myLocaleCacheStamp;
 
   @NotNull
@@ -654,4 +655,9 @@ public class ConfigurationManager implements Disposable {
 
     return myResolverCache;
   }
+
+  @NotNull
+  ConfigurationMatchIndex getMatchIndex() {
+    return myMatchIndex;
+  }
 }
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.configurations;
+
+import com.android.SdkConstants;
+import com.android.ide.common.res2.ResourceItem;
+import com.android.ide.common.resources.configuration.FolderConfiguration;
+import com.android.ide.common.resources.configuration.ResourceQualifier;
+import com.android.resources.ResourceType;
+import com.android.tools.idea.res.LocalResourceRepository;
+import com.android.tools.idea.res.ResourceHelper;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Index used by {@link ConfigurationMatcher} to answer "which files best match this configuration" queries.
+ * <p>
+ * For every resource the index records the folder configurations of its candidate files and which qualifier
+ * dimensions they use. The best match for a configuration only depends on the qualifiers at those dimensions, so
+ * the configurations produced while searching through all the devices, states, locales, UI modes and night modes
+ * collapse onto a handful of keys, and each key is matched against the repository only once.
+ * <p>
+ * The index is updated incrementally: when the repository changes, only the resources that are queried again are
+ * looked at, and their previous matches are kept unless the set of folders they are defined in has changed.
+ */
+class ConfigurationMatchIndex {
+  private static class Entry {
+    /** The modification count of the repository when the candidates were last checked */
+    long generation;
+    /** The unique keys of the folder configurations of the candidate files */
+    @NotNull Set<String> candidateKeys = Collections.emptySet();
+    /** Qualifier indices (see {@link FolderConfiguration#getQualifier(int)}) used by at least one candidate */
+    @NotNull boolean[] usedQualifiers = new boolean[FolderConfiguration.getQualifierCount()];
+    /** The matching files, keyed by the configuration reduced to {@link #usedQualifiers} */
+    final Map<String, List<VirtualFile>> matches = Maps.newHashMap();
+  }
+
+  private final Map<LocalResourceRepository, Map<String, Entry>> myEntries = new WeakHashMap<>();
+  private int myLookups;
+  private int myQueries;
+
+  /**
+   * Returns the files for the same resource as {@code file} that match the given configuration, best match first.
+   * This is equivalent to {@link LocalResourceRepository#getMatchingFiles(VirtualFile, ResourceType, FolderConfiguration)}.
+   */
+  @NotNull
+  synchronized List<VirtualFile> getMatchingFiles(@NotNull LocalResourceRepository resources,
+                                                  @NotNull VirtualFile file,
+                                                  @NotNull ResourceType type,
+                                                  @NotNull FolderConfiguration config) {
+    myLookups++;
+    String name = ResourceHelper.getResourceName(file);
+    Entry entry = myEntries.computeIfAbsent(resources, k -> Maps.newHashMap()).computeIfAbsent(type.getName() + '/' + name, k -> new Entry());
+    long generation = resources.getModificationCount();
+    if (entry.generation != generation) {
+      update(entry, resources, type, name);
+      entry.generation = generation;
+    }
+
+    String key = getReducedKey(config, entry.usedQualifiers);
+    List<VirtualFile> matches = entry.matches.get(key);
+    if (matches == null || !isValid(matches)) {
+      myQueries++;
+      matches = Collections.unmodifiableList(resources.getMatchingFiles(file, type, config));
+      entry.matches.put(key, matches);
+    }
+    return matches;
+  }
+
+  /**
+   * Returns the best matching file for the same resource as {@code file}, or null if no file matches.
+   */
+  @Nullable
+  VirtualFile getMatchingFile(@NotNull LocalResourceRepository resources,
+                              @NotNull VirtualFile file,
+                              @NotNull ResourceType type,
+                              @NotNull FolderConfiguration config) {
+    List<VirtualFile> matches = getMatchingFiles(resources, file, type, config);
+    return matches.isEmpty() ? null : matches.get(0);
+  }
+
+  synchronized void clear() {
+    myEntries.clear();
+  }
+
+  /** Returns the number of lookups made through this index */
+  @VisibleForTesting
+  synchronized int getLookupCount() {
+    return myLookups;
+  }
+
+  /** Returns the number of lookups that had to query the repository */
+  @VisibleForTesting
+  synchronized int getQueryCount() {
+    return myQueries;
+  }
+
+  /**
+   * Refreshes the candidates of the given entry, dropping its matches only when the folders the resource is defined
+   * in have changed.
+   */
+  private static void update(@NotNull Entry entry, @NotNull LocalResourceRepository resources, @NotNull ResourceType type,
+                             @NotNull String name) {
+    List<ResourceItem> items = resources.getResourceItem(type, name);
+    Set<String> candidateKeys = Sets.newHashSet();
+    boolean[] usedQualifiers = new boolean[FolderConfiguration.getQualifierCount()];
+    if (items != null) {
+      for (ResourceItem item : items) {
+        FolderConfiguration configuration = item.getConfiguration();
+        candidateKeys.add(configuration.getUniqueKey());
+        for (int i = 0; i < usedQualifiers.length; i++) {
+          if (configuration.getQualifier(i) != null) {
+            usedQualifiers[i] = true;
+          }
+        }
+      }
+    }
+
+    if (!candidateKeys.equals(entry.candidateKeys)) {
+      entry.candidateKeys = candidateKeys;
+      entry.usedQualifiers = usedQualifiers;
+      entry.matches.clear();
+    }
+  }
+
+  private static boolean isValid(@NotNull List<VirtualFile> files) {
+    for (VirtualFile file : files) {
+      if (file == null || !file.isValid()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns a key for the given configuration that only contains the qualifiers at the used indices, so that all the
+   * configurations that can't be told apart by the candidate folders share the same key.
+   */
+  @NotNull
+  private static String getReducedKey(@NotNull FolderConfiguration config, @NotNull boolean[] usedQualifiers) {
+    StringBuilder key = new StringBuilder();
+    for (int i = 0; i < usedQualifiers.length; i++) {
+      if (usedQualifiers[i]) {
+        ResourceQualifier qualifier = config.getQualifier(i);
+        key.append(SdkConstants.RES_QUALIFIER_SEP);
+        if (qualifier != null) {
+          key.append(qualifier.getFolderSegment());
+        }
+      }
+    }
+    return key.toString();
+  }
+}
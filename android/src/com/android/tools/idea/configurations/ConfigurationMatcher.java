@@ -53,6 +53,9 @@ import static com.android.SdkConstants.FD_RES_LAYOUT;
  * http://developer.android.com/guide/topics/resources/providing-resources.html#BestMatch
  * <p>
  * This class was ported from ADT and could probably use a rewrite.
+ * <p>
+ * The file matches are looked up through the module's {@link ConfigurationMatchIndex}, since searching for a
+ * compatible configuration tests the same file against every device, state, locale and UI mode combination.
  */
 public class ConfigurationMatcher {
   private static final Logger LOG = Logger.getInstance("#com.android.tools.idea.rendering.ConfigurationMatcher");
@@ -133,7 +136,7 @@ public class ConfigurationMatcher {
   */
   public boolean isCurrentFileBestMatchFor(@NotNull FolderConfiguration config) {
     if (myResources != null && myFile != null) {
-      VirtualFile match = myResources.getMatchingFile(myFile, getResourceType(), config);
+      VirtualFile match = myManager.getMatchIndex().getMatchingFile(myResources, myFile, getResourceType(), config);
       if (match != null) {
         return myFile.equals(match);
       }
@@ -189,7 +192,7 @@ public class ConfigurationMatcher {
       VersionQualifier prevQualifier = config.getVersionQualifier();
       try {
         config.setVersionQualifier(null);
-        return myResources.getMatchingFiles(myFile, getResourceType(), config);
+        return myManager.getMatchIndex().getMatchingFiles(myResources, myFile, getResourceType(), config);
       }
       finally {
         config.setVersionQualifier(prevQualifier);
@@ -625,7 +628,8 @@ public class ConfigurationMatcher {
             List<ResourceType> types = FolderTypeRelationship.getRelatedResourceTypes(folderType);
             if (!types.isEmpty()) {
               ResourceType type = types.get(0);
-              List<VirtualFile> matches = resources.getMatchingFiles(file, type, currentConfig);
+              ConfigurationMatchIndex index = configuration.getConfigurationManager().getMatchIndex();
+              List<VirtualFile> matches = index.getMatchingFiles(resources, file, type, currentConfig);
               if (!matches.contains(file) && !matches.isEmpty()) {
                 return matches.get(0);
               }
@@ -18,13 +18,18 @@ package com.android.tools.idea.configurations;
 import com.android.SdkConstants;
 import com.android.ide.common.rendering.api.RenderResources;
 import com.android.ide.common.rendering.api.ResourceValue;
+import com.android.ide.common.resources.ResourceFolder;
+import com.android.ide.common.resources.ResourceItem;
 import com.android.ide.common.resources.ResourceRepository;
 import com.android.ide.common.resources.ResourceResolver;
 import com.android.ide.common.resources.ResourceValueMap;
 import com.android.ide.common.resources.configuration.DensityQualifier;
 import com.android.ide.common.resources.configuration.FolderConfiguration;
 import com.android.ide.common.resources.configuration.LocaleQualifier;
+import com.android.ide.common.resources.configuration.ResourceQualifier;
 import com.android.resources.Density;
+import com.android.resources.FolderTypeRelationship;
+import com.android.resources.ResourceFolderType;
 import com.android.resources.ResourceType;
 import com.android.sdklib.IAndroidTarget;
 import com.android.tools.idea.rendering.Locale;
@@ -35,12 +40,15 @@ import com.android.tools.idea.res.LocalResourceRepository;
 import com.android.tools.idea.res.ResourceHelper;
 import com.android.utils.SparseArray;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
 import org.jetbrains.android.sdk.AndroidPlatform;
 import org.jetbrains.android.sdk.AndroidTargetData;
+import org.jetbrains.android.sdk.FrameworkResourceLoader;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -48,15 +56,31 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 import static com.android.SdkConstants.DOT_PNG;
 import static com.android.SdkConstants.PREFIX_RESOURCE_REF;
 
-/** Cache for resolved resources */
+/**
+ * Cache for resolved resources.
+ * <p>
+ * The configured resources are shared per {@link ResourceType}: for every type the cache only keys the values by the
+ * qualifiers that the resources of that type actually use, so for example two locales share the same drawable values
+ * and two screen sizes share the same strings. The total number of cached resource values is bounded; when the bound
+ * is exceeded the least recently used configurations are evicted. See {@link #getResolverStats()} and
+ * {@link #getConfiguredResourcesStats()} for the hit rates.
+ */
 public class ResourceResolverCache {
   private static final Logger LOG = Logger.getInstance(ResourceResolverCache.class);
 
+  /** Maximum number of distinct resource values kept in the configured resource maps before evicting configurations */
+  private static final long DEFAULT_MAX_CACHED_VALUES = Long.getLong("resource.resolver.cache.max.values", 1_000_000);
+
   /** The configuration manager this cache corresponds to */
   private final ConfigurationManager myManager;
 
@@ -80,6 +104,46 @@ public class ResourceResolverCache {
   @VisibleForTesting
   final Map<String, Map<ResourceType, ResourceValueMap>> myFrameworkResourceMap;
 
+  /**
+   * The full configuration keys in least recently used order, mapped to the keys of the resolvers created for them.
+   * This is what eviction walks through.
+   */
+  private final LinkedHashMap<String, Set<String>> myConfigurations = new LinkedHashMap<>(16, 0.75f, true);
+
+  /** The per type app resource values shared between the entries of {@link #myAppResourceMap} */
+  private final ResourceValueMapPool myAppPool = new ResourceValueMapPool();
+
+  /** The per type framework resource values shared between the entries of {@link #myFrameworkResourceMap}, per repository */
+  private final Map<ResourceRepository, ResourceValueMapPool> myFrameworkPools = new WeakHashMap<>();
+
+  /** Qualifier indices (see {@link FolderConfiguration#getQualifier(int)}) used by the app resources, per type */
+  @Nullable private Map<ResourceType, boolean[]> myAppQualifiers;
+
+  /** Qualifier indices used by each framework repository, per type */
+  private final Map<ResourceRepository, Map<ResourceType, boolean[]>> myFrameworkQualifiers = new WeakHashMap<>();
+
+  /**
+   * The modification count of each framework repository when its values were last cached. Locales may be added to a
+   * repository loaded without them (see {@link FrameworkResourceLoader.IdeFrameworkResources#loadLocales()}).
+   */
+  private final Map<ResourceRepository, Long> myFrameworkGenerations = new WeakHashMap<>();
+
+  private final long myMaxCachedValues;
+
+  /**
+   * Guards all the cache state. It is only held for short sections and never while entering a read or write action;
+   * the configured app resources are computed in a read action outside of it.
+   */
+  private final Object myLock = new Object();
+
+  private long myResolverHits;
+  private long myResolverMisses;
+  private long myResolverLoadNanos;
+  private long myConfiguredHits;
+  private long myConfiguredMisses;
+  private long myConfiguredLoadNanos;
+  private long myEvictions;
+
   /** The generation timestamp of our most recently cached app resources, used to invalidate on edits */
   private long myCachedGeneration;
 
@@ -94,12 +158,22 @@ public class ResourceResolverCache {
   private String myCustomResolverKey;
 
   public ResourceResolverCache(ConfigurationManager manager) {
+    this(manager, DEFAULT_MAX_CACHED_VALUES);
+  }
+
+  @VisibleForTesting
+  ResourceResolverCache(ConfigurationManager manager, long maxCachedValues) {
     myManager = manager;
+    myMaxCachedValues = maxCachedValues;
     myResolverMap = Maps.newHashMap();
     myAppResourceMap = Maps.newHashMap();
     myFrameworkResourceMap = Maps.newHashMap();
   }
 
+  /**
+   * Returns the resource resolver for the given theme and configuration. This method can be called from any thread;
+   * only the lookup of the configured app resources takes a read action, and it never runs while {@link #myLock} is held.
+   */
   @NotNull
   public ResourceResolver getResourceResolver(@Nullable IAndroidTarget target,
                                               @NotNull String themeStyle,
@@ -109,15 +183,10 @@ public class ResourceResolverCache {
     if (resources == null) {
       return ResourceResolver.create(Collections.emptyMap(), Collections.emptyMap(), null, false);
     }
-    if (myCachedGeneration != resources.getModificationCount()) {
-      myResolverMap.clear();
-      myAppResourceMap.clear();
+    if (target == null) {
+      target = myManager.getTarget();
     }
 
-    // Store the modification count as soon as possible. This ensures that if there is any modification of resources while the
-    // resolver is being created, it will be cleared subsequently.
-    myCachedGeneration = resources.getModificationCount();
-
     // When looking up the configured project and framework resources, the theme doesn't matter, so we look up only
     // by the configuration qualifiers; for example, here's a sample key:
     // -ldltr-sw384dp-w384dp-h640dp-normal-notlong-port-notnight-xhdpi-finger-keyssoft-nokeys-navhidden-nonav-1280x768-v17
@@ -128,86 +197,416 @@ public class ResourceResolverCache {
     // @style/MyTheme-ldltr-sw384dp-w384dp-h640dp-normal-notlong-port-notnight-xhdpi-finger-keyssoft-nokeys-navhidden-nonav-1280x768-v17
     String configurationKey = fullConfiguration.getUniqueKey();
     String resolverKey = themeStyle + configurationKey;
-    ResourceResolver resolver = myResolverMap.get(resolverKey);
-    if (resolver == null) {
-      Map<ResourceType, ResourceValueMap> configuredAppRes;
-      Map<ResourceType, ResourceValueMap> frameworkResources;
-
-      // Framework resources
-      if (target == null) {
-        target = myManager.getTarget();
+    long start = System.nanoTime();
+    long generation;
+    Map<ResourceType, ResourceValueMap> frameworkResources;
+    Map<ResourceType, ResourceValueMap> configuredAppRes;
+    Map<ResourceType, boolean[]> appQualifiers;
+    synchronized (myLock) {
+      if (myCachedGeneration != resources.getModificationCount()) {
+        myResolverMap.clear();
+        myAppResourceMap.clear();
+        myConfigurations.values().forEach(Set::clear);
+        myAppPool.clear();
+        myAppQualifiers = null;
       }
-      if (target == null) {
-        frameworkResources = Collections.emptyMap();
-      } else {
-        ResourceRepository frameworkRes = getFrameworkResources(fullConfiguration, target);
-        if (frameworkRes == null) {
-          frameworkResources = Collections.emptyMap();
-        }
-        else {
-          // get the framework resource values based on the current config
-          frameworkResources = myFrameworkResourceMap.get(configurationKey);
-          if (frameworkResources == null) {
-            frameworkResources = frameworkRes.getConfiguredResources(fullConfiguration);
-
-            // Fix up assets. We're only doing this in limited cases for now; specifically Froyo (since the Gingerbread
-            // assets replaced the look for the same theme; that doesn't happen to the same extend for Holo)
-            if (target instanceof CompatibilityRenderTarget && target.getVersion().getApiLevel() == 8) {
-              IAndroidTarget realTarget = ((CompatibilityRenderTarget)target).getRealTarget();
-              if (realTarget != null) {
-                replaceDrawableBitmaps(frameworkResources, target, realTarget);
-              }
-            }
 
-            myFrameworkResourceMap.put(configurationKey, frameworkResources);
-          }
-        }
+      // Store the modification count as soon as possible. This ensures that if there is any modification of resources while the
+      // resolver is being created, it will be cleared subsequently.
+      myCachedGeneration = generation = resources.getModificationCount();
+
+      myConfigurations.computeIfAbsent(configurationKey, k -> Sets.newHashSet());
+      ResourceResolver resolver = myResolverMap.get(resolverKey);
+      if (resolver != null) {
+        myResolverHits++;
+        return resolver;
       }
+      myResolverMisses++;
+
+      frameworkResources = getConfiguredFrameworkResources(target, fullConfiguration, configurationKey);
 
-      // App resources
       configuredAppRes = myAppResourceMap.get(configurationKey);
-      if (configuredAppRes == null) {
-        // Get the project resource values based on the current config.
-        configuredAppRes = ReadAction.compute(() -> resources.getConfiguredResources(fullConfiguration));
-        myAppResourceMap.put(configurationKey, configuredAppRes);
+      if (configuredAppRes != null) {
+        myConfiguredHits++;
       }
+      appQualifiers = myAppQualifiers;
+    }
 
-      // Resource Resolver
-      assert themeStyle.startsWith(PREFIX_RESOURCE_REF) : themeStyle;
-      boolean isProjectTheme = ResourceHelper.isProjectStyle(themeStyle);
-      String themeName = ResourceHelper.styleToTheme(themeStyle);
-      resolver = ResourceResolver.create(configuredAppRes, frameworkResources, themeName, isProjectTheme);
+    // App resources
+    if (configuredAppRes == null) {
+      long configuredStart = System.nanoTime();
+      // Get the project resource values based on the current config. This needs a read action, so it runs outside of
+      // the cache lock, and the result is only cached if the resources haven't been reset in the meantime.
+      configuredAppRes = getSharedAppResources(resources, fullConfiguration, appQualifiers, generation);
+      synchronized (myLock) {
+        myConfiguredMisses++;
+        myConfiguredLoadNanos += System.nanoTime() - configuredStart;
+      }
+    }
 
-      resolver.setLibrariesIdProvider(new RenderResources.ResourceIdProvider() {
-        @Override
-        public Integer getId(ResourceType resType, String resName) {
-          for (FileResourceRepository library : resources.getLibraries()) {
-            Integer id = library.getAllDeclaredIds().get(resName);
+    // Resource Resolver
+    assert themeStyle.startsWith(PREFIX_RESOURCE_REF) : themeStyle;
+    boolean isProjectTheme = ResourceHelper.isProjectStyle(themeStyle);
+    String themeName = ResourceHelper.styleToTheme(themeStyle);
+    ResourceResolver resolver = ResourceResolver.create(configuredAppRes, frameworkResources, themeName, isProjectTheme);
 
-            if (id != null) {
-              return id;
-            }
+    resolver.setLibrariesIdProvider(new RenderResources.ResourceIdProvider() {
+      @Override
+      public Integer getId(ResourceType resType, String resName) {
+        for (FileResourceRepository library : resources.getLibraries()) {
+          Integer id = library.getAllDeclaredIds().get(resName);
+
+          if (id != null) {
+            return id;
           }
+        }
+
+        return null;
+      }
+    });
+
+    if (target instanceof CompatibilityRenderTarget) {
+      int apiLevel = target.getVersion().getFeatureLevel();
+      if (apiLevel >= 21) {
+        resolver.setDeviceDefaults("Material");
+      } else if (apiLevel >= 14) {
+        resolver.setDeviceDefaults("Holo");
+      } else {
+        resolver.setDeviceDefaults(ResourceResolver.LEGACY_THEME);
+      }
+    }
 
-          return null;
+    synchronized (myLock) {
+      if (myCachedGeneration == generation) {
+        ResourceResolver cached = myResolverMap.get(resolverKey);
+        if (cached != null) {
+          // Another thread created the same resolver in the meantime
+          return cached;
         }
-      });
-
-      if (target instanceof CompatibilityRenderTarget) {
-        int apiLevel = target.getVersion().getFeatureLevel();
-        if (apiLevel >= 21) {
-          resolver.setDeviceDefaults("Material");
-        } else if (apiLevel >= 14) {
-          resolver.setDeviceDefaults("Holo");
-        } else {
-          resolver.setDeviceDefaults(ResourceResolver.LEGACY_THEME);
+        myResolverMap.put(resolverKey, resolver);
+        myConfigurations.computeIfAbsent(configurationKey, k -> Sets.newHashSet()).add(resolverKey);
+        myResolverLoadNanos += System.nanoTime() - start;
+        evictIfNeeded();
+      }
+    }
+
+    return resolver;
+  }
+
+  /**
+   * Returns the configured framework resources for the given configuration, caching them under the given key.
+   * Must be called with {@link #myLock} held.
+   */
+  @NotNull
+  private Map<ResourceType, ResourceValueMap> getConfiguredFrameworkResources(@Nullable IAndroidTarget target,
+                                                                              @NotNull FolderConfiguration fullConfiguration,
+                                                                              @NotNull String configurationKey) {
+    if (target == null) {
+      return Collections.emptyMap();
+    }
+    ResourceRepository frameworkRes = getFrameworkResources(fullConfiguration, target);
+    if (frameworkRes == null) {
+      return Collections.emptyMap();
+    }
+
+    long frameworkGeneration = getModificationCount(frameworkRes);
+    Long cachedFrameworkGeneration = myFrameworkGenerations.put(frameworkRes, frameworkGeneration);
+    if (cachedFrameworkGeneration != null && cachedFrameworkGeneration != frameworkGeneration) {
+      clearFrameworkResources(frameworkRes);
+    }
+
+    // get the framework resource values based on the current config
+    Map<ResourceType, ResourceValueMap> frameworkResources = myFrameworkResourceMap.get(configurationKey);
+    if (frameworkResources != null) {
+      myConfiguredHits++;
+      return frameworkResources;
+    }
+
+    myConfiguredMisses++;
+    long configuredStart = System.nanoTime();
+    // Fix up assets. We're only doing this in limited cases for now; specifically Froyo (since the Gingerbread
+    // assets replaced the look for the same theme; that doesn't happen to the same extend for Holo)
+    IAndroidTarget realTarget = null;
+    if (target instanceof CompatibilityRenderTarget && target.getVersion().getApiLevel() == 8) {
+      realTarget = ((CompatibilityRenderTarget)target).getRealTarget();
+    }
+
+    if (realTarget != null) {
+      // The values are rewritten below, so they can't be shared with other configurations
+      frameworkResources = frameworkRes.getConfiguredResources(fullConfiguration);
+      replaceDrawableBitmaps(frameworkResources, target, realTarget);
+    }
+    else {
+      frameworkResources = getSharedFrameworkResources(frameworkRes, fullConfiguration);
+    }
+
+    myFrameworkResourceMap.put(configurationKey, frameworkResources);
+    myConfiguredLoadNanos += System.nanoTime() - configuredStart;
+    return frameworkResources;
+  }
+
+  /**
+   * Returns the configured app resources for the given configuration, reusing the pooled values of every type whose
+   * qualifiers match a configuration that is already cached.
+   * <p>
+   * The values are looked up in a read action, which must never be entered while holding {@link #myLock}: a thread that
+   * holds the lock while waiting for the read lock would deadlock with a write action that resets this cache. The pool is
+   * only consulted and updated in short sections under the lock, and nothing is cached if {@code generation} is stale.
+   */
+  @NotNull
+  private Map<ResourceType, ResourceValueMap> getSharedAppResources(@NotNull AppResourceRepository resources,
+                                                                    @NotNull FolderConfiguration fullConfiguration,
+                                                                    @Nullable Map<ResourceType, boolean[]> appQualifiers,
+                                                                    long generation) {
+    Map<ResourceType, String> keys = new EnumMap<>(ResourceType.class);
+    Map<ResourceType, ResourceValueMap> computed = new EnumMap<>(ResourceType.class);
+    Map<ResourceType, boolean[]> qualifiers = ReadAction.compute(() -> {
+      Map<ResourceType, boolean[]> used = appQualifiers != null ? appQualifiers : getUsedQualifiers(resources);
+      for (ResourceType type : ResourceType.values()) {
+        String key = getSharedKey(type, fullConfiguration, used.get(type));
+        keys.put(type, key);
+        ResourceValueMap values;
+        synchronized (myLock) {
+          values = myCachedGeneration == generation ? myAppPool.peek(key) : null;
+        }
+        if (values == null) {
+          values = resources.getConfiguredResources(type, fullConfiguration);
+        }
+        computed.put(type, values);
+      }
+      return used;
+    });
+
+    Map<ResourceType, ResourceValueMap> configured = new EnumMap<>(ResourceType.class);
+    synchronized (myLock) {
+      boolean current = myCachedGeneration == generation;
+      if (current && myAppQualifiers == null) {
+        myAppQualifiers = qualifiers;
+      }
+      for (Map.Entry<ResourceType, String> entry : keys.entrySet()) {
+        ResourceValueMap values = computed.get(entry.getKey());
+        configured.put(entry.getKey(), current ? myAppPool.acquire(entry.getValue(), values) : values);
+      }
+      if (current) {
+        String configurationKey = fullConfiguration.getUniqueKey();
+        Map<ResourceType, ResourceValueMap> previous = myAppResourceMap.put(configurationKey, configured);
+        if (previous != null) {
+          // Another thread computed the same configuration in the meantime
+          previous.values().forEach(myAppPool::release);
         }
       }
+    }
+    return configured;
+  }
 
-      myResolverMap.put(resolverKey, resolver);
+  /**
+   * Returns the configured framework resources for the given configuration. The framework repository can only
+   * compute all the types at once, so that is only done when at least one of the types is not pooled yet.
+   */
+  @NotNull
+  private Map<ResourceType, ResourceValueMap> getSharedFrameworkResources(@NotNull ResourceRepository frameworkRes,
+                                                                          @NotNull FolderConfiguration fullConfiguration) {
+    Map<ResourceType, boolean[]> qualifiers = myFrameworkQualifiers.computeIfAbsent(frameworkRes, ResourceResolverCache::getUsedQualifiers);
+    ResourceValueMapPool pool = myFrameworkPools.computeIfAbsent(frameworkRes, k -> new ResourceValueMapPool());
+
+    Map<ResourceType, String> keys = new EnumMap<>(ResourceType.class);
+    boolean complete = true;
+    for (ResourceType type : ResourceType.values()) {
+      String key = getSharedKey(type, fullConfiguration, qualifiers.get(type));
+      keys.put(type, key);
+      complete &= pool.peek(key) != null;
     }
 
-    return resolver;
+    Map<ResourceType, ResourceValueMap> computed = complete ? Collections.emptyMap() : frameworkRes.getConfiguredResources(fullConfiguration);
+    Map<ResourceType, ResourceValueMap> configured = new EnumMap<>(ResourceType.class);
+    for (Map.Entry<ResourceType, String> entry : keys.entrySet()) {
+      ResourceValueMap values = pool.peek(entry.getValue());
+      if (values == null) {
+        values = computed.get(entry.getKey());
+        if (values == null) {
+          continue;
+        }
+      }
+      configured.put(entry.getKey(), pool.acquire(entry.getValue(), values));
+    }
+    return configured;
+  }
+
+  /**
+   * Drops the values cached for the given framework repository, along with the configured framework resources and the
+   * resolvers, which may have been computed from its previous contents.
+   */
+  private void clearFrameworkResources(@NotNull ResourceRepository frameworkRes) {
+    for (Map<ResourceType, ResourceValueMap> frameworkResources : myFrameworkResourceMap.values()) {
+      for (ResourceValueMap values : frameworkResources.values()) {
+        myFrameworkPools.values().forEach(pool -> pool.release(values));
+      }
+    }
+    myFrameworkResourceMap.clear();
+    myFrameworkPools.remove(frameworkRes);
+    myFrameworkQualifiers.remove(frameworkRes);
+    myResolverMap.clear();
+    myConfigurations.values().forEach(Set::clear);
+  }
+
+  private static long getModificationCount(@NotNull ResourceRepository frameworkRes) {
+    return frameworkRes instanceof FrameworkResourceLoader.IdeFrameworkResources
+           ? ((FrameworkResourceLoader.IdeFrameworkResources)frameworkRes).getModificationCount()
+           : 0;
+  }
+
+  /**
+   * Evicts the least recently used configurations until the number of cached resource values is within bounds.
+   * The most recently used configuration is always kept.
+   */
+  private void evictIfNeeded() {
+    while (getCachedValueCount() > myMaxCachedValues && myConfigurations.size() > 1) {
+      removeConfiguration(myConfigurations.keySet().iterator().next(), null);
+      myEvictions++;
+    }
+  }
+
+  /**
+   * Removes the configured resources of the given configuration along with the given resolver, or all the resolvers
+   * for the configuration when {@code resolverKey} is null.
+   */
+  private void removeConfiguration(@NotNull String configurationKey, @Nullable String resolverKey) {
+    Map<ResourceType, ResourceValueMap> frameworkResources = myFrameworkResourceMap.remove(configurationKey);
+    if (frameworkResources != null) {
+      for (ResourceValueMap values : frameworkResources.values()) {
+        myFrameworkPools.values().forEach(pool -> pool.release(values));
+      }
+    }
+    Map<ResourceType, ResourceValueMap> appResources = myAppResourceMap.remove(configurationKey);
+    if (appResources != null) {
+      appResources.values().forEach(myAppPool::release);
+    }
+
+    if (resolverKey != null) {
+      myResolverMap.remove(resolverKey);
+      Set<String> resolverKeys = myConfigurations.get(configurationKey);
+      if (resolverKeys != null) {
+        resolverKeys.remove(resolverKey);
+      }
+    }
+    else {
+      Set<String> resolverKeys = myConfigurations.remove(configurationKey);
+      if (resolverKeys != null) {
+        resolverKeys.forEach(myResolverMap::remove);
+      }
+    }
+  }
+
+  /**
+   * Returns the hit rate statistics of the resource resolvers. The load time is the time spent creating resolvers,
+   * including the configured resources they need.
+   */
+  @NotNull
+  public CacheStats getResolverStats() {
+    synchronized (myLock) {
+      return new CacheStats(myResolverHits, myResolverMisses, myResolverMisses, 0, myResolverLoadNanos, myEvictions);
+    }
+  }
+
+  /**
+   * Returns the hit rate statistics of the configured app and framework resources, counting each lookup separately.
+   */
+  @NotNull
+  public CacheStats getConfiguredResourcesStats() {
+    synchronized (myLock) {
+      return new CacheStats(myConfiguredHits, myConfiguredMisses, myConfiguredMisses, 0, myConfiguredLoadNanos, myEvictions);
+    }
+  }
+
+  /** Returns the number of distinct resource values currently held by the cache */
+  public long getCachedValueCount() {
+    synchronized (myLock) {
+      long count = myAppPool.getWeight();
+      for (ResourceValueMapPool pool : myFrameworkPools.values()) {
+        count += pool.getWeight();
+      }
+      return count;
+    }
+  }
+
+  /** Returns the number of distinct {@link ResourceValueMap}s shared between the cached configurations */
+  public int getSharedValueMapCount() {
+    synchronized (myLock) {
+      int count = myAppPool.size();
+      for (ResourceValueMapPool pool : myFrameworkPools.values()) {
+        count += pool.size();
+      }
+      return count;
+    }
+  }
+
+  /**
+   * Returns, for each resource type, which qualifier indices are set in at least one of the configurations of the
+   * resources of that type.
+   */
+  @NotNull
+  private static Map<ResourceType, boolean[]> getUsedQualifiers(@NotNull AppResourceRepository resources) {
+    Map<ResourceType, boolean[]> used = new EnumMap<>(ResourceType.class);
+    for (ResourceItem item : resources.getAllResourceItems()) {
+      markUsedQualifiers(item.getConfiguration(), used.computeIfAbsent(item.getType(), k -> new boolean[FolderConfiguration.getQualifierCount()]));
+    }
+    return used;
+  }
+
+  /**
+   * Returns, for each resource type, which qualifier indices are set in at least one of the resource folders that can
+   * contain resources of that type in the given framework resources.
+   */
+  @NotNull
+  private static Map<ResourceType, boolean[]> getUsedQualifiers(@NotNull ResourceRepository resources) {
+    Map<ResourceType, boolean[]> used = new EnumMap<>(ResourceType.class);
+    for (ResourceFolderType folderType : ResourceFolderType.values()) {
+      List<ResourceFolder> folders = resources.getFolders(folderType);
+      if (folders == null) {
+        continue;
+      }
+      for (ResourceType type : FolderTypeRelationship.getRelatedResourceTypes(folderType)) {
+        boolean[] typeQualifiers = used.computeIfAbsent(type, k -> new boolean[FolderConfiguration.getQualifierCount()]);
+        for (ResourceFolder folder : folders) {
+          markUsedQualifiers(folder.getConfiguration(), typeQualifiers);
+        }
+      }
+    }
+    return used;
+  }
+
+  private static void markUsedQualifiers(@Nullable FolderConfiguration configuration, @NotNull boolean[] used) {
+    if (configuration == null) {
+      return;
+    }
+    for (int i = 0; i < used.length; i++) {
+      if (!used[i] && configuration.getQualifier(i) != null) {
+        used[i] = true;
+      }
+    }
+  }
+
+  /**
+   * Returns a key for the given resource type and configuration that only contains the qualifiers at the used indices.
+   * The best matching resource for a configuration only depends on qualifiers that appear in the candidate folders, so
+   * two configurations with the same key resolve to the same configured resources of that type.
+   */
+  @VisibleForTesting
+  @NotNull
+  static String getSharedKey(@NotNull ResourceType type, @NotNull FolderConfiguration fullConfiguration,
+                             @Nullable boolean[] usedQualifiers) {
+    StringBuilder key = new StringBuilder(type.getName());
+    if (usedQualifiers != null) {
+      for (int i = 0; i < usedQualifiers.length; i++) {
+        if (usedQualifiers[i]) {
+          ResourceQualifier qualifier = fullConfiguration.getQualifier(i);
+          if (qualifier != null) {
+            key.append(SdkConstants.RES_QUALIFIER_SEP).append(qualifier.getFolderSegment());
+          }
+        }
+      }
+    }
+    return key.toString();
   }
 
   /**
@@ -327,9 +726,14 @@ public class ResourceResolverCache {
   }
 
   public void reset() {
-    myCachedGeneration = 0;
-    myAppResourceMap.clear();
-    myResolverMap.clear();
+    synchronized (myLock) {
+      myCachedGeneration = 0;
+      myAppResourceMap.clear();
+      myAppPool.clear();
+      myAppQualifiers = null;
+      myResolverMap.clear();
+      myConfigurations.values().forEach(Set::clear);
+    }
   }
 
   /**
@@ -339,22 +743,23 @@ public class ResourceResolverCache {
    * @param fullConfiguration new full configuration
    */
   public void replaceCustomConfig(@NotNull String themeStyle, @NotNull final FolderConfiguration fullConfiguration) {
-    String newCustomConfigurationKey = fullConfiguration.getUniqueKey();
-    String newCustomResolverKey = themeStyle + newCustomConfigurationKey;
+    synchronized (myLock) {
+      String newCustomConfigurationKey = fullConfiguration.getUniqueKey();
+      String newCustomResolverKey = themeStyle + newCustomConfigurationKey;
 
-    if (newCustomResolverKey.equals(myCustomResolverKey)) {
-      // The new key is the same as this one, no need to remove it
-      return;
-    }
+      if (newCustomResolverKey.equals(myCustomResolverKey)) {
+        // The new key is the same as this one, no need to remove it
+        return;
+      }
 
-    if (myCustomConfigurationKey != null) {
-      myFrameworkResourceMap.remove(myCustomConfigurationKey);
-      myAppResourceMap.remove(myCustomConfigurationKey);
-    }
-    if (myCustomResolverKey != null) {
-      myResolverMap.remove(myCustomResolverKey);
+      if (myCustomConfigurationKey != null) {
+        removeConfiguration(myCustomConfigurationKey, myCustomResolverKey);
+      }
+      else if (myCustomResolverKey != null) {
+        myResolverMap.remove(myCustomResolverKey);
+      }
+      myCustomConfigurationKey = newCustomConfigurationKey;
+      myCustomResolverKey = newCustomResolverKey;
     }
-    myCustomConfigurationKey = newCustomConfigurationKey;
-    myCustomResolverKey = newCustomResolverKey;
   }
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.configurations;
+
+import com.android.ide.common.resources.ResourceValueMap;
+import com.google.common.collect.Maps;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Reference counted pool of configured {@link ResourceValueMap}s, used by {@link ResourceResolverCache} to share the
+ * values of one resource type between all the cached configurations that resolve to the same values for that type.
+ * <p>
+ * The weight of the pool is the number of resource values held by the distinct maps in it, which is what the
+ * {@link ResourceResolverCache} uses to bound its memory usage. This class is not thread safe; the cache guards it.
+ */
+class ResourceValueMapPool {
+  private static class Entry {
+    @NotNull final String key;
+    @NotNull final ResourceValueMap map;
+    final int weight;
+    int references;
+
+    Entry(@NotNull String key, @NotNull ResourceValueMap map) {
+      this.key = key;
+      this.map = map;
+      this.weight = map.size();
+    }
+  }
+
+  private final Map<String, Entry> myEntries = Maps.newHashMap();
+  private final Map<ResourceValueMap, Entry> myEntriesByMap = new IdentityHashMap<>();
+  private long myWeight;
+
+  /**
+   * Returns the pooled map for the given key without acquiring it, or null if there is none.
+   */
+  @Nullable
+  ResourceValueMap peek(@NotNull String key) {
+    Entry entry = myEntries.get(key);
+    return entry != null ? entry.map : null;
+  }
+
+  /**
+   * Returns the pooled map for the given key, or adds the given map to the pool if there is none yet, and records
+   * one more reference to it.
+   */
+  @NotNull
+  ResourceValueMap acquire(@NotNull String key, @NotNull ResourceValueMap map) {
+    Entry entry = myEntries.get(key);
+    if (entry == null) {
+      entry = new Entry(key, map);
+      myEntries.put(key, entry);
+      myEntriesByMap.put(map, entry);
+      myWeight += entry.weight;
+    }
+    entry.references++;
+    return entry.map;
+  }
+
+  /**
+   * Releases one reference to the given map, dropping it from the pool when it isn't referenced anymore.
+   * Maps that are not in the pool are ignored.
+   */
+  void release(@NotNull ResourceValueMap map) {
+    Entry entry = myEntriesByMap.get(map);
+    if (entry != null && --entry.references <= 0) {
+      myEntries.remove(entry.key);
+      myEntriesByMap.remove(map);
+      myWeight -= entry.weight;
+    }
+  }
+
+  void clear() {
+    myEntries.clear();
+    myEntriesByMap.clear();
+    myWeight = 0;
+  }
+
+  /** Returns the number of distinct maps in the pool */
+  int size() {
+    return myEntries.size();
+  }
+
+  /** Returns the number of resource values held by the distinct maps in the pool */
+  long getWeight() {
+    return myWeight;
+  }
+}
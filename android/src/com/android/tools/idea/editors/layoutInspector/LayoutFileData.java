@@ -17,26 +17,38 @@ package com.android.tools.idea.editors.layoutInspector;
 
 import com.android.layoutinspector.LayoutInspectorCaptureOptions;
 import com.android.layoutinspector.model.ViewNode;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.vfs.VirtualFile;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.util.Iterator;
 
+/**
+ * Contents of a layout inspector capture (.li) file.
+ * <p>
+ * The file is streamed instead of being read into memory first, and the preview image is kept encoded until it is
+ * needed: {@link #getPreviewThumbnail(int)} decodes a subsampled copy that is enough for the first paint of the
+ * editor, while the full resolution image is only decoded by {@link #getBufferedImage()}, which drops the encoded bytes.
+ */
 public class LayoutFileData {
-  @Nullable private final BufferedImage myBufferedImage;
   @Nullable private final ViewNode myNode;
+  /** The encoded preview image, null once it has been decoded */
+  @Nullable private byte[] myPreviewBytes;
 
-  public LayoutFileData(@NotNull VirtualFile file) throws IOException {
-    byte[] previewBytes;
-
-    ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(file.contentsToByteArray()));
+  @Nullable private BufferedImage myBufferedImage;
 
-    try {
+  public LayoutFileData(@NotNull VirtualFile file) throws IOException {
+    try (ObjectInputStream input = new ObjectInputStream(new BufferedInputStream(file.getInputStream()))) {
       // Parse options
       LayoutInspectorCaptureOptions options = new LayoutInspectorCaptureOptions();
       options.parse(input.readUTF());
@@ -49,20 +61,73 @@ public class LayoutFileData {
         throw new IOException("Error parsing view node");
       }
 
-      // Preview image
-      previewBytes = new byte[input.readInt()];
+      // Preview image, decoded on demand
+      byte[] previewBytes = new byte[input.readInt()];
       input.readFully(previewBytes);
+      myPreviewBytes = previewBytes;
     }
-    finally {
-      input.close();
+  }
+
+  /**
+   * Returns the full resolution preview image, decoding it the first time it is requested.
+   */
+  @Nullable
+  public synchronized BufferedImage getBufferedImage() {
+    if (myPreviewBytes != null) {
+      try {
+        myBufferedImage = ImageIO.read(new ByteArrayInputStream(myPreviewBytes));
+      }
+      catch (IOException e) {
+        Logger.getInstance(LayoutFileData.class).warn("Unable to decode the preview image", e);
+      }
+      myPreviewBytes = null;
     }
+    return myBufferedImage;
+  }
 
-    myBufferedImage = ImageIO.read(new ByteArrayInputStream(previewBytes));
+  /**
+   * Returns true if the full resolution preview image has already been decoded.
+   */
+  public synchronized boolean isBufferedImageDecoded() {
+    return myPreviewBytes == null;
   }
 
+  /**
+   * Returns the preview image subsampled so that neither of its sides is larger than {@code maxSize} pixels, or the
+   * full resolution image if it is already small enough (or was already decoded).
+   */
   @Nullable
-  public BufferedImage getBufferedImage() {
-    return myBufferedImage;
+  public BufferedImage getPreviewThumbnail(int maxSize) {
+    byte[] previewBytes;
+    synchronized (this) {
+      previewBytes = myPreviewBytes;
+    }
+    if (previewBytes == null) {
+      return getBufferedImage();
+    }
+    try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(previewBytes))) {
+      Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+      if (readers == null || !readers.hasNext()) {
+        return getBufferedImage();
+      }
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(input, true, true);
+        int subsampling = Math.max(1, (Math.max(reader.getWidth(0), reader.getHeight(0)) + maxSize - 1) / maxSize);
+        if (subsampling == 1) {
+          return getBufferedImage();
+        }
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+        return reader.read(0, param);
+      }
+      finally {
+        reader.dispose();
+      }
+    }
+    catch (IOException e) {
+      return getBufferedImage();
+    }
   }
 
   @Nullable
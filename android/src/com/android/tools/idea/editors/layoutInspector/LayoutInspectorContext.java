@@ -43,6 +43,7 @@ import com.intellij.notification.NotificationType;
 import com.intellij.notification.Notifications;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.actionSystem.DataProvider;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.ui.JBCheckboxMenuItem;
 import com.intellij.openapi.ui.JBPopupMenu;
@@ -54,6 +55,7 @@ import org.jetbrains.android.util.AndroidBundle;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.ide.PooledThreadExecutor;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
@@ -71,6 +73,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 public class LayoutInspectorContext implements Disposable, DataProvider, ViewNodeActiveDisplay.ViewNodeActiveDisplayListener,
@@ -78,6 +81,9 @@ public class LayoutInspectorContext implements Disposable, DataProvider, ViewNod
                                                AndroidDebugBridge.IDeviceChangeListener {
   private static final Key<ViewNode> KEY_VIEW_NODE = Key.create(ViewNode.class.getName());
 
+  /** Largest side of the subsampled preview shown while the full resolution capture preview is being decoded */
+  private static final int PREVIEW_THUMBNAIL_SIZE = 720;
+
   // Hidden from public usage until we get UX/PM input on displaying display list output.
   private static final boolean DUMP_DISPLAYLIST_ENABLED = Boolean.getBoolean("dump.displaylist.enabled");
 
@@ -89,6 +95,11 @@ public class LayoutInspectorContext implements Disposable, DataProvider, ViewNod
   private ViewNode myRoot;
   @Nullable
   private BufferedImage myBufferedImage;
+  /** The capture whose full resolution preview replaces the thumbnail once it is needed, null if it was requested or isn't needed */
+  @Nullable
+  private LayoutFileData myFullPreviewData;
+  @NotNull
+  private final Executor myPreviewExecutor;
   @NotNull
   private ViewNodeActiveDisplay myPreview;
 
@@ -121,8 +132,18 @@ public class LayoutInspectorContext implements Disposable, DataProvider, ViewNod
   }
 
   public LayoutInspectorContext(@NotNull LayoutFileData layoutParser,@NotNull Disposable parentDisposable) {
+    this(layoutParser, parentDisposable, PooledThreadExecutor.INSTANCE);
+  }
+
+  /**
+   * @param previewExecutor the executor decoding the full resolution preview of the capture
+   */
+  @VisibleForTesting
+  LayoutInspectorContext(@NotNull LayoutFileData layoutParser, @NotNull Disposable parentDisposable, @NotNull Executor previewExecutor) {
     myRoot = layoutParser.getNode();
-    myBufferedImage = layoutParser.getBufferedImage();
+    myBufferedImage = layoutParser.getPreviewThumbnail(PREVIEW_THUMBNAIL_SIZE);
+    myFullPreviewData = layoutParser.isBufferedImageDecoded() ? null : layoutParser;
+    myPreviewExecutor = previewExecutor;
 
     myNodeTree = createNodeTree(getRoot());
 
@@ -174,6 +195,31 @@ public class LayoutInspectorContext implements Disposable, DataProvider, ViewNod
     Disposer.register(parentDisposable, this);
   }
 
+  /**
+   * Decodes the full resolution preview of the capture and replaces the thumbnail with it, unless a sub view preview
+   * has been rendered in the meantime.
+   */
+  private void loadFullPreview(@NotNull LayoutFileData layoutParser) {
+    ViewNode root = myRoot;
+    myPreviewExecutor.execute(() -> {
+      BufferedImage image = layoutParser.getBufferedImage();
+      if (image == null) {
+        return;
+      }
+      ApplicationManager.getApplication().invokeLater(() -> {
+        if (myRoot != root) {
+          return;
+        }
+        myBufferedImage = image;
+        // The preview isn't set until the inspector panel is created
+        if (myPreview != null) {
+          myPreview.setPreview(image, root);
+          myPreview.repaint();
+        }
+      }, o -> Disposer.isDisposed(this));
+    });
+  }
+
   @NotNull
   private RollOverTree createNodeTree(@Nullable ViewNode root) {
     RollOverTree tree = new RollOverTree(root);
@@ -237,6 +283,15 @@ public class LayoutInspectorContext implements Disposable, DataProvider, ViewNod
     }
   }
 
+  @Override
+  public void onPreviewUpscaled() {
+    LayoutFileData fullPreviewData = myFullPreviewData;
+    if (fullPreviewData != null) {
+      myFullPreviewData = null;
+      loadFullPreview(fullPreviewData);
+    }
+  }
+
   @Override
   public void valueChanged(@NotNull TreeSelectionEvent event) {
     ViewNode selection = (ViewNode)myNodeTree.getLastSelectedPathComponent();
@@ -465,6 +520,7 @@ public class LayoutInspectorContext implements Disposable, DataProvider, ViewNod
     }
 
     myRoot = node;
+    myFullPreviewData = null;
     myPreview.setPreview(myBufferedImage, node);
     myNodeTree = createNodeTree(node);
     myPreview.repaint();
@@ -26,14 +26,15 @@ import java.util.stream.Collectors;
 
 public class LITableGroupItem extends PTableGroupItem {
   private final String myName;
-  private final List<PTableItem> myChildren;
+  private final List<ViewProperty> myProperties;
+  private List<PTableItem> myChildren;
 
   private boolean isExpanded;
 
   public LITableGroupItem(@NotNull String key, @NotNull List<ViewProperty> properties) {
     super();
     myName = key;
-    myChildren = properties.stream().map(prop -> new LITableItem(prop, this)).sorted().collect(Collectors.toList());
+    myProperties = properties;
     isExpanded = false;
   }
 
@@ -60,6 +61,10 @@ public class LITableGroupItem extends PTableGroupItem {
 
   @Override
   public List<PTableItem> getChildren() {
+    // Items are only created for the groups that are looked into
+    if (myChildren == null) {
+      myChildren = myProperties.stream().map(prop -> new LITableItem(prop, this)).sorted().collect(Collectors.toList());
+    }
     return myChildren;
   }
 
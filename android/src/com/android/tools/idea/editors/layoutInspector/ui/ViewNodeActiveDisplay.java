@@ -227,6 +227,11 @@ public class ViewNodeActiveDisplay extends JComponent {
       }
       g.drawImage(mPreview, 0, 0, mRoot.previewBox.width, mRoot.previewBox.height,
                   0, 0, mPreview.getWidth(null), mPreview.getHeight(null), null);
+      if (mRoot.previewBox.width > mPreview.getWidth(null) || mRoot.previewBox.height > mPreview.getHeight(null)) {
+        for (ViewNodeActiveDisplayListener listener : mListeners) {
+          listener.onPreviewUpscaled();
+        }
+      }
 
       if (isGridVisible() && mZoomFactor >= SHOW_GRID_LEVEL) {
         paintGrid(g, mPreview);
@@ -449,5 +454,10 @@ public class ViewNodeActiveDisplay extends JComponent {
     void onNodeSelected(@NotNull ViewNode node);
 
     void onNodeDoubleClicked(@NotNull ViewNode node);
+
+    /**
+     * Called when the preview is painted larger than its image, so that a higher resolution image can be provided.
+     */
+    void onPreviewUpscaled();
   }
 }
@@ -15,6 +15,7 @@
  */
 package com.android.tools.idea.editors.strings;
 
+import com.android.tools.idea.editors.strings.table.StringResourceTable;
 import com.android.tools.idea.editors.strings.table.StringResourceTableModel;
 import com.android.tools.idea.res.LocalResourceRepository;
 import com.android.tools.idea.res.ModuleResourceRepository;
@@ -49,7 +50,14 @@ final class ResourceLoadingTask extends Task.Backgroundable {
 
   @Override
   public void onSuccess() {
-    myPanel.getTable().setModel(new StringResourceTableModel(StringResourceRepository.create(myRepository), myPanel.getFacet()));
+    StringResourceTable table = myPanel.getTable();
+    StringResourceRepository repository = StringResourceRepository.create(myRepository);
+    StringResourceData data = repository.getData(myPanel.getFacet(), table.getData());
+
+    if (!table.getModel().update(repository, data)) {
+      table.setModel(new StringResourceTableModel(repository, data));
+    }
+
     myPanel.getLoadingPanel().stopLoading();
   }
 
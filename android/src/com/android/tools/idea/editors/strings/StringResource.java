@@ -54,7 +54,7 @@ public final class StringResource {
   private final Map<Locale, ResourceItemEntry> myLocaleToTranslationMap;
 
   @NotNull
-  private final StringResourceRepository myRepository;
+  private StringResourceRepository myRepository;
 
   @NotNull
   private final Project myProject;
@@ -98,6 +98,18 @@ public final class StringResource {
     return myKey;
   }
 
+  @NotNull
+  StringResourceRepository getRepository() {
+    return myRepository;
+  }
+
+  /**
+   * Binds the resource to the repository of the data reusing it, which wraps the same resource directory repositories.
+   */
+  void setRepository(@NotNull StringResourceRepository repository) {
+    myRepository = repository;
+  }
+
   @NotNull
   public String getResourceFolder() {
     return myResourceFolder;
@@ -25,6 +25,7 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiField;
 import com.intellij.psi.xml.XmlAttribute;
@@ -46,10 +47,37 @@ public class StringResourceData {
   private final AndroidFacet myFacet;
   private final Map<StringResourceKey, StringResource> myKeyToResourceMap;
 
+  /** The repository the data was read from and the modification counts of its resource directories at the time */
+  @Nullable private final StringResourceRepository myRepository;
+  private final Map<VirtualFile, Long> myDirectoryModificationCounts;
+
   public StringResourceData(@NotNull AndroidFacet facet,
                             @NotNull Map<StringResourceKey, StringResource> keyToResourceMap) {
+    this(facet, keyToResourceMap, null, Collections.emptyMap());
+  }
+
+  StringResourceData(@NotNull AndroidFacet facet,
+                     @NotNull Map<StringResourceKey, StringResource> keyToResourceMap,
+                     @Nullable StringResourceRepository repository,
+                     @NotNull Map<VirtualFile, Long> directoryModificationCounts) {
     myFacet = facet;
     myKeyToResourceMap = keyToResourceMap;
+    myRepository = repository;
+    myDirectoryModificationCounts = directoryModificationCounts;
+  }
+
+  /**
+   * Returns true if the resources of the given directory were read from the same repository, at the given
+   * modification count.
+   */
+  boolean isUpToDate(@NotNull VirtualFile directory, @NotNull LocalResourceRepository repository, long modificationCount) {
+    Long count = myDirectoryModificationCounts.get(directory);
+    return count != null && count == modificationCount && myRepository != null && myRepository.getRepository(directory) == repository;
+  }
+
+  @Nullable
+  StringResource getStringResourceIfPresent(@NotNull StringResourceKey key) {
+    return myKeyToResourceMap.get(key);
   }
 
   public void changeKeyName(@NotNull StringResourceKey key, @NotNull String newName) {
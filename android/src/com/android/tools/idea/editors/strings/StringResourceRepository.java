@@ -98,12 +98,36 @@ public class StringResourceRepository {
 
   @NotNull
   public final StringResourceData getData(@NotNull AndroidFacet facet) {
+    return getData(facet, null);
+  }
+
+  /**
+   * Returns the string resources of the repository. The resources of the directories that haven't changed since
+   * {@code previous} was created are taken from it instead of being read again, and are bound to this repository.
+   */
+  @NotNull
+  public final StringResourceData getData(@NotNull AndroidFacet facet, @Nullable StringResourceData previous) {
     Map<StringResourceKey, StringResource> map = new LinkedHashMap<>();
+    Map<VirtualFile, Long> modificationCounts = Maps.newHashMapWithExpectedSize(myResourceDirectoryRespositoryMap.size());
     Project project = facet.getModule().getProject();
 
-    myResourceDirectoryRespositoryMap.entrySet().stream()
-      .flatMap(StringResourceRepository::getKeys)
-      .forEach(key -> map.put(key, new StringResource(key, this, project)));
+    for (Entry<VirtualFile, LocalResourceRepository> entry : myResourceDirectoryRespositoryMap.entrySet()) {
+      VirtualFile directory = entry.getKey();
+      long modificationCount = entry.getValue().getModificationCount();
+      modificationCounts.put(directory, modificationCount);
+
+      boolean unchanged = previous != null && previous.isUpToDate(directory, entry.getValue(), modificationCount);
+      getKeys(entry).forEach(key -> {
+        StringResource resource = unchanged ? previous.getStringResourceIfPresent(key) : null;
+        if (resource == null) {
+          resource = new StringResource(key, this, project);
+        }
+        else {
+          resource.setRepository(this);
+        }
+        map.put(key, resource);
+      });
+    }
 
     if (myDynamicResourceRepository != null) {
       myDynamicResourceRepository.getItemsOfType(ResourceType.STRING).stream()
@@ -111,7 +135,12 @@ public class StringResourceRepository {
         .forEach(key -> map.put(key, new StringResource(key, this, project)));
     }
 
-    return new StringResourceData(facet, map);
+    return new StringResourceData(facet, map, this, modificationCounts);
+  }
+
+  @Nullable
+  LocalResourceRepository getRepository(@NotNull VirtualFile directory) {
+    return myResourceDirectoryRespositoryMap.get(directory);
   }
 
   @NotNull
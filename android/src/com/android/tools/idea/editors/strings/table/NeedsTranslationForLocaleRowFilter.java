@@ -36,6 +36,11 @@ public final class NeedsTranslationForLocaleRowFilter extends StringResourceTabl
 
   @Override
   public boolean include(@NotNull Entry<? extends StringResourceTableModel, ? extends Integer> entry) {
+    StringResourceTableIndex index = getIndex(entry);
+    if (index != null) {
+      return index.needsTranslation(entry.getIdentifier(), myLocale);
+    }
+
     StringResource resource = entry.getModel().getStringResourceAt(entry.getIdentifier());
     return resource.isTranslatable() && resource.getTranslationAsString(myLocale).isEmpty();
   }
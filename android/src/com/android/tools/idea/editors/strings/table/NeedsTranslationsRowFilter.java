@@ -32,6 +32,11 @@ public final class NeedsTranslationsRowFilter extends StringResourceTableRowFilt
 
   @Override
   public boolean include(@NotNull Entry<? extends StringResourceTableModel, ? extends Integer> entry) {
+    StringResourceTableIndex index = getIndex(entry);
+    if (index != null) {
+      return index.needsTranslations(entry.getIdentifier());
+    }
+
     if ((boolean)entry.getValue(UNTRANSLATABLE_COLUMN)) {
       return false;
     }
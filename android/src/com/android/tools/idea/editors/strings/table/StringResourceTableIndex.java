@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.editors.strings.table;
+
+import com.android.tools.idea.editors.strings.StringResource;
+import com.android.tools.idea.rendering.Locale;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Key/locale matrix of a {@link StringResourceTableModel} used by the row filters, so that filtering doesn't go
+ * through every cell of the table.
+ * <p>
+ * For every locale column the index keeps the set of rows with an empty translation, along with the sets of
+ * untranslatable rows and rows with an empty default value, and the rows needing translations are computed from them
+ * with bitset operations. The model updates the index one row at a time as cells are edited, and when the model is reloaded
+ * the rows of the resources that were reused are copied from the previous index.
+ */
+final class StringResourceTableIndex {
+  private static final char TEXT_SEPARATOR = '\0';
+
+  @NotNull private final StringResourceTableModel myModel;
+  @NotNull private final List<Locale> myLocales;
+
+  @NotNull private final BitSet myUntranslatableRows = new BitSet();
+  @NotNull private final BitSet myMissingDefaultValueRows = new BitSet();
+  @NotNull private final BitSet[] myMissingTranslationRows;
+
+  /** Lazily computed union of the rows needing a translation, null when it needs to be computed again */
+  private BitSet myNeedsTranslationsRows;
+
+  /** Lazily computed values of every row joined by {@link #TEXT_SEPARATOR}, for the text filter */
+  @NotNull private final String[] myRowTexts;
+
+  /** The resources of the rows when they were indexed */
+  @NotNull private final StringResource[] myResources;
+
+  StringResourceTableIndex(@NotNull StringResourceTableModel model, @NotNull List<Locale> locales) {
+    this(model, locales, null);
+  }
+
+  /**
+   * Creates the index of a model whose data replaced the data indexed by {@code previous}. The rows of the resources that the new
+   * data reuses are copied from {@code previous}, and only the other rows are computed.
+   */
+  StringResourceTableIndex(@NotNull StringResourceTableModel model,
+                           @NotNull List<Locale> locales,
+                           @Nullable StringResourceTableIndex previous) {
+    myModel = model;
+    myLocales = locales;
+    myMissingTranslationRows = new BitSet[locales.size()];
+    for (int i = 0; i < myMissingTranslationRows.length; i++) {
+      myMissingTranslationRows[i] = new BitSet();
+    }
+    myRowTexts = new String[model.getRowCount()];
+    myResources = new StringResource[myRowTexts.length];
+
+    Map<StringResource, Integer> previousRows = new IdentityHashMap<>();
+    if (previous != null && previous.myLocales.equals(locales)) {
+      for (int row = 0; row < previous.myResources.length; row++) {
+        previousRows.put(previous.myResources[row], row);
+      }
+    }
+
+    for (int row = 0; row < myRowTexts.length; row++) {
+      Integer previousRow = previousRows.get(model.getStringResourceAt(row));
+      if (previousRow == null) {
+        update(row);
+      }
+      else {
+        copy(previous, previousRow, row);
+      }
+    }
+  }
+
+  private void copy(@NotNull StringResourceTableIndex from, int fromRow, int row) {
+    myResources[row] = from.myResources[fromRow];
+    myUntranslatableRows.set(row, from.myUntranslatableRows.get(fromRow));
+    myMissingDefaultValueRows.set(row, from.myMissingDefaultValueRows.get(fromRow));
+    for (int i = 0; i < myMissingTranslationRows.length; i++) {
+      myMissingTranslationRows[i].set(row, from.myMissingTranslationRows[i].get(fromRow));
+    }
+    myRowTexts[row] = from.myRowTexts[fromRow];
+  }
+
+  /**
+   * Updates the index after the cells of the given row have changed.
+   */
+  void update(int row) {
+    StringResource resource = myModel.getStringResourceAt(row);
+    myResources[row] = resource;
+    myUntranslatableRows.set(row, !resource.isTranslatable());
+    myMissingDefaultValueRows.set(row, resource.getDefaultValueAsString().isEmpty());
+    for (int i = 0; i < myMissingTranslationRows.length; i++) {
+      myMissingTranslationRows[i].set(row, resource.getTranslationAsString(myLocales.get(i)).isEmpty());
+    }
+    myRowTexts[row] = null;
+    myNeedsTranslationsRows = null;
+  }
+
+  boolean isUntranslatable(int row) {
+    return myUntranslatableRows.get(row);
+  }
+
+  /**
+   * Returns true if the given row is translatable and its default value or one of its translations is empty.
+   */
+  boolean needsTranslations(int row) {
+    if (myNeedsTranslationsRows == null) {
+      BitSet rows = (BitSet)myMissingDefaultValueRows.clone();
+      for (BitSet missingTranslationRows : myMissingTranslationRows) {
+        rows.or(missingTranslationRows);
+      }
+      rows.andNot(myUntranslatableRows);
+      myNeedsTranslationsRows = rows;
+    }
+    return myNeedsTranslationsRows.get(row);
+  }
+
+  /**
+   * Returns true if the given row is translatable and its translation for the given locale is empty.
+   */
+  boolean needsTranslation(int row, @NotNull Locale locale) {
+    if (myUntranslatableRows.get(row)) {
+      return false;
+    }
+    int index = myLocales.indexOf(locale);
+    return index >= 0 ? myMissingTranslationRows[index].get(row) : myModel.getStringResourceAt(row).getTranslationAsString(locale).isEmpty();
+  }
+
+  /**
+   * Returns true if the string value of one of the cells of the given row contains the given text.
+   */
+  boolean containsText(int row, @NotNull String text) {
+    String rowText = myRowTexts[row];
+    if (rowText == null) {
+      StringBuilder builder = new StringBuilder();
+      for (int column = 0; column < myModel.getColumnCount(); column++) {
+        builder.append(myModel.getValueAt(row, column)).append(TEXT_SEPARATOR);
+      }
+      rowText = builder.toString();
+      myRowTexts[row] = rowText;
+    }
+    return rowText.contains(text);
+  }
+}
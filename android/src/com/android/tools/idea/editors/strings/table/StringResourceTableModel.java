@@ -37,11 +37,14 @@ public class StringResourceTableModel extends AbstractTableModel {
   public static final int DEFAULT_VALUE_COLUMN = 3;
   public static final int FIXED_COLUMN_COUNT = 4;
 
-  private final StringResourceRepository myRepository;
-  private final StringResourceData myData;
-  private final List<StringResourceKey> myKeys;
+  private StringResourceRepository myRepository;
+  private StringResourceData myData;
+  private List<StringResourceKey> myKeys;
   private final List<Locale> myLocales;
 
+  @Nullable
+  private StringResourceTableIndex myIndex;
+
   StringResourceTableModel() {
     myRepository = StringResourceRepository.create();
     myData = null;
@@ -50,14 +53,52 @@ public class StringResourceTableModel extends AbstractTableModel {
   }
 
   public StringResourceTableModel(@NotNull StringResourceRepository repository, @NotNull AndroidFacet facet) {
-    myRepository = repository;
+    this(repository, repository.getData(facet));
+  }
 
-    StringResourceData data = repository.getData(facet);
+  public StringResourceTableModel(@NotNull StringResourceRepository repository, @NotNull StringResourceData data) {
+    myRepository = repository;
     myData = data;
     myKeys = data.getKeys();
     myLocales = data.getLocaleList();
   }
 
+  /**
+   * Replaces the data of the model with data read again from the resources, firing events for the rows that changed instead of
+   * replacing the whole model. The index only recomputes the rows whose resources weren't reused by the new data. Returns false,
+   * leaving the model unchanged, if the locales changed and the columns of the table have to be created again with a new model.
+   */
+  public boolean update(@NotNull StringResourceRepository repository, @NotNull StringResourceData data) {
+    if (myData == null || !data.getLocaleList().equals(myLocales)) {
+      return false;
+    }
+
+    StringResourceData previousData = myData;
+    List<StringResourceKey> previousKeys = myKeys;
+    myRepository = repository;
+    myData = data;
+    myKeys = data.getKeys();
+
+    if (!myKeys.equals(previousKeys)) {
+      if (myIndex != null) {
+        myIndex = new StringResourceTableIndex(this, myLocales, myIndex);
+      }
+      fireTableDataChanged();
+      return true;
+    }
+
+    for (int row = 0; row < myKeys.size(); row++) {
+      StringResourceKey key = myKeys.get(row);
+      if (data.getStringResource(key) != previousData.getStringResource(key)) {
+        if (myIndex != null) {
+          myIndex.update(row);
+        }
+        fireTableRowsUpdated(row, row);
+      }
+    }
+    return true;
+  }
+
   @NotNull
   public StringResourceRepository getRepository() {
     return myRepository;
@@ -83,6 +124,24 @@ public class StringResourceTableModel extends AbstractTableModel {
     return myKeys.get(row);
   }
 
+  /**
+   * Returns the index used by the row filters, creating it on first use, or null if the model has no data.
+   */
+  @Nullable
+  StringResourceTableIndex getIndex() {
+    if (myIndex == null && myData != null) {
+      myIndex = new StringResourceTableIndex(this, myLocales);
+    }
+    return myIndex;
+  }
+
+  private void fireRowCellUpdated(int row, int column) {
+    if (myIndex != null) {
+      myIndex.update(row);
+    }
+    fireTableCellUpdated(row, column);
+  }
+
   @Nullable
   public Locale getLocale(int column) {
     assert 0 <= column && column < getColumnCount() : column;
@@ -116,13 +175,13 @@ public class StringResourceTableModel extends AbstractTableModel {
       case UNTRANSLATABLE_COLUMN:
         Boolean doNotTranslate = (Boolean)value;
         if (myData.setTranslatable(getKey(row), !doNotTranslate)) {
-          fireTableCellUpdated(row, column);
+          fireRowCellUpdated(row, column);
         }
 
         break;
       case DEFAULT_VALUE_COLUMN:
         if (getStringResourceAt(row).setDefaultValue((String)value)) {
-          fireTableCellUpdated(row, column);
+          fireRowCellUpdated(row, column);
         }
 
         break;
@@ -131,7 +190,7 @@ public class StringResourceTableModel extends AbstractTableModel {
         assert locale != null;
 
         if (getStringResourceAt(row).putTranslation(locale, (String)value)) {
-          fireTableCellUpdated(row, column);
+          fireRowCellUpdated(row, column);
         }
 
         break;
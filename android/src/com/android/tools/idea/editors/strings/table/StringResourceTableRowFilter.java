@@ -17,9 +17,19 @@ package com.android.tools.idea.editors.strings.table;
 
 import com.intellij.openapi.actionSystem.Presentation;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 
 public abstract class StringResourceTableRowFilter extends RowFilter<StringResourceTableModel, Integer> {
   public abstract void update(@NotNull Presentation presentation);
+
+  /**
+   * Returns the index of the model of the given entry, or null if the filter has to look at the cells themselves.
+   */
+  @Nullable
+  static StringResourceTableIndex getIndex(@NotNull Entry<? extends StringResourceTableModel, ? extends Integer> entry) {
+    StringResourceTableModel model = entry.getModel();
+    return model == null ? null : model.getIndex();
+  }
 }
@@ -28,6 +28,11 @@ public class TextRowFilter extends StringResourceTableRowFilter {
 
   @Override
   public boolean include(Entry<? extends StringResourceTableModel, ? extends Integer> entry) {
+    StringResourceTableIndex index = getIndex(entry);
+    if (index != null) {
+      return index.containsText(entry.getIdentifier(), myText);
+    }
+
     for (int i = 0; i < entry.getValueCount(); i++) {
       String text = entry.getStringValue(i);
       if (text.contains(myText)) {
@@ -29,6 +29,11 @@ public final class TranslatableRowFilter extends StringResourceTableRowFilter {
 
   @Override
   public boolean include(@NotNull Entry<? extends StringResourceTableModel, ? extends Integer> entry) {
+    StringResourceTableIndex index = getIndex(entry);
+    if (index != null) {
+      return !index.isUntranslatable(entry.getIdentifier());
+    }
+
     return !(boolean)entry.getValue(UNTRANSLATABLE_COLUMN);
   }
 }
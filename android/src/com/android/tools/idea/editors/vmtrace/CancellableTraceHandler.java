@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.editors.vmtrace;
+
+import com.android.tools.perflib.vmtrace.MethodInfo;
+import com.android.tools.perflib.vmtrace.TraceAction;
+import com.android.tools.perflib.vmtrace.VmTraceData;
+import com.android.tools.perflib.vmtrace.VmTraceHandler;
+import com.intellij.openapi.progress.ProgressIndicator;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link VmTraceHandler} that builds a {@link VmTraceData} and checks the given indicator while the trace is being
+ * parsed, so that {@link com.android.tools.perflib.vmtrace.VmTraceParser} stops with a
+ * {@link com.intellij.openapi.progress.ProcessCanceledException} as soon as the indicator is cancelled.
+ */
+class CancellableTraceHandler implements VmTraceHandler {
+  /** Number of method actions between two checks of the indicator */
+  private static final int CHECK_INTERVAL = 1024;
+
+  @NotNull private final VmTraceData.Builder myBuilder = new VmTraceData.Builder();
+  @NotNull private final ProgressIndicator myIndicator;
+  private int myActionCount;
+
+  CancellableTraceHandler(@NotNull ProgressIndicator indicator) {
+    myIndicator = indicator;
+  }
+
+  @Override
+  public void setVersion(int version) {
+    myIndicator.checkCanceled();
+    myBuilder.setVersion(version);
+  }
+
+  @Override
+  public void setProperty(String key, String value) {
+    myBuilder.setProperty(key, value);
+  }
+
+  @Override
+  public void addThread(int id, String name) {
+    myBuilder.addThread(id, name);
+  }
+
+  @Override
+  public void addMethod(long id, MethodInfo info) {
+    myBuilder.addMethod(id, info);
+  }
+
+  @Override
+  public void addMethodAction(int threadId, long methodId, TraceAction methodAction, int threadTime, int globalTime) {
+    if (myActionCount++ % CHECK_INTERVAL == 0) {
+      myIndicator.checkCanceled();
+    }
+    myBuilder.addMethodAction(threadId, methodId, methodAction, threadTime, globalTime);
+  }
+
+  @Override
+  public void setStartTimeUs(long startTimeUs) {
+    myBuilder.setStartTimeUs(startTimeUs);
+  }
+
+  @NotNull
+  VmTraceData build() {
+    myIndicator.checkCanceled();
+    return myBuilder.build();
+  }
+}
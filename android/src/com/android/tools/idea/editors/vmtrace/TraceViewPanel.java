@@ -16,15 +16,18 @@
 
 package com.android.tools.idea.editors.vmtrace;
 
+import com.android.tools.idea.editors.vmtrace.treemodel.StatsByThreadNode;
 import com.android.tools.idea.editors.vmtrace.treemodel.VmStatsTreeTableModel;
 import com.android.tools.idea.editors.vmtrace.treemodel.VmStatsTreeUtils;
 import com.android.tools.perflib.vmtrace.ClockType;
+import com.android.tools.perflib.vmtrace.MethodInfo;
 import com.android.tools.perflib.vmtrace.SearchResult;
 import com.android.tools.perflib.vmtrace.ThreadInfo;
 import com.android.tools.perflib.vmtrace.VmTraceData;
 import com.android.tools.perflib.vmtrace.viz.TraceViewCanvas;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.intellij.find.editorHeaderActions.Utils;
 import com.intellij.icons.AllIcons;
 import com.intellij.openapi.actionSystem.DataKey;
@@ -99,6 +102,7 @@ public class TraceViewPanel {
     ClockType.THREAD,
   };
   private VmTraceData myTraceData;
+  private List<ThreadInfo> myThreads;
   private VmStatsTreeTableModel myVmStatsTreeTableModel;
 
   public TraceViewPanel(Project project) {
@@ -184,11 +188,20 @@ public class TraceViewPanel {
   }
 
   public void setTrace(@NotNull VmTraceData trace) {
-    myTraceData = trace;
+    for (ThreadInfo thread : getThreadsInLoadingOrder(trace)) {
+      addThread(trace, thread, null);
+    }
+  }
 
-    List<ThreadInfo> threads = trace.getThreads(true);
+  /**
+   * Returns the threads of the given trace in the order they should be added to the panel: the thread displayed by
+   * default first, then the other ones.
+   */
+  @NotNull
+  static List<ThreadInfo> getThreadsInLoadingOrder(@NotNull VmTraceData trace) {
+    List<ThreadInfo> threads = Lists.newArrayList(trace.getThreads(true));
     if (threads.isEmpty()) {
-      return;
+      return threads;
     }
 
     ThreadInfo defaultThread = Iterables.find(threads, new Predicate<ThreadInfo>() {
@@ -197,10 +210,35 @@ public class TraceViewPanel {
         return MAIN_THREAD_NAME.equals(input.getName());
       }
     }, threads.get(0));
+    threads.remove(defaultThread);
+    threads.add(0, defaultThread);
+    return threads;
+  }
+
+  /**
+   * Adds a thread of the given trace to the panel. The first thread added for a trace is displayed, the other ones are
+   * added to the thread selector in the order of the trace.
+   *
+   * @param methods the methods of the thread as returned by {@link StatsByThreadNode#getMethodsInThread}, or null to
+   *                compute them when the thread is displayed
+   */
+  public void addThread(@NotNull VmTraceData trace, @NotNull ThreadInfo thread, @Nullable List<MethodInfo> methods) {
+    if (methods != null) {
+      myVmStatsTreeTableModel.addThreadMethods(trace, thread, methods);
+    }
+
+    if (trace == myTraceData) {
+      DefaultComboBoxModel model = (DefaultComboBoxModel)myThreadCombo.getModel();
+      model.insertElementAt(thread, getThreadPosition(model, thread));
+      return;
+    }
+
+    myTraceData = trace;
+    myThreads = trace.getThreads(true);
 
-    myTraceViewCanvas.setTrace(trace, defaultThread, getCurrentRenderClock());
-    myThreadCombo.setModel(new DefaultComboBoxModel(threads.toArray()));
-    myThreadCombo.setSelectedItem(defaultThread);
+    myTraceViewCanvas.setTrace(trace, thread, getCurrentRenderClock());
+    myThreadCombo.setModel(new DefaultComboBoxModel(new Object[]{thread}));
+    myThreadCombo.setSelectedItem(thread);
     myThreadCombo.setRenderer(new ColoredListCellRenderer() {
       @Override
       protected void customizeCellRenderer(@NotNull JList list, Object value, int index, boolean selected, boolean hasFocus) {
@@ -212,7 +250,7 @@ public class TraceViewPanel {
     myThreadCombo.setEnabled(true);
     myRenderClockSelectorCombo.setEnabled(true);
 
-    myVmStatsTreeTableModel.setTraceData(trace, defaultThread);
+    myVmStatsTreeTableModel.setTraceData(trace, thread);
     myVmStatsTreeTableModel.setClockType(getCurrentRenderClock());
     myTreeTable.setModel(myVmStatsTreeTableModel);
 
@@ -222,6 +260,18 @@ public class TraceViewPanel {
     VmStatsTreeUtils.enableSorting(myTreeTable, myVmStatsTreeTableModel);
   }
 
+  /**
+   * Returns the index at which the given thread goes in the thread selector to keep the order of the trace.
+   */
+  private int getThreadPosition(@NotNull DefaultComboBoxModel model, @NotNull ThreadInfo thread) {
+    int order = myThreads.indexOf(thread);
+    int position = model.getSize();
+    while (position > 0 && myThreads.indexOf(model.getElementAt(position - 1)) > order) {
+      position--;
+    }
+    return position;
+  }
+
   private ClockType getCurrentRenderClock() {
     return ourRenderClockTypes[myRenderClockSelectorCombo.getSelectedIndex()];
   }
@@ -16,9 +16,6 @@
 
 package com.android.tools.idea.editors.vmtrace;
 
-import com.android.tools.perflib.vmtrace.VmTraceData;
-import com.android.tools.perflib.vmtrace.VmTraceParser;
-import com.google.common.base.Throwables;
 import com.intellij.codeHighlighting.BackgroundEditorHighlighter;
 import com.intellij.ide.structureView.StructureViewBuilder;
 import com.intellij.openapi.application.ApplicationManager;
@@ -26,10 +23,7 @@ import com.intellij.openapi.fileEditor.FileEditor;
 import com.intellij.openapi.fileEditor.FileEditorLocation;
 import com.intellij.openapi.fileEditor.FileEditorState;
 import com.intellij.openapi.fileEditor.FileEditorStateLevel;
-import com.intellij.openapi.progress.ProgressIndicator;
-import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.ui.Messages;
 import com.intellij.openapi.util.Key;
 import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -38,55 +32,24 @@ import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import java.beans.PropertyChangeListener;
-import java.io.File;
 
 public class VmTraceEditor implements FileEditor {
   private final TraceViewPanel myTraceViewPanel;
+  private final VmTraceLoader myLoader;
 
   public VmTraceEditor(@NotNull final Project project, @NotNull final VirtualFile file) {
     myTraceViewPanel = new TraceViewPanel(project);
-    parseTraceFileInBackground(project, file);
+    myLoader = new VmTraceLoader(project, VfsUtilCore.virtualToIoFile(file), myTraceViewPanel, getName());
+    parseTraceFileInBackground(project);
   }
 
-  private void parseTraceFileInBackground(@NotNull final Project project, @NotNull final VirtualFile file) {
-    final Task.Modal parseTask = new Task.Modal(project, "Parsing trace file", false) {
-      @Override
-      public void run(@NotNull ProgressIndicator indicator) {
-        indicator.setIndeterminate(true);
-
-        File traceFile = VfsUtilCore.virtualToIoFile(file);
-        VmTraceData.Builder dataBuilder = new VmTraceData.Builder();
-        VmTraceParser parser = new VmTraceParser(traceFile, dataBuilder);
-        try {
-          parser.parse();
-        }
-        catch (final Throwable throwable) {
-          ApplicationManager.getApplication().invokeAndWait(new Runnable() {
-            @Override
-            public void run() {
-              //noinspection ThrowableResultOfMethodCallIgnored
-              Messages.showErrorDialog(project, "Unexpected error while parsing trace file: " +
-                                                Throwables.getRootCause(throwable).getMessage(), getName());
-            }
-          });
-          return;
-        }
-
-        final VmTraceData vmTraceData = dataBuilder.build();
-        ApplicationManager.getApplication().invokeLater(new Runnable() {
-          @Override
-          public void run() {
-            myTraceViewPanel.setTrace(vmTraceData);
-          }
-        });
-      }
-    };
+  private void parseTraceFileInBackground(@NotNull final Project project) {
     ApplicationManager.getApplication().invokeLater(new Runnable() {
       @Override
       public void run() {
-        parseTask.queue();
+        myLoader.start();
       }
-    });
+    }, project.getDisposed());
   }
 
   @NotNull
@@ -163,6 +126,7 @@ public class VmTraceEditor implements FileEditor {
 
   @Override
   public void dispose() {
+    myLoader.cancel();
   }
 
   @Nullable
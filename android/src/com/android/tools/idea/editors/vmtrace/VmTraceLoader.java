@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.editors.vmtrace;
+
+import com.android.tools.idea.editors.vmtrace.treemodel.StatsByThreadNode;
+import com.android.tools.perflib.vmtrace.MethodInfo;
+import com.android.tools.perflib.vmtrace.ThreadInfo;
+import com.android.tools.perflib.vmtrace.VmTraceData;
+import com.android.tools.perflib.vmtrace.VmTraceParser;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.progress.impl.BackgroundableProcessIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Loads a method trace file in the background and publishes it to a {@link TraceViewPanel} one thread at a time.
+ * <p>
+ * The trace is parsed on a pooled thread while the task waits for it, so cancelling the task (or closing the editor)
+ * releases the UI right away, and the parser stops at its next check of the indicator. The per-thread method statistics shown in the stats table are then computed in
+ * parallel, and every thread is added to the panel as soon as its statistics are ready, starting with the thread
+ * the panel displays first.
+ */
+class VmTraceLoader extends Task.Backgroundable {
+  private static final Logger LOG = Logger.getInstance(VmTraceLoader.class);
+
+  /** Maximum number of threads whose statistics are computed at the same time */
+  private static final int STATS_PARALLELISM = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
+  @NotNull private final File myTraceFile;
+  @NotNull private final TraceViewPanel myPanel;
+  @NotNull private final String myEditorName;
+  @Nullable private ProgressIndicator myIndicator;
+  private boolean myCancelled;
+
+  VmTraceLoader(@NotNull Project project, @NotNull File traceFile, @NotNull TraceViewPanel panel, @NotNull String editorName) {
+    super(project, "Parsing trace file", true);
+    myTraceFile = traceFile;
+    myPanel = panel;
+    myEditorName = editorName;
+  }
+
+  /**
+   * Starts loading the trace. Must be called on the event dispatch thread.
+   */
+  void start() {
+    if (myCancelled) {
+      return;
+    }
+    myIndicator = new BackgroundableProcessIndicator(this);
+    ProgressManager.getInstance().runProcessWithProgressAsynchronously(this, myIndicator);
+  }
+
+  /**
+   * Stops loading the trace if it is still in progress. Must be called on the event dispatch thread.
+   */
+  void cancel() {
+    myCancelled = true;
+    if (myIndicator != null && myIndicator.isRunning()) {
+      myIndicator.cancel();
+    }
+  }
+
+  @Override
+  public void run(@NotNull ProgressIndicator indicator) {
+    indicator.setIndeterminate(true);
+    VmTraceData traceData;
+    try {
+      traceData = waitFor(ApplicationManager.getApplication().executeOnPooledThread(() -> parse(myTraceFile, indicator)), indicator);
+    }
+    catch (ExecutionException e) {
+      showError(e.getCause());
+      return;
+    }
+
+    List<ThreadInfo> threads = TraceViewPanel.getThreadsInLoadingOrder(traceData);
+    if (threads.isEmpty()) {
+      return;
+    }
+
+    indicator.setText("Computing method statistics");
+    indicator.setIndeterminate(false);
+    ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("VmTrace statistics", STATS_PARALLELISM);
+    List<Future<List<MethodInfo>>> futures = Lists.newArrayListWithCapacity(threads.size());
+    for (ThreadInfo thread : threads) {
+      futures.add(executor.submit(() -> StatsByThreadNode.getMethodsInThread(traceData, thread, indicator)));
+    }
+
+    try {
+      for (int i = 0; i < threads.size(); i++) {
+        ThreadInfo thread = threads.get(i);
+        List<MethodInfo> methods;
+        try {
+          methods = waitFor(futures.get(i), indicator);
+        }
+        catch (ExecutionException e) {
+          LOG.warn("Unable to compute the method statistics of thread " + thread.getName(), e.getCause());
+          methods = null;
+        }
+        if (methods != null) {
+          List<MethodInfo> threadMethods = methods;
+          ApplicationManager.getApplication().invokeLater(() -> myPanel.addThread(traceData, thread, threadMethods),
+                                                          o -> myProject.isDisposed());
+        }
+        indicator.setFraction((double)(i + 1) / threads.size());
+      }
+    }
+    finally {
+      for (Future<?> future : futures) {
+        future.cancel(false);
+      }
+    }
+  }
+
+  /**
+   * Parses the given trace file. The parser checks the indicator as it goes and throws a {@link ProcessCanceledException}
+   * once it is cancelled, since interrupting the parsing thread doesn't stop it.
+   */
+  @VisibleForTesting
+  @NotNull
+  static VmTraceData parse(@NotNull File traceFile, @NotNull ProgressIndicator indicator) throws IOException {
+    CancellableTraceHandler handler = new CancellableTraceHandler(indicator);
+    new VmTraceParser(traceFile, handler).parse();
+    return handler.build();
+  }
+
+  /**
+   * Waits for the given future while checking for cancellation.
+   */
+  private static <T> T waitFor(@NotNull Future<T> future, @NotNull ProgressIndicator indicator) throws ExecutionException {
+    while (true) {
+      if (indicator.isCanceled()) {
+        future.cancel(true);
+        indicator.checkCanceled();
+      }
+      try {
+        return future.get(100, TimeUnit.MILLISECONDS);
+      }
+      catch (TimeoutException ignored) {
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ProcessCanceledException(e);
+      }
+      catch (ExecutionException e) {
+        if (e.getCause() instanceof ProcessCanceledException) {
+          throw (ProcessCanceledException)e.getCause();
+        }
+        throw e;
+      }
+    }
+  }
+
+  private void showError(@NotNull Throwable throwable) {
+    ApplicationManager.getApplication().invokeLater(
+      () -> Messages.showErrorDialog(myProject, "Unexpected error while parsing trace file: " +
+                                                Throwables.getRootCause(throwable).getMessage(), myEditorName),
+      o -> myProject.isDisposed());
+  }
+}
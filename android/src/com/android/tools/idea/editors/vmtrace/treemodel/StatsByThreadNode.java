@@ -19,6 +19,7 @@ package com.android.tools.idea.editors.vmtrace.treemodel;
 import com.android.tools.perflib.vmtrace.*;
 import com.google.common.collect.Lists;
 import com.google.common.primitives.Ints;
+import com.intellij.openapi.progress.ProgressIndicator;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -33,9 +34,17 @@ public class StatsByThreadNode extends AbstractProfileDataNode implements StatsN
   private final List<MethodInfo> myMethods;
 
   public StatsByThreadNode(@NotNull VmTraceData traceData, @NotNull ThreadInfo thread) {
+    this(traceData, thread, getMethodsInThread(traceData, thread, null));
+  }
+
+  /**
+   * Creates a node for the given thread from the methods returned by {@link #getMethodsInThread}, which are not
+   * modified.
+   */
+  public StatsByThreadNode(@NotNull VmTraceData traceData, @NotNull ThreadInfo thread, @NotNull List<MethodInfo> methods) {
     myTraceData = traceData;
     myThread = thread;
-    myMethods = getMethodsInThread(traceData, myThread);
+    myMethods = Lists.newArrayList(methods);
     setSortColumn(StatsTableColumn.INCLUSIVE_TIME, false);
   }
 
@@ -44,16 +53,28 @@ public class StatsByThreadNode extends AbstractProfileDataNode implements StatsN
     return myMethods.size();
   }
 
+  /**
+   * Returns the methods invoked in the given thread, already sorted by decreasing inclusive time so that building the
+   * node doesn't have to sort them again. This can be called from any thread.
+   *
+   * @param indicator if not null, checked for cancellation while going through the methods
+   */
   @NotNull
-  private static List<MethodInfo> getMethodsInThread(final VmTraceData traceData, final ThreadInfo thread) {
+  public static List<MethodInfo> getMethodsInThread(@NotNull VmTraceData traceData,
+                                                    @NotNull ThreadInfo thread,
+                                                    @Nullable ProgressIndicator indicator) {
     List<MethodInfo> results = Lists.newArrayList();
 
     for (MethodInfo info : traceData.getMethods().values()) {
-        if (info.getProfileData().getInvocationCount(thread) > 0) {
-          results.add(info);
-        }
+      if (indicator != null) {
+        indicator.checkCanceled();
+      }
+      if (info.getProfileData().getInvocationCount(thread) > 0) {
+        results.add(info);
+      }
     }
 
+    Collections.sort(results, createComparator(thread, StatsTableColumn.INCLUSIVE_TIME, false));
     return results;
   }
 
@@ -95,7 +116,14 @@ public class StatsByThreadNode extends AbstractProfileDataNode implements StatsN
 
   @Override
   public void setSortColumn(final StatsTableColumn sortByColumn, final boolean sortAscending) {
-    Collections.sort(myMethods, new Comparator<MethodInfo>() {
+    Collections.sort(myMethods, createComparator(myThread, sortByColumn, sortAscending));
+  }
+
+  @NotNull
+  private static Comparator<MethodInfo> createComparator(@NotNull final ThreadInfo thread,
+                                                         @NotNull final StatsTableColumn sortByColumn,
+                                                         final boolean sortAscending) {
+    return new Comparator<MethodInfo>() {
       @Override
       public int compare(MethodInfo m1, MethodInfo m2) {
         int diff;
@@ -104,15 +132,15 @@ public class StatsByThreadNode extends AbstractProfileDataNode implements StatsN
             diff = m1.getFullName().compareTo(m2.getFullName());
             break;
           case INVOCATION_COUNT:
-            diff = Ints.saturatedCast(m1.getProfileData().getInvocationCount(myThread) - m2.getProfileData().getInvocationCount(myThread));
+            diff = Ints.saturatedCast(m1.getProfileData().getInvocationCount(thread) - m2.getProfileData().getInvocationCount(thread));
             break;
           case INCLUSIVE_TIME:
-            diff = Ints.saturatedCast(m1.getProfileData().getInclusiveTime(myThread, ClockType.GLOBAL, TimeUnit.MICROSECONDS) -
-                   m2.getProfileData().getInclusiveTime(myThread, ClockType.GLOBAL, TimeUnit.MICROSECONDS));
+            diff = Ints.saturatedCast(m1.getProfileData().getInclusiveTime(thread, ClockType.GLOBAL, TimeUnit.MICROSECONDS) -
+                   m2.getProfileData().getInclusiveTime(thread, ClockType.GLOBAL, TimeUnit.MICROSECONDS));
             break;
           case EXCLUSIVE_TIME:
-            diff = Ints.saturatedCast(m1.getProfileData().getExclusiveTime(myThread, ClockType.GLOBAL, TimeUnit.MICROSECONDS) -
-                                      m2.getProfileData().getExclusiveTime(myThread, ClockType.GLOBAL, TimeUnit.MICROSECONDS));
+            diff = Ints.saturatedCast(m1.getProfileData().getExclusiveTime(thread, ClockType.GLOBAL, TimeUnit.MICROSECONDS) -
+                                      m2.getProfileData().getExclusiveTime(thread, ClockType.GLOBAL, TimeUnit.MICROSECONDS));
             break;
           default:
             diff = 0;
@@ -120,7 +148,7 @@ public class StatsByThreadNode extends AbstractProfileDataNode implements StatsN
 
         return sortAscending ? diff : -diff;
       }
-    });
+    };
   }
 
   @Override
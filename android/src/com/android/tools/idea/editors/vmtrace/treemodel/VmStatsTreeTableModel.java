@@ -17,8 +17,10 @@
 package com.android.tools.idea.editors.vmtrace.treemodel;
 
 import com.android.tools.perflib.vmtrace.ClockType;
+import com.android.tools.perflib.vmtrace.MethodInfo;
 import com.android.tools.perflib.vmtrace.ThreadInfo;
 import com.android.tools.perflib.vmtrace.VmTraceData;
+import com.google.common.collect.Maps;
 import com.intellij.ui.treeStructure.treetable.TreeColumnInfo;
 import com.intellij.ui.treeStructure.treetable.TreeTableModel;
 import com.intellij.util.ui.ColumnInfo;
@@ -30,6 +32,8 @@ import org.jetbrains.annotations.Nullable;
 import javax.swing.*;
 import javax.swing.event.TreeModelEvent;
 import javax.swing.event.TreeModelListener;
+import java.util.List;
+import java.util.Map;
 
 /**
  * A {@link TreeTableModel} for viewing method statistics from a VM Trace.
@@ -42,6 +46,10 @@ public class VmStatsTreeTableModel extends AbstractTreeTableModel implements Tre
   private ThreadInfo myThread;
   private ClockType myClockType = ClockType.GLOBAL;
 
+  /** Methods of the threads of {@link #myThreadMethodsTrace} computed ahead of time, see {@link #addThreadMethods} */
+  private final Map<ThreadInfo, List<MethodInfo>> myThreadMethods = Maps.newHashMap();
+  private VmTraceData myThreadMethodsTrace;
+
   private StatsTableColumn mySortByColumn = StatsTableColumn.EXCLUSIVE_TIME;
   private boolean mySortAscending = true;
 
@@ -54,6 +62,18 @@ public class VmStatsTreeTableModel extends AbstractTreeTableModel implements Tre
     setThread(thread);
   }
 
+  /**
+   * Records the methods of the given thread, as returned by {@link StatsByThreadNode#getMethodsInThread}, so that
+   * switching to that thread doesn't go through all the methods of the trace again.
+   */
+  public void addThreadMethods(@NotNull VmTraceData traceData, @NotNull ThreadInfo thread, @NotNull List<MethodInfo> methods) {
+    if (traceData != myThreadMethodsTrace) {
+      myThreadMethods.clear();
+      myThreadMethodsTrace = traceData;
+    }
+    myThreadMethods.put(thread, methods);
+  }
+
   public void setClockType(ClockType type) {
     myClockType = type;
     fireTreeStructureChanged();
@@ -62,7 +82,8 @@ public class VmStatsTreeTableModel extends AbstractTreeTableModel implements Tre
   public void setThread(@NotNull ThreadInfo thread) {
     myThread = thread;
     if (myVmTraceData != null) {
-      myRootNode = new StatsByThreadNode(myVmTraceData, thread);
+      List<MethodInfo> methods = myVmTraceData == myThreadMethodsTrace ? myThreadMethods.get(thread) : null;
+      myRootNode = methods != null ? new StatsByThreadNode(myVmTraceData, thread, methods) : new StatsByThreadNode(myVmTraceData, thread);
     } else {
       myRootNode = new NullStatsNode();
     }
@@ -23,6 +23,8 @@ import com.android.ide.common.fonts.FontLoader;
 import com.android.ide.common.fonts.FontProvider;
 import com.android.sdklib.repository.AndroidSdkHandler;
 import com.android.tools.idea.sdk.AndroidSdks;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.io.FileUtil;
 import org.intellij.lang.annotations.Language;
@@ -39,9 +41,13 @@ import java.util.List;
 
 import static com.android.ide.common.fonts.FontFamilyKt.FILE_PROTOCOL_START;
 import static com.android.ide.common.fonts.FontFamilyKt.HTTPS_PROTOCOL_START;
+import static com.android.ide.common.fonts.FontLoaderKt.FONT_DIRECTORY_FOLDER;
 
 /**
  * {@link DownloadableFontCacheServiceImpl} is a threadsafe implementation of {link {@link DownloadableFontCacheService}.
+ * <p>
+ * Font files are downloaded by a {@link FontPrefetcher}, and the downloaded files are kept below {@link #MAX_FONT_CACHE_SIZE} by deleting
+ * the least recently loaded files once the downloads are done. Loaded fonts are also kept in memory (with soft references).
  */
 @ThreadSafe
 class DownloadableFontCacheServiceImpl extends FontLoader implements DownloadableFontCacheService {
@@ -49,7 +55,13 @@ class DownloadableFontCacheServiceImpl extends FontLoader implements Downloadabl
   private static final String FONT = "font";
   private static final String V1 = "v1";
 
+  /** Maximum total size of the font files in the font cache */
+  private static final long MAX_FONT_CACHE_SIZE = 100L * 1024 * 1024;
+
   private final SystemFonts mySystemFonts;
+  private final FontPrefetcher myPrefetcher;
+  private final Cache<File, Font> myFonts = CacheBuilder.newBuilder().softValues().build();
+  private final Object myTrimLock = new Object();
   @GuardedBy("getLock()")
   private final Map<String, FontDirectoryDownloadService> myDownloadServiceMap;
 
@@ -158,31 +170,95 @@ class DownloadableFontCacheServiceImpl extends FontLoader implements Downloadabl
   @Override
   @Nullable
   public Font loadMenuFont(@NotNull FontFamily fontFamily) {
-    File file = getCachedMenuFile(fontFamily);
-    if (file != null && file.exists()) {
-      try {
-        return Font.createFont(Font.TRUETYPE_FONT, file);
-      }
-      catch (FontFormatException | IOException ex) {
-        Logger.getInstance(DownloadableFontCacheServiceImpl.class).warn("Could not load font: " + fontFamily.getName(), ex);
-      }
-    }
-    return null;
+    return loadFont(getCachedMenuFile(fontFamily), fontFamily.getName());
   }
 
   @Override
   @Nullable
   public Font loadDetailFont(@NotNull FontDetail fontDetail) {
-    File file = getCachedFontFile(fontDetail);
-    if (file != null && file.exists()) {
-      try {
-        return Font.createFont(Font.TRUETYPE_FONT, file);
+    return loadFont(getCachedFontFile(fontDetail), fontDetail.getFamily().getName());
+  }
+
+  @Nullable
+  private Font loadFont(@Nullable File file, @NotNull String name) {
+    if (file == null) {
+      return null;
+    }
+    Font font = myFonts.getIfPresent(file);
+    if (font != null || !file.exists()) {
+      return font;
+    }
+    try {
+      font = Font.createFont(Font.TRUETYPE_FONT, file);
+    }
+    catch (FontFormatException | IOException ex) {
+      Logger.getInstance(DownloadableFontCacheServiceImpl.class).warn("Could not load font: " + name, ex);
+      return null;
+    }
+    myFonts.put(file, font);
+    // The modification time of the cached files is the time they were last used, see trimFontCache
+    //noinspection ResultOfMethodCallIgnored
+    file.setLastModified(System.currentTimeMillis());
+    return font;
+  }
+
+  @NotNull
+  FontPrefetcher getPrefetcher() {
+    return myPrefetcher;
+  }
+
+  /**
+   * Deletes the least recently used font files of the font cache until their total size is at most {@code maxSize}.
+   * The downloaded font directories are kept.
+   */
+  @VisibleForTesting
+  void trimFontCache(long maxSize) {
+    File fontPath = getFontPath();
+    File[] providerPaths = fontPath != null ? fontPath.listFiles() : null;
+    if (providerPaths == null) {
+      return;
+    }
+    synchronized (myTrimLock) {
+      List<File> files = new ArrayList<>();
+      for (File providerPath : providerPaths) {
+        collectFiles(new File(providerPath, FONTS), new File(providerPath, FONT_DIRECTORY_FOLDER), files);
+      }
+      Map<File, Long> lastModified = new HashMap<>();
+      long size = 0;
+      for (File file : files) {
+        lastModified.put(file, file.lastModified());
+        size += file.length();
+      }
+      if (size <= maxSize) {
+        return;
+      }
+      files.sort(Comparator.comparing(lastModified::get));
+      for (File file : files) {
+        if (size <= maxSize) {
+          break;
+        }
+        long length = file.length();
+        if (FileUtil.delete(file)) {
+          myFonts.invalidate(file);
+          size -= length;
+        }
       }
-      catch (FontFormatException | IOException ex) {
-        Logger.getInstance(DownloadableFontCacheServiceImpl.class).warn("Could not load font: " + fontDetail.getFamily().getName(), ex);
+    }
+  }
+
+  private static void collectFiles(@NotNull File directory, @NotNull File excluded, @NotNull List<File> files) {
+    File[] children = directory.equals(excluded) ? null : directory.listFiles();
+    if (children == null) {
+      return;
+    }
+    for (File child : children) {
+      if (child.isDirectory()) {
+        collectFiles(child, excluded, files);
+      }
+      else {
+        files.add(child);
       }
     }
-    return null;
   }
 
   @Override
@@ -202,6 +278,12 @@ class DownloadableFontCacheServiceImpl extends FontLoader implements Downloadabl
 
   @VisibleForTesting
   DownloadableFontCacheServiceImpl() {
+    this(FontPrefetcher::download);
+  }
+
+  @VisibleForTesting
+  DownloadableFontCacheServiceImpl(@NotNull FontPrefetcher.Fetcher fetcher) {
+    myPrefetcher = new FontPrefetcher(fetcher, () -> trimFontCache(MAX_FONT_CACHE_SIZE));
     myDownloadServiceMap = new HashMap<>();
     init();
     mySystemFonts = new SystemFonts(this);
@@ -17,17 +17,13 @@ package com.android.tools.idea.fonts;
 
 import com.android.ide.common.fonts.FontDetail;
 import com.android.ide.common.fonts.FontFamily;
+import com.android.tools.idea.fonts.FontPrefetcher.FileRequest;
 import com.intellij.openapi.application.ApplicationManager;
-import com.intellij.openapi.diagnostic.Logger;
-import com.intellij.util.download.DownloadableFileDescription;
-import com.intellij.util.download.DownloadableFileService;
-import com.intellij.util.download.FileDownloader;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 /**
@@ -36,12 +32,14 @@ import java.util.List;
  * download the menu file (i.e. a *.ttf file for displaying the name of the font),
  * or if we want all the fonts in the family {@link FontDetail} to be downloaded as well.
  * The menu font file is usually a smaller font file (~4k).
+ * The files are downloaded by the {@link FontPrefetcher} of the font cache.
  */
 public class FontDownloadService {
   private final DownloadableFontCacheServiceImpl myCacheService;
   private final File myFontPath;
   private final List<FontFamily> myFontsToDownload;
   private final boolean myDownloadMenuFontsOnly;
+  private final boolean myUrgent;
   private final Runnable mySuccess;
   private final Runnable myFailure;
 
@@ -49,18 +47,47 @@ public class FontDownloadService {
                               boolean menuFontsOnly,
                               @Nullable Runnable success,
                               @Nullable Runnable failure) {
-    FontDownloadService service = new FontDownloadService(fontsToDownload, menuFontsOnly, success, failure);
+    download(fontsToDownload, menuFontsOnly, false, success, failure);
+  }
+
+  /**
+   * Downloads the fonts of the given families. The files of urgent downloads are downloaded before the files of the other pending
+   * downloads.
+   */
+  public static void download(@NotNull List<FontFamily> fontsToDownload,
+                              boolean menuFontsOnly,
+                              boolean urgent,
+                              @Nullable Runnable success,
+                              @Nullable Runnable failure) {
+    FontDownloadService service = new FontDownloadService(fontsToDownload, menuFontsOnly, urgent, success, failure);
     service.download();
   }
 
+  /**
+   * Moves the pending downloads of the menu files of the given families ahead of the other pending downloads.
+   */
+  public static void prioritizeMenuFonts(@NotNull List<FontFamily> families) {
+    DownloadableFontCacheServiceImpl cacheService = DownloadableFontCacheServiceImpl.getInstance();
+    List<File> files = new ArrayList<>();
+    for (FontFamily family : families) {
+      File file = cacheService.getCachedMenuFile(family);
+      if (file != null) {
+        files.add(file);
+      }
+    }
+    cacheService.getPrefetcher().prioritize(files);
+  }
+
   private FontDownloadService(@NotNull List<FontFamily> fontsToDownload,
                               boolean menuFontsOnly,
+                              boolean urgent,
                               @Nullable Runnable success,
                               @Nullable Runnable failure) {
     myCacheService = DownloadableFontCacheServiceImpl.getInstance();
     myFontPath = myCacheService.getFontPath();
     myFontsToDownload = fontsToDownload;
     myDownloadMenuFontsOnly = menuFontsOnly;
+    myUrgent = urgent;
     mySuccess = success;
     myFailure = failure;
   }
@@ -70,29 +97,15 @@ public class FontDownloadService {
   }
 
   private void performDownload() {
-    List<DownloadableFileDescription> files = new ArrayList<>();
-    for (FontFamily fontFamily : myFontsToDownload) {
-      addFontFamily(files, fontFamily);
-    }
     if (myFontPath == null) {
       notify(myFailure);
       return;
     }
-    FileDownloader downloader = new FontFileDownloader(files, null, null, "Download Fonts");
-    try {
-      downloader.download(myFontPath);
-      notify(mySuccess);
-    }
-    catch (Exception ex) {
-      // The multiple file download failed.
-      // Attempt to download the files one by one.
-      if (performSingleFileDownloads(myFontPath, files)) {
-        notify(mySuccess);
-      }
-      else if (myFailure != null) {
-        notify(myFailure);
-      }
+    List<FileRequest> files = new ArrayList<>();
+    for (FontFamily fontFamily : myFontsToDownload) {
+      addFontFamily(files, fontFamily);
     }
+    myCacheService.getPrefetcher().fetch(files, myUrgent, success -> notify(success ? mySuccess : myFailure));
   }
 
   private static void notify(@Nullable Runnable callback) {
@@ -101,30 +114,15 @@ public class FontDownloadService {
     }
   }
 
-  private static boolean performSingleFileDownloads(@NotNull File fontPath, @NotNull List<DownloadableFileDescription> files) {
-    boolean success = true;
-    for (DownloadableFileDescription file : files) {
-      FileDownloader downloader = new FontFileDownloader(Collections.singletonList(file), null, null, "Download Fonts");
-      try {
-        downloader.download(fontPath);
-      }
-      catch (Exception ex) {
-        Logger.getInstance(FontDownloadService.class).warn("Unable to download: " + file.getDownloadUrl(), ex);
-        success = false;
-      }
-    }
-    return success;
-  }
-
   private boolean cachedFileExists(@NotNull File relativeCachedFile) {
     File file = new File(myFontPath, relativeCachedFile.getPath());
     return file.exists();
   }
 
-  private void addFontFamily(@NotNull List<DownloadableFileDescription> files, @NotNull FontFamily fontFamily) {
+  private void addFontFamily(@NotNull List<FileRequest> files, @NotNull FontFamily fontFamily) {
     File file = myCacheService.getRelativeCachedMenuFile(fontFamily);
     if (file != null && !cachedFileExists(file)) {
-      files.add(createFileDescription(fontFamily.getMenu(), file));
+      files.add(new FileRequest(fontFamily.getMenu(), myFontPath, file));
     }
     if (!myDownloadMenuFontsOnly) {
       for (FontDetail font : fontFamily.getFonts()) {
@@ -133,15 +131,10 @@ public class FontDownloadService {
     }
   }
 
-  private void addFont(@NotNull List<DownloadableFileDescription> files, @NotNull FontDetail font) {
+  private void addFont(@NotNull List<FileRequest> files, @NotNull FontDetail font) {
     File file = myCacheService.getRelativeFontFile(font);
     if (file != null && !cachedFileExists(file)) {
-      files.add(createFileDescription(font.getFontUrl(), file));
+      files.add(new FileRequest(font.getFontUrl(), myFontPath, file));
     }
   }
-
-  @NotNull
-  private static DownloadableFileDescription createFileDescription(@NotNull String url, @NotNull File relativeFile) {
-    return DownloadableFileService.getInstance().createFileDescription(url, relativeFile.getPath());
-  }
 }
@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.fonts;
+
+import com.android.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.download.DownloadableFileService;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Downloads font files into the font cache with a bounded number of concurrent downloads.
+ * <p>
+ * Every file is downloaded at most once at a time: a file requested again while it is pending or being downloaded is shared by the
+ * requests. Files are downloaded in the order they were requested, except for urgent requests and files passed to {@link #prioritize}
+ * which go ahead of the other pending files. This lets the {@link MoreFontsDialog} fetch the fonts it is showing before the rest of the
+ * font list. The idle callback is run every time all the pending files have been downloaded.
+ */
+final class FontPrefetcher {
+  private static final Logger LOG = Logger.getInstance(FontPrefetcher.class);
+
+  /** Maximum number of files downloaded at the same time */
+  static final int MAX_PARALLEL_DOWNLOADS = 4;
+
+  /**
+   * Downloads a single file.
+   */
+  interface Fetcher {
+    void fetch(@NotNull FileRequest request) throws Exception;
+  }
+
+  @NotNull private final Fetcher myFetcher;
+  @Nullable private final Runnable myIdleCallback;
+  private final Object myLock = new Object();
+  /** Pending and running downloads by target file */
+  private final Map<File, FileRequest> myRequests = new HashMap<>();
+  private final Deque<FileRequest> myPending = new ArrayDeque<>();
+  private int myRunning;
+
+  FontPrefetcher(@NotNull Fetcher fetcher, @Nullable Runnable idleCallback) {
+    myFetcher = fetcher;
+    myIdleCallback = idleCallback;
+  }
+
+  /**
+   * Downloads the given files and calls {@code done} with true if all of them were downloaded. The callback is run on a pooled thread,
+   * or on the calling thread if there is nothing to download.
+   */
+  void fetch(@NotNull List<FileRequest> files, boolean urgent, @NotNull Consumer<Boolean> done) {
+    if (files.isEmpty()) {
+      done.accept(true);
+      return;
+    }
+    Batch batch = new Batch(files.size(), done);
+    synchronized (myLock) {
+      // Urgent files are added to the front in reverse order, so that they are downloaded in the requested order
+      for (FileRequest file : urgent ? Lists.reverse(files) : files) {
+        FileRequest request = myRequests.get(file.myTarget);
+        if (request == null) {
+          request = file;
+          myRequests.put(request.myTarget, request);
+          addPending(request, urgent);
+        }
+        else if (urgent && myPending.remove(request)) {
+          myPending.addFirst(request);
+        }
+        request.myBatches.add(batch);
+      }
+      startDownloads();
+    }
+  }
+
+  /**
+   * Moves the pending downloads of the given files ahead of the other pending downloads.
+   */
+  void prioritize(@NotNull List<File> targets) {
+    synchronized (myLock) {
+      for (File target : Lists.reverse(targets)) {
+        FileRequest request = myRequests.get(target);
+        if (request != null && myPending.remove(request)) {
+          myPending.addFirst(request);
+        }
+      }
+    }
+  }
+
+  @VisibleForTesting
+  @NotNull
+  List<File> getPendingFiles() {
+    synchronized (myLock) {
+      List<File> files = new ArrayList<>(myPending.size());
+      for (FileRequest request : myPending) {
+        files.add(request.myTarget);
+      }
+      return files;
+    }
+  }
+
+  private void addPending(@NotNull FileRequest request, boolean first) {
+    if (first) {
+      myPending.addFirst(request);
+    }
+    else {
+      myPending.addLast(request);
+    }
+  }
+
+  private void startDownloads() {
+    while (myRunning < MAX_PARALLEL_DOWNLOADS && myRunning < myPending.size()) {
+      myRunning++;
+      ApplicationManager.getApplication().executeOnPooledThread(this::downloadPending);
+    }
+  }
+
+  private void downloadPending() {
+    while (true) {
+      FileRequest request;
+      synchronized (myLock) {
+        request = myPending.pollFirst();
+        if (request == null) {
+          myRunning--;
+          if (myRunning > 0 || myIdleCallback == null) {
+            return;
+          }
+          break;
+        }
+      }
+      boolean success;
+      try {
+        myFetcher.fetch(request);
+        success = true;
+      }
+      catch (Exception ex) {
+        LOG.warn("Unable to download: " + request.myUrl, ex);
+        success = false;
+      }
+      List<Batch> batches;
+      synchronized (myLock) {
+        myRequests.remove(request.myTarget);
+        batches = new ArrayList<>(request.myBatches);
+      }
+      for (Batch batch : batches) {
+        batch.fileDone(success);
+      }
+    }
+    myIdleCallback.run();
+  }
+
+  /**
+   * Downloads a file with a {@link FontFileDownloader}.
+   */
+  static void download(@NotNull FileRequest request) throws Exception {
+    FontFileDownloader downloader = new FontFileDownloader(
+      Collections.singletonList(DownloadableFileService.getInstance().createFileDescription(request.myUrl, request.myRelativePath)),
+      null, null, "Download Fonts");
+    downloader.download(request.myFontPath);
+  }
+
+  /**
+   * A font file to download into the font cache.
+   */
+  static final class FileRequest {
+    @NotNull final String myUrl;
+    @NotNull final File myFontPath;
+    @NotNull final String myRelativePath;
+    @NotNull final File myTarget;
+    /** The requests waiting for this file, guarded by the lock of the prefetcher */
+    private final List<Batch> myBatches = new ArrayList<>(1);
+
+    FileRequest(@NotNull String url, @NotNull File fontPath, @NotNull File relativeFile) {
+      myUrl = url;
+      myFontPath = fontPath;
+      myRelativePath = relativeFile.getPath();
+      myTarget = new File(fontPath, myRelativePath);
+    }
+  }
+
+  private static final class Batch {
+    @NotNull private final Consumer<Boolean> myDone;
+    private int myRemaining;
+    private boolean myFailed;
+
+    private Batch(int count, @NotNull Consumer<Boolean> done) {
+      myRemaining = count;
+      myDone = done;
+    }
+
+    private void fileDone(boolean success) {
+      boolean failed;
+      synchronized (this) {
+        myFailed |= !success;
+        if (--myRemaining > 0) {
+          return;
+        }
+        failed = myFailed;
+      }
+      myDone.accept(!failed);
+    }
+  }
+}
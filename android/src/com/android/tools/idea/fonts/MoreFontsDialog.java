@@ -139,6 +139,7 @@ public class MoreFontsDialog extends DialogWrapper {
     JScrollBar scrollBar = myFontListScrollPane.getVerticalScrollBar();
     scrollBar.setUnitIncrement(VERTICAL_SCROLLING_UNIT_INCREMENT);
     scrollBar.setBlockIncrement(VERTICAL_SCROLLING_BLOCK_INCREMENT);
+    myFontListScrollPane.getViewport().addChangeListener(event -> prioritizeVisibleFonts());
     myFontDetailList.setCellRenderer(new FontDetailRenderer());
     myFontDetailList.setModel(myDetailModel);
 
@@ -303,6 +304,25 @@ public class MoreFontsDialog extends DialogWrapper {
     return Result.OK;
   }
 
+  /**
+   * Downloads the menu fonts of the visible part of the font list before the rest of the list.
+   */
+  private void prioritizeVisibleFonts() {
+    int first = myFontList.getFirstVisibleIndex();
+    int last = myFontList.getLastVisibleIndex();
+    if (first < 0) {
+      return;
+    }
+    List<FontFamily> families = new ArrayList<>();
+    for (int index = first; index <= last && index < myModel.getSize(); index++) {
+      FontFamily family = myModel.getElementAt(index);
+      if (family.getFontSource() == FontSource.DOWNLOADABLE) {
+        families.add(family);
+      }
+    }
+    FontDownloadService.prioritizeMenuFonts(families);
+  }
+
   private void fontListSelectionChanged() {
     FontFamily family = myFontList.getSelectedValue();
     if (Objects.equals(family, myLastSelectedFont)) {
@@ -320,7 +340,7 @@ public class MoreFontsDialog extends DialogWrapper {
     else {
       myLicenseLabel.setVisible(family.getFontSource() == FontSource.DOWNLOADABLE);
       Runnable downloaded = () -> selectedFontLoaded(family);
-      FontDownloadService.download(Collections.singletonList(family), false, downloaded, downloaded);
+      FontDownloadService.download(Collections.singletonList(family), false, true, downloaded, downloaded);
       setOKActionEnabled(!myValidatorPanel.hasErrors().get());
     }
     myLastSelectedFont = family;
@@ -541,8 +561,7 @@ public class MoreFontsDialog extends DialogWrapper {
     private final List<FontFamily> myFilteredList;
     private Runnable myRepopulateListener;
     private String myFilter;
-    private int myFirstLoadedFontIndex;
-    private int myLoadedFontIndex;
+    private int myPendingDownloads;
 
     private FontListModel(@NotNull ResourceResolver resolver) {
       myFontService = DownloadableFontCacheService.getInstance();
@@ -551,8 +570,6 @@ public class MoreFontsDialog extends DialogWrapper {
       myFilteredList = new ArrayList<>();
       myFilter = "";
       populateModel();
-      myLoadedFontIndex = -1;
-      myFirstLoadedFontIndex = -1;
       myFontService.refresh(this::repopulateModel, null);
     }
 
@@ -605,12 +622,9 @@ public class MoreFontsDialog extends DialogWrapper {
 
     private void repopulateModelEDT() {
       ApplicationManager.getApplication().assertIsDispatchThread();
-      boolean startLoad;
-      startLoad = myLoadedFontIndex < 0;
       populateModel();
-      if (startLoad) {
-        myLoadedFontIndex = 0;
-        loadRemainingFonts();
+      if (myPendingDownloads == 0) {
+        loadMenuFonts();
       }
     }
 
@@ -642,24 +656,25 @@ public class MoreFontsDialog extends DialogWrapper {
       return myProjectFonts.getErrorMessage(family);
     }
 
-    private void loadRemainingFonts() {
+    /**
+     * Requests the menu fonts of all the downloadable families of the list, in batches so that the list is repainted as they are
+     * downloaded. The fonts visible in the list are moved ahead of the others by {@link MoreFontsDialog#prioritizeVisibleFonts}.
+     */
+    private void loadMenuFonts() {
       ApplicationManager.getApplication().assertIsDispatchThread();
-      List<FontFamily> fontsToDownload;
+      List<FontFamily> fontsToDownload = new ArrayList<>();
       int size = super.getSize();
-      if (myLoadedFontIndex >= size) {
-        myLoadedFontIndex = -1;
-        myFirstLoadedFontIndex = -1;
-        return; // Stop loading
-      }
-      fontsToDownload = new ArrayList<>();
-      myFirstLoadedFontIndex = myLoadedFontIndex;
-      while (myLoadedFontIndex < size && fontsToDownload.size() < DOWNLOAD_SIZE) {
-        FontFamily family = super.get(myLoadedFontIndex++);
+      for (int index = 0; index < size; index++) {
+        FontFamily family = super.get(index);
         if (family.getFontSource() == FontSource.DOWNLOADABLE) {
           fontsToDownload.add(family);
         }
+        if (fontsToDownload.size() == DOWNLOAD_SIZE || (index == size - 1 && !fontsToDownload.isEmpty())) {
+          myPendingDownloads++;
+          FontDownloadService.download(fontsToDownload, true, this::loadDone, this::loadDone);
+          fontsToDownload = new ArrayList<>();
+        }
       }
-      FontDownloadService.download(fontsToDownload, true, this::loadDone, this::loadDone);
     }
 
     private void loadDone() {
@@ -668,8 +683,8 @@ public class MoreFontsDialog extends DialogWrapper {
 
     private void loadDoneEDT() {
       ApplicationManager.getApplication().assertIsDispatchThread();
-      fireContentsChanged(this, myFirstLoadedFontIndex, myLoadedFontIndex);
-      loadRemainingFonts();
+      myPendingDownloads--;
+      fireContentsChanged(this, 0, getSize() - 1);
     }
   }
 
@@ -17,7 +17,6 @@ package com.android.tools.idea.gradle.dsl.model;
 
 import com.android.tools.idea.gradle.dsl.api.BuildScriptModel;
 import com.android.tools.idea.gradle.dsl.api.GradleBuildModel;
-import com.android.tools.idea.gradle.dsl.api.GradleSettingsModel;
 import com.android.tools.idea.gradle.dsl.api.android.AndroidModel;
 import com.android.tools.idea.gradle.dsl.api.dependencies.DependenciesModel;
 import com.android.tools.idea.gradle.dsl.api.ext.ExtModel;
@@ -42,6 +41,7 @@ import com.android.tools.idea.gradle.dsl.parser.elements.GradleDslExpressionMap;
 import com.android.tools.idea.gradle.dsl.parser.ext.ExtDslElement;
 import com.android.tools.idea.gradle.dsl.parser.files.GradleBuildFile;
 import com.android.tools.idea.gradle.dsl.parser.files.GradleDslFile;
+import com.android.tools.idea.gradle.dsl.parser.files.GradlePropertiesFile;
 import com.android.tools.idea.gradle.dsl.parser.java.JavaDslElement;
 import com.android.tools.idea.gradle.dsl.parser.repositories.RepositoriesDslElement;
 import com.android.tools.idea.gradle.plugin.AndroidPluginInfo;
@@ -65,7 +65,6 @@ import java.util.Set;
 import static com.android.SdkConstants.FN_GRADLE_PROPERTIES;
 import static com.android.tools.idea.Projects.getBaseDirPath;
 import static com.android.tools.idea.gradle.dsl.api.values.GradleValue.getValues;
-import static com.android.tools.idea.gradle.dsl.model.GradlePropertiesModel.parsePropertiesFile;
 import static com.android.tools.idea.gradle.dsl.parser.android.AndroidDslElement.ANDROID_BLOCK_NAME;
 import static com.android.tools.idea.gradle.dsl.parser.apply.ApplyDslElement.APPLY_BLOCK_NAME;
 import static com.android.tools.idea.gradle.dsl.parser.build.BuildScriptDslElement.BUILDSCRIPT_BLOCK_NAME;
@@ -110,54 +109,72 @@ public class GradleBuildModelImpl extends GradleFileModelImpl implements GradleB
     return new GradleBuildModelImpl(buildDslFile);
   }
 
-  private static void populateWithParentModuleSubProjectsProperties(@NotNull GradleBuildFile buildDslFile) {
-    GradleSettingsModel gradleSettingsModel = GradleSettingsModelImpl.get(buildDslFile.getProject());
-    if (gradleSettingsModel == null) {
-      return;
-    }
-
-    String modulePath = gradleSettingsModel.moduleWithDirectory(buildDslFile.getDirectoryPath());
-    if (modulePath == null) {
-      return;
+  /**
+   * Links the given build file to the build file of its parent module and copies the {@code subprojects} block of the parent into it.
+   *
+   * @return the shared parent module build file, or null if the module doesn't have a parent module
+   */
+  @Nullable
+  static GradleBuildFile populateWithParentModuleSubProjectsProperties(@NotNull GradleBuildFile buildDslFile) {
+    GradleDslModelCache cache = GradleDslModelCache.getInstance(buildDslFile.getProject());
+    // The shared parent file is only linked to its children while holding the cache lock
+    synchronized (cache) {
+      return populateWithParentModuleSubProjectsProperties(buildDslFile, cache);
     }
+  }
 
-    GradleBuildModel parentModuleModel = gradleSettingsModel.getParentModuleModel(modulePath);
-    if (parentModuleModel == null || !(parentModuleModel instanceof GradleBuildModelImpl)) {
-      return;
+  @Nullable
+  private static GradleBuildFile populateWithParentModuleSubProjectsProperties(@NotNull GradleBuildFile buildDslFile,
+                                                                              @NotNull GradleDslModelCache cache) {
+    GradleBuildFile sharedParentModuleDslFile = cache.getParentBuildFile(buildDslFile, cache.getSettingsModel());
+    if (sharedParentModuleDslFile == null) {
+      return null;
     }
 
-    GradleBuildModelImpl parentModuleModelImpl = (GradleBuildModelImpl)parentModuleModel;
-
-    GradleDslFile parentModuleDslFile = parentModuleModelImpl.myGradleDslFile;
-    buildDslFile.setParentModuleDslFile(parentModuleDslFile);
-
+    GradleDslFile parentModuleDslFile = sharedParentModuleDslFile;
     SubProjectsDslElement subProjectsDslElement =
       parentModuleDslFile.getPropertyElement(SUBPROJECTS_BLOCK_NAME, SubProjectsDslElement.class);
+    if (subProjectsDslElement != null) {
+      // The elements of the block are moved to this file below, so they can't come from the shared parent
+      parentModuleDslFile = cache.copyBuildFile(sharedParentModuleDslFile);
+      subProjectsDslElement = parentModuleDslFile.getPropertyElement(SUBPROJECTS_BLOCK_NAME, SubProjectsDslElement.class);
+    }
+    buildDslFile.setParentModuleDslFile(parentModuleDslFile);
     if (subProjectsDslElement == null) {
-      return;
+      return sharedParentModuleDslFile;
     }
 
     buildDslFile.setParsedElement(SUBPROJECTS_BLOCK_NAME, subProjectsDslElement);
     for (Map.Entry<String, GradleDslElement> entry : subProjectsDslElement.getPropertyElements().entrySet()) {
       buildDslFile.setParsedElement(entry.getKey(), entry.getValue());
     }
+    return sharedParentModuleDslFile;
   }
 
-  private static void populateSiblingDslFileWithGradlePropertiesFile(@NotNull GradleBuildFile buildDslFile) {
+  /**
+   * Links the given build file to the gradle.properties file next to it, if any.
+   *
+   * @return the cached properties of the gradle.properties file, or null if there isn't one
+   */
+  @Nullable
+  static GradleDslModelCache.PropertiesEntry populateSiblingDslFileWithGradlePropertiesFile(@NotNull GradleBuildFile buildDslFile) {
+    GradleDslModelCache.PropertiesEntry properties =
+      GradleDslModelCache.getInstance(buildDslFile.getProject()).getPropertiesEntry(buildDslFile.getDirectoryPath());
+    if (properties == null) {
+      return null;
+    }
+
     File propertiesFilePath = new File(buildDslFile.getDirectoryPath(), FN_GRADLE_PROPERTIES);
     VirtualFile propertiesFile = findFileByIoFile(propertiesFilePath, true);
     if (propertiesFile == null) {
-      return;
-    }
-
-    GradlePropertiesModel propertiesModel = parsePropertiesFile(propertiesFile, buildDslFile.getProject(), buildDslFile.getName());
-    if (propertiesModel == null) {
-      return;
+      return null;
     }
 
-    GradleDslFile propertiesDslFile = propertiesModel.myGradleDslFile;
+    GradleDslFile propertiesDslFile =
+      new GradlePropertiesFile(properties.myProperties, propertiesFile, buildDslFile.getProject(), buildDslFile.getName());
     buildDslFile.setSiblingDslFile(propertiesDslFile);
     propertiesDslFile.setSiblingDslFile(buildDslFile);
+    return properties;
   }
 
   private GradleBuildModelImpl(@NotNull GradleBuildFile buildDslFile) {
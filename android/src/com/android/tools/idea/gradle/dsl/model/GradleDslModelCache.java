@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.gradle.dsl.model;
+
+import com.android.tools.idea.gradle.dsl.parser.files.GradleBuildFile;
+import com.android.tools.idea.gradle.dsl.parser.files.GradleSettingsFile;
+import com.google.common.collect.Maps;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Properties;
+
+import static com.android.SdkConstants.FN_GRADLE_PROPERTIES;
+import static com.android.tools.idea.Projects.getBaseDirPath;
+import static com.android.tools.idea.gradle.util.GradleUtil.getGradleSettingsFile;
+import static com.android.tools.idea.util.PropertiesFiles.getProperties;
+import static com.intellij.openapi.vfs.VfsUtil.findFileByIoFile;
+
+/**
+ * Parsed settings, parent module build files and gradle.properties files of a project, shared by the build models of its modules.
+ * <p>
+ * Building the model of a module needs the settings file (to find the parent module) and the build files of all its parent modules (for
+ * their {@code subprojects} blocks and {@code ext} properties). Instead of parsing them again for every module, they are kept here along
+ * with the modification stamps of their PSI. An entry is parsed again when its file changes, or when one of the entries it was built from
+ * (the settings, its parent module or its gradle.properties) was parsed again, so a change only invalidates the files depending on it.
+ * <p>
+ * The files kept here are only read by the models built on top of them, and files with changes that haven't been applied yet are parsed
+ * again instead of being shared. The elements of a {@code subprojects} block are moved into the build files of the child modules, so a
+ * parent module with such a block is copied for every child instead of being shared.
+ */
+final class GradleDslModelCache {
+  private static final Logger LOG = Logger.getInstance(GradleDslModelCache.class);
+  private static final Key<GradleDslModelCache> KEY = Key.create(GradleDslModelCache.class.getName());
+
+  @NotNull private final Project myProject;
+  @Nullable private SettingsEntry mySettings;
+  @NotNull private final Map<VirtualFile, BuildFileEntry> myBuildFiles = Maps.newHashMap();
+  @NotNull private final Map<File, PropertiesEntry> myProperties = Maps.newHashMap();
+
+  @NotNull
+  static synchronized GradleDslModelCache getInstance(@NotNull Project project) {
+    GradleDslModelCache cache = project.getUserData(KEY);
+    if (cache == null) {
+      cache = new GradleDslModelCache(project);
+      project.putUserData(KEY, cache);
+    }
+    return cache;
+  }
+
+  private GradleDslModelCache(@NotNull Project project) {
+    myProject = project;
+  }
+
+  /**
+   * Returns the parsed settings file of the project, or null if the project doesn't have one. Must be called in a read action.
+   */
+  @Nullable
+  synchronized GradleSettingsModelImpl getSettingsModel() {
+    VirtualFile file = getGradleSettingsFile(getBaseDirPath(myProject));
+    if (file == null) {
+      mySettings = null;
+      return null;
+    }
+    PsiFile psiFile = findPsiFile(file);
+    long stamp = getStamp(file, psiFile);
+    if (mySettings == null || !mySettings.isUpToDate(file, psiFile, stamp)) {
+      GradleSettingsFile settingsFile = new GradleSettingsFile(file, myProject, "settings");
+      settingsFile.parse();
+      mySettings = new SettingsEntry(file, psiFile, stamp, new GradleSettingsModelImpl(settingsFile));
+    }
+    return mySettings.myModel;
+  }
+
+  /**
+   * Returns the parsed build file of the module at the given path, populated with the properties of its parent modules and its
+   * gradle.properties file. Must be called in a read action.
+   */
+  @NotNull
+  synchronized GradleBuildFile getBuildFile(@NotNull VirtualFile file, @NotNull String moduleName) {
+    PsiFile psiFile = findPsiFile(file);
+    long stamp = getStamp(file, psiFile);
+    BuildFileEntry entry = myBuildFiles.get(file);
+    if (entry != null && entry.isUpToDate(file, psiFile, stamp) && !entry.myBuildFile.isModified()) {
+      // The entries this one was built from may have changed since
+      GradleSettingsModelImpl settings = getSettingsModel();
+      if (settings == entry.mySettings && getParentBuildFile(entry.myBuildFile, settings) == entry.myParent &&
+          getPropertiesEntry(entry.myBuildFile.getDirectoryPath()) == entry.myProperties) {
+        return entry.myBuildFile;
+      }
+    }
+
+    GradleBuildFile buildFile = new GradleBuildFile(file, myProject, moduleName);
+    GradleBuildFile parent = GradleBuildModelImpl.populateWithParentModuleSubProjectsProperties(buildFile);
+    PropertiesEntry properties = GradleBuildModelImpl.populateSiblingDslFileWithGradlePropertiesFile(buildFile);
+    buildFile.parse();
+    myBuildFiles.put(file, new BuildFileEntry(file, psiFile, stamp, buildFile, mySettings != null ? mySettings.myModel : null, parent,
+                                              properties));
+    return buildFile;
+  }
+
+  /**
+   * Returns a new parsed copy of the given build file, populated with the (shared) properties of its parent modules and its
+   * gradle.properties file. Must be called in a read action.
+   */
+  @NotNull
+  synchronized GradleBuildFile copyBuildFile(@NotNull GradleBuildFile buildFile) {
+    GradleBuildFile copy = new GradleBuildFile(buildFile.getFile(), myProject, buildFile.getName());
+    GradleBuildModelImpl.populateWithParentModuleSubProjectsProperties(copy);
+    GradleBuildModelImpl.populateSiblingDslFileWithGradlePropertiesFile(copy);
+    copy.parse();
+    return copy;
+  }
+
+  /**
+   * Returns the parsed build file of the parent module of the module with the given build file, or null if the module doesn't have a
+   * parent module.
+   */
+  @Nullable
+  synchronized GradleBuildFile getParentBuildFile(@NotNull GradleBuildFile buildFile, @Nullable GradleSettingsModelImpl settings) {
+    if (settings == null) {
+      return null;
+    }
+    File directory = buildFile.getDirectoryPath();
+    String modulePath;
+    if (mySettings != null && mySettings.myModel == settings) {
+      // Looking up the module of a directory goes through all the modules of the settings
+      modulePath = mySettings.myModulePaths.computeIfAbsent(directory, settings::moduleWithDirectory);
+    }
+    else {
+      modulePath = settings.moduleWithDirectory(directory);
+    }
+    if (modulePath == null) {
+      return null;
+    }
+    String parentModulePath = settings.parentModule(modulePath);
+    if (parentModulePath == null) {
+      return null;
+    }
+    File parentBuildFilePath = settings.buildFile(parentModulePath);
+    VirtualFile parentBuildFile = parentBuildFilePath != null ? findFileByIoFile(parentBuildFilePath, true) : null;
+    if (parentBuildFile == null) {
+      return null;
+    }
+    return getBuildFile(parentBuildFile, parentModulePath.substring(parentModulePath.lastIndexOf(':') + 1));
+  }
+
+  /**
+   * Returns the properties of the gradle.properties file in the given directory, or null if there isn't one.
+   */
+  @Nullable
+  synchronized PropertiesEntry getPropertiesEntry(@NotNull File directory) {
+    File file = new File(directory, FN_GRADLE_PROPERTIES);
+    // gradle.properties files are read from disk, so their stamp is the one of the file on disk
+    long lastModified = file.lastModified();
+    long length = file.length();
+    PropertiesEntry entry = myProperties.get(file);
+    if (entry != null && entry.myLastModified == lastModified && entry.myLength == length) {
+      return entry;
+    }
+    if (lastModified == 0) {
+      myProperties.remove(file);
+      return null;
+    }
+    try {
+      entry = new PropertiesEntry(getProperties(file), lastModified, length);
+    }
+    catch (IOException e) {
+      LOG.warn("Failed to process " + file.getPath(), e);
+      entry = null;
+    }
+    if (entry != null) {
+      myProperties.put(file, entry);
+    }
+    else {
+      myProperties.remove(file);
+    }
+    return entry;
+  }
+
+  @Nullable
+  private PsiFile findPsiFile(@NotNull VirtualFile file) {
+    return file.isValid() ? PsiManager.getInstance(myProject).findFile(file) : null;
+  }
+
+  private static long getStamp(@NotNull VirtualFile file, @Nullable PsiFile psiFile) {
+    return psiFile != null ? psiFile.getModificationStamp() : file.getModificationStamp();
+  }
+
+  private static class FileEntry {
+    @NotNull final VirtualFile myFile;
+    @Nullable final PsiFile myPsiFile;
+    final long myStamp;
+
+    FileEntry(@NotNull VirtualFile file, @Nullable PsiFile psiFile, long stamp) {
+      myFile = file;
+      myPsiFile = psiFile;
+      myStamp = stamp;
+    }
+
+    boolean isUpToDate(@NotNull VirtualFile file, @Nullable PsiFile psiFile, long stamp) {
+      return myFile.equals(file) && myPsiFile == psiFile && myStamp == stamp && (psiFile == null || psiFile.isValid());
+    }
+  }
+
+  private static class SettingsEntry extends FileEntry {
+    @NotNull final GradleSettingsModelImpl myModel;
+    @NotNull final Map<File, String> myModulePaths = Maps.newHashMap();
+
+    SettingsEntry(@NotNull VirtualFile file, @Nullable PsiFile psiFile, long stamp, @NotNull GradleSettingsModelImpl model) {
+      super(file, psiFile, stamp);
+      myModel = model;
+    }
+  }
+
+  private static class BuildFileEntry extends FileEntry {
+    @NotNull final GradleBuildFile myBuildFile;
+    @Nullable final GradleSettingsModelImpl mySettings;
+    @Nullable final GradleBuildFile myParent;
+    @Nullable final PropertiesEntry myProperties;
+
+    BuildFileEntry(@NotNull VirtualFile file,
+                   @Nullable PsiFile psiFile,
+                   long stamp,
+                   @NotNull GradleBuildFile buildFile,
+                   @Nullable GradleSettingsModelImpl settings,
+                   @Nullable GradleBuildFile parent,
+                   @Nullable PropertiesEntry properties) {
+      super(file, psiFile, stamp);
+      myBuildFile = buildFile;
+      mySettings = settings;
+      myParent = parent;
+      myProperties = properties;
+    }
+  }
+
+  static class PropertiesEntry {
+    @NotNull final Properties myProperties;
+    final long myLastModified;
+    final long myLength;
+
+    PropertiesEntry(@NotNull Properties properties, long lastModified, long length) {
+      myProperties = properties;
+      myLastModified = lastModified;
+      myLength = length;
+    }
+  }
+}
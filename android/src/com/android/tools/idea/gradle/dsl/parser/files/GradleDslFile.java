@@ -107,6 +107,8 @@ public abstract class GradleDslFile extends GradlePropertiesDslElement {
 
   public void setParentModuleDslFile(@NotNull GradleDslFile parentModuleDslFile) {
     myParentModuleDslFile = parentModuleDslFile;
+    // Parent module files can be shared by several models of the same module, only the latest one is kept
+    myParentModuleDslFile.myChildModuleDslFiles.removeIf(child -> child.getFile().equals(myFile));
     myParentModuleDslFile.myChildModuleDslFiles.add(this);
   }
 
@@ -15,6 +15,7 @@
  */
 package com.android.tools.idea.gradle.project.build;
 
+import com.android.ide.common.blame.Message;
 import com.android.tools.idea.gradle.project.build.invoker.GradleBuildInvoker;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -24,6 +25,11 @@ public interface GradleBuildListener {
 
   void buildStarted(@NotNull BuildContext context);
 
+  /**
+   * Called for every message parsed from the build output while the build is running.
+   */
+  void buildMessageParsed(@NotNull Message message);
+
   void buildFinished(@NotNull BuildStatus status, @Nullable BuildContext context);
 
   abstract class Adapter implements GradleBuildListener {
@@ -35,6 +41,10 @@ public interface GradleBuildListener {
     public void buildStarted(@NotNull BuildContext context) {
     }
 
+    @Override
+    public void buildMessageParsed(@NotNull Message message) {
+    }
+
     @Override
     public void buildFinished(@NotNull BuildStatus status, @Nullable BuildContext context) {
     }
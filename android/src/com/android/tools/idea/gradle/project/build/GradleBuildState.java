@@ -15,6 +15,7 @@
  */
 package com.android.tools.idea.gradle.project.build;
 
+import com.android.ide.common.blame.Message;
 import com.android.tools.idea.gradle.project.build.invoker.GradleBuildInvoker;
 import com.android.tools.idea.project.IndexingSuspender;
 import com.google.common.annotations.VisibleForTesting;
@@ -88,6 +89,10 @@ public class GradleBuildState {
     syncPublisher(listener -> listener.buildStarted(context));
   }
 
+  public void buildMessageParsed(@NotNull Message message) {
+    syncPublisher(listener -> listener.buildMessageParsed(message));
+  }
+
   public void buildFinished(@NotNull BuildStatus status) {
     BuildContext context;
     synchronized (myLock) {
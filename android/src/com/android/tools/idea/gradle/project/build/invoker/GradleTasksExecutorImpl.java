@@ -18,10 +18,13 @@ package com.android.tools.idea.gradle.project.build.invoker;
 import com.android.builder.model.AndroidProject;
 import com.android.ide.common.blame.Message;
 import com.android.ide.common.blame.SourceFilePosition;
+import com.android.ide.common.blame.parser.PatternAwareOutputParser;
 import com.android.tools.idea.IdeInfo;
 import com.android.tools.idea.fd.FlightRecorder;
 import com.android.tools.idea.fd.InstantRunBuildProgressListener;
 import com.android.tools.idea.fd.InstantRunSettings;
+import com.android.tools.idea.gradle.output.parser.BuildOutputParser;
+import com.android.tools.idea.gradle.output.parser.StreamingBuildOutputParser;
 import com.android.tools.idea.gradle.project.BuildSettings;
 import com.android.tools.idea.gradle.project.build.BuildContext;
 import com.android.tools.idea.gradle.project.build.GradleBuildState;
@@ -62,6 +65,7 @@ import org.gradle.tooling.*;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jps.service.JpsServiceManager;
 import org.jetbrains.plugins.gradle.service.execution.GradleExecutionHelper;
 import org.jetbrains.plugins.gradle.service.project.GradleProjectResolver;
 import org.jetbrains.plugins.gradle.service.project.GradleProjectResolverExtension;
@@ -195,7 +199,14 @@ class GradleTasksExecutorImpl extends GradleTasksExecutor {
       String executingTasksText = "Executing tasks: " + gradleTasks;
       addToEventLog(executingTasksText, INFO);
 
+      BuildMode buildMode = BuildSettings.getInstance(myProject).getBuildMode();
+      GradleBuildState buildState = GradleBuildState.getInstance(myProject);
+
+      // Only the Instant Run flight recorder needs the whole output, the build messages are parsed and published while the
+      // output arrives
+      boolean recordOutput = InstantRunSettings.isInstantRunEnabled() && InstantRunSettings.isRecorderEnabled();
       StringBuilder output = new StringBuilder();
+      StreamingBuildOutputParser outputParser = createBuildOutputParser().createStreamingParser(true, buildState::buildMessageParsed);
 
       Throwable buildError = null;
       InstantRunBuildProgressListener instantRunProgressListener = null;
@@ -208,8 +219,6 @@ class GradleTasksExecutorImpl extends GradleTasksExecutor {
         taskListener.onTaskOutput(id, executingTasksText + SystemProperties.getLineSeparator() + SystemProperties.getLineSeparator(), true);
       }
 
-      BuildMode buildMode = BuildSettings.getInstance(myProject).getBuildMode();
-      GradleBuildState buildState = GradleBuildState.getInstance(myProject);
       buildState.buildStarted(new BuildContext(project, gradleTasks, buildMode));
 
       try {
@@ -271,7 +280,10 @@ class GradleTasksExecutorImpl extends GradleTasksExecutor {
 
           @Override
           public void onTaskOutput(@NotNull ExternalSystemTaskId id, @NotNull String text, boolean stdOut) {
-            output.append(text);
+            if (recordOutput) {
+              output.append(text);
+            }
+            outputParser.append(text);
             if (taskListener != null) {
               if (myBuildStopper.contains(id)) {
                 taskListener.onTaskOutput(id, text, stdOut);
@@ -341,6 +353,7 @@ class GradleTasksExecutorImpl extends GradleTasksExecutor {
         }
 
         myBuildStopper.remove(id);
+        outputParser.close();
         String gradleOutput = output.toString();
         if (instantRunProgressListener != null) {
           FlightRecorder.get(myProject).saveBuildOutput(gradleOutput, instantRunProgressListener);
@@ -392,6 +405,11 @@ class GradleTasksExecutorImpl extends GradleTasksExecutor {
     myHelper.execute(myRequest.getBuildFilePath().getPath(), executionSettings, executeTasksFunction);
   }
 
+  @NotNull
+  private static BuildOutputParser createBuildOutputParser() {
+    return new BuildOutputParser(JpsServiceManager.getInstance().getExtensions(PatternAwareOutputParser.class));
+  }
+
   private static boolean wasBuildCanceled(@NotNull Throwable buildError) {
     return hasCause(buildError, BuildCancelledException.class);
   }
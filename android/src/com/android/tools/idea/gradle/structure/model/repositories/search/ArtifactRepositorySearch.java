@@ -32,6 +32,12 @@ public class ArtifactRepositorySearch {
 
   public ArtifactRepositorySearch(@NotNull List<ArtifactRepository> repositories) {
     myRepositories = repositories;
+    for (ArtifactRepository repository : repositories) {
+      if (repository instanceof LocalMavenRepository) {
+        // Local repositories are searched through an index, which takes a while to build the first time
+        ((LocalMavenRepository)repository).startIndexing();
+      }
+    }
   }
 
   @NotNull
@@ -0,0 +1,356 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.gradle.structure.model.repositories.search;
+
+import com.android.annotations.VisibleForTesting;
+import com.android.ide.common.repository.GradleVersion;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.psi.codeStyle.MinusculeMatcher;
+import com.intellij.psi.codeStyle.NameUtil;
+import org.jdom.Element;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.intellij.openapi.util.JDOMUtil.loadDocument;
+import static com.intellij.openapi.util.io.FileUtil.notNullize;
+import static java.nio.file.FileVisitResult.CONTINUE;
+import static java.nio.file.FileVisitResult.SKIP_SUBTREE;
+import static java.nio.file.Files.walkFileTree;
+
+/**
+ * Index of the artifacts of a local Maven repository, shared by all the {@link LocalMavenRepository} instances with the same root.
+ * <p>
+ * The repository is walked once, reading the {@code maven-metadata.xml} file and listing the versions of every artifact. Searches are
+ * then answered from the index. The modification times of the directories of the repository are kept with the index and checked in the
+ * background, at most once every {@link #VALIDATION_INTERVAL_MS}, when the index is searched. Only the directories that changed are
+ * walked again.
+ * <p>
+ * The index is an immutable {@link Snapshot}: validations build a new one next to it and swap it in, so searches never wait for them.
+ * The index only lives for the IDE session.
+ */
+final class LocalMavenRepositoryIndex {
+  private static final Logger LOG = Logger.getInstance(LocalMavenRepositoryIndex.class);
+  private static final String MAVEN_METADATA_FILE_NAME = "maven-metadata.xml";
+
+  @VisibleForTesting
+  static final long VALIDATION_INTERVAL_MS = 2000;
+
+  private static final Map<Path, LocalMavenRepositoryIndex> ourIndexes = new ConcurrentHashMap<>();
+
+  @NotNull private final Path myRoot;
+  /** Serializes the first build of the index and the swapping in of new snapshots */
+  @NotNull private final Object myLock = new Object();
+
+  private volatile boolean myBuilt;
+  @NotNull private volatile Snapshot mySnapshot = Snapshot.EMPTY;
+  private volatile long myLastValidation;
+  @NotNull private final AtomicBoolean myValidating = new AtomicBoolean();
+
+  @NotNull
+  static LocalMavenRepositoryIndex getInstance(@NotNull Path root) {
+    return ourIndexes.computeIfAbsent(root.toAbsolutePath().normalize(), LocalMavenRepositoryIndex::new);
+  }
+
+  private LocalMavenRepositoryIndex(@NotNull Path root) {
+    myRoot = root;
+  }
+
+  /**
+   * Builds the index on a pooled thread, unless it is already built.
+   */
+  void buildInBackground() {
+    if (!myBuilt) {
+      ApplicationManager.getApplication().executeOnPooledThread(this::ensureBuilt);
+    }
+  }
+
+  /**
+   * Returns the artifacts matching the given request. The first search of a repository waits for the index to be built; later searches
+   * use the index as is, and schedule its validation.
+   */
+  @NotNull
+  List<FoundArtifact> search(@NotNull String repositoryName, @NotNull SearchRequest request) {
+    ensureBuilt();
+    List<IndexedArtifact> artifacts = mySnapshot.list;
+    if (System.currentTimeMillis() - myLastValidation > VALIDATION_INTERVAL_MS && myValidating.compareAndSet(false, true)) {
+      ApplicationManager.getApplication().executeOnPooledThread(() -> {
+        try {
+          validate();
+        }
+        finally {
+          myValidating.set(false);
+        }
+      });
+    }
+
+    String groupId = request.getGroupId() != null ? request.getGroupId() : "";
+    String artifactName = request.getArtifactName();
+    List<FoundArtifact> found = Lists.newArrayList();
+    for (IndexedArtifact artifact : artifacts) {
+      if (artifact.groupId.contains(groupId) && artifact.artifactName.contains(artifactName)) {
+        found.add(artifact.toFoundArtifact(repositoryName));
+      }
+    }
+    if (found.isEmpty() && !artifactName.isEmpty()) {
+      // Nothing contains the typed text; look for artifacts matching it as an abbreviation (e.g. "appcompatv7" for "appcompat-v7")
+      MinusculeMatcher matcher = NameUtil.buildMatcher("*" + artifactName, NameUtil.MatchingCaseSensitivity.NONE);
+      for (IndexedArtifact artifact : artifacts) {
+        if (artifact.groupId.contains(groupId) && matcher.matches(artifact.artifactName)) {
+          found.add(artifact.toFoundArtifact(repositoryName));
+        }
+      }
+    }
+    return found;
+  }
+
+  private void ensureBuilt() {
+    if (myBuilt) {
+      return;
+    }
+    synchronized (myLock) {
+      if (!myBuilt) {
+        build();
+      }
+    }
+  }
+
+  private void build() {
+    long start = System.currentTimeMillis();
+    Map<Path, IndexedArtifact> artifacts = Maps.newTreeMap();
+    Map<Path, Long> directories = Maps.newHashMap();
+    scan(myRoot, Collections.emptyMap(), artifacts, directories);
+    mySnapshot = new Snapshot(artifacts, directories);
+    myLastValidation = System.currentTimeMillis();
+    myBuilt = true;
+    LOG.info(String.format("Indexed %1$d artifacts of local repository '%2$s' in %3$d ms", artifacts.size(), myRoot,
+                           myLastValidation - start));
+  }
+
+  /**
+   * Walks again the directories that changed since the index was built or last validated. The updated index is built without holding
+   * {@link #myLock}, and then swapped in.
+   */
+  @VisibleForTesting
+  void validate() {
+    if (!myBuilt) {
+      return;
+    }
+    Snapshot base = mySnapshot;
+    Map<Path, IndexedArtifact> artifacts = Maps.newTreeMap();
+    artifacts.putAll(base.artifacts);
+    Map<Path, Long> directories = Maps.newHashMap(base.directories);
+
+    // Check the artifacts first, since walking again a directory may replace some of them
+    for (IndexedArtifact artifact : base.list) {
+      File directory = artifact.directory.toFile();
+      if (!directory.isDirectory()) {
+        artifacts.remove(artifact.directory);
+      }
+      else if (!artifact.isUpToDate() && artifacts.containsKey(artifact.directory)) {
+        IndexedArtifact updated = IndexedArtifact.read(artifact.directory);
+        if (updated != null) {
+          artifacts.put(artifact.directory, updated);
+        }
+        else {
+          // Not an artifact directory anymore
+          rescan(artifact.directory, artifacts, directories);
+        }
+      }
+    }
+    List<Path> changed = Lists.newArrayList();
+    for (Map.Entry<Path, Long> entry : directories.entrySet()) {
+      if (entry.getKey().toFile().lastModified() != entry.getValue()) {
+        changed.add(entry.getKey());
+      }
+    }
+    // Walking a directory also walks its subdirectories, so the changed directories are sorted with the parents first
+    changed.sort(Comparator.naturalOrder());
+    for (Path directory : changed) {
+      if (directories.containsKey(directory) && directory.toFile().lastModified() != directories.get(directory)) {
+        rescan(directory, artifacts, directories);
+      }
+    }
+
+    synchronized (myLock) {
+      // Another validation may have swapped in a snapshot in the meantime, which is as recent as this one
+      if (mySnapshot == base) {
+        mySnapshot = new Snapshot(artifacts, directories);
+      }
+      myLastValidation = System.currentTimeMillis();
+    }
+  }
+
+  /**
+   * Walks again the given directory, reusing the artifacts under it that didn't change.
+   */
+  private static void rescan(@NotNull Path directory, @NotNull Map<Path, IndexedArtifact> artifacts, @NotNull Map<Path, Long> directories) {
+    Map<Path, IndexedArtifact> previous = Maps.newHashMap();
+    artifacts.entrySet().removeIf(entry -> {
+      if (entry.getKey().startsWith(directory)) {
+        previous.put(entry.getKey(), entry.getValue());
+        return true;
+      }
+      return false;
+    });
+    directories.keySet().removeIf(path -> path.startsWith(directory));
+    if (directory.toFile().isDirectory()) {
+      scan(directory, previous, artifacts, directories);
+    }
+  }
+
+  private static void scan(@NotNull Path directory,
+                           @NotNull Map<Path, IndexedArtifact> previous,
+                           @NotNull Map<Path, IndexedArtifact> artifacts,
+                           @NotNull Map<Path, Long> directories) {
+    try {
+      walkFileTree(directory, new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+          if (new File(dir.toFile(), MAVEN_METADATA_FILE_NAME).isFile()) {
+            IndexedArtifact artifact = previous.get(dir);
+            if (artifact == null || !artifact.isUpToDate()) {
+              artifact = IndexedArtifact.read(dir);
+            }
+            if (artifact != null) {
+              artifacts.put(dir, artifact);
+            }
+            else {
+              // Walked again if its metadata is replaced
+              directories.put(dir, dir.toFile().lastModified());
+            }
+            return SKIP_SUBTREE;
+          }
+          directories.put(dir, dir.toFile().lastModified());
+          return CONTINUE;
+        }
+      });
+    }
+    catch (Throwable e) {
+      String msg = String.format("Failed to index local repository '%1$s'", directory);
+      LOG.warn(msg, e);
+    }
+  }
+
+  @VisibleForTesting
+  static void clear() {
+    ourIndexes.clear();
+  }
+
+  /**
+   * An immutable state of the index.
+   */
+  private static final class Snapshot {
+    static final Snapshot EMPTY = new Snapshot(Collections.emptyMap(), Collections.emptyMap());
+
+    /** Artifacts by directory */
+    @NotNull final Map<Path, IndexedArtifact> artifacts;
+    /** Modification times of the directories that are not artifact directories */
+    @NotNull final Map<Path, Long> directories;
+    /** The artifacts, in the order of their directories */
+    @NotNull final List<IndexedArtifact> list;
+
+    Snapshot(@NotNull Map<Path, IndexedArtifact> artifacts, @NotNull Map<Path, Long> directories) {
+      this.artifacts = ImmutableMap.copyOf(artifacts);
+      this.directories = ImmutableMap.copyOf(directories);
+      this.list = ImmutableList.copyOf(artifacts.values());
+    }
+  }
+
+  private static final class IndexedArtifact {
+    @NotNull final Path directory;
+    @NotNull final String groupId;
+    @NotNull final String artifactName;
+    @NotNull final List<GradleVersion> versions;
+    final long directoryStamp;
+    final long metadataStamp;
+
+    IndexedArtifact(@NotNull Path directory,
+                    @NotNull String groupId,
+                    @NotNull String artifactName,
+                    @NotNull List<GradleVersion> versions,
+                    long directoryStamp,
+                    long metadataStamp) {
+      this.directory = directory;
+      this.groupId = groupId;
+      this.artifactName = artifactName;
+      this.versions = versions;
+      this.directoryStamp = directoryStamp;
+      this.metadataStamp = metadataStamp;
+    }
+
+    /**
+     * Reads the artifact in the given directory, or returns null if the directory doesn't have a valid {@code maven-metadata.xml} file.
+     */
+    @Nullable
+    static IndexedArtifact read(@NotNull Path directory) {
+      File parent = directory.toFile();
+      File mavenMetadataFile = new File(parent, MAVEN_METADATA_FILE_NAME);
+      // Read the stamps first, so that a change made while reading the artifact is picked up by the next validation
+      long directoryStamp = parent.lastModified();
+      long metadataStamp = mavenMetadataFile.lastModified();
+      try {
+        Element rootElement = loadDocument(mavenMetadataFile).getRootElement();
+        if (rootElement == null) {
+          return null;
+        }
+        Element groupIdElement = rootElement.getChild("groupId");
+        Element artifactIdElement = rootElement.getChild("artifactId");
+        if (groupIdElement == null || artifactIdElement == null) {
+          return null;
+        }
+
+        List<GradleVersion> versions = Lists.newArrayList();
+        for (File child : notNullize(parent.listFiles())) {
+          if (child.isDirectory()) {
+            versions.add(GradleVersion.parse(child.getName()));
+          }
+        }
+        return new IndexedArtifact(directory, groupIdElement.getValue(), artifactIdElement.getValue(), ImmutableList.copyOf(versions),
+                                   directoryStamp, metadataStamp);
+      }
+      catch (Throwable e) {
+        String msg = String.format("Failed to parse '%1$s'", mavenMetadataFile.getPath());
+        LOG.warn(msg, e);
+      }
+      return null;
+    }
+
+    boolean isUpToDate() {
+      File parent = directory.toFile();
+      return parent.lastModified() == directoryStamp && new File(parent, MAVEN_METADATA_FILE_NAME).lastModified() == metadataStamp;
+    }
+
+    @NotNull
+    FoundArtifact toFoundArtifact(@NotNull String repositoryName) {
+      return new FoundArtifact(repositoryName, groupId, artifactName, versions);
+    }
+  }
+}
@@ -153,6 +153,35 @@ public class LintIdeProject extends Project {
     return Pair.create(project, main);
   }
 
+  /**
+   * Creates a main project for a project that is analyzed on its own although it is a library: a project for an Android
+   * module depending on it, preferring app modules. This way lint sees the same min SDK and manifest for the library
+   * as when it is analyzed as part of the application.
+   *
+   * @param client the lint client
+   * @param project the project being analyzed
+   * @param module the module of the project
+   * @return the main project, or null if the project is an application or no Android module depends on it
+   */
+  @Nullable
+  public static Project createMainProject(@NonNull LintIdeClient client, @NonNull Project project, @NonNull Module module) {
+    if (project.isAndroidProject() && !project.isLibrary()) {
+      return null;
+    }
+    Module androidModule = findAndroidModule(module);
+    if (androidModule == null) {
+      return null;
+    }
+    LintModuleProject main = createModuleProject(client, androidModule);
+    if (main != null) {
+      main.setDirectLibraries(Collections.singletonList(project));
+      if (client.myModuleMap != null) {
+        client.myModuleMap.put(main, androidModule);
+      }
+    }
+    return main;
+  }
+
   /** Find an Android module that depends on this module; prefer app modules over library modules */
   @Nullable
   private static Module findAndroidModule(@NonNull final Module module) {
@@ -36,6 +36,7 @@ public class LintIdeRequest extends LintRequest {
   @Nullable private final List<VirtualFile> myFileList;
   @Nullable private com.android.tools.lint.detector.api.Project myMainProject;
   private final boolean myIncremental;
+  private boolean myCheckAsDependency;
 
   /**
    * Creates a new {@linkplain LintIdeRequest}.
@@ -63,6 +64,15 @@ public class LintIdeRequest extends LintRequest {
     return myProject;
   }
 
+  /**
+   * When checking a single library module on its own, makes lint use an application module depending on it as the
+   * main project, so that checks which look at the main project (such as the min SDK) see the same values as when
+   * the library is checked as part of that application.
+   */
+  public void setCheckAsDependency(boolean checkAsDependency) {
+    myCheckAsDependency = checkAsDependency;
+  }
+
   @Nullable
   @Override
   public EnumSet<Scope> getScope() {
@@ -101,6 +111,9 @@ public class LintIdeRequest extends LintRequest {
         // and add projects for the gradle libraries and set error reporting to
         // false on those
         projects = LintIdeProject.create(mLintClient, myFileList, myModules.toArray(new Module[myModules.size()]));
+        if (myCheckAsDependency && myModules.size() == 1 && projects.size() == 1) {
+          myMainProject = LintIdeProject.createMainProject(mLintClient, projects.iterator().next(), myModules.get(0));
+        }
       } else {
         projects = super.getProjects();
       }
@@ -17,6 +17,7 @@ package com.android.tools.idea.npw.assetstudio;
 
 import com.android.SdkConstants;
 import com.android.annotations.NonNull;
+import com.android.annotations.VisibleForTesting;
 import com.android.ide.common.internal.WaitableExecutor;
 import com.android.ide.common.util.AssetUtil;
 import com.android.resources.Density;
@@ -53,6 +54,7 @@ import java.util.List;
 import java.util.*;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 
 import static com.android.tools.idea.npw.assetstudio.AssetStudioUtils.*;
 
@@ -73,6 +75,11 @@ public class LauncherIconGenerator extends IconGenerator {
   private static final Rectangle IMAGE_SIZE_VIEW_PORT_WEB_PX = new Rectangle(0, 0, 512, 512);
   private static final Rectangle IMAGE_SIZE_FULL_BLEED_WEB_PX = new Rectangle(0, 0, 768, 768);
   private static final Density[] DENSITIES = { Density.MEDIUM, Density.HIGH, Density.XHIGH, Density.XXHIGH, Density.XXXHIGH };
+  /**
+   * Size of the image cache, large enough to keep the layers of all the densities along with the preview images, so that changing an
+   * option only renders the layers depending on it again.
+   */
+  private static final int IMAGE_CACHE_SIZE = 120;
 
   private final BoolProperty myUseForegroundColor = new BoolValueProperty(true);
   private final ObjectProperty<Color> myForegroundColor = new ObjectValueProperty<>(DEFAULT_FOREGROUND_COLOR);
@@ -99,7 +106,7 @@ public class LauncherIconGenerator extends IconGenerator {
    * @param minSdkVersion the minimal supported Android SDK version
    */
   public LauncherIconGenerator(@NotNull AndroidFacet facet, int minSdkVersion) {
-    super(minSdkVersion, new GraphicGeneratorContext(40, new DrawableRenderer(facet)));
+    super(minSdkVersion, new GraphicGeneratorContext(IMAGE_CACHE_SIZE, new DrawableRenderer(facet)));
     Project project = facet.getModule().getProject();
     myLineSeparator = CodeStyleSettingsManager.getSettings(project).getLineSeparator();
     myApiLookup = new AtomicNullableLazyValue<ApiLookup>() {
@@ -257,8 +264,22 @@ public class LauncherIconGenerator extends IconGenerator {
   @Override
   @NotNull
   public Collection<GeneratedIcon> generateIcons(@NotNull GraphicGeneratorContext context, @NotNull Options options, @NotNull String name) {
+    return generateIcons(context, options, name, null);
+  }
+
+  /**
+   * Generates the icons like {@link #generateIcons(GraphicGeneratorContext, Options, String)}, handing the preview images to
+   * {@code previewConsumer} as soon as they are done, without waiting for the output icons.
+   */
+  @NotNull
+  public Collection<GeneratedIcon> generateIcons(@NotNull GraphicGeneratorContext context, @NotNull Options options, @NotNull String name,
+                                                 @Nullable Consumer<Collection<GeneratedIcon>> previewConsumer) {
     LauncherIconOptions launcherIconOptions = (LauncherIconOptions)options;
 
+    // Generate tasks for preview images. They are queued first so that the preview does not wait for the output icons.
+    List<Callable<GeneratedIcon>> previewTasks = new ArrayList<>();
+    createPreviewImagesTasks(context, launcherIconOptions, previewTasks);
+
     List<Callable<GeneratedIcon>> tasks = new ArrayList<>();
 
     // Generate tasks for icons (background, foreground, legacy) in all densities.
@@ -267,15 +288,19 @@ public class LauncherIconGenerator extends IconGenerator {
     // Generate tasks for drawable xml resource
     createXmlDrawableResourcesTasks(name, launcherIconOptions, tasks);
 
-    // Generate tasks for preview images
-    createPreviewImagesTasks(context, launcherIconOptions, tasks);
-
     // Execute tasks in parallel and wait for results
+    WaitableExecutor previewExecutor = WaitableExecutor.useGlobalSharedThreadPool();
+    previewTasks.forEach(previewExecutor::execute);
     WaitableExecutor executor = WaitableExecutor.useGlobalSharedThreadPool();
     tasks.forEach(executor::execute);
 
     try {
-      return executor.waitForTasksWithQuickFail(true);
+      List<GeneratedIcon> icons = new ArrayList<>(previewExecutor.waitForTasksWithQuickFail(true));
+      if (previewConsumer != null && !icons.isEmpty()) {
+        previewConsumer.accept(Collections.unmodifiableList(new ArrayList<>(icons)));
+      }
+      icons.addAll(executor.waitForTasksWithQuickFail(true));
+      return icons;
     } catch (InterruptedException e) {
       throw new RuntimeException(e);
     }
@@ -287,7 +312,7 @@ public class LauncherIconGenerator extends IconGenerator {
       return;
     }
 
-    for (Density density : DENSITIES) {
+    for (Density density : getDensitiesInGenerationOrder(options.previewDensity)) {
       LauncherIconOptions localOptions = options.clone();
       localOptions.density = density;
       localOptions.showGrid = false;
@@ -315,6 +340,18 @@ public class LauncherIconGenerator extends IconGenerator {
     }
   }
 
+  /**
+   * Returns the densities to generate icons for, starting with the preview density since its layers are usually cached already.
+   */
+  @NotNull
+  private static List<Density> getDensitiesInGenerationOrder(@Nullable Density previewDensity) {
+    List<Density> densities = new ArrayList<>(Arrays.asList(DENSITIES));
+    if (previewDensity != null && densities.remove(previewDensity)) {
+      densities.add(0, previewDensity);
+    }
+    return densities;
+  }
+
   private void createOutputIconsForSingleDensityTasks(@NotNull GraphicGeneratorContext context, @NotNull String name,
                                                       @NotNull LauncherIconOptions options, @NotNull Density density,
                                                       @NotNull List<Callable<GeneratedIcon>> tasks) {
@@ -684,7 +721,7 @@ public class LauncherIconGenerator extends IconGenerator {
 
     // Generate full bleed and viewport images.
     Layers layers = generateIconLayers(context, options);
-    BufferedImage fullBleed = mergeLayers(layers);
+    BufferedImage fullBleed = mergeLayers(context, layers);
 
     // Scale the "Full Bleed" icon so that it is contained in the "Legacy" shape rectangle.
     //
@@ -790,7 +827,7 @@ public class LauncherIconGenerator extends IconGenerator {
   @NotNull
   private static BufferedImage generateViewportPreviewImage(@NotNull GraphicGeneratorContext context, @NotNull LauncherIconOptions options) {
     Layers layers = generateIconLayers(context, options);
-    BufferedImage result = mergeLayers(layers);
+    BufferedImage result = mergeLayers(context, layers);
     BufferedImage mask = generateMaskLayer(context, options, options.previewShape);
     result = cropImageToViewport(options, result);
     result = applyMask(result, mask);
@@ -818,9 +855,14 @@ public class LauncherIconGenerator extends IconGenerator {
     return viewportImage;
   }
 
+  /**
+   * Merges the given layers. The merged image is cached, so that the icons and preview images of a density share it, and it must not be
+   * modified.
+   */
   @NotNull
-  private static BufferedImage mergeLayers(@NotNull Layers layers) {
-    return mergeLayers(layers, null);
+  private static BufferedImage mergeLayers(@NotNull GraphicGeneratorContext context, @NotNull Layers layers) {
+    ImageKey key = new ImageKey("merged", layers.background, layers.foreground);
+    return Futures.getUnchecked(context.getFromCacheOrCreate(key, () -> Futures.immediateFuture(mergeLayers(layers, null))));
   }
 
   @NotNull
@@ -926,8 +968,11 @@ public class LauncherIconGenerator extends IconGenerator {
       return generateIconLayer(context, options.backgroundImage, imageRect, false, 0, !options.generateOutputIcons);
     }
 
+    // The rectangle is cached so that the merged layers are cached as well
+    ImageKey key = new ImageKey("color", options.backgroundColor, imageRect);
     //noinspection UseJBColor
-    return generateFlatColorRectangle(new Color(options.backgroundColor), imageRect);
+    return Futures.getUnchecked(context.getFromCacheOrCreate(
+      key, () -> Futures.immediateFuture(generateFlatColorRectangle(new Color(options.backgroundColor), imageRect))));
   }
 
   @NotNull
@@ -942,7 +987,9 @@ public class LauncherIconGenerator extends IconGenerator {
                                        !options.generateOutputIcons);
     }
 
-    return AssetUtil.newArgbBufferedImage(imageRect.width, imageRect.height);
+    ImageKey key = new ImageKey("empty", imageRect);
+    return Futures.getUnchecked(
+      context.getFromCacheOrCreate(key, () -> Futures.immediateFuture(AssetUtil.newArgbBufferedImage(imageRect.width, imageRect.height))));
   }
 
   @NotNull
@@ -1342,6 +1389,35 @@ public class LauncherIconGenerator extends IconGenerator {
     }
   }
 
+  /**
+   * Key of an image cached in the {@link GraphicGeneratorContext}, made of the kind of the image and the values it is created from.
+   * Images are compared by identity, so the key of an image built from cached images only matches while these images are cached.
+   */
+  @VisibleForTesting
+  static final class ImageKey {
+    @NotNull private final String myKind;
+    @NotNull private final Object[] myValues;
+
+    ImageKey(@NotNull String kind, @NotNull Object... values) {
+      myKind = kind;
+      myValues = values;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * myKind.hashCode() + Arrays.hashCode(myValues);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof ImageKey)) {
+        return false;
+      }
+      ImageKey other = (ImageKey)obj;
+      return myKind.equals(other.myKind) && Arrays.equals(myValues, other.myValues);
+    }
+  }
+
   private static class Layers {
     @NotNull public BufferedImage background;
     @NotNull public BufferedImage foreground;
@@ -1436,7 +1512,9 @@ public class LauncherIconGenerator extends IconGenerator {
         if (myTrimmedImage == null) {
           try {
             BufferedImage image = myImageFuture.get();
-            myTrimmedImage = myIsTrimmed ? AssetStudioUtils.trim(image) : image;
+            // The trimmed image is shared by the snapshots of the same image, so that the layers generated from it stay cached
+            myTrimmedImage = myIsTrimmed ? Futures.getUnchecked(myContext.getFromCacheOrCreate(
+              new ImageKey("trimmed", image), () -> Futures.immediateFuture(AssetStudioUtils.trim(image)))) : image;
           }
           catch (InterruptedException | ExecutionException e) {
             return null;
@@ -41,12 +41,9 @@ public class IconGenerationProcessor {
                       @NotNull Consumer<IconGeneratorResult> onDone) {
     ApplicationManager.getApplication().assertIsDispatchThread();
 
-    // If there is at least one request with the same icon type, ignore this one
-    if (myImageRequests.stream().anyMatch(x -> Objects.equals(x.getIconType(), iconType))) {
-      return;
-    }
-
     if (iconGenerator.sourceAsset().get().isPresent()) {
+      // A pending request with the same icon type was created with older options, so it is replaced by this one
+      myImageRequests.removeIf(x -> Objects.equals(x.getIconType(), iconType));
       IconGenerator.Options options = iconGenerator.createOptions(true);
       Request request = new Request(iconType, iconGenerator, options, onDone);
       myImageRequests.add(request);
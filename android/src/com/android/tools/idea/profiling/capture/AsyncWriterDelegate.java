@@ -21,17 +21,43 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
 
 /**
  * A package-private delegate to perform the actual write operation synchronously on a separate thread.
+ * <p/>
+ * The number of bytes waiting to be written is bounded: {@link #queueWrite} blocks the producer while the queue is
+ * full, so a capture that is faster than the disk slows down the producer instead of filling up the memory.
+ * Consecutive writes to the same capture are coalesced into a single vectored write. Once the writer has exited, the
+ * writes still waiting are discarded and new ones fail.
  */
 class AsyncWriterDelegate implements Runnable {
   private static final Logger LOG = Logger.getInstance(AsyncWriterDelegate.class);
 
+  static final int DEFAULT_MAX_PENDING_BYTES = 64 * 1024 * 1024;
+
+  /** Maximum number of buffers written by a single vectored write */
+  static final int MAX_BUFFERS_PER_WRITE = 64;
+
   @NotNull private BlockingQueue<Message> myWriteQueue = new LinkedBlockingDeque<Message>();
+  @NotNull private final Semaphore myPendingBytes;
+  private final int myMaxPendingBytes;
   private boolean myShouldContinue = true;
+  private volatile boolean myExited;
+
+  AsyncWriterDelegate() {
+    this(DEFAULT_MAX_PENDING_BYTES);
+  }
+
+  AsyncWriterDelegate(int maxPendingBytes) {
+    myMaxPendingBytes = maxPendingBytes;
+    myPendingBytes = new Semaphore(maxPendingBytes);
+  }
 
   private static abstract class Message {
     protected abstract void performMessageRequest();
@@ -48,24 +74,57 @@ class AsyncWriterDelegate implements Runnable {
     }
   }
 
-  private static class WriteMessage extends Message {
+  private class WriteMessage extends Message {
     @NotNull private CaptureHandle myCaptureHandle;
-    @NotNull private byte[] myData;
+    @NotNull private ByteBuffer myData;
+    private final int myLength;
+    private final int myPermits;
 
-    private WriteMessage(@NotNull CaptureHandle captureHandle, @NotNull byte[] data) {
+    private WriteMessage(@NotNull CaptureHandle captureHandle, @NotNull ByteBuffer data, int permits) {
       super();
       myCaptureHandle = captureHandle;
       myData = data;
+      myLength = data.remaining();
+      myPermits = permits;
     }
 
     @Override
     protected void performMessageRequest() {
+      List<WriteMessage> batch = new ArrayList<WriteMessage>();
+      batch.add(this);
+      // Only this thread takes messages from the queue, so the head can't change between peek and poll
+      while (batch.size() < MAX_BUFFERS_PER_WRITE) {
+        Message next = myWriteQueue.peek();
+        if (!(next instanceof WriteMessage) || ((WriteMessage)next).myCaptureHandle != myCaptureHandle) {
+          break;
+        }
+        batch.add((WriteMessage)myWriteQueue.poll());
+      }
+
+      ByteBuffer[] buffers = new ByteBuffer[batch.size()];
+      long length = 0;
+      for (int i = 0; i < buffers.length; i++) {
+        buffers[i] = batch.get(i).myData;
+        length += batch.get(i).myLength;
+      }
       try {
-        CaptureService.appendDataSynchronous(myCaptureHandle, myData);
+        long start = System.nanoTime();
+        CaptureService.appendDataSynchronous(myCaptureHandle, buffers);
+        myCaptureHandle.recordWrite(length, System.nanoTime() - start);
       }
       catch (IOException e) {
         LOG.error(e);
       }
+      finally {
+        for (WriteMessage message : batch) {
+          message.release();
+        }
+      }
+    }
+
+    private void release() {
+      myCaptureHandle.recordDequeued(myLength);
+      myPendingBytes.release(myPermits);
     }
   }
 
@@ -82,14 +141,46 @@ class AsyncWriterDelegate implements Runnable {
     @Override
     protected void performMessageRequest() {
       myCaptureHandle.closeFileOutputStream();
+      LOG.info(myCaptureHandle.getFile().getName() + ": " + myCaptureHandle.getStatistics());
       if (myTask != null) {
         myTask.run();
       }
     }
   }
 
-  void queueWrite(@NotNull CaptureHandle captureHandle, @NotNull byte[] data) throws InterruptedException {
-    myWriteQueue.put(new WriteMessage(captureHandle, data));
+  /**
+   * Queues the remaining bytes of {@code data} to be written, blocking while too many bytes are already waiting to be
+   * written. {@code data} must not be modified until it has been written.
+   *
+   * @throws IOException if the writer has exited, in which case the data is not written
+   */
+  void queueWrite(@NotNull CaptureHandle captureHandle, @NotNull ByteBuffer data) throws InterruptedException, IOException {
+    checkRunning();
+    // Larger buffers than the whole queue take all of it, and wait for the queue to be empty
+    int permits = Math.min(data.remaining(), myMaxPendingBytes);
+    myPendingBytes.acquire(permits);
+    if (myExited) {
+      myPendingBytes.release(permits);
+      checkRunning();
+    }
+    WriteMessage message = new WriteMessage(captureHandle, data, permits);
+    captureHandle.recordQueued(data.remaining());
+    myWriteQueue.put(message);
+    // The writer may have exited and discarded the queue before the message got in; whoever removes it releases it
+    if (myExited && myWriteQueue.remove(message)) {
+      message.release();
+      checkRunning();
+    }
+  }
+
+  void queueWrite(@NotNull CaptureHandle captureHandle, @NotNull byte[] data) throws InterruptedException, IOException {
+    queueWrite(captureHandle, ByteBuffer.wrap(data));
+  }
+
+  private void checkRunning() throws IOException {
+    if (myExited) {
+      throw new IOException("The capture writer has stopped");
+    }
   }
 
   void closeFileAndRunTaskAsynchronously(@NotNull CaptureHandle captureHandle, @Nullable Runnable task) throws InterruptedException {
@@ -118,6 +209,14 @@ class AsyncWriterDelegate implements Runnable {
     catch (InterruptedException ignored) {
     }
 
-    myWriteQueue.clear();
+    // Discard the remaining messages, releasing their bytes so that producers waiting for room don't hang
+    myExited = true;
+    List<Message> discarded = new ArrayList<Message>();
+    myWriteQueue.drainTo(discarded);
+    for (Message message : discarded) {
+      if (message instanceof WriteMessage) {
+        ((WriteMessage)message).release();
+      }
+    }
   }
 }
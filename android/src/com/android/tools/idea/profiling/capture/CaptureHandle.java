@@ -22,6 +22,8 @@ import org.jetbrains.annotations.Nullable;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * An opaque handle that holds references to the resources needed to work with the backing file.
@@ -32,6 +34,13 @@ public class CaptureHandle {
   private boolean myWriteToTempFile;
   @Nullable private volatile FileOutputStream myFileOutputStream;
 
+  // Write statistics, updated by the asynchronous writer
+  @NotNull private final AtomicLong myQueuedBytes = new AtomicLong();
+  private volatile long myMaxQueuedBytes;
+  private volatile long myBytesWritten;
+  private volatile long myWriteCount;
+  private volatile long myWriteTimeNs;
+
   CaptureHandle(@NotNull File file, @NotNull CaptureType type, boolean writeToTempFile) throws IOException {
     myFile = file;
     myType = type;
@@ -74,6 +83,66 @@ public class CaptureHandle {
     return myFileOutputStream != null;
   }
 
+  void recordQueued(long bytes) {
+    long queued = myQueuedBytes.addAndGet(bytes);
+    if (queued > myMaxQueuedBytes) {
+      // Only an approximation of the maximum when several threads write to the same handle
+      myMaxQueuedBytes = queued;
+    }
+  }
+
+  void recordDequeued(long bytes) {
+    myQueuedBytes.addAndGet(-bytes);
+  }
+
+  void recordWrite(long bytes, long timeNs) {
+    myBytesWritten += bytes;
+    myWriteCount++;
+    myWriteTimeNs += timeNs;
+  }
+
+  /**
+   * Returns the number of bytes waiting to be written to the file.
+   */
+  public long getQueuedBytes() {
+    return myQueuedBytes.get();
+  }
+
+  /**
+   * Returns the largest number of bytes that have been waiting to be written to the file at the same time.
+   */
+  public long getMaxQueuedBytes() {
+    return myMaxQueuedBytes;
+  }
+
+  /**
+   * Returns the number of bytes written to the file asynchronously.
+   */
+  public long getBytesWritten() {
+    return myBytesWritten;
+  }
+
+  /**
+   * Returns the number of (vectored) writes the asynchronously written bytes took.
+   */
+  public long getWriteCount() {
+    return myWriteCount;
+  }
+
+  /**
+   * Returns the number of bytes written per second spent writing, or 0 if nothing was written yet.
+   */
+  public double getWriteThroughput() {
+    long timeNs = myWriteTimeNs;
+    return timeNs > 0 ? myBytesWritten * (double)TimeUnit.SECONDS.toNanos(1) / timeNs : 0;
+  }
+
+  @NotNull
+  String getStatistics() {
+    return String.format("%d bytes in %d writes (%.1f MB/s), at most %d bytes queued",
+                         getBytesWritten(), getWriteCount(), getWriteThroughput() / (1024 * 1024), getMaxQueuedBytes());
+  }
+
   public void move(File file) throws IOException {
     Files.move(myFile, file);
     myFile = file;
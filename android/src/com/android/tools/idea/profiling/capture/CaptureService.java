@@ -42,6 +42,9 @@ import org.jetbrains.annotations.Nullable;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.concurrent.Callable;
@@ -55,7 +58,7 @@ import java.util.concurrent.Executor;
  * To use this service synchronously, call {@link #createCapture(Class, byte[])}.
  * To use this service asynchronously, do the following in order:
  * 1) Call {@link #startCaptureFile(Class)} on the EDT thread.
- * 2) Call {@link #appendData(CaptureHandle, byte[])} as many times as needed in any other thread (you're responsible for synchronizing the writes between your own threads), passing in the return value from {@link #startCaptureFile(Class)}.
+ * 2) Call {@link #appendData(CaptureHandle, byte[])} (or {@link #appendData(CaptureHandle, ByteBuffer)}) as many times as needed in any other thread (you're responsible for synchronizing the writes between your own threads), passing in the return value from {@link #startCaptureFile(Class)}.
  * 3) Call {@link #cancelCaptureFile(CaptureHandle)} if an error occurs on the caller end and wish to cancel the capture.
  * 4) Call {@link #finalizeCaptureFileAsynchronous(CaptureHandle, FutureCallback, Executor)} when done with writing.
  */
@@ -224,7 +227,8 @@ public class CaptureService {
       assert myAsyncWriterDelegate != null;
       myAsyncWriterDelegate.queueWrite(captureHandle, Arrays.copyOf(data, data.length));
     }
-    catch (InterruptedException ignored) {
+    catch (InterruptedException e) {
+      throw interrupted(e);
     }
   }
 
@@ -240,10 +244,42 @@ public class CaptureService {
       assert myAsyncWriterDelegate != null;
       myAsyncWriterDelegate.queueWrite(captureHandle, data);
     }
-    catch (InterruptedException ignored) {
+    catch (InterruptedException e) {
+      throw interrupted(e);
     }
   }
 
+  /**
+   * Appends the remaining bytes of {@code data} to the backing file represented by {@code captureHandle} without copying them, which
+   * lets callers hand over direct buffers. {@code data} SHOULD NOT be modified after this.
+   * <p/>
+   * Blocks while too much data is already waiting to be written.
+   *
+   * @param captureHandle the handle returned by {@link #startCaptureFile(Class)}
+   * @param data          the data to be appended to the file
+   * @throws IOException when there is an error writing to the file
+   */
+  public void appendData(@NotNull CaptureHandle captureHandle, @NotNull ByteBuffer data) throws IOException {
+    try {
+      assert myAsyncWriterDelegate != null;
+      myAsyncWriterDelegate.queueWrite(captureHandle, data);
+    }
+    catch (InterruptedException e) {
+      throw interrupted(e);
+    }
+  }
+
+  /**
+   * Restores the interrupt flag of the current thread and returns the exception reporting that the data was not written.
+   */
+  @NotNull
+  private static InterruptedIOException interrupted(@NotNull InterruptedException e) {
+    Thread.currentThread().interrupt();
+    InterruptedIOException exception = new InterruptedIOException("Interrupted before the data could be queued");
+    exception.initCause(e);
+    return exception;
+  }
+
   /**
    * Cleans up and removes the file when there is an unrecoverable error on the caller side.
    * <p/>
@@ -523,6 +559,23 @@ public class CaptureService {
     localFileOutputStream.write(data, offset, length);
   }
 
+  /**
+   * Synchronously appends the remaining bytes of all the {@code buffers} to the file referenced by {@code captureHandle}, with as few
+   * (vectored) writes as possible.
+   */
+  static void appendDataSynchronous(@NotNull CaptureHandle captureHandle, @NotNull ByteBuffer[] buffers) throws IOException {
+    FileOutputStream localFileOutputStream = captureHandle.getFileOutputStream();
+    assert localFileOutputStream != null;
+    FileChannel channel = localFileOutputStream.getChannel();
+    int first = 0;
+    while (first < buffers.length) {
+      channel.write(buffers, first, buffers.length - first);
+      while (first < buffers.length && !buffers[first].hasRemaining()) {
+        first++;
+      }
+    }
+  }
+
   /**
    * Synchronously generates the {@code Capture} from the {@code captureHandle}.
    */
@@ -17,6 +17,7 @@ package com.android.tools.idea.project;
 
 import com.android.annotations.concurrency.GuardedBy;
 import com.android.annotations.VisibleForTesting;
+import com.android.ide.common.blame.Message;
 import com.android.tools.idea.IdeInfo;
 import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.gradle.project.build.BuildContext;
@@ -198,6 +199,10 @@ public class IndexingSuspender {
         consumeActivationEvent(ActivationEvent.BUILD_STARTED);
       }
 
+      @Override
+      public void buildMessageParsed(@NotNull Message message) {
+      }
+
       @Override
       public void buildFinished(@NotNull BuildStatus status, @Nullable BuildContext context) {
         consumeDeactivationEvent(DeactivationEvent.BUILD_FINISHED);
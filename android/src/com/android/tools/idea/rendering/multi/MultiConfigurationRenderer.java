@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering.multi;
+
+import com.android.ide.common.rendering.HardwareConfigHelper;
+import com.android.sdklib.IAndroidTarget;
+import com.android.sdklib.devices.Device;
+import com.android.tools.idea.configurations.Configuration;
+import com.android.tools.idea.configurations.ConfigurationManager;
+import com.android.tools.idea.configurations.NestedConfiguration;
+import com.android.tools.idea.configurations.ResourceResolverCache;
+import com.android.tools.idea.rendering.Locale;
+import com.android.tools.idea.rendering.RenderLogger;
+import com.android.tools.idea.rendering.RenderResult;
+import com.android.tools.idea.rendering.RenderService;
+import com.android.tools.idea.rendering.RenderTask;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.psi.xml.XmlFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+/**
+ * Renders a layout file in a batch of configurations, for example all the locales or all the screen sizes
+ * of a {@link RenderPreviewMode}.
+ * <p>
+ * Every configuration still gets its own {@link RenderTask}, but the per configuration setup (resolving the theme,
+ * creating the task and inflating the layout) is submitted for all configurations together and runs concurrently on
+ * a bounded pool. Configurations resolve their resources through the module's {@link ResourceResolverCache}, which
+ * shares the configured resource maps between configurations that only differ in qualifiers the resources don't use.
+ * Each result is handed to the {@link Listener} as soon as it is available, so a preview grid can fill in progressively.
+ * <p>
+ * Layoutlib is not thread safe, so the layoutlib calls themselves are still serialized by {@link RenderService}.
+ */
+public class MultiConfigurationRenderer {
+  private static final Logger LOG = Logger.getInstance(MultiConfigurationRenderer.class);
+
+  /** Maximum number of configurations being set up at the same time */
+  private static final int MAX_PARALLEL_SETUPS = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+
+  public interface Listener {
+    /**
+     * Called as soon as the given configuration has been rendered. This is called on a pooled thread and in the
+     * order the renders finish, not in the order of the configurations.
+     *
+     * @param result the render result or null if the configuration could not be rendered
+     */
+    void renderCompleted(@NotNull Configuration configuration, @Nullable RenderResult result);
+  }
+
+  @NotNull private final RenderService myRenderService;
+  @NotNull private final Executor myExecutor;
+
+  public MultiConfigurationRenderer(@NotNull RenderService renderService) {
+    this(renderService, AppExecutorUtil.createBoundedApplicationPoolExecutor("MultiConfigurationRenderer", MAX_PARALLEL_SETUPS));
+  }
+
+  @VisibleForTesting
+  MultiConfigurationRenderer(@NotNull RenderService renderService, @NotNull Executor executor) {
+    myRenderService = renderService;
+    myExecutor = executor;
+  }
+
+  /**
+   * Renders the given file in all the configurations of the current {@link RenderPreviewMode}, derived from the
+   * given configuration. The derived configurations are disposed once all of them have been rendered.
+   *
+   * @return a future with the render results, in the same order as {@link #createConfigurations}
+   */
+  @NotNull
+  public CompletableFuture<List<RenderResult>> renderPreviews(@NotNull XmlFile file,
+                                                              @NotNull Configuration parent,
+                                                              @NotNull Listener listener) {
+    List<Configuration> configurations = createConfigurations(parent, RenderPreviewMode.getCurrent());
+    return render(file, configurations, listener).whenComplete((results, t) -> configurations.forEach(Disposer::dispose));
+  }
+
+  /**
+   * Creates the configurations previewed in the given mode, each one inheriting everything but the previewed
+   * attribute from {@code parent}. Previews deleted by the user (see {@link RenderPreviewMode#isDeletedId}) are
+   * skipped. The modes that need more than the configuration to compute their previews (includes, variations and
+   * custom previews) don't produce any configurations.
+   */
+  @NotNull
+  public static List<Configuration> createConfigurations(@NotNull Configuration parent, @NotNull RenderPreviewMode mode) {
+    ConfigurationManager manager = parent.getConfigurationManager();
+    List<Configuration> configurations = new ArrayList<>();
+    switch (mode) {
+      case LOCALES:
+        for (Locale locale : manager.getLocales()) {
+          if (!locale.equals(parent.getLocale()) && !RenderPreviewMode.isDeletedId(locale.toString())) {
+            NestedConfiguration configuration = NestedConfiguration.create(parent);
+            configuration.setOverrideLocale(true);
+            configuration.setLocale(locale);
+            configurations.add(configuration);
+          }
+        }
+        break;
+      case SCREENS:
+        for (Device device : manager.getDevices()) {
+          if (HardwareConfigHelper.isNexus(device) && device != parent.getDevice() && !RenderPreviewMode.isDeletedId(device.getId())) {
+            NestedConfiguration configuration = NestedConfiguration.create(parent);
+            configuration.setOverrideDevice(true);
+            configuration.setDevice(device, false);
+            configurations.add(configuration);
+          }
+        }
+        break;
+      case API_LEVELS:
+        for (IAndroidTarget target : manager.getTargets()) {
+          if (target != parent.getTarget() && !RenderPreviewMode.isDeletedId(target.hashString())) {
+            NestedConfiguration configuration = NestedConfiguration.create(parent);
+            configuration.setOverrideTarget(true);
+            configuration.setTarget(target);
+            configurations.add(configuration);
+          }
+        }
+        break;
+      default:
+        break;
+    }
+    return configurations;
+  }
+
+  /**
+   * Renders the given file in all the given configurations.
+   *
+   * @return a future with the render results, in the same order as the configurations. Entries are null for the
+   * configurations that could not be rendered.
+   */
+  @NotNull
+  public CompletableFuture<List<RenderResult>> render(@NotNull XmlFile file,
+                                                      @NotNull List<Configuration> configurations,
+                                                      @NotNull Listener listener) {
+    List<CompletableFuture<RenderResult>> results = new ArrayList<>(configurations.size());
+    for (Configuration configuration : configurations) {
+      CompletableFuture<RenderResult> result = CompletableFuture
+        .supplyAsync(() -> createTask(file, configuration), myExecutor)
+        .thenCompose(task -> task != null ? renderAndDispose(task) : CompletableFuture.completedFuture(null))
+        .exceptionally(t -> {
+          LOG.warn("Failed to render " + configuration.getDisplayName(), t);
+          return null;
+        });
+      results.add(result.whenComplete((renderResult, ignored) -> listener.renderCompleted(configuration, renderResult)));
+    }
+
+    return CompletableFuture.allOf(results.toArray(new CompletableFuture[0]))
+      .thenApply(ignored -> results.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+  }
+
+  @Nullable
+  private RenderTask createTask(@NotNull XmlFile file, @NotNull Configuration configuration) {
+    // Resolve the theme before creating the task so that the resolution for all the configurations of the batch
+    // happens concurrently instead of on the render thread
+    configuration.getResourceResolver();
+    RenderLogger logger = myRenderService.createLogger();
+    return myRenderService.createTask(file, configuration, logger, null);
+  }
+
+  @NotNull
+  private CompletableFuture<RenderResult> renderAndDispose(@NotNull RenderTask task) {
+    CompletableFuture<RenderResult> result = new CompletableFuture<>();
+    Futures.addCallback(task.render(), new FutureCallback<RenderResult>() {
+      @Override
+      public void onSuccess(@Nullable RenderResult renderResult) {
+        task.dispose();
+        result.complete(renderResult);
+      }
+
+      @Override
+      public void onFailure(@Nullable Throwable t) {
+        task.dispose();
+        result.completeExceptionally(t != null ? t : new IllegalStateException("Render failed"));
+      }
+    }, myExecutor);
+    return result;
+  }
+}
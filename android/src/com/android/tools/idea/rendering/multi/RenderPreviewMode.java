@@ -25,7 +25,8 @@ import java.util.Set;
 
 /**
  * The {@linkplain RenderPreviewMode} records what type of configurations to
- * render in the layout editor
+ * render in the layout editor. The configurations of a mode are created and
+ * rendered by {@link MultiConfigurationRenderer}.
  */
 public enum RenderPreviewMode {
   /**
@@ -16,6 +16,7 @@
 package com.android.tools.idea.rendering.webp;
 
 
+import com.android.annotations.VisibleForTesting;
 import com.android.resources.ResourceFolderType;
 import com.android.tools.idea.model.AndroidModuleInfo;
 import com.android.tools.idea.model.MergedManifest;
@@ -38,6 +39,7 @@ import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleManager;
 import com.intellij.openapi.module.ModuleUtilCore;
 import com.intellij.openapi.progress.DumbProgressIndicator;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.progress.Task;
@@ -68,6 +70,9 @@ import static com.android.utils.SdkUtils.endsWithIgnoreCase;
 public class ConvertToWebpAction extends DumbAwareAction {
   @Nls(capitalization = Nls.Capitalization.Title) public static final String TITLE = "Converting Images to WebP";
 
+  /** Maximum number of files encoded by a {@link WebpConversionSettings#dryRun dry run} to estimate the savings */
+  static final int DRY_RUN_SAMPLE_SIZE = 50;
+
   @Override
   public void actionPerformed(@NotNull AnActionEvent e) {
     Project project = e.getProject();
@@ -156,8 +161,17 @@ public class ConvertToWebpAction extends DumbAwareAction {
                       @NotNull WebpConversionSettings settings,
                       boolean showBalloon,
                       @NotNull Collection<VirtualFile> files) {
+    convert(project, settings, showBalloon, files, WebpEncodeCache.getInstance());
+  }
+
+  @VisibleForTesting
+  void convert(@NotNull Project project,
+               @NotNull WebpConversionSettings settings,
+               boolean showBalloon,
+               @NotNull Collection<VirtualFile> files,
+               @Nullable WebpEncodeCache encodeCache) {
     boolean isUnitTest = ApplicationManager.getApplication().isUnitTestMode();
-    WebpConversionTask task = new WebpConversionTask(project, settings, showBalloon && !isUnitTest, files);
+    WebpConversionTask task = new WebpConversionTask(project, settings, showBalloon && !isUnitTest, files, encodeCache);
     if (isUnitTest) {
       // Do it immediately
       task.run(new DumbProgressIndicator());
@@ -230,6 +244,7 @@ public class ConvertToWebpAction extends DumbAwareAction {
     private final boolean myShowBalloon;
     private final Collection<VirtualFile> myFiles;
     private final WebpConversionSettings mySettings;
+    @Nullable private final WebpEncodeCache myEncodeCache;
 
     private int myNinePatchCount;
     private int myLauncherIconCount;
@@ -240,31 +255,54 @@ public class ConvertToWebpAction extends DumbAwareAction {
 
     private List<VirtualFile> myParentFolders;
     private List<WebpConvertedFile> myConvertedFiles;
+    private SavingsEstimate mySavingsEstimate;
+    private boolean myCompleted;
+    /** Files already given to the encoder, which aren't encoded again if they couldn't be encoded the first time */
+    private final Set<WebpConvertedFile> myAttemptedFiles = Sets.newHashSet();
 
     WebpConversionTask(Project project,
                               WebpConversionSettings settings,
                               boolean showBalloon,
                               Collection<VirtualFile> files) {
+      this(project, settings, showBalloon, files, WebpEncodeCache.getInstance());
+    }
+
+    @VisibleForTesting
+    WebpConversionTask(Project project,
+                       WebpConversionSettings settings,
+                       boolean showBalloon,
+                       Collection<VirtualFile> files,
+                       @Nullable WebpEncodeCache encodeCache) {
       super(project, TITLE, true);
       mySettings = settings;
       myProject = project;
       myShowBalloon = showBalloon;
       myFiles = files;
+      myEncodeCache = encodeCache;
     }
 
     @Override
     public void onFinished() {
-      if (mySettings.previewConversion &&
-          // Doesn't apply in lossless mode - nothing to preview, all conversions are exact
-          !mySettings.lossless &&
-          !myConvertedFiles.isEmpty()) {
+      if (!myCompleted) {
+        // Cancelled while looking for images or encoding them
+        return;
+      }
+
+      if (mySettings.dryRun) {
+        if (myShowBalloon) {
+          notify(mySavingsEstimate.toString());
+        }
+        return;
+      }
+
+      if (isPreviewed() && !myConvertedFiles.isEmpty()) {
         WebpPreviewDialog dialog = new WebpPreviewDialog(this, myProject, mySettings, myConvertedFiles);
         if (!dialog.showAndGet()) {
           return;
         }
-        encode(myConvertedFiles, true);
-      } else {
-        encode(myConvertedFiles, false);
+      }
+      if (!encode(myConvertedFiles, true)) {
+        return;
       }
       writeImages(this, myProject, myConvertedFiles);
 
@@ -288,15 +326,34 @@ public class ConvertToWebpAction extends DumbAwareAction {
         if (mySkipped > 0) {
           sb.append("<br>").append(Integer.toString(mySkipped)).append(" files were skipped because there was no net space savings");
         }
-        String message = sb.toString();
-        new NotificationGroup("Convert to WebP", NotificationDisplayType.BALLOON, true)
-          .createNotification(message, NotificationType.INFORMATION)
-          .notify(myProject);
+        notify(sb.toString());
       }
 
       refreshFolders(myParentFolders);
     }
 
+    private void notify(@NotNull String message) {
+      new NotificationGroup("Convert to WebP", NotificationDisplayType.BALLOON, true)
+        .createNotification(message, NotificationType.INFORMATION)
+        .notify(myProject);
+    }
+
+    /**
+     * Returns true if the encoded images are shown in a {@link WebpPreviewDialog} before being saved. Doesn't apply in lossless mode:
+     * there is nothing to preview, all conversions are exact.
+     */
+    private boolean isPreviewed() {
+      return mySettings.previewConversion && !mySettings.lossless;
+    }
+
+    /**
+     * Returns the savings estimated by a {@link WebpConversionSettings#dryRun dry run}, or null if this isn't a dry run.
+     */
+    @Nullable
+    SavingsEstimate getSavingsEstimate() {
+      return mySavingsEstimate;
+    }
+
     private void writeImages(Object requestor, Project project, List<WebpConvertedFile> files) {
       WriteCommandAction.runWriteCommandAction(project, () -> {
         for (WebpConvertedFile convertedFile : files) {
@@ -325,11 +382,54 @@ public class ConvertToWebpAction extends DumbAwareAction {
       LinkedList<VirtualFile> images = new LinkedList<>(myFiles);
       myConvertedFiles = findImages(progressIndicator, images);
       myParentFolders = computeParentFolders(myConvertedFiles);
+
+      if (mySettings.dryRun) {
+        progressIndicator.setIndeterminate(false);
+        mySavingsEstimate = estimateSavings(myConvertedFiles, mySettings, new WebpEncoder(mySettings, myEncodeCache), progressIndicator);
+      }
+      else if (!isPreviewed()) {
+        // Nothing to preview: encode everything here instead of on the event dispatch thread once the task is finished
+        progressIndicator.setIndeterminate(false);
+        encode(myConvertedFiles, true, progressIndicator);
+      }
+      myCompleted = true;
     }
 
-    void encode(@NotNull List<WebpConvertedFile> files, boolean skipAlreadyEncoded) {
+    /**
+     * Encodes the given files, showing a modal progress if called on the event dispatch thread. Returns false if the encoding was
+     * cancelled. When {@code skipAlreadyEncoded} is true, the files which are encoded or which already failed to encode are skipped.
+     */
+    boolean encode(@NotNull List<WebpConvertedFile> files, boolean skipAlreadyEncoded) {
+      List<WebpConvertedFile> pending = getPendingFiles(files, skipAlreadyEncoded);
+      if (pending.isEmpty()) {
+        return true;
+      }
+      if (!ApplicationManager.getApplication().isDispatchThread()) {
+        encodePending(pending, new EmptyProgressIndicator());
+        return true;
+      }
+      return ProgressManager.getInstance().runProcessWithProgressSynchronously(() -> {
+        ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+        encodePending(pending, indicator != null ? indicator : new EmptyProgressIndicator());
+      }, TITLE, true, myProject);
+    }
+
+    private void encode(@NotNull List<WebpConvertedFile> files, boolean skipAlreadyEncoded, @NotNull ProgressIndicator indicator) {
+      encodePending(getPendingFiles(files, skipAlreadyEncoded), indicator);
+    }
+
+    private void encodePending(@NotNull List<WebpConvertedFile> pending, @NotNull ProgressIndicator indicator) {
+      new WebpEncoder(mySettings, myEncodeCache).encode(pending, indicator);
+      synchronized (myAttemptedFiles) {
+        myAttemptedFiles.addAll(pending);
+      }
+    }
+
+    @NotNull
+    private List<WebpConvertedFile> getPendingFiles(@NotNull List<WebpConvertedFile> files, boolean skipAlreadyEncoded) {
+      List<WebpConvertedFile> pending = Lists.newArrayListWithCapacity(files.size());
       for (WebpConvertedFile file : files) {
-        if (skipAlreadyEncoded && file.encoded != null) {
+        if (skipAlreadyEncoded && (file.encoded != null || isAttempted(file))) {
           continue;
         }
 
@@ -338,18 +438,14 @@ public class ConvertToWebpAction extends DumbAwareAction {
           assert false : file;
           continue;
         }
+        pending.add(file);
+      }
+      return pending;
+    }
 
-        if (!file.convert(mySettings)) {
-          // Shouldn't have gotten here: isEligibleForConversion should have filtered it out
-          assert false : file;
-        } else {
-          if (mySettings.skipLargerImages && file.saved < 0) {
-            mySkipped++;
-          } else {
-            mySaved += file.saved;
-            myFileCount++;
-          }
-        }
+    private boolean isAttempted(@NotNull WebpConvertedFile file) {
+      synchronized (myAttemptedFiles) {
+        return myAttemptedFiles.contains(file);
       }
     }
 
@@ -464,6 +560,81 @@ public class ConvertToWebpAction extends DumbAwareAction {
     }
   }
 
+  /**
+   * Estimates the savings of converting the given files by encoding a sample of at most {@link #DRY_RUN_SAMPLE_SIZE} of them.
+   */
+  @NotNull
+  static SavingsEstimate estimateSavings(@NotNull List<WebpConvertedFile> files,
+                                         @NotNull WebpConversionSettings settings,
+                                         @NotNull WebpEncoder encoder,
+                                         @NotNull ProgressIndicator indicator) {
+    List<WebpConvertedFile> sample = selectSample(files, DRY_RUN_SAMPLE_SIZE);
+    encoder.encode(sample, indicator);
+
+    long sampleSize = 0;
+    long sampleSaved = 0;
+    int sampleCount = 0;
+    for (WebpConvertedFile file : sample) {
+      if (file.encoded == null) {
+        continue;
+      }
+      sampleCount++;
+      sampleSize += file.sourceFileSize;
+      if (!settings.skipLargerImages || file.saved >= 0) {
+        sampleSaved += file.saved;
+      }
+    }
+
+    long size = 0;
+    for (WebpConvertedFile file : files) {
+      size += file.sourceFileSize;
+    }
+    long saved = sampleSize > 0 ? Math.round((double)sampleSaved * size / sampleSize) : 0;
+    return new SavingsEstimate(files.size(), sampleCount, size, saved);
+  }
+
+  /**
+   * Returns evenly spaced files of the given files sorted by size, so that the sample covers small icons as well as large images.
+   */
+  @NotNull
+  static List<WebpConvertedFile> selectSample(@NotNull List<WebpConvertedFile> files, int sampleSize) {
+    if (files.size() <= sampleSize) {
+      return files;
+    }
+    List<WebpConvertedFile> sorted = new ArrayList<>(files);
+    sorted.sort(Comparator.comparingLong(file -> file.sourceFileSize));
+    List<WebpConvertedFile> sample = Lists.newArrayListWithCapacity(sampleSize);
+    for (int i = 0; i < sampleSize; i++) {
+      sample.add(sorted.get((int)((2L * i + 1) * sorted.size() / (2L * sampleSize))));
+    }
+    return sample;
+  }
+
+  /** Savings of a conversion estimated by a {@link WebpConversionSettings#dryRun dry run} */
+  static class SavingsEstimate {
+    /** Number of files which would be converted */
+    final int fileCount;
+    /** Number of files which were encoded to estimate the savings */
+    final int sampleCount;
+    /** Total size of the files which would be converted */
+    final long size;
+    /** Estimated number of bytes saved */
+    final long saved;
+
+    SavingsEstimate(int fileCount, int sampleCount, long size, long saved) {
+      this.fileCount = fileCount;
+      this.sampleCount = sampleCount;
+      this.size = size;
+      this.saved = saved;
+    }
+
+    @Override
+    public String toString() {
+      return "Converting " + fileCount + " files (" + formatSize(size) + ") would save about " + formatSize(saved) +
+             "<br/>Estimated from " + sampleCount + " files";
+    }
+  }
+
   private static void refreshFolders(List<VirtualFile> toRefresh) {
     for (VirtualFile dir : toRefresh) {
       dir.refresh(true, true);
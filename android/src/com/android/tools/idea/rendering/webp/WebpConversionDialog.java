@@ -51,6 +51,7 @@ public class WebpConversionDialog extends DialogWrapper implements DocumentListe
   private JBLabel myQualityLabel;
   private JBCheckBox mySkipTransparency;
   private JBLabel myMinSdkVersionLabel2;
+  private JBCheckBox myDryRunCheckBox;
   private boolean myIgnore;
 
   public WebpConversionDialog(@NotNull Project project, int minSdkVersion, @NotNull WebpConversionSettings settings,
@@ -125,6 +126,7 @@ public class WebpConversionDialog extends DialogWrapper implements DocumentListe
     settings.previewConversion = myPreviewImagesCheckBox.isSelected();
     settings.skipTransparentImages = mySkipTransparency.isSelected();
     settings.lossless = myLosslessButton.isSelected();
+    settings.dryRun = myDryRunCheckBox.isSelected();
     int quality = getQualityPercent();
     if (quality < 0) {
       quality = (int)(100 * WebpMetadata.DEFAULT_ENCODING_QUALITY);
@@ -142,6 +144,7 @@ public class WebpConversionDialog extends DialogWrapper implements DocumentListe
         myPreviewImagesCheckBox.setSelected(settings.previewConversion);
         mySkipTransparency.setSelected(settings.skipTransparentImages);
         myLosslessButton.setSelected(settings.lossless);
+        myDryRunCheckBox.setSelected(settings.dryRun);
         myQualitySlider.setValue(settings.quality);
         myQualityField.setText(Integer.toString(settings.quality));
       } finally {
@@ -28,4 +28,6 @@ public class WebpConversionSettings {
   public boolean skipTransparentImages = true;
   public boolean skipLargerImages = true;
   public boolean skipAnimated = true;
+  /** Only estimate the savings by encoding a sample of the images, without converting them */
+  public boolean dryRun = false;
 }
\ No newline at end of file
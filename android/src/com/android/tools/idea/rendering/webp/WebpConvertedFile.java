@@ -85,8 +85,7 @@ class WebpConvertedFile {
       }
 
       WebpImageWriterSpi.writeImage(image, byteArrayOutputStream, settings.lossless, settings.quality);
-      encoded = byteArrayOutputStream.toByteArray();
-      saved = sourceFileSize - encoded.length;
+      setEncoded(byteArrayOutputStream.toByteArray());
       return true;
     } catch (IOException e) {
       Logger.getInstance(WebpConvertedFile.class).error("Can't convert " + sourceFile.getPath(), e);
@@ -94,6 +93,11 @@ class WebpConvertedFile {
     }
   }
 
+  void setEncoded(@NotNull byte[] encoded) {
+    this.encoded = encoded;
+    saved = sourceFileSize - encoded.length;
+  }
+
   @Nullable
   public static WebpConvertedFile create(@NotNull VirtualFile pngFile, @NotNull WebpConversionSettings settings) {
     try {
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering.webp;
+
+import com.android.annotations.VisibleForTesting;
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.android.util.AndroidUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * WebP encodings of previously converted images, stored in the Android system directory so that converting the same image again with
+ * the same settings (for example after reverting a conversion, or in another project sharing the same images) doesn't encode it again.
+ * <p>
+ * Encodings are keyed by the SHA-1 of the source file contents and the encoding quality (or lossless mode). The modification time of a
+ * cached file is the time it was last used, and the least recently used files are deleted by {@link #trim()} once the cache grows past
+ * {@link #MAX_CACHE_SIZE}.
+ */
+final class WebpEncodeCache {
+  private static final Logger LOG = Logger.getInstance(WebpEncodeCache.class);
+
+  static final long MAX_CACHE_SIZE = 50L * 1024 * 1024;
+
+  private static WebpEncodeCache ourInstance;
+
+  @NotNull private final File myDirectory;
+  @NotNull private final Object myTrimLock = new Object();
+
+  @NotNull
+  static synchronized WebpEncodeCache getInstance() {
+    if (ourInstance == null) {
+      ourInstance = new WebpEncodeCache(new File(AndroidUtils.getAndroidSystemDirectoryOsPath(), "webp-cache"));
+    }
+    return ourInstance;
+  }
+
+  @VisibleForTesting
+  WebpEncodeCache(@NotNull File directory) {
+    myDirectory = directory;
+  }
+
+  /**
+   * Returns the key of the encoding of the given source file contents with the given settings.
+   */
+  @NotNull
+  static String getKey(@NotNull byte[] source, @NotNull WebpConversionSettings settings) {
+    String hash = Hashing.sha1().hashBytes(source).toString();
+    return settings.lossless ? hash + "-lossless" : hash + "-q" + settings.quality;
+  }
+
+  /**
+   * Returns the cached encoding with the given key, or null if there isn't one.
+   */
+  @Nullable
+  byte[] get(@NotNull String key) {
+    File file = getFile(key);
+    if (!file.isFile()) {
+      return null;
+    }
+    try {
+      byte[] encoded = Files.readAllBytes(file.toPath());
+      //noinspection ResultOfMethodCallIgnored
+      file.setLastModified(System.currentTimeMillis());
+      return encoded;
+    }
+    catch (IOException e) {
+      LOG.warn("Failed to read " + file, e);
+      return null;
+    }
+  }
+
+  /**
+   * Stores the encoding with the given key. Can be called from several threads at the same time.
+   */
+  void put(@NotNull String key, @NotNull byte[] encoded) {
+    File file = getFile(key);
+    File tempFile = null;
+    try {
+      FileUtil.createDirectory(myDirectory);
+      tempFile = FileUtil.createTempFile(myDirectory, file.getName(), ".tmp", true);
+      Files.write(tempFile.toPath(), encoded);
+      Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (IOException e) {
+      LOG.warn("Failed to write " + file, e);
+    }
+    finally {
+      if (tempFile != null) {
+        FileUtil.delete(tempFile);
+      }
+    }
+  }
+
+  /**
+   * Deletes the least recently used encodings until the cache is at most {@link #MAX_CACHE_SIZE}.
+   */
+  void trim() {
+    trim(MAX_CACHE_SIZE);
+  }
+
+  @VisibleForTesting
+  void trim(long maxSize) {
+    synchronized (myTrimLock) {
+      File[] files = myDirectory.listFiles((dir, name) -> name.endsWith(".webp"));
+      if (files == null) {
+        return;
+      }
+      Map<File, Long> lastModified = new HashMap<>();
+      long size = 0;
+      for (File file : files) {
+        lastModified.put(file, file.lastModified());
+        size += file.length();
+      }
+      if (size <= maxSize) {
+        return;
+      }
+      Arrays.sort(files, Comparator.comparing(lastModified::get));
+      for (File file : files) {
+        if (size <= maxSize) {
+          break;
+        }
+        long length = file.length();
+        if (FileUtil.delete(file)) {
+          size -= length;
+        }
+      }
+    }
+  }
+
+  @NotNull
+  private File getFile(@NotNull String key) {
+    return new File(myDirectory, key + ".webp");
+  }
+}
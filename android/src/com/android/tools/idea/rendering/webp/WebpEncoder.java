@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering.webp;
+
+import com.android.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Encodes the files of a {@link ConvertToWebpAction} in parallel.
+ * <p>
+ * Up to {@link #PARALLELISM} files are encoded at the same time. Since a decoded image takes a lot more memory than its file, the images
+ * decoded at the same time must also fit in a budget of {@link #DECODED_IMAGES_BUDGET_KB} (an image larger than the whole budget is
+ * decoded alone). Before decoding an image, its encoding is looked up in the {@link WebpEncodeCache}.
+ */
+class WebpEncoder {
+  private static final Logger LOG = Logger.getInstance(WebpEncoder.class);
+
+  /** Maximum number of files encoded at the same time */
+  static final int PARALLELISM = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
+  /** Maximum size in kilobytes of the images decoded at the same time */
+  static final int DECODED_IMAGES_BUDGET_KB = 256 * 1024;
+
+  @NotNull private final WebpConversionSettings mySettings;
+  @Nullable private final WebpEncodeCache myCache;
+  @NotNull private final Semaphore myDecodedImagesBudget;
+  private final int myBudgetKb;
+
+  WebpEncoder(@NotNull WebpConversionSettings settings, @Nullable WebpEncodeCache cache) {
+    this(settings, cache, DECODED_IMAGES_BUDGET_KB);
+  }
+
+  @VisibleForTesting
+  WebpEncoder(@NotNull WebpConversionSettings settings, @Nullable WebpEncodeCache cache, int budgetKb) {
+    mySettings = settings;
+    myCache = cache;
+    myBudgetKb = budgetKb;
+    myDecodedImagesBudget = new Semaphore(budgetKb);
+  }
+
+  /**
+   * Encodes the given files and waits for them. Files which can't be encoded are left without an encoding.
+   */
+  void encode(@NotNull List<WebpConvertedFile> files, @NotNull ProgressIndicator indicator) {
+    if (files.isEmpty()) {
+      return;
+    }
+
+    ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("WebP encoding", PARALLELISM);
+    List<Future<Boolean>> futures = Lists.newArrayListWithCapacity(files.size());
+    for (WebpConvertedFile file : files) {
+      futures.add(executor.submit(() -> {
+        indicator.checkCanceled();
+        return encode(file);
+      }));
+    }
+
+    try {
+      for (int i = 0; i < files.size(); i++) {
+        WebpConvertedFile file = files.get(i);
+        indicator.setText(file.sourceFile.getPath());
+        try {
+          waitFor(futures.get(i), indicator);
+        }
+        catch (ExecutionException e) {
+          LOG.warn("Can't convert " + file.sourceFile.getPath(), e.getCause());
+        }
+        indicator.setFraction((double)(i + 1) / files.size());
+      }
+    }
+    finally {
+      for (Future<?> future : futures) {
+        future.cancel(false);
+      }
+      if (myCache != null) {
+        myCache.trim();
+      }
+    }
+  }
+
+  /**
+   * Encodes the given file on the calling thread, and returns true if it was encoded.
+   */
+  boolean encode(@NotNull WebpConvertedFile file) throws IOException {
+    byte[] source = file.sourceFile.contentsToByteArray();
+    String key = null;
+    if (myCache != null) {
+      key = WebpEncodeCache.getKey(source, mySettings);
+      // The files were filtered with the same settings when they were created, so there is no need to check for transparency again
+      byte[] encoded = myCache.get(key);
+      if (encoded != null) {
+        file.setEncoded(encoded);
+        return true;
+      }
+    }
+
+    int permits = Math.max(1, Math.min(myBudgetKb, getDecodedSizeKb(source)));
+    try {
+      myDecodedImagesBudget.acquire(permits);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ProcessCanceledException(e);
+    }
+    try {
+      BufferedImage image = ImageIO.read(new ByteArrayInputStream(source));
+      if (image == null || !file.convert(image, mySettings)) {
+        return false;
+      }
+    }
+    finally {
+      myDecodedImagesBudget.release(permits);
+    }
+
+    if (myCache != null && key != null) {
+      myCache.put(key, file.encoded);
+    }
+    return true;
+  }
+
+  /**
+   * Returns the size in kilobytes of the given image once decoded (as 4 bytes per pixel), read from its header, or the whole budget if
+   * the image size can't be read.
+   */
+  private int getDecodedSizeKb(@NotNull byte[] source) {
+    try (ImageInputStream stream = ImageIO.createImageInputStream(new ByteArrayInputStream(source))) {
+      Iterator<ImageReader> readers = stream != null ? ImageIO.getImageReaders(stream) : null;
+      if (readers != null && readers.hasNext()) {
+        ImageReader reader = readers.next();
+        try {
+          reader.setInput(stream, true, true);
+          long size = 4L * reader.getWidth(0) * reader.getHeight(0) / 1024;
+          return (int)Math.min(size, myBudgetKb);
+        }
+        finally {
+          reader.dispose();
+        }
+      }
+    }
+    catch (IOException ignore) {
+    }
+    return myBudgetKb;
+  }
+
+  /**
+   * Waits for the given future while checking for cancellation.
+   */
+  private static <T> T waitFor(@NotNull Future<T> future, @NotNull ProgressIndicator indicator) throws ExecutionException {
+    while (true) {
+      if (indicator.isCanceled()) {
+        future.cancel(true);
+        indicator.checkCanceled();
+      }
+      try {
+        return future.get(100, TimeUnit.MILLISECONDS);
+      }
+      catch (TimeoutException ignored) {
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ProcessCanceledException(e);
+      }
+      catch (ExecutionException e) {
+        if (e.getCause() instanceof ProcessCanceledException) {
+          throw (ProcessCanceledException)e.getCause();
+        }
+        throw e;
+      }
+    }
+  }
+}
@@ -227,8 +227,9 @@ public class WebpPreviewDialog extends DialogWrapper implements ChangeListener,
 
     @Override
     protected void doAction(ActionEvent e) {
-      myTask.encode(myFiles, true);
-      doOKAction();
+      if (myTask.encode(myFiles, true)) {
+        doOKAction();
+      }
     }
   }
 
@@ -17,6 +17,8 @@ package com.android.tools.idea.run;
 
 import com.android.annotations.VisibleForTesting;
 import com.android.ddmlib.*;
+import com.android.tools.idea.run.tasks.LaunchTaskDurations.Phase;
+import com.android.tools.idea.run.tasks.LaunchTaskDurations.PhaseTimings;
 import com.android.tools.idea.run.util.LaunchStatus;
 import com.android.tools.idea.run.util.LaunchUtils;
 import com.intellij.openapi.diagnostic.Logger;
@@ -34,6 +36,7 @@ public class FullApkInstaller {
   @NotNull private final LaunchOptions myLaunchOptions;
   @NotNull private final InstalledApkCache myInstalledApkCache;
   @NotNull private final ConsolePrinter myPrinter;
+  @NotNull private final PhaseTimings myTimings = new PhaseTimings();
 
   public FullApkInstaller(@NotNull Project project,
                           @NotNull LaunchOptions options,
@@ -45,6 +48,14 @@ public class FullApkInstaller {
     myPrinter = printer;
   }
 
+  /**
+   * Returns the time spent in every phase of the installations done by this installer.
+   */
+  @NotNull
+  public PhaseTimings getTimings() {
+    return myTimings;
+  }
+
   /**
    * Installs the given apk on the device.
    * @return whether the installation was successful
@@ -60,6 +71,7 @@ public class FullApkInstaller {
     String remotePath = "/data/local/tmp/" + packageName;
     myPrinter.stdout("$ adb push " + localFile + " " + remotePath);
 
+    long pushStart = System.nanoTime();
     try {
       device.pushFile(localFile.getPath(), remotePath);
     }
@@ -67,15 +79,18 @@ public class FullApkInstaller {
       myPrinter.stderr(e.toString());
       return false;
     }
+    finally {
+      myTimings.add(Phase.PUSH, System.nanoTime() - pushStart);
+    }
 
     String pmInstallOptions = getPmInstallOptions(device);
     RetryingInstaller.Installer installer = new ApkInstaller(myPrinter, remotePath, pmInstallOptions);
     RetryingInstaller retryingInstaller = new RetryingInstaller(myProject, device, installer, packageName, myPrinter, launchStatus);
 
-    boolean installed = retryingInstaller.install();
+    boolean installed = myTimings.time(Phase.PM_INSTALL, retryingInstaller::install);
     if (installed) {
       try {
-        myInstalledApkCache.setInstalled(device, localFile, packageName);
+        myInstalledApkCache.setInstalled(device, localFile, packageName, myTimings);
       }
       catch (IOException e) {
         // a failure here doesn't affect any functionality other than the install state cache being broken
@@ -105,7 +120,7 @@ public class FullApkInstaller {
 
     try {
       Integer userId = LaunchUtils.getUserIdFromFlags(myLaunchOptions.getPmInstallOptions());
-      if (!myInstalledApkCache.isInstalled(device, localFile, packageName, userId)) {
+      if (!myInstalledApkCache.isInstalled(device, localFile, packageName, userId, myTimings)) {
         return true;
       }
     } catch (IOException e) {
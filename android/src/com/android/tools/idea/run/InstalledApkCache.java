@@ -17,6 +17,8 @@ package com.android.tools.idea.run;
 
 import com.android.annotations.VisibleForTesting;
 import com.android.ddmlib.*;
+import com.android.tools.idea.run.tasks.LaunchTaskDurations.Phase;
+import com.android.tools.idea.run.tasks.LaunchTaskDurations.PhaseTimings;
 import com.google.common.base.Splitter;
 import com.google.common.collect.Sets;
 import com.google.common.hash.HashCode;
@@ -24,21 +26,32 @@ import com.google.common.hash.Hashing;
 import com.google.common.io.Files;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.util.text.StringUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Keeps track of the APKs installed by the IDE on the connected devices, so that an APK that is already installed on a device is not
+ * pushed and installed again.
+ * <p>
+ * An APK is considered installed if its digest matches the one it had when it was installed and the package manager reports the same
+ * last update time for the package. The digests of the local APKs are cached by path, size and modification time, so an unchanged APK
+ * is not hashed again for every launch and every device, and the package manager is only queried when the digests match.
+ */
 public class InstalledApkCache implements Disposable {
   private final DeviceStateCache<CacheData> myCache;
 
-  /** Diagnostic output set by {@link #getLastUpdateTime(com.android.ddmlib.IDevice, String)} */
-  private String myDiagnosticOutput;
+  /** Digests of the local APKs by path */
+  private final Map<File, DigestEntry> myDigests = new ConcurrentHashMap<>();
 
   public InstalledApkCache() {
     myCache = new DeviceStateCache<CacheData>(this);
@@ -53,25 +66,55 @@ public class InstalledApkCache implements Disposable {
       @NotNull File apk,
       @NotNull String pkgName,
       @Nullable Integer userId) throws IOException {
+    return isInstalled(device, apk, pkgName, userId, null);
+  }
+
+  /**
+   * Same as {@link #isInstalled(IDevice, File, String, Integer)}, adding the time spent hashing the APK and querying the package manager
+   * to the given timings.
+   */
+  public boolean isInstalled(
+      @NotNull IDevice device,
+      @NotNull File apk,
+      @NotNull String pkgName,
+      @Nullable Integer userId,
+      @Nullable PhaseTimings timings) throws IOException {
     CacheData state = myCache.get(device, pkgName);
     if (state == null) {
       return false;
     }
 
-    InstallState currentState = getInstallState(device, pkgName);
+    // The digest is usually cached, which makes it much cheaper than a round trip to the device
+    if (!state.hash.equals(hash(apk, timings))) {
+      return false;
+    }
+
+    InstallState currentState = timings != null ? timings.time(Phase.DUMPSYS, () -> getInstallState(device, pkgName))
+                                                : getInstallState(device, pkgName);
     return currentState != null &&
            state.installState.lastUpdateTime.equals(currentState.lastUpdateTime) &&
-           state.hash.equals(hash(apk)) &&
            (userId == null || currentState.users.contains(userId));
   }
 
   public void setInstalled(@NotNull IDevice device, @NotNull File apk, @NotNull String pkgName) throws IOException {
-    InstallState installState = getInstallState(device, pkgName);
+    setInstalled(device, apk, pkgName, null);
+  }
+
+  /**
+   * Same as {@link #setInstalled(IDevice, File, String)}, adding the time spent hashing the APK and querying the package manager to the
+   * given timings.
+   */
+  public void setInstalled(@NotNull IDevice device, @NotNull File apk, @NotNull String pkgName, @Nullable PhaseTimings timings)
+    throws IOException {
+    // Launches on several devices call this concurrently, so the diagnostic output is kept per call
+    Ref<String> diagnosticOutput = new Ref<>();
+    InstallState installState = timings != null ? timings.time(Phase.DUMPSYS, () -> getInstallState(device, pkgName, diagnosticOutput))
+                                                : getInstallState(device, pkgName, diagnosticOutput);
     if (installState == null) {
       // set installed should be called only after the package has been installed
       // If this error happens, look at the output of "dumpsys package <name>", and see why the parser did not identify the install state.
       String msg = String.format("Unexpected error: package manager reports that package %1$s has not been installed: %2$s", pkgName,
-                                 StringUtil.notNullize(myDiagnosticOutput));
+                                 StringUtil.notNullize(diagnosticOutput.get()));
 
       // We used to log an error, but see https://code.google.com/p/android/issues/detail?id=79778 for a case where this doesn't work
       // on custom Android systems. So we just log a warning: the impact is that these users won't have any benefits of caching - the apk
@@ -80,7 +123,24 @@ public class InstalledApkCache implements Disposable {
       return;
     }
 
-    myCache.put(device, pkgName, new CacheData(installState, hash(apk)));
+    myCache.put(device, pkgName, new CacheData(installState, hash(apk, timings)));
+  }
+
+  /**
+   * Returns the digest of the given APK, which is only computed again if the size or the modification time of the file changed.
+   */
+  @NotNull
+  private HashCode hash(@NotNull File apk, @Nullable PhaseTimings timings) throws IOException {
+    long length = apk.length();
+    long lastModified = apk.lastModified();
+    DigestEntry entry = myDigests.get(apk);
+    if (entry != null && entry.length == length && entry.lastModified == lastModified) {
+      return entry.hash;
+    }
+
+    HashCode hash = timings != null ? timings.time(Phase.HASH, () -> hash(apk)) : hash(apk);
+    myDigests.put(apk, new DigestEntry(length, lastModified, hash));
+    return hash;
   }
 
   @NotNull
@@ -88,6 +148,11 @@ public class InstalledApkCache implements Disposable {
     return Files.hash(apk, Hashing.goodFastHash(32));
   }
 
+  @VisibleForTesting
+  int getDigestCacheSize() {
+    return myDigests.size();
+  }
+
   @VisibleForTesting
   void deviceDisconnected(IDevice device) {
     myCache.deviceDisconnected(device);
@@ -99,15 +164,22 @@ public class InstalledApkCache implements Disposable {
    */
   @Nullable
   public InstallState getInstallState(@NotNull IDevice device, @NotNull String pkgName) {
+    return getInstallState(device, pkgName, new Ref<>());
+  }
+
+  /**
+   * Same as {@link #getInstallState(IDevice, String)}, setting {@code diagnosticOutput} to the reason the package was not found.
+   */
+  @Nullable
+  private InstallState getInstallState(@NotNull IDevice device, @NotNull String pkgName, @NotNull Ref<String> diagnosticOutput) {
     boolean deviceHasPackage = false;
-    myDiagnosticOutput = null;
 
     String output;
     try {
       output = executeShellCommand(device, "dumpsys package " + pkgName, 500, TimeUnit.MILLISECONDS);
     }
     catch (Exception e) {
-      myDiagnosticOutput = String.format("Error executing 'dumpsys package %1$s:\n%2$s'", pkgName, e.getMessage());
+      diagnosticOutput.set(String.format("Error executing 'dumpsys package %1$s:\n%2$s'", pkgName, e.getMessage()));
       return null;
     }
 
@@ -130,7 +202,7 @@ public class InstalledApkCache implements Disposable {
     }
 
     if (!deviceHasPackage) {
-      myDiagnosticOutput = String.format("Expected string 'Package [%1$s]' not found in output: %2$s", pkgName, output);
+      diagnosticOutput.set(String.format("Expected string 'Package [%1$s]' not found in output: %2$s", pkgName, output));
       return null;
     }
 
@@ -173,6 +245,18 @@ public class InstalledApkCache implements Disposable {
     }
   }
 
+  private static class DigestEntry {
+    private final long length;
+    private final long lastModified;
+    @NotNull private final HashCode hash;
+
+    private DigestEntry(long length, long lastModified, @NotNull HashCode hash) {
+      this.length = length;
+      this.lastModified = lastModified;
+      this.hash = hash;
+    }
+  }
+
   private static class CacheData {
     @NotNull private final InstallState installState;
     @NotNull private final HashCode hash;
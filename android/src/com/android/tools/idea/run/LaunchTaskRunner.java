@@ -25,30 +25,37 @@ import com.android.tools.idea.run.util.LaunchUtils;
 import com.android.tools.idea.run.util.ProcessHandlerLaunchStatus;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.intellij.execution.process.ProcessHandler;
+import com.intellij.concurrency.SensitiveProgressWrapper;
 import com.intellij.notification.NotificationType;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class LaunchTaskRunner extends Task.Backgroundable {
+  /** Maximum number of devices the launch tasks are performed on at the same time */
+  private static final int MAX_PARALLEL_DEVICES = 4;
+
   @NotNull private final String myConfigName;
   @NotNull private final LaunchInfo myLaunchInfo;
   @NotNull private final ProcessHandler myProcessHandler;
   @NotNull private final DeviceFutures myDeviceFutures;
   @NotNull private final LaunchTasksProvider myLaunchTasksProvider;
 
-  @Nullable private String myError;
+  @Nullable private volatile String myError;
 
   public LaunchTaskRunner(@NotNull Project project,
                           @NotNull String configName,
@@ -90,64 +97,164 @@ public class LaunchTaskRunner extends Task.Backgroundable {
     DateFormat dateFormat = new SimpleDateFormat("MM/dd HH:mm:ss");
     consolePrinter.stdout("\n" + dateFormat.format(new Date()) + ": Launching " + myConfigName);
 
+    AtomicInteger elapsed = new AtomicInteger();
+    if (debugSessionTask == null && listenableDeviceFutures.size() > 1) {
+      // Without a debug session the devices are independent of each other, so their APKs are installed at the same time
+      launchOnDevicesInParallel(listenableDeviceFutures, indicator, launchStatus, consolePrinter, elapsed);
+      return;
+    }
+
     for (ListenableFuture<IDevice> deviceFuture : listenableDeviceFutures) {
-      indicator.setText("Waiting for target device to come online");
-      IDevice device = waitForDevice(deviceFuture, indicator, launchStatus);
+      IDevice device = launchOnDevice(deviceFuture, indicator, launchStatus, consolePrinter, debugSessionTask,
+                                      listenableDeviceFutures.size(), elapsed);
       if (device == null) {
         return;
       }
 
-      List<LaunchTask> launchTasks = null;
-      try {
-        launchTasks = myLaunchTasksProvider.getTasks(device, launchStatus, consolePrinter);
+      if (debugSessionTask != null) {
+        debugSessionTask
+          .perform(myLaunchInfo, device, (ProcessHandlerLaunchStatus)launchStatus, (ProcessHandlerConsolePrinter)consolePrinter);
       }
-      catch (com.intellij.execution.ExecutionException e) {
-        launchStatus.terminateLaunch(e.getMessage());
-        return;
+      else {
+        addTargetDevice(device);
       }
-      catch (IllegalStateException e) {
-        launchStatus.terminateLaunch(e.getMessage());
-        Logger.getInstance(LaunchTaskRunner.class).error(e);
-        return;
+    }
+  }
+
+  private void launchOnDevicesInParallel(@NotNull List<ListenableFuture<IDevice>> deviceFutures,
+                                         @NotNull ProgressIndicator indicator,
+                                         @NotNull LaunchStatus launchStatus,
+                                         @NotNull ConsolePrinter consolePrinter,
+                                         @NotNull AtomicInteger elapsed) {
+    // The tasks of every device run under a child of this indicator: cancelling the launch reaches them, and a device whose
+    // launch fails cancels it for the other devices
+    ProgressIndicator launchIndicator = new SensitiveProgressWrapper(indicator);
+    ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Launch tasks", MAX_PARALLEL_DEVICES);
+    List<Future<IDevice>> futures = new ArrayList<>(deviceFutures.size());
+    for (ListenableFuture<IDevice> deviceFuture : deviceFutures) {
+      futures.add(executor.submit(() -> {
+        IDevice device = null;
+        try {
+          ProgressIndicator deviceIndicator = new SensitiveProgressWrapper(launchIndicator);
+          device = ProgressManager.getInstance().runProcess(
+            () -> launchOnDevice(deviceFuture, deviceIndicator, launchStatus, consolePrinter, null, deviceFutures.size(), elapsed),
+            deviceIndicator);
+          return device;
+        }
+        finally {
+          if (device == null) {
+            launchIndicator.cancel();
+          }
+        }
+      }));
+    }
+
+    for (Future<IDevice> future : futures) {
+      IDevice device = waitForLaunch(future, indicator, launchStatus);
+      if (device != null) {
+        // the process handler isn't thread safe, so the devices are added from this thread
+        addTargetDevice(device);
       }
+    }
+  }
 
-      int totalDuration = listenableDeviceFutures.size() * getTotalDuration(launchTasks, debugSessionTask);
-      int elapsed = 0;
+  /**
+   * Waits for the device of the given future and performs the launch tasks on it.
+   *
+   * @return the device, or null if the launch failed or was cancelled
+   */
+  @Nullable
+  private IDevice launchOnDevice(@NotNull ListenableFuture<IDevice> deviceFuture,
+                                 @NotNull ProgressIndicator indicator,
+                                 @NotNull LaunchStatus launchStatus,
+                                 @NotNull ConsolePrinter consolePrinter,
+                                 @Nullable DebugConnectorTask debugSessionTask,
+                                 int deviceCount,
+                                 @NotNull AtomicInteger elapsed) {
+    indicator.setText("Waiting for target device to come online");
+    IDevice device = waitForDevice(deviceFuture, indicator, launchStatus);
+    if (device == null) {
+      return null;
+    }
 
-      for (LaunchTask task : launchTasks) {
-        // perform each task
-        indicator.setText(task.getDescription());
-        if (!task.perform(device, launchStatus, consolePrinter)) {
-          myError = "Error " + task.getDescription();
-          launchStatus.terminateLaunch("Error while " + task.getDescription());
-          return;
-        }
+    List<LaunchTask> launchTasks = null;
+    try {
+      launchTasks = myLaunchTasksProvider.getTasks(device, launchStatus, consolePrinter);
+    }
+    catch (com.intellij.execution.ExecutionException e) {
+      launchStatus.terminateLaunch(e.getMessage());
+      return null;
+    }
+    catch (IllegalStateException e) {
+      launchStatus.terminateLaunch(e.getMessage());
+      Logger.getInstance(LaunchTaskRunner.class).error(e);
+      return null;
+    }
 
-        // update progress
-        elapsed += task.getDuration();
-        indicator.setFraction((double)elapsed / totalDuration);
+    int totalDuration = deviceCount * getTotalDuration(launchTasks, debugSessionTask);
 
-        // check for cancellation via progress bar
-        if (indicator.isCanceled()) {
-          launchStatus.terminateLaunch("User cancelled launch");
-          return;
-        }
+    for (LaunchTask task : launchTasks) {
+      // perform each task
+      indicator.setText(task.getDescription());
+      if (!task.perform(device, launchStatus, consolePrinter)) {
+        myError = "Error " + task.getDescription();
+        launchStatus.terminateLaunch("Error while " + task.getDescription());
+        return null;
+      }
 
-        // check for cancellation via stop button
-        if (launchStatus.isLaunchTerminated()) {
-          return;
-        }
+      // update progress
+      indicator.setFraction(Math.min(1.0, (double)elapsed.addAndGet(task.getDuration()) / totalDuration));
+
+      // check for cancellation via stop button, or a failure on another device
+      if (launchStatus.isLaunchTerminated()) {
+        return null;
       }
 
-      if (debugSessionTask != null) {
-        debugSessionTask
-          .perform(myLaunchInfo, device, (ProcessHandlerLaunchStatus)launchStatus, (ProcessHandlerConsolePrinter)consolePrinter);
+      // check for cancellation via progress bar
+      if (indicator.isCanceled()) {
+        launchStatus.terminateLaunch("User cancelled launch");
+        return null;
+      }
+    }
+    return device;
+  }
+
+  private void addTargetDevice(@NotNull IDevice device) {
+    // we only need to inform the process handler if certain scenarios
+    if (myLaunchTasksProvider.createsNewProcess() // we are not doing a hot swap (in which case we are creating a new process)
+        && myProcessHandler instanceof AndroidProcessHandler) { // we aren't debugging (in which case its a DebugProcessHandler)
+      ((AndroidProcessHandler)myProcessHandler).addTargetDevice(device);
+    }
+  }
+
+  /**
+   * Waits for the launch tasks of a device performed on a pooled thread, terminating the launch if it is cancelled.
+   */
+  @Nullable
+  private static IDevice waitForLaunch(@NotNull Future<IDevice> future,
+                                       @NotNull ProgressIndicator indicator,
+                                       @NotNull LaunchStatus launchStatus) {
+    while (true) {
+      try {
+        return future.get(100, TimeUnit.MILLISECONDS);
       }
-      else { // we only need to inform the process handler if certain scenarios
-        if (myLaunchTasksProvider.createsNewProcess() // we are not doing a hot swap (in which case we are creating a new process)
-            && myProcessHandler instanceof AndroidProcessHandler) { // we aren't debugging (in which case its a DebugProcessHandler)
-          ((AndroidProcessHandler)myProcessHandler).addTargetDevice(device);
+      catch (TimeoutException ignored) {
+      }
+      catch (InterruptedException e) {
+        launchStatus.terminateLaunch("Interrupted while launching");
+        return null;
+      }
+      catch (ExecutionException e) {
+        if (!(e.getCause() instanceof ProcessCanceledException)) {
+          Logger.getInstance(LaunchTaskRunner.class).warn(e.getCause());
+          launchStatus.terminateLaunch("Error while launching: " + e.getCause().getMessage());
         }
+        return null;
+      }
+
+      if (indicator.isCanceled() && !launchStatus.isLaunchTerminated()) {
+        // the tasks stop at their next cancellation check
+        launchStatus.terminateLaunch("User cancelled launch");
       }
     }
   }
@@ -180,12 +287,12 @@ public class LaunchTaskRunner extends Task.Backgroundable {
         return null;
       }
 
-      if (indicator.isCanceled()) {
-        launchStatus.terminateLaunch("User cancelled launch");
+      if (launchStatus.isLaunchTerminated()) {
         return null;
       }
 
-      if (launchStatus.isLaunchTerminated()) {
+      if (indicator.isCanceled()) {
+        launchStatus.terminateLaunch("User cancelled launch");
         return null;
       }
     }
@@ -76,6 +76,7 @@ public class DeployApkTask implements LaunchTask {
 
       String pkgName = apk.getApplicationId();
       if (!installer.uploadAndInstallApk(device, pkgName, apk.getFile(), launchStatus)) {
+        LOG.info("Installation on " + device.getSerialNumber() + " failed after " + installer.getTimings());
         return false;
       }
 
@@ -89,6 +90,7 @@ public class DeployApkTask implements LaunchTask {
         }
       }
     }
+    LOG.info("Installed " + myApks.size() + " APK(s) on " + device.getSerialNumber() + ": " + installer.getTimings());
 
     if (myInstantRunContext == null) {
       InstantRunStatsService.get(myProject).notifyNonInstantRunDeployType(device);
@@ -15,6 +15,15 @@
  */
 package com.android.tools.idea.run.tasks;
 
+import com.intellij.openapi.util.ThrowableComputable;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Relative durations of the launch tasks, used to report the progress of a launch, and the measured durations of the phases of an APK
+ * installation.
+ */
 public class LaunchTaskDurations {
   public static final int ASYNC_TASK = 1;
   public static final int LAUNCH_ACTIVITY = 2;
@@ -23,4 +32,64 @@ public class LaunchTaskDurations {
   public static final int DEPLOY_APK = 20;
   public static final int DEPLOY_INSTANT_APP = 20;
   public static final int UNINSTALL_IOT_APK = 20;
+
+  /**
+   * Phases of the installation of an APK on a device.
+   */
+  public enum Phase {
+    /** Computing the digest of the local APK */
+    HASH("hash"),
+    /** Querying the package manager for the installed package */
+    DUMPSYS("dumpsys"),
+    /** Pushing the APK to the device */
+    PUSH("push"),
+    /** Installing the pushed APK */
+    PM_INSTALL("pm install");
+
+    @NotNull private final String myDisplayName;
+
+    Phase(@NotNull String displayName) {
+      myDisplayName = displayName;
+    }
+  }
+
+  /**
+   * Time spent in every {@link Phase} of the APK installations on a device.
+   */
+  public static final class PhaseTimings {
+    private final long[] myNanos = new long[Phase.values().length];
+
+    public synchronized void add(@NotNull Phase phase, long nanos) {
+      myNanos[phase.ordinal()] += nanos;
+    }
+
+    /**
+     * Runs the given computation and adds the time it took to the given phase.
+     */
+    public <T, E extends Exception> T time(@NotNull Phase phase, @NotNull ThrowableComputable<T, E> computable) throws E {
+      long start = System.nanoTime();
+      try {
+        return computable.compute();
+      }
+      finally {
+        add(phase, System.nanoTime() - start);
+      }
+    }
+
+    public synchronized long getMillis(@NotNull Phase phase) {
+      return TimeUnit.NANOSECONDS.toMillis(myNanos[phase.ordinal()]);
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder builder = new StringBuilder();
+      for (Phase phase : Phase.values()) {
+        if (builder.length() > 0) {
+          builder.append(", ");
+        }
+        builder.append(phase.myDisplayName).append(' ').append(getMillis(phase)).append(" ms");
+      }
+      return builder.toString();
+    }
+  }
 }
@@ -28,13 +28,20 @@ import java.io.IOException;
 import java.net.URL;
 
 /**
- * Installer for binary diff packages, as built by {@code com.intellij.updater.Runner}.
+ * Installer for binary diff packages, as built by {@code com.intellij.updater.Runner} or
+ * {@code com.android.tools.idea.sdk.updater.PatchGenerator#generateDiffPackage}.
+ *
+ * If the patch can't be downloaded, the complete package is installed instead, as done by {@link FullInstaller}.
  */
 class PatchInstaller extends AbstractInstaller implements PatchOperation {
 
   private static final String PATCH_JAR_FN = "patch.jar";
   private LocalPackage myExisting;
   private File myPatchFile;
+  /**
+   * Installer of the complete package, used when the patch couldn't be downloaded.
+   */
+  private FullInstaller myFallback;
 
   PatchInstaller(@Nullable LocalPackage existing,
                         @NotNull RemotePackage p,
@@ -48,6 +55,9 @@ class PatchInstaller extends AbstractInstaller implements PatchOperation {
   @Override
   protected boolean doComplete(@Nullable File installTemp,
                                @NotNull ProgressIndicator progress) {
+    if (myFallback != null) {
+      return myFallback.doComplete(installTemp, progress);
+    }
     if (myPatchFile == null) {
       myPatchFile = new File(installTemp, PATCH_JAR_FN);
     }
@@ -64,9 +74,23 @@ class PatchInstaller extends AbstractInstaller implements PatchOperation {
     Archive.PatchType patch = archive.getPatch(local.getVersion());
     assert patch != null;
 
-    myPatchFile = downloadPatchFile(patch, tempDir, progress);
+    myPatchFile = downloadPatchFile(patch, tempDir, progress.createSubProgress(0.5));
+    progress.setFraction(0.5);
     if (myPatchFile == null) {
-      progress.logWarning("Patch failed to download.");
+      if (progress.isCanceled()) {
+        return false;
+      }
+      progress.logWarning("Patch failed to download, installing the complete package instead.");
+      return prepareFallback(tempDir, progress.createSubProgress(1));
+    }
+    progress.setFraction(1);
+    return true;
+  }
+
+  private boolean prepareFallback(@NotNull File tempDir, @NotNull ProgressIndicator progress) {
+    myFallback = new FullInstaller(myExisting, getPackage(), getRepoManager(), getDownloader(), mFop);
+    if (!myFallback.doPrepare(tempDir, progress)) {
+      myFallback = null;
       return false;
     }
     return true;
@@ -109,7 +133,8 @@ class PatchInstaller extends AbstractInstaller implements PatchOperation {
   @NotNull
   @Override
   public File getNewFilesRoot() {
-    // PatchInstaller doesn't need to generate a patch on the fly, so it doesn't have or need this information.
+    // PatchInstaller doesn't need to generate a patch on the fly (the fallback installer generates its own), so it doesn't have or need
+    // this information.
     throw new UnsupportedOperationException("PatchInstaller can't generate patches");
   }
 
@@ -130,7 +130,7 @@ public class PatchRunner {
   }
 
   /**
-   * Generate a patch.
+   * Generate a patch. The patch contains the complete new package: patches with binary diffs are only generated for distribution.
    *
    * @param existingRoot        The "From" (the original state of the files before the patch is applied.
    * @param newRoot             The "To" (the new state after the patch is applied).
@@ -17,14 +17,32 @@ package com.android.tools.idea.templates;
 
 import com.android.tools.idea.templates.propertyAdapters.PropertyObjectWrapper;
 import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import freemarker.template.Configuration;
 import freemarker.template.TemplateExceptionHandler;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * A Freemarker {@link Configuration} initialized with sensible built-in values for instantiating
  * Android project templates.
  */
 public final class FreemarkerConfiguration extends Configuration {
+  /** Maximum number of templates parsed at the same time by {@link #preloadTemplates} */
+  private static final int PRELOAD_PARALLELISM = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
+  private static ExecutorService ourPreloadExecutor;
+  private static final Map<File, FreemarkerConfiguration> ourSharedConfigurations = new ConcurrentHashMap<>();
+
   public FreemarkerConfiguration() {
     setDefaultEncoding(Charsets.UTF_8.name());
     setLocalizedLookup(false);
@@ -32,4 +50,53 @@ public final class FreemarkerConfiguration extends Configuration {
     setTemplateExceptionHandler(TemplateExceptionHandler.RETHROW_HANDLER);
     setObjectWrapper(new PropertyObjectWrapper());
   }
+
+  /**
+   * Returns the configuration shared by all the templates under the given template root folder (see
+   * {@link StudioTemplateLoader#getTemplateRootFolder()}), so that a template parsed once is reused by the following renderings. The
+   * modification time of a cached template is checked every time it is looked up, and the template is parsed again if it changed.
+   */
+  @NotNull
+  public static FreemarkerConfiguration getShared(@NotNull File templateRootFolder) {
+    return ourSharedConfigurations.computeIfAbsent(templateRootFolder, folder -> {
+      FreemarkerConfiguration configuration = new FreemarkerConfiguration();
+      configuration.setTemplateLoader(new StudioTemplateLoader(folder));
+      configuration.setTemplateUpdateDelay(0);
+      return configuration;
+    });
+  }
+
+  /**
+   * Parses the templates with the given names in parallel and waits for them to be in the cache of this configuration. Templates that
+   * can't be parsed are skipped, their errors are reported when they are processed.
+   */
+  public void preloadTemplates(@NotNull Collection<String> names) {
+    if (names.size() < 2) {
+      return;
+    }
+    ExecutorService executor = getPreloadExecutor();
+    List<Future<?>> futures = Lists.newArrayListWithCapacity(names.size());
+    for (String name : names) {
+      futures.add(executor.submit(() -> getTemplate(name)));
+    }
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      catch (ExecutionException ignored) {
+      }
+    }
+  }
+
+  @NotNull
+  private static synchronized ExecutorService getPreloadExecutor() {
+    if (ourPreloadExecutor == null) {
+      ourPreloadExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Template parsing", PRELOAD_PARALLELISM);
+    }
+    return ourPreloadExecutor;
+  }
 }
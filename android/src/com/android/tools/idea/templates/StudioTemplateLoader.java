@@ -26,6 +26,10 @@ import java.util.Stack;
 
 /**
  * A custom {@link TemplateLoader} which locates templates on disk relative to a specified template folder.
+ * <p>
+ * FreeMarker only ever asks the loader for "root://" names (the names returned by {@link #findTemplate} and the includes resolved
+ * against them), so the loader used by a {@link FreemarkerConfiguration} doesn't depend on the stack of template folders and can be
+ * shared by the configurations of all the templates with the same root folder.
  */
 public final class StudioTemplateLoader implements TemplateLoader {
   // Root folder of a set of templates. This is found by finding a parent folder of the original
@@ -76,6 +80,14 @@ public final class StudioTemplateLoader implements TemplateLoader {
     myLastTemplateFolders.pop();
   }
 
+  /**
+   * Returns the root folder of the templates this loader is loading, which "root://" names are relative to.
+   */
+  @NotNull
+  public File getTemplateRootFolder() {
+    return myTemplateRootFolder;
+  }
+
   /**
    * Return the name reference of a template given a file location.
    * @param file is either an absolute file path, a relative path
@@ -112,10 +124,7 @@ public final class StudioTemplateLoader implements TemplateLoader {
   @Override
   @Nullable
   public Object findTemplateSource(@NotNull String name) throws IOException {
-    File file = resolveName(name);
-    TemplateSource templateSource = TemplateSource.open(file);
-    pushTemplateFolder(file.getParentFile());
-    return templateSource;
+    return TemplateSource.open(resolveName(name));
   }
 
   /**
@@ -149,7 +158,6 @@ public final class StudioTemplateLoader implements TemplateLoader {
   @Override
   public void closeTemplateSource(Object source) throws IOException {
     TemplateSource templateSource = (TemplateSource) source;
-    popTemplateFolder();
     templateSource.close();
   }
 
@@ -186,14 +194,16 @@ public final class StudioTemplateLoader implements TemplateLoader {
   }
 
   /**
-   * Helper class for handling template source files.
+   * Helper class for handling template source files. The file is only opened when FreeMarker reads it, since the source of a template
+   * that is already cached is only looked up to check its modification time.
    */
   private final static class TemplateSource {
-    private final InputStream myInputStream;
+    private final File myFile;
     private final long myLastModifiedTime;
+    private InputStream myInputStream;
 
-    private TemplateSource(@NotNull InputStream inputStream, long lastModified) {
-      myInputStream = inputStream;
+    private TemplateSource(@NotNull File file, long lastModified) {
+      myFile = file;
       myLastModifiedTime = lastModified;
     }
 
@@ -201,11 +211,14 @@ public final class StudioTemplateLoader implements TemplateLoader {
       if (!file.exists() && !file.isFile()) {
         return null;
       }
-      return new TemplateSource(SdkUtils.fileToUrl(file).openStream(), file.lastModified());
+      return new TemplateSource(file, file.lastModified());
     }
 
     @NotNull
-    public InputStream getInputStream() {
+    public InputStream getInputStream() throws IOException {
+      if (myInputStream == null) {
+        myInputStream = SdkUtils.fileToUrl(myFile).openStream();
+      }
       return myInputStream;
     }
 
@@ -214,7 +227,20 @@ public final class StudioTemplateLoader implements TemplateLoader {
     }
 
     public void close() throws IOException {
-      myInputStream.close();
+      if (myInputStream != null) {
+        myInputStream.close();
+      }
+    }
+
+    // FreeMarker only keeps using a cached template if the source found for its name is equal to the cached one
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof TemplateSource && myFile.equals(((TemplateSource)other).myFile);
+    }
+
+    @Override
+    public int hashCode() {
+      return myFile.hashCode();
     }
   }
 }
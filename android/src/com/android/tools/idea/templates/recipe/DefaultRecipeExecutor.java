@@ -29,6 +29,7 @@ import com.android.tools.idea.templates.FreemarkerUtils.TemplateProcessingExcept
 import com.android.tools.idea.templates.FreemarkerUtils.TemplateUserVisibleException;
 import com.android.tools.idea.templates.RecipeMergeUtils;
 import com.android.tools.idea.templates.TemplateMetadata;
+import com.google.common.collect.Lists;
 import com.google.common.collect.SetMultimap;
 import com.intellij.diff.comparison.ComparisonManager;
 import com.intellij.diff.comparison.ComparisonPolicy;
@@ -52,6 +53,7 @@ import org.jetbrains.annotations.Nullable;
 import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Predicate;
 
@@ -286,6 +288,27 @@ public final class DefaultRecipeExecutor implements RecipeExecutor {
     }
   }
 
+  /**
+   * Parses the given template files in parallel into the shared Freemarker configuration. The templates are still
+   * processed one at a time by {@link #instantiate}, since template methods may look up the project model.
+   */
+  @Override
+  public void preloadTemplates(@NotNull List<File> templates) {
+    List<String> names = Lists.newArrayListWithCapacity(templates.size());
+    for (File template : templates) {
+      // Extension-less files are copied as directories, see instantiate
+      if (template.getName().indexOf('.') != -1) {
+        try {
+          names.add(myContext.getLoader().findTemplate(template));
+        }
+        catch (IOException ignored) {
+          // Reported when the template is instantiated
+        }
+      }
+    }
+    myContext.getFreemarkerConfiguration().preloadTemplates(names);
+  }
+
   /**
    * Merges the given source file into the given destination file (or it just copies it over if
    * the destination file does not exist).
@@ -19,6 +19,7 @@ import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
 /**
  * {@link RecipeExecutor} that collects references as a result of
@@ -46,6 +47,10 @@ final class FindReferencesRecipeExecutor implements RecipeExecutor {
     addTargetFile(to);
   }
 
+  @Override
+  public void preloadTemplates(@NotNull List<File> templates) {
+  }
+
   @Override
   public void merge(@NotNull File from, @NotNull File to) {
     addSourceFile(from);
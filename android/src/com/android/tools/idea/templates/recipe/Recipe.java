@@ -40,6 +40,8 @@ import static com.android.SdkConstants.DOT_FTL;
  */
 @XmlRootElement(name = "recipe")
 public class Recipe implements RecipeInstruction {
+  private static JAXBContext ourJaxbContext;
+
   // @formatter:off
   @XmlElements({
     @XmlElement(name = "copy", type = CopyInstruction.class),
@@ -79,8 +81,19 @@ public class Recipe implements RecipeInstruction {
     return recipe;
   }
 
+  /**
+   * Returns the JAXB context of recipes, which is expensive to create but can be shared to create the unmarshaller of every recipe.
+   */
+  @NotNull
+  private static synchronized JAXBContext getJaxbContext() throws JAXBException {
+    if (ourJaxbContext == null) {
+      ourJaxbContext = JAXBContext.newInstance(Recipe.class);
+    }
+    return ourJaxbContext;
+  }
+
   private static Recipe unmarshal(@NotNull Reader xmlReader) throws JAXBException {
-    Unmarshaller unmarshaller = JAXBContext.newInstance(Recipe.class).createUnmarshaller();
+    Unmarshaller unmarshaller = getJaxbContext().createUnmarshaller();
     unmarshaller.setEventHandler(new ValidationEventHandler() {
       @Override
       public boolean handleEvent(ValidationEvent event) {
@@ -116,6 +129,16 @@ public class Recipe implements RecipeInstruction {
   }
 
   private void executeInstructions(@NotNull RecipeExecutor executor) throws TemplateProcessingException {
+    List<File> templates = Lists.newArrayList();
+    for (RecipeInstruction instruction : instructions) {
+      if (instruction instanceof InstantiateInstruction) {
+        templates.add(((InstantiateInstruction)instruction).from);
+      }
+    }
+    if (!templates.isEmpty()) {
+      executor.preloadTemplates(templates);
+    }
+
     for (RecipeInstruction instruction : instructions) {
       instruction.execute(executor);
     }
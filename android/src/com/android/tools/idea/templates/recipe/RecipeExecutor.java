@@ -19,6 +19,7 @@ import com.android.tools.idea.templates.FreemarkerUtils.TemplateProcessingExcept
 import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
+import java.util.List;
 
 /**
  * Execution engine for the instructions in a Recipe.
@@ -38,6 +39,12 @@ public interface RecipeExecutor {
    */
   void instantiate(@NotNull File from, @NotNull File to) throws TemplateProcessingException;
 
+  /**
+   * Called with the template files a recipe instantiates before its instructions are executed, so that they can be parsed ahead of
+   * their instantiation.
+   */
+  void preloadTemplates(@NotNull List<File> templates);
+
   /**
    * Merges the given source file into the given destination file (or it just copies it over if
    * the destination file does not exist).
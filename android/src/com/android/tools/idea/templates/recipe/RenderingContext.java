@@ -26,7 +26,6 @@ import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.project.ex.ProjectManagerEx;
 import com.intellij.openapi.vfs.VfsUtilCore;
-import freemarker.template.Configuration;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -57,7 +56,7 @@ public class RenderingContext {
   private final boolean myPerformSync;
   private final boolean myFindOnlyReferences;
   private final StudioTemplateLoader myLoader;
-  private final Configuration myFreemarker;
+  private final FreemarkerConfiguration myFreemarker;
   private final Collection<File> mySourceFiles;
   private final Collection<File> myTargetFiles;
   private final Collection<File> myFilesToOpen;
@@ -94,8 +93,7 @@ public class RenderingContext {
     myDryRun = dryRun;
     myShowErrors = showErrors;
     myLoader = new StudioTemplateLoader(initialTemplatePath);
-    myFreemarker = new FreemarkerConfiguration();
-    myFreemarker.setTemplateLoader(myLoader);
+    myFreemarker = FreemarkerConfiguration.getShared(myLoader.getTemplateRootFolder());
     mySourceFiles = outSourceFiles != null ? outSourceFiles : Lists.newArrayList();
     myTargetFiles = outTargetFiles != null ? outTargetFiles : Lists.newArrayList();
     myFilesToOpen = outOpenFiles != null ? outOpenFiles : Lists.newArrayList();
@@ -185,7 +183,7 @@ public class RenderingContext {
    * Used internally.
    */
   @NotNull
-  public Configuration getFreemarkerConfiguration() {
+  public FreemarkerConfiguration getFreemarkerConfiguration() {
     return myFreemarker;
   }
 
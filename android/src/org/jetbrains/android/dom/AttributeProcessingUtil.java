@@ -26,7 +26,6 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.util.Computable;
-import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.xml.XmlAttribute;
 import com.intellij.psi.xml.XmlElement;
@@ -241,36 +240,24 @@ public class AttributeProcessingUtil {
                                                                 PsiClass c,
                                                                 AttributeProcessor callback,
                                                                 Set<XmlName> skipNames) {
-    while (c != null) {
-      String styleableName = c.getName();
-      if (styleableName != null) {
-        registerAttributes(facet, element, styleableName, getResourcePackage(c), callback, skipNames);
-      }
-      for (PsiClass additional : getAdditionalAttributesClasses(facet, c)) {
-        String additionalStyleableName = additional.getName();
-        if (additionalStyleableName != null) {
-          registerAttributes(facet, element, additionalStyleableName, getResourcePackage(additional), callback, skipNames);
-        }
-      }
-      c = getSuperclass(c);
+    if (c != null) {
+      registerIndexedAttributes(element, ViewAttributeIndex.getInstance(facet).getClassAttributes(c), callback, skipNames);
     }
   }
 
-  /**
-   * Return the classes that hold attributes used in the specified class c.
-   * This is for classes from support libaries without attrs.xml like support lib v4.
-   */
-  private static Collection<PsiClass> getAdditionalAttributesClasses(@NotNull AndroidFacet facet, @NotNull PsiClass c) {
-    switch (StringUtil.notNullize(c.getQualifiedName())) {
-      case CLASS_NESTED_SCROLL_VIEW:
-        return Collections.singleton(getViewClassMap(facet).get(SCROLL_VIEW));
-      default:
-        return Collections.emptySet();
+  private static void registerIndexedAttributes(@NotNull DomElement element,
+                                                @NotNull List<ViewAttributeIndex.StyleableAttribute> attributes,
+                                                @NotNull AttributeProcessor callback,
+                                                @NotNull Set<XmlName> skipNames) {
+    for (ViewAttributeIndex.StyleableAttribute attribute : attributes) {
+      if (skipNames.add(attribute.getName())) {
+        registerAttribute(attribute.getDefinition(), attribute.getStyleableName(), attribute.getNamespace(), element, callback);
+      }
     }
   }
 
   @Nullable
-  private static String getResourcePackage(@NotNull PsiClass psiClass) {
+  static String getResourcePackage(@NotNull PsiClass psiClass) {
     // TODO: Replace this with the namespace of the styleableName when that is available.
     String qualifiedName = psiClass.getQualifiedName();
     return qualifiedName != null &&
@@ -280,7 +267,7 @@ public class AttributeProcessingUtil {
   }
 
   @Nullable
-  private static PsiClass getSuperclass(@NotNull final PsiClass c) {
+  static PsiClass getSuperclass(@NotNull final PsiClass c) {
     return ApplicationManager.getApplication().runReadAction((Computable<PsiClass>)() -> c.isValid() ? c.getSuperClass() : null);
   }
 
@@ -335,54 +322,6 @@ public class AttributeProcessingUtil {
     return TagToClassMapper.getInstance(facet.getModule()).getClassMap(className);
   }
 
-  private static void registerAttributesFromSuffixedStyleables(@NotNull AndroidFacet facet,
-                                                               @NotNull DomElement element,
-                                                               @NotNull PsiClass psiClass,
-                                                               @NotNull AttributeProcessor callback,
-                                                               @NotNull Set<XmlName> skipAttrNames) {
-    String viewName = psiClass.getName();
-    if (viewName == null) {
-      return;
-    }
-
-    // Not using Map here for lookup by prefix for performance reasons - using switch instead of ImmutableMap makes
-    // attribute highlighting 20% faster as measured by AndroidLayoutDomTest#testCustomAttrsPerformance
-    final String styleableName;
-    switch (viewName) {
-      case "ViewGroup":
-        styleableName = "ViewGroup_MarginLayout";
-        break;
-      case "TableRow":
-        styleableName = "TableRow_Cell";
-        break;
-      case "CollapsingToolbarLayout":
-        // Support library doesn't have particularly consistent naming
-        // Styleable definition: https://android.googlesource.com/platform/frameworks/support/+/master/design/res/values/attrs.xml
-        registerAttributes(facet, element, "CollapsingAppBarLayout_LayoutParams", null, callback, skipAttrNames);
-
-        styleableName = viewName + "_Layout";  // This is what it should be... (may be fixed in the future)
-        break;
-      case "CoordinatorLayout":
-        // Support library doesn't have particularly consistent naming
-        // Styleable definition: https://android.googlesource.com/platform/frameworks/support/+/master/design/res/values/attrs.xml
-        registerAttributes(facet, element, "CoordinatorLayout_LayoutParams", null, callback, skipAttrNames);
-
-        styleableName = viewName + "_Layout";  // This is what it should be... (may be fixed in the future)
-        break;
-      case "AppBarLayout":
-        // Support library doesn't have particularly consistent naming
-        // Styleable definition: https://android.googlesource.com/platform/frameworks/support/+/master/design/res/values/attrs.xml
-        registerAttributes(facet, element, "AppBarLayout_LayoutParams", null, callback, skipAttrNames);
-
-        styleableName = viewName + "_Layout";  // This is what it should be... (may be fixed in the future)
-        break;
-      default:
-        styleableName = viewName + "_Layout";
-    }
-
-    registerAttributes(facet, element, styleableName, getResourcePackage(psiClass), callback, skipAttrNames);
-  }
-
   /**
    * Entry point for XML elements in navigation XMLs
    */
@@ -463,13 +402,7 @@ public class AttributeProcessingUtil {
         //
         // See LayoutInflater#createViewFromTag in Android framework for inflating code
 
-        for (PsiClass aClass : map.values()) {
-          final String name = aClass.getName();
-          if (name == null) {
-            continue;
-          }
-          registerAttributes(facet, element, name, getResourcePackage(aClass), callback, skipAttrNames);
-        }
+        registerIndexedAttributes(element, ViewAttributeIndex.getInstance(facet).getAllClassAttributes(map), callback, skipAttrNames);
         break;
 
       case VIEW_MERGE:
@@ -511,18 +444,15 @@ public class AttributeProcessingUtil {
       }
       if (parentTagName != null) {
         PsiClass c = map.get(parentTagName);
-        while (c != null) {
-          registerAttributesFromSuffixedStyleables(facet, element, c, callback, skipAttrNames);
-          c = getSuperclass(c);
+        if (c != null) {
+          registerIndexedAttributes(element, ViewAttributeIndex.getInstance(facet).getLayoutParamAttributes(c), callback, skipAttrNames);
         }
         return;
       }
     }
 
     // We don't know what the parent is: include all layout attributes from all layout classes
-    for (PsiClass c : map.values()) {
-      registerAttributesFromSuffixedStyleables(facet, element, c, callback, skipAttrNames);
-    }
+    registerIndexedAttributes(element, ViewAttributeIndex.getInstance(facet).getAllLayoutParamAttributes(map), callback, skipAttrNames);
   }
 
   /**
@@ -0,0 +1,366 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.dom;
+
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.util.xml.XmlName;
+import org.jetbrains.android.dom.attrs.AttributeDefinition;
+import org.jetbrains.android.dom.attrs.AttributeDefinitions;
+import org.jetbrains.android.dom.attrs.StyleableDefinition;
+import org.jetbrains.android.facet.AndroidFacet;
+import org.jetbrains.android.resourceManagers.ModuleResourceManagers;
+import org.jetbrains.android.resourceManagers.ResourceManager;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.android.SdkConstants.CLASS_NESTED_SCROLL_VIEW;
+import static com.android.SdkConstants.SCROLL_VIEW;
+import static org.jetbrains.android.util.AndroidUtils.SYSTEM_RESOURCE_PACKAGE;
+
+/**
+ * Attributes of the view classes of a module, flattened over their superclasses, used by {@link AttributeProcessingUtil} so that the
+ * attributes of a tag are looked up once instead of going through the class hierarchy and the styleables for every tag.
+ * <p>
+ * For every class the index keeps the attributes of the styleables of the class and its superclasses, and the layout parameters it
+ * gives to its children (the attributes of its {@code _Layout} styleables and the ones of its superclasses), in the order they are
+ * registered and without duplicates. The attributes of all the view classes, used for {@code <view>} tags and tags with an unknown
+ * parent, are kept as well.
+ * <p>
+ * The index of a module is built again when the Java structure or the roots of the project change, or when the attribute definitions of
+ * the module or the platform are replaced.
+ */
+final class ViewAttributeIndex {
+  private static final Key<ViewAttributeIndex> KEY = Key.create(ViewAttributeIndex.class.getName());
+
+  @NotNull private final AndroidFacet myFacet;
+  private final long myStructureModificationCount;
+  private final long myRootsModificationCount;
+  @Nullable private final AttributeDefinitions myLocalAttrDefs;
+  @Nullable private final AttributeDefinitions mySystemAttrDefs;
+  @Nullable private final String myLocalNamespace;
+
+  @NotNull private final Map<PsiClass, List<StyleableAttribute>> myClassAttributes = new ConcurrentHashMap<>();
+  @NotNull private final Map<PsiClass, List<StyleableAttribute>> myLayoutParamAttributes = new ConcurrentHashMap<>();
+  @Nullable private volatile AllClassesEntry myAllClassAttributes;
+  @Nullable private volatile AllClassesEntry myAllLayoutParamAttributes;
+
+  /**
+   * Returns the index of the module of the given facet, building a new one if the current one is out of date.
+   */
+  @NotNull
+  static ViewAttributeIndex getInstance(@NotNull AndroidFacet facet) {
+    Module module = facet.getModule();
+    Project project = module.getProject();
+    long structureModificationCount = PsiModificationTracker.SERVICE.getInstance(project).getJavaStructureModificationCount();
+    long rootsModificationCount = ProjectRootManager.getInstance(project).getModificationCount();
+    AttributeDefinitions localAttrDefs = getAttributeDefinitions(facet, null);
+    AttributeDefinitions systemAttrDefs = getAttributeDefinitions(facet, SYSTEM_RESOURCE_PACKAGE);
+    String localNamespace = AttributeProcessingUtil.getNamespaceKeyByResourcePackage(facet, null);
+
+    ViewAttributeIndex index = module.getUserData(KEY);
+    if (index == null || index.myFacet != facet || index.myStructureModificationCount != structureModificationCount ||
+        index.myRootsModificationCount != rootsModificationCount || index.myLocalAttrDefs != localAttrDefs ||
+        index.mySystemAttrDefs != systemAttrDefs || !Objects.equals(index.myLocalNamespace, localNamespace)) {
+      index = new ViewAttributeIndex(facet, structureModificationCount, rootsModificationCount, localAttrDefs, systemAttrDefs,
+                                     localNamespace);
+      module.putUserData(KEY, index);
+    }
+    return index;
+  }
+
+  private ViewAttributeIndex(@NotNull AndroidFacet facet,
+                             long structureModificationCount,
+                             long rootsModificationCount,
+                             @Nullable AttributeDefinitions localAttrDefs,
+                             @Nullable AttributeDefinitions systemAttrDefs,
+                             @Nullable String localNamespace) {
+    myFacet = facet;
+    myStructureModificationCount = structureModificationCount;
+    myRootsModificationCount = rootsModificationCount;
+    myLocalAttrDefs = localAttrDefs;
+    mySystemAttrDefs = systemAttrDefs;
+    myLocalNamespace = localNamespace;
+  }
+
+  @Nullable
+  private static AttributeDefinitions getAttributeDefinitions(@NotNull AndroidFacet facet, @Nullable String resPackage) {
+    ResourceManager manager = ModuleResourceManagers.getInstance(facet).getResourceManager(resPackage);
+    return manager != null ? manager.getAttributeDefinitions() : null;
+  }
+
+  /**
+   * Returns the attributes of the styleables of the given class and its superclasses.
+   */
+  @NotNull
+  List<StyleableAttribute> getClassAttributes(@NotNull PsiClass psiClass) {
+    return getFlattenedAttributes(psiClass, myClassAttributes, this::addClassStyleables);
+  }
+
+  /**
+   * Returns the layout parameters that the given class and its superclasses give to their children.
+   */
+  @NotNull
+  List<StyleableAttribute> getLayoutParamAttributes(@NotNull PsiClass psiClass) {
+    return getFlattenedAttributes(psiClass, myLayoutParamAttributes, this::addLayoutParamStyleables);
+  }
+
+  /**
+   * Returns the attributes of the styleables named after all the given view classes, for {@code <view>} tags.
+   */
+  @NotNull
+  List<StyleableAttribute> getAllClassAttributes(@NotNull Map<String, PsiClass> viewClassMap) {
+    AllClassesEntry entry = myAllClassAttributes;
+    if (entry == null || entry.myViewClassMap != viewClassMap) {
+      AttributeCollector collector = new AttributeCollector();
+      for (PsiClass psiClass : viewClassMap.values()) {
+        String name = psiClass.getName();
+        if (name != null) {
+          addStyleable(collector, name, AttributeProcessingUtil.getResourcePackage(psiClass));
+        }
+      }
+      entry = new AllClassesEntry(viewClassMap, collector.getAttributes());
+      myAllClassAttributes = entry;
+    }
+    return entry.myAttributes;
+  }
+
+  /**
+   * Returns the layout parameters given by all the given view classes, for tags with an unknown parent.
+   */
+  @NotNull
+  List<StyleableAttribute> getAllLayoutParamAttributes(@NotNull Map<String, PsiClass> viewClassMap) {
+    AllClassesEntry entry = myAllLayoutParamAttributes;
+    if (entry == null || entry.myViewClassMap != viewClassMap) {
+      AttributeCollector collector = new AttributeCollector();
+      for (PsiClass psiClass : viewClassMap.values()) {
+        addLayoutParamStyleables(collector, psiClass);
+      }
+      entry = new AllClassesEntry(viewClassMap, collector.getAttributes());
+      myAllLayoutParamAttributes = entry;
+    }
+    return entry.myAttributes;
+  }
+
+  /**
+   * Returns the attributes added for the given class and its superclasses by the given function, computing the ones of the classes that
+   * aren't in the given cache from the ones of their superclass.
+   */
+  @NotNull
+  private static List<StyleableAttribute> getFlattenedAttributes(@NotNull PsiClass psiClass,
+                                                                 @NotNull Map<PsiClass, List<StyleableAttribute>> cache,
+                                                                 @NotNull StyleableCollector function) {
+    List<StyleableAttribute> attributes = cache.get(psiClass);
+    if (attributes != null) {
+      return attributes;
+    }
+
+    // Classes up to the first one that is already in the cache
+    List<PsiClass> classes = new ArrayList<>();
+    Set<PsiClass> visited = new HashSet<>();
+    PsiClass c = psiClass;
+    List<StyleableAttribute> superclassAttributes = Collections.emptyList();
+    while (c != null && visited.add(c)) {
+      List<StyleableAttribute> cached = cache.get(c);
+      if (cached != null) {
+        superclassAttributes = cached;
+        break;
+      }
+      classes.add(c);
+      c = AttributeProcessingUtil.getSuperclass(c);
+    }
+
+    for (int i = classes.size() - 1; i >= 0; i--) {
+      AttributeCollector collector = new AttributeCollector();
+      function.addStyleables(collector, classes.get(i));
+      collector.addAll(superclassAttributes);
+      superclassAttributes = collector.getAttributes();
+      cache.put(classes.get(i), superclassAttributes);
+    }
+    return superclassAttributes;
+  }
+
+  private void addClassStyleables(@NotNull AttributeCollector collector, @NotNull PsiClass psiClass) {
+    String styleableName = psiClass.getName();
+    if (styleableName != null) {
+      addStyleable(collector, styleableName, AttributeProcessingUtil.getResourcePackage(psiClass));
+    }
+    for (PsiClass additional : getAdditionalAttributesClasses(psiClass)) {
+      String additionalStyleableName = additional.getName();
+      if (additionalStyleableName != null) {
+        addStyleable(collector, additionalStyleableName, AttributeProcessingUtil.getResourcePackage(additional));
+      }
+    }
+  }
+
+  /**
+   * Return the classes that hold attributes used in the specified class c.
+   * This is for classes from support libaries without attrs.xml like support lib v4.
+   */
+  @NotNull
+  private Collection<PsiClass> getAdditionalAttributesClasses(@NotNull PsiClass c) {
+    switch (StringUtil.notNullize(c.getQualifiedName())) {
+      case CLASS_NESTED_SCROLL_VIEW:
+        PsiClass scrollView = AttributeProcessingUtil.getViewClassMap(myFacet).get(SCROLL_VIEW);
+        return scrollView != null ? Collections.singleton(scrollView) : Collections.emptySet();
+      default:
+        return Collections.emptySet();
+    }
+  }
+
+  private void addLayoutParamStyleables(@NotNull AttributeCollector collector, @NotNull PsiClass psiClass) {
+    String viewName = psiClass.getName();
+    if (viewName == null) {
+      return;
+    }
+
+    final String styleableName;
+    switch (viewName) {
+      case "ViewGroup":
+        styleableName = "ViewGroup_MarginLayout";
+        break;
+      case "TableRow":
+        styleableName = "TableRow_Cell";
+        break;
+      case "CollapsingToolbarLayout":
+        // Support library doesn't have particularly consistent naming
+        // Styleable definition: https://android.googlesource.com/platform/frameworks/support/+/master/design/res/values/attrs.xml
+        addStyleable(collector, "CollapsingAppBarLayout_LayoutParams", null);
+
+        styleableName = viewName + "_Layout";  // This is what it should be... (may be fixed in the future)
+        break;
+      case "CoordinatorLayout":
+        // Support library doesn't have particularly consistent naming
+        // Styleable definition: https://android.googlesource.com/platform/frameworks/support/+/master/design/res/values/attrs.xml
+        addStyleable(collector, "CoordinatorLayout_LayoutParams", null);
+
+        styleableName = viewName + "_Layout";  // This is what it should be... (may be fixed in the future)
+        break;
+      case "AppBarLayout":
+        // Support library doesn't have particularly consistent naming
+        // Styleable definition: https://android.googlesource.com/platform/frameworks/support/+/master/design/res/values/attrs.xml
+        addStyleable(collector, "AppBarLayout_LayoutParams", null);
+
+        styleableName = viewName + "_Layout";  // This is what it should be... (may be fixed in the future)
+        break;
+      default:
+        styleableName = viewName + "_Layout";
+    }
+
+    addStyleable(collector, styleableName, AttributeProcessingUtil.getResourcePackage(psiClass));
+  }
+
+  private void addStyleable(@NotNull AttributeCollector collector, @NotNull String styleableName, @Nullable String resPackage) {
+    boolean system = SYSTEM_RESOURCE_PACKAGE.equals(resPackage);
+    AttributeDefinitions attrDefs = system ? mySystemAttrDefs : myLocalAttrDefs;
+    if (attrDefs == null) {
+      return;
+    }
+    StyleableDefinition styleable = attrDefs.getStyleableByName(styleableName);
+    if (styleable == null) {
+      return;
+    }
+    String namespace = system ? AttributeProcessingUtil.getNamespaceKeyByResourcePackage(myFacet, resPackage) : myLocalNamespace;
+    for (AttributeDefinition attrDef : styleable.getAttributes()) {
+      collector.add(new StyleableAttribute(attrDef, styleable.getName(), namespace));
+    }
+  }
+
+  private interface StyleableCollector {
+    void addStyleables(@NotNull AttributeCollector collector, @NotNull PsiClass psiClass);
+  }
+
+  /**
+   * Attributes in the order they are added, without the ones with the name of an attribute added before.
+   */
+  private static class AttributeCollector {
+    private final List<StyleableAttribute> myAttributes = new ArrayList<>();
+    private final Set<XmlName> myNames = new HashSet<>();
+
+    void add(@NotNull StyleableAttribute attribute) {
+      if (myNames.add(attribute.getName())) {
+        myAttributes.add(attribute);
+      }
+    }
+
+    void addAll(@NotNull List<StyleableAttribute> attributes) {
+      for (StyleableAttribute attribute : attributes) {
+        add(attribute);
+      }
+    }
+
+    @NotNull
+    List<StyleableAttribute> getAttributes() {
+      return Collections.unmodifiableList(myAttributes);
+    }
+  }
+
+  private static class AllClassesEntry {
+    @NotNull final Map<String, PsiClass> myViewClassMap;
+    @NotNull final List<StyleableAttribute> myAttributes;
+
+    AllClassesEntry(@NotNull Map<String, PsiClass> viewClassMap, @NotNull List<StyleableAttribute> attributes) {
+      myViewClassMap = viewClassMap;
+      myAttributes = attributes;
+    }
+  }
+
+  /**
+   * Attribute of a styleable, with the namespace of the styleable.
+   */
+  static final class StyleableAttribute {
+    @NotNull private final AttributeDefinition myDefinition;
+    @NotNull private final String myStyleableName;
+    @Nullable private final String myNamespace;
+    @NotNull private final XmlName myName;
+
+    StyleableAttribute(@NotNull AttributeDefinition definition, @NotNull String styleableName, @Nullable String namespace) {
+      myDefinition = definition;
+      myStyleableName = styleableName;
+      myNamespace = namespace;
+      myName = new XmlName(definition.getName(), namespace);
+    }
+
+    @NotNull
+    AttributeDefinition getDefinition() {
+      return myDefinition;
+    }
+
+    @NotNull
+    String getStyleableName() {
+      return myStyleableName;
+    }
+
+    @Nullable
+    String getNamespace() {
+      return myNamespace;
+    }
+
+    /** Returns the name of the attribute in the namespace of the styleable, before platform attributes are moved to their namespace */
+    @NotNull
+    XmlName getName() {
+      return myName;
+    }
+  }
+}
@@ -18,9 +18,14 @@ package org.jetbrains.android.dom.attrs;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.util.ArrayUtil;
 import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.IOUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -164,6 +169,106 @@ public class AttributeDefinition implements Cloneable {
     return doc != null && StringUtil.containsIgnoreCase(doc, "deprecated");
   }
 
+  /**
+   * Writes this attribute definition in the format read by {@link #read(DataInput)}.
+   */
+  void write(@NotNull DataOutput out) throws IOException {
+    IOUtil.writeUTF(out, myName);
+    writeNullableString(out, myLibraryName);
+    writeStrings(out, myParentStyleables);
+    DataInputOutputUtil.writeINT(out, myFormats.size());
+    for (AttributeFormat format : myFormats) {
+      DataInputOutputUtil.writeINT(out, format.ordinal());
+    }
+    writeStrings(out, myValues != null ? myValues : Collections.emptyList());
+    writeStringMap(out, myStyleable2DocValue);
+    writeStringMap(out, myValueDoc != null ? myValueDoc : Collections.emptyMap());
+    Map<String, Integer> valueMappings = myValueMappings != null ? myValueMappings : Collections.emptyMap();
+    DataInputOutputUtil.writeINT(out, valueMappings.size());
+    for (Map.Entry<String, Integer> entry : valueMappings.entrySet()) {
+      IOUtil.writeUTF(out, entry.getKey());
+      out.writeInt(entry.getValue());
+    }
+    writeNullableString(out, myGlobalDocValue);
+    writeNullableString(out, myAttrGroup);
+  }
+
+  /**
+   * Reads an attribute definition written by {@link #write(DataOutput)}.
+   */
+  @NotNull
+  static AttributeDefinition read(@NotNull DataInput in) throws IOException {
+    String name = IOUtil.readUTF(in);
+    String libraryName = readNullableString(in);
+    AttributeDefinition def = new AttributeDefinition(name, libraryName, null, Collections.emptySet());
+    def.myParentStyleables.addAll(readStrings(in));
+    AttributeFormat[] formats = AttributeFormat.values();
+    for (int i = DataInputOutputUtil.readINT(in); i > 0; i--) {
+      def.myFormats.add(formats[DataInputOutputUtil.readINT(in)]);
+    }
+    for (String value : readStrings(in)) {
+      def.addValue(value);
+    }
+    def.myStyleable2DocValue.putAll(readStringMap(in));
+    for (Map.Entry<String, String> entry : readStringMap(in).entrySet()) {
+      def.addValueDoc(entry.getKey(), entry.getValue());
+    }
+    for (int i = DataInputOutputUtil.readINT(in); i > 0; i--) {
+      String valueName = IOUtil.readUTF(in);
+      def.addValueMapping(valueName, in.readInt());
+    }
+    def.myGlobalDocValue = readNullableString(in);
+    def.myAttrGroup = readNullableString(in);
+    return def;
+  }
+
+  static void writeNullableString(@NotNull DataOutput out, @Nullable String value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      IOUtil.writeUTF(out, value);
+    }
+  }
+
+  @Nullable
+  static String readNullableString(@NotNull DataInput in) throws IOException {
+    return in.readBoolean() ? IOUtil.readUTF(in) : null;
+  }
+
+  static void writeStrings(@NotNull DataOutput out, @NotNull Collection<String> values) throws IOException {
+    DataInputOutputUtil.writeINT(out, values.size());
+    for (String value : values) {
+      IOUtil.writeUTF(out, value);
+    }
+  }
+
+  @NotNull
+  static List<String> readStrings(@NotNull DataInput in) throws IOException {
+    int size = DataInputOutputUtil.readINT(in);
+    List<String> values = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      values.add(IOUtil.readUTF(in));
+    }
+    return values;
+  }
+
+  private static void writeStringMap(@NotNull DataOutput out, @NotNull Map<String, String> map) throws IOException {
+    DataInputOutputUtil.writeINT(out, map.size());
+    for (Map.Entry<String, String> entry : map.entrySet()) {
+      IOUtil.writeUTF(out, entry.getKey());
+      IOUtil.writeUTF(out, entry.getValue());
+    }
+  }
+
+  @NotNull
+  private static Map<String, String> readStringMap(@NotNull DataInput in) throws IOException {
+    int size = DataInputOutputUtil.readINT(in);
+    Map<String, String> map = new HashMap<>(size);
+    for (int i = 0; i < size; i++) {
+      map.put(IOUtil.readUTF(in), IOUtil.readUTF(in));
+    }
+    return map;
+  }
+
   /**
    * Returns a shallow copy of this attribute definition under a different name.
    *
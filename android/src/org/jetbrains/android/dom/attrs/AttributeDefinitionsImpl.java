@@ -23,10 +23,15 @@ import com.intellij.psi.xml.XmlDocument;
 import com.intellij.psi.xml.XmlFile;
 import com.intellij.psi.xml.XmlTag;
 import com.intellij.util.containers.HashMap;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.IOUtil;
 import com.intellij.xml.util.XmlUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
 
 import static com.android.SdkConstants.*;
@@ -57,6 +62,79 @@ public class AttributeDefinitionsImpl implements AttributeDefinitions {
     }
   }
 
+  private AttributeDefinitionsImpl() {
+    mySystemAttributeDefinitions = null;
+  }
+
+  /**
+   * Writes these attribute definitions in the format read by {@link #read(DataInput)}. Only definitions built without system attribute
+   * definitions can be written.
+   */
+  public void write(@NotNull DataOutput out) throws IOException {
+    assert mySystemAttributeDefinitions == null;
+    DataInputOutputUtil.writeINT(out, myAttrs.size());
+    for (AttributeDefinition def : myAttrs.values()) {
+      def.write(out);
+    }
+    DataInputOutputUtil.writeINT(out, myStyleables.size());
+    for (StyleableDefinitionImpl styleable : myStyleables.values()) {
+      IOUtil.writeUTF(out, styleable.getName());
+      List<String> parentNames = new ArrayList<>();
+      for (StyleableDefinition parent : styleable.getParents()) {
+        parentNames.add(parent.getName());
+      }
+      AttributeDefinition.writeStrings(out, parentNames);
+      List<String> attributeNames = new ArrayList<>();
+      for (AttributeDefinition attr : styleable.getAttributes()) {
+        attributeNames.add(attr.getName());
+      }
+      AttributeDefinition.writeStrings(out, attributeNames);
+    }
+  }
+
+  /**
+   * Reads attribute definitions written by {@link #write(DataOutput)}, without going through the PSI of the files they were built from.
+   */
+  @NotNull
+  public static AttributeDefinitionsImpl read(@NotNull DataInput in) throws IOException {
+    AttributeDefinitionsImpl defs = new AttributeDefinitionsImpl();
+    for (int i = DataInputOutputUtil.readINT(in); i > 0; i--) {
+      AttributeDefinition def = AttributeDefinition.read(in);
+      defs.myAttrs.put(def.getName(), def);
+      for (String valueName : def.getValues()) {
+        Integer intValue = def.getValueMapping(valueName);
+        if (intValue != null) {
+          defs.myEnumMap.computeIfAbsent(def.getName(), name -> new HashMap<>()).put(valueName, intValue);
+        }
+      }
+    }
+
+    Map<StyleableDefinitionImpl, List<String>> parentMap = new HashMap<>();
+    for (int i = DataInputOutputUtil.readINT(in); i > 0; i--) {
+      StyleableDefinitionImpl styleable = new StyleableDefinitionImpl(IOUtil.readUTF(in));
+      parentMap.put(styleable, AttributeDefinition.readStrings(in));
+      for (String attributeName : AttributeDefinition.readStrings(in)) {
+        AttributeDefinition attr = defs.myAttrs.get(attributeName);
+        if (attr == null) {
+          throw new IOException("Unknown attribute " + attributeName + " in " + styleable.getName());
+        }
+        styleable.addAttribute(attr);
+      }
+      defs.myStyleables.put(styleable.getName(), styleable);
+    }
+    for (Map.Entry<StyleableDefinitionImpl, List<String>> entry : parentMap.entrySet()) {
+      for (String parentName : entry.getValue()) {
+        StyleableDefinitionImpl parent = defs.getStyleableByName(parentName);
+        if (parent == null) {
+          throw new IOException("Unknown parent " + parentName + " of " + entry.getKey().getName());
+        }
+        entry.getKey().addParent(parent);
+        parent.addChild(entry.getKey());
+      }
+    }
+    return defs;
+  }
+
   private void addAttrsFromFile(@NotNull XmlFile file, @Nullable String libraryName) {
     Map<StyleableDefinitionImpl, String[]> parentMap = new HashMap<>();
     XmlDocument document = file.getDocument();
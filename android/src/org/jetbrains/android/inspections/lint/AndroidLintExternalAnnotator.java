@@ -131,7 +131,9 @@ public class AndroidLintExternalAnnotator extends ExternalAnnotator<State, State
     if (issues.isEmpty()) {
       return null;
     }
-    return new State(module, vFile, file.getText(), issues);
+    State state = new State(module, vFile, file.getText(), issues);
+    state.setDependencyStamp(LintResultCache.getDependencyStamp(module, vFile, issues));
+    return state;
   }
 
   public static boolean isKotlin(FileType fileType) {
@@ -141,43 +143,50 @@ public class AndroidLintExternalAnnotator extends ExternalAnnotator<State, State
 
   @Override
   public State doAnnotate(final State state) {
-    final LintIdeClient client = LintIdeClient.forEditor(state);
-    try {
-      EnumSet<Scope> scope;
-      VirtualFile mainFile = state.getMainFile();
-      final FileType fileType = mainFile.getFileType();
-      String name = mainFile.getName();
-      if (fileType == StdFileTypes.XML) {
-        if (name.equals(ANDROID_MANIFEST_XML)) {
-          scope = Scope.MANIFEST_SCOPE;
-        } else {
-          scope = Scope.RESOURCE_FILE_SCOPE;
-        }
-      } else if (fileType == StdFileTypes.JAVA || isKotlin(fileType)) {
-        scope = Scope.JAVA_FILE_SCOPE;
-        if (name.endsWith(DOT_KTS)) {
-          scope = EnumSet.of(Scope.GRADLE_FILE, Scope.JAVA_FILE);
-        }
-      } else if (name.equals(OLD_PROGUARD_FILE) || name.equals(FN_PROJECT_PROGUARD_FILE)) {
-        scope = EnumSet.of(Scope.PROGUARD_FILE);
-      } else if (fileType == GroovyFileType.GROOVY_FILE_TYPE) {
-        scope = Scope.GRADLE_SCOPE;
-      } else if (fileType == StdFileTypes.PROPERTIES) {
-        scope = Scope.PROPERTY_SCOPE;
+    EnumSet<Scope> scope;
+    VirtualFile mainFile = state.getMainFile();
+    final FileType fileType = mainFile.getFileType();
+    String name = mainFile.getName();
+    if (fileType == StdFileTypes.XML) {
+      if (name.equals(ANDROID_MANIFEST_XML)) {
+        scope = Scope.MANIFEST_SCOPE;
       } else {
-        // #collectionInformation above should have prevented this
-        assert false;
-        return state;
-      }
-
-      Project project = state.getModule().getProject();
-      if (project.isDisposed()) {
-        return state;
+        scope = Scope.RESOURCE_FILE_SCOPE;
       }
-      if (DumbService.isDumb(project)) {
-        return state; // Lint cannot run in dumb mode.
+    } else if (fileType == StdFileTypes.JAVA || isKotlin(fileType)) {
+      scope = Scope.JAVA_FILE_SCOPE;
+      if (name.endsWith(DOT_KTS)) {
+        scope = EnumSet.of(Scope.GRADLE_FILE, Scope.JAVA_FILE);
       }
+    } else if (name.equals(OLD_PROGUARD_FILE) || name.equals(FN_PROJECT_PROGUARD_FILE)) {
+      scope = EnumSet.of(Scope.PROGUARD_FILE);
+    } else if (fileType == GroovyFileType.GROOVY_FILE_TYPE) {
+      scope = Scope.GRADLE_SCOPE;
+    } else if (fileType == StdFileTypes.PROPERTIES) {
+      scope = Scope.PROPERTY_SCOPE;
+    } else {
+      // #collectionInformation above should have prevented this
+      assert false;
+      return state;
+    }
+
+    Project project = state.getModule().getProject();
+    if (project.isDisposed()) {
+      return state;
+    }
+    if (DumbService.isDumb(project)) {
+      return state; // Lint cannot run in dumb mode.
+    }
 
+    // Re-highlighting a file that hasn't changed, for example when switching editor tabs, reuses the previous results
+    LintResultCache cache = LintResultCache.getInstance(project);
+    if (cache.restore(state)) {
+      return state;
+    }
+
+    final LintIdeClient client = LintIdeClient.forEditor(state);
+    try {
+      long start = System.nanoTime();
       List<VirtualFile> files = Collections.singletonList(mainFile);
       LintRequest request = new LintIdeRequest(client, project, files,
                                                Collections.singletonList(state.getModule()), true /* incremental */);
@@ -185,6 +194,7 @@ public class AndroidLintExternalAnnotator extends ExternalAnnotator<State, State
 
       LintDriver lint = new LintDriver(new LintIdeIssueRegistry(), client, request);
       lint.analyze();
+      cache.store(state, System.nanoTime() - start);
     }
     finally {
       Disposer.dispose(client);
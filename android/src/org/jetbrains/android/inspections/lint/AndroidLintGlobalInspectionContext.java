@@ -272,7 +272,14 @@ class AndroidLintGlobalInspectionContext implements GlobalInspectionContextExten
       }
     }
 
-    lint.analyze();
+    if (files == null && myBaseline == null && ShardedLintRunner.isApplicable(modules, ShardedLintRunner.DEFAULT_PARALLELISM)) {
+      // Inspecting whole modules: analyze the modules concurrently. Baselines are written by a single driver, so
+      // projects using one keep the serial mode.
+      new ShardedLintRunner(project, scope, ShardedLintRunner.DEFAULT_PARALLELISM).run(modules, lintScope, issues, problemMap);
+    }
+    else {
+      lint.analyze();
+    }
 
     List<Tools> tools = AndroidLintInspectionBase.getDynamicTools();
     AndroidLintInspectionBase.resetDynamicTools();
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.inspections.lint;
+
+import com.android.tools.idea.gradle.util.GradleUtil;
+import com.android.tools.idea.res.AppResourceRepository;
+import com.android.tools.lint.client.api.DefaultConfiguration;
+import com.android.tools.lint.detector.api.Issue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.fileTypes.StdFileTypes;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.util.PsiModificationTracker;
+import org.jetbrains.android.facet.AndroidFacet;
+import org.jetbrains.android.facet.AndroidRootUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the problems found by the on-the-fly lint run of {@link AndroidLintExternalAnnotator}, so that re-highlighting
+ * a file that hasn't changed (for example when switching back to its editor tab) doesn't run the lint detectors again.
+ * <p>
+ * Results are keyed per file by a hash of the file contents, the set of enabled issues and stamps of what the
+ * detectors can look at outside the file: the merged resources, the contents of the manifest, the Gradle build file
+ * and the lint.xml configurations, the project structure, the Java structure modification count (XML detectors
+ * resolve classes too) and, for source files, the out-of-code-block PSI modification count.
+ */
+public class LintResultCache {
+  private static final int MAX_CACHED_FILES = 200;
+
+  private static class Entry {
+    @NotNull final String key;
+    @NotNull final List<ProblemData> problems;
+    final long analysisNanos;
+
+    Entry(@NotNull String key, @NotNull List<ProblemData> problems, long analysisNanos) {
+      this.key = key;
+      this.problems = problems;
+      this.analysisNanos = analysisNanos;
+    }
+  }
+
+  private final Cache<String, Entry> myEntries = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_FILES).recordStats().build();
+  private final AtomicLong myHits = new AtomicLong();
+  private final AtomicLong myMisses = new AtomicLong();
+  private final AtomicLong myAnalysisNanos = new AtomicLong();
+  private final AtomicLong mySavedNanos = new AtomicLong();
+
+  @NotNull
+  public static LintResultCache getInstance(@NotNull Project project) {
+    return ServiceManager.getService(project, LintResultCache.class);
+  }
+
+  /**
+   * Returns the stamp of everything outside the file itself that the lint detectors for the given file can depend on.
+   * Must be called under a read action.
+   */
+  @NotNull
+  static String getDependencyStamp(@NotNull Module module, @NotNull VirtualFile file, @NotNull Set<Issue> issues) {
+    Project project = module.getProject();
+    StringBuilder stamp = new StringBuilder();
+    stamp.append(ProjectRootManager.getInstance(project).getModificationCount());
+
+    AndroidFacet facet = AndroidFacet.getInstance(module);
+    if (facet != null) {
+      AppResourceRepository resources = AppResourceRepository.findExistingInstance(facet);
+      stamp.append(':').append(resources != null ? resources.getModificationCount() : -1);
+      appendContentStamp(stamp, facet.getMainIdeaSourceProvider().getManifestFile());
+      appendContentStamp(stamp, findLintConfiguration(AndroidRootUtil.getMainContentRoot(facet)));
+    }
+    appendContentStamp(stamp, GradleUtil.getGradleBuildFile(module));
+    appendContentStamp(stamp, findLintConfiguration(project.getBaseDir()));
+
+    PsiModificationTracker tracker = PsiModificationTracker.SERVICE.getInstance(project);
+    stamp.append(':').append(tracker.getJavaStructureModificationCount());
+    FileType fileType = file.getFileType();
+    if (fileType == StdFileTypes.JAVA || AndroidLintExternalAnnotator.isKotlin(fileType)) {
+      stamp.append(':').append(tracker.getOutOfCodeBlockModificationCount());
+    }
+
+    List<String> issueIds = new ArrayList<>(issues.size());
+    for (Issue issue : issues) {
+      issueIds.add(issue.getId());
+    }
+    Collections.sort(issueIds);
+    stamp.append(':').append(issueIds.size()).append('/').append(issueIds.hashCode());
+    return stamp.toString();
+  }
+
+  @Nullable
+  private static VirtualFile findLintConfiguration(@Nullable VirtualFile dir) {
+    return dir != null ? dir.findChild(DefaultConfiguration.CONFIG_FILE_NAME) : null;
+  }
+
+  private static void appendContentStamp(@NotNull StringBuilder stamp, @Nullable VirtualFile file) {
+    if (file == null) {
+      stamp.append(":-");
+      return;
+    }
+    Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+    stamp.append(':').append(document != null ? document.getModificationStamp() : file.getModificationStamp());
+  }
+
+  @NotNull
+  private static String getKey(@NotNull State state) {
+    Hasher hasher = Hashing.murmur3_128().newHasher();
+    hasher.putString(state.getMainFileContent(), StandardCharsets.UTF_8);
+    return hasher.hash().toString() + '@' + state.getDependencyStamp();
+  }
+
+  /**
+   * Adds the cached problems for the given state, if the file and its dependencies are unchanged since they were
+   * computed.
+   *
+   * @return true if the cached problems were used, false if lint needs to run
+   */
+  boolean restore(@NotNull State state) {
+    if (state.getDependencyStamp() == null) {
+      return false;
+    }
+    Entry entry = myEntries.getIfPresent(state.getMainFile().getUrl());
+    if (entry == null || !entry.key.equals(getKey(state))) {
+      myMisses.incrementAndGet();
+      return false;
+    }
+    myHits.incrementAndGet();
+    mySavedNanos.addAndGet(entry.analysisNanos);
+    state.getProblems().addAll(entry.problems);
+    return true;
+  }
+
+  /**
+   * Records the problems lint found for the given state.
+   */
+  void store(@NotNull State state, long analysisNanos) {
+    myAnalysisNanos.addAndGet(analysisNanos);
+    if (state.getDependencyStamp() == null || state.isDirty()) {
+      return;
+    }
+    Entry entry = new Entry(getKey(state), ImmutableList.copyOf(state.getProblems()), analysisNanos);
+    myEntries.put(state.getMainFile().getUrl(), entry);
+  }
+
+  public void clear() {
+    myEntries.invalidateAll();
+  }
+
+  /**
+   * Returns the hit rate statistics of the cache. The load time is the time spent running lint on cache misses.
+   */
+  @NotNull
+  public CacheStats getStats() {
+    long misses = myMisses.get();
+    return new CacheStats(myHits.get(), misses, misses, 0, myAnalysisNanos.get(), myEntries.stats().evictionCount());
+  }
+
+  /** Returns the time lint would have spent analyzing the files that were served from the cache */
+  public long getSavedTimeNanos() {
+    return mySavedNanos.get();
+  }
+
+  @VisibleForTesting
+  long size() {
+    return myEntries.size();
+  }
+}
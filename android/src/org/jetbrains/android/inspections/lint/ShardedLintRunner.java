@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.inspections.lint;
+
+import com.android.tools.idea.lint.LintIdeClient;
+import com.android.tools.idea.lint.LintIdeIssueRegistry;
+import com.android.tools.idea.lint.LintIdeRequest;
+import com.android.tools.lint.client.api.LintDriver;
+import com.android.tools.lint.detector.api.Issue;
+import com.android.tools.lint.detector.api.Scope;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.intellij.analysis.AnalysisScope;
+import com.intellij.concurrency.SensitiveProgressWrapper;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.GeneratedSourcesFilter;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.android.facet.AndroidFacet;
+import org.jetbrains.android.facet.AndroidRootUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs batch lint ("Inspect Code") as several {@link LintDriver}s in parallel instead of a single one over all modules.
+ * <p>
+ * Issues are split in two groups. Issues that only look at one source, resource or manifest file at a time can treat
+ * every module as an independent shard: each module gets its own driver over just those files of the module, without
+ * re-analyzing its library modules. A library shard uses an application depending on the library as the lint main
+ * project, so issues that look at the main project (for example the min SDK used by NewApi) see the same values as in
+ * the serial mode. All the other issues, the ones that need to see the whole project (unused resources, duplicate
+ * icons, class file checks and so on) or that look at files the shards don't list (Gradle, ProGuard and property
+ * files, test sources), still run in one driver over all the modules, exactly like the serial mode. The drivers take
+ * read actions per file through {@link LintIdeClient#runReadAction}, so write actions can get in between, and they all
+ * run under the caller's progress indicator so that cancelling the inspection stops them.
+ * <p>
+ * Every driver reports into its own problem map, and the maps are merged into the one read by
+ * {@link AndroidLintInspectionBase} at the end, dropping problems reported by more than one shard.
+ */
+class ShardedLintRunner {
+  private static final Logger LOG = Logger.getInstance(ShardedLintRunner.class);
+
+  /** Number of lint drivers to run at the same time; 1 or less disables sharding */
+  static final int DEFAULT_PARALLELISM =
+    Integer.getInteger("android.lint.batch.parallelism", Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+  /** Scopes of detectors that only look at one of the files returned by {@link #getFiles} at a time */
+  private static final Set<Scope> SHARD_SCOPES =
+    EnumSet.of(Scope.JAVA_FILE, Scope.RESOURCE_FILE, Scope.BINARY_RESOURCE_FILE, Scope.RESOURCE_FOLDER, Scope.MANIFEST);
+
+  @NotNull private final Project myProject;
+  @NotNull private final AnalysisScope myScope;
+  private final int myParallelism;
+
+  ShardedLintRunner(@NotNull Project project, @NotNull AnalysisScope scope, int parallelism) {
+    myProject = project;
+    myScope = scope;
+    myParallelism = parallelism;
+  }
+
+  /**
+   * Returns true if running the given modules in shards can be faster than running them in a single driver
+   */
+  static boolean isApplicable(@NotNull List<Module> modules, int parallelism) {
+    return parallelism > 1 && modules.size() > 1;
+  }
+
+  /**
+   * Returns true if the given issue has to run in the driver over all the modules, because it needs to see more than
+   * one file at a time or looks at files that the per-module shards don't include.
+   */
+  @VisibleForTesting
+  static boolean isProjectWide(@NotNull Issue issue) {
+    return !SHARD_SCOPES.containsAll(issue.getImplementation().getScope());
+  }
+
+  /**
+   * Runs the given issues on the given modules and adds the problems found to {@code problemMap}.
+   *
+   * @param lintScope the scope for the project wide driver, or null to infer it
+   */
+  void run(@NotNull List<Module> modules,
+           @Nullable EnumSet<Scope> lintScope,
+           @NotNull Set<Issue> issues,
+           @NotNull Map<Issue, Map<File, List<ProblemData>>> problemMap) {
+    Set<Issue> projectWideIssues = Sets.newHashSet();
+    Set<Issue> fileIssues = Sets.newHashSet();
+    for (Issue issue : issues) {
+      (isProjectWide(issue) ? projectWideIssues : fileIssues).add(issue);
+    }
+
+    List<Computable<Map<Issue, Map<File, List<ProblemData>>>>> shards = Lists.newArrayList();
+    if (!projectWideIssues.isEmpty()) {
+      // Submitted first since it is usually the longest one
+      shards.add(() -> analyze(modules, null, lintScope, projectWideIssues));
+    }
+    if (!fileIssues.isEmpty()) {
+      for (Module module : modules) {
+        shards.add(() -> {
+          List<VirtualFile> files = ReadAction.compute(() -> getFiles(module));
+          if (files.isEmpty()) {
+            return Collections.<Issue, Map<File, List<ProblemData>>>emptyMap();
+          }
+          // With an explicit file list lint infers the scope from the files and doesn't pull in the library modules
+          return analyze(Collections.singletonList(module), files, null, fileIssues);
+        });
+      }
+    }
+
+    ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+    ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Android Lint", myParallelism);
+    List<Future<Map<Issue, Map<File, List<ProblemData>>>>> futures = Lists.newArrayListWithCapacity(shards.size());
+    for (Computable<Map<Issue, Map<File, List<ProblemData>>>> shard : shards) {
+      futures.add(executor.submit(() -> runWithProgress(shard, indicator)));
+    }
+
+    try {
+      for (Future<Map<Issue, Map<File, List<ProblemData>>>> future : futures) {
+        merge(waitFor(future, indicator), problemMap);
+      }
+    }
+    finally {
+      for (Future<?> future : futures) {
+        future.cancel(false);
+      }
+    }
+  }
+
+  @NotNull
+  private Map<Issue, Map<File, List<ProblemData>>> analyze(@NotNull List<Module> modules,
+                                                           @Nullable List<VirtualFile> files,
+                                                           @Nullable EnumSet<Scope> lintScope,
+                                                           @NotNull Set<Issue> issues) {
+    Map<Issue, Map<File, List<ProblemData>>> problems = new HashMap<>();
+    LintIdeClient client = LintIdeClient.forBatch(myProject, problems, myScope, issues);
+    LintIdeRequest request = new LintIdeRequest(client, myProject, files, modules, false);
+    request.setScope(lintScope);
+    // A library shard still sees the application as the main project, as it does in the driver over all the modules
+    request.setCheckAsDependency(files != null);
+    new LintDriver(new LintIdeIssueRegistry(), client, request).analyze();
+    return problems;
+  }
+
+  @NotNull
+  private static <T> T runWithProgress(@NotNull Computable<T> shard, @Nullable ProgressIndicator indicator) {
+    if (indicator == null) {
+      return shard.compute();
+    }
+    // Each shard gets its own indicator so that it can be cancelled along with the inspection without sharing state
+    return ProgressManager.getInstance().runProcess(shard, new SensitiveProgressWrapper(indicator));
+  }
+
+  @NotNull
+  private static Map<Issue, Map<File, List<ProblemData>>> waitFor(@NotNull Future<Map<Issue, Map<File, List<ProblemData>>>> future,
+                                                                      @Nullable ProgressIndicator indicator) {
+    while (true) {
+      if (indicator != null) {
+        indicator.checkCanceled();
+      }
+      try {
+        return future.get(100, TimeUnit.MILLISECONDS);
+      }
+      catch (TimeoutException ignored) {
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ProcessCanceledException(e);
+      }
+      catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof ProcessCanceledException) {
+          throw (ProcessCanceledException)cause;
+        }
+        LOG.error("Lint shard failed", cause);
+        return Collections.emptyMap();
+      }
+    }
+  }
+
+  /**
+   * Returns the files lint looks at in the given module: sources, resources and the manifest. Issues with any other
+   * scope are not run on these files (see {@link #isProjectWide}).
+   */
+  @NotNull
+  private static List<VirtualFile> getFiles(@NotNull Module module) {
+    List<VirtualFile> roots = Lists.newArrayList();
+    for (VirtualFile root : ModuleRootManager.getInstance(module).getSourceRoots(false)) {
+      if (!GeneratedSourcesFilter.isGeneratedSourceByAnyFilter(root, module.getProject())) {
+        roots.add(root);
+      }
+    }
+    AndroidFacet facet = AndroidFacet.getInstance(module);
+    if (facet != null) {
+      roots.addAll(facet.getResourceFolderManager().getFolders());
+    }
+
+    Set<VirtualFile> files = Sets.newLinkedHashSet();
+    for (VirtualFile root : roots) {
+      VfsUtilCore.iterateChildrenRecursively(root, null, file -> {
+        if (!file.isDirectory()) {
+          files.add(file);
+        }
+        return true;
+      });
+    }
+    if (facet != null) {
+      VirtualFile manifest = AndroidRootUtil.getPrimaryManifestFile(facet);
+      if (manifest != null) {
+        files.add(manifest);
+      }
+    }
+    return Lists.newArrayList(files);
+  }
+
+  /**
+   * Adds the problems of one shard to the merged results, skipping the ones another shard already reported
+   */
+  @VisibleForTesting
+  static void merge(@NotNull Map<Issue, Map<File, List<ProblemData>>> shard,
+                    @NotNull Map<Issue, Map<File, List<ProblemData>>> merged) {
+    for (Map.Entry<Issue, Map<File, List<ProblemData>>> issueEntry : shard.entrySet()) {
+      Map<File, List<ProblemData>> mergedFiles = merged.computeIfAbsent(issueEntry.getKey(), k -> Maps.newHashMap());
+      for (Map.Entry<File, List<ProblemData>> fileEntry : issueEntry.getValue().entrySet()) {
+        List<ProblemData> mergedProblems = mergedFiles.computeIfAbsent(fileEntry.getKey(), k -> Lists.newArrayList());
+        for (ProblemData problem : fileEntry.getValue()) {
+          if (!containsProblem(mergedProblems, problem)) {
+            mergedProblems.add(problem);
+          }
+        }
+      }
+    }
+  }
+
+  private static boolean containsProblem(@NotNull List<ProblemData> problems, @NotNull ProblemData problem) {
+    for (ProblemData other : problems) {
+      if (other.getTextRange().equals(problem.getTextRange()) && other.getMessage().equals(problem.getMessage())) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -4,6 +4,7 @@ import com.android.tools.lint.detector.api.Issue;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.vfs.VirtualFile;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -22,6 +23,9 @@ public class State {
 
   private volatile boolean myDirty;
 
+  /** See {@link LintResultCache#getDependencyStamp}; null if the results should not be cached */
+  @Nullable private String myDependencyStamp;
+
   State(@NotNull Module module,
         @NotNull VirtualFile mainFile,
         @NotNull String mainFileContent,
@@ -64,4 +68,13 @@ public class State {
   public Set<Issue> getIssues() {
     return myIssues;
   }
+
+  @Nullable
+  String getDependencyStamp() {
+    return myDependencyStamp;
+  }
+
+  void setDependencyStamp(@Nullable String dependencyStamp) {
+    myDependencyStamp = dependencyStamp;
+  }
 }
@@ -108,6 +108,10 @@ public class LocalResourceManager extends ResourceManager {
     return getPublicValueResources(resourceType);
   }
 
+  /**
+   * Returns the attributes and styleables declared in the resources of the module and its libraries, on top of the (cached) attribute
+   * definitions of the platform. Only the project resource files are parsed here.
+   */
   @Override
   @NotNull
   public AttributeDefinitions getAttributeDefinitions() {
@@ -46,11 +46,10 @@ import com.android.tools.idea.layoutlib.RenderingException;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.IOException;
+import java.io.*;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Eugene.Kudelevsky
@@ -58,10 +57,14 @@ import java.util.Set;
 public class AndroidTargetData {
   private static final Logger LOG = Logger.getInstance("#org.jetbrains.android.sdk.AndroidTargetData");
 
+  /** Framework attribute cache files being written */
+  private static final Set<File> ourPendingAttributeCaches = ConcurrentHashMap.newKeySet();
+
   private final AndroidSdkData mySdkData;
   private final IAndroidTarget myTarget;
 
   private volatile AttributeDefinitionsImpl myAttrDefs;
+  private volatile PublicAttributeDefinitions myPublicAttrDefs;
   private volatile LayoutLibrary myLayoutLibrary;
 
   private final Object myPublicResourceCacheLock = new Object();
@@ -70,6 +73,10 @@ public class AndroidTargetData {
   @GuardedBy("myPublicResourceCacheLock")
   private TIntObjectHashMap<String> myPublicResourceIdMap;
 
+  private final Object myAttributeCacheLock = new Object();
+  @GuardedBy("myAttributeCacheLock")
+  private boolean myAttributeCacheRead;
+
   private volatile MyStaticConstantsData myStaticConstantsData;
   private FrameworkResources myFrameworkResources;
 
@@ -84,7 +91,16 @@ public class AndroidTargetData {
   @Nullable
   public AttributeDefinitions getPublicAttrDefs(@NotNull Project project) {
     final AttributeDefinitionsImpl attrDefs = getAllAttrDefs(project);
-    return attrDefs != null ? new PublicAttributeDefinitions(attrDefs) : null;
+    if (attrDefs == null) {
+      return null;
+    }
+    // The same instance is returned as long as the attributes don't change, so that callers can cache data computed from it
+    PublicAttributeDefinitions publicAttrDefs = myPublicAttrDefs;
+    if (publicAttrDefs == null || publicAttrDefs.myAllAttrDefs != attrDefs) {
+      publicAttrDefs = new PublicAttributeDefinitions(attrDefs);
+      myPublicAttrDefs = publicAttrDefs;
+    }
+    return publicAttrDefs;
   }
 
   /**
@@ -93,6 +109,11 @@ public class AndroidTargetData {
   @Nullable
   public AttributeDefinitionsImpl getAllAttrDefs(@NotNull final Project project) {
     if (myAttrDefs == null) {
+      readAttributeCache();
+    }
+    if (myAttrDefs == null) {
+      File[] sourceFiles = FrameworkAttributeCache.getSourceFiles(myTarget);
+      long[] stamps = FrameworkAttributeCache.getStamps(sourceFiles);
       ApplicationManager.getApplication().runReadAction(new Runnable() {
         @Override
         public void run() {
@@ -105,12 +126,67 @@ public class AndroidTargetData {
           }
         }
       });
+      AttributeDefinitionsImpl attrDefs = myAttrDefs;
+      if (attrDefs != null) {
+        writeAttributeCache(attrDefs, sourceFiles, stamps);
+      }
     }
     return myAttrDefs;
   }
 
+  /**
+   * Loads the attribute definitions and the public resources from the {@link FrameworkAttributeCache} of the platform, if there is an up
+   * to date one. The cache is only read once.
+   */
+  private void readAttributeCache() {
+    synchronized (myAttributeCacheLock) {
+      if (myAttributeCacheRead) {
+        return;
+      }
+      myAttributeCacheRead = true;
+      FrameworkAttributeCache cache = FrameworkAttributeCache.read(myTarget);
+      if (cache == null) {
+        return;
+      }
+      synchronized (myPublicResourceCacheLock) {
+        if (myPublicResourceCache == null) {
+          myPublicResourceCache = cache.getPublicResources();
+          myPublicResourceIdMap = cache.getPublicIdMap();
+        }
+      }
+      if (myAttrDefs == null) {
+        myAttrDefs = cache.getAttributeDefinitions();
+      }
+    }
+  }
+
+  /**
+   * Writes the {@link FrameworkAttributeCache} of the platform in the background, with the given attribute definitions built from the
+   * given source files when they had the given stamps.
+   */
+  private void writeAttributeCache(@NotNull AttributeDefinitionsImpl attrDefs, @NotNull File[] sourceFiles, @NotNull long[] stamps) {
+    File cacheFile = FrameworkAttributeCache.getCacheFile(myTarget);
+    if (!getPublicXmlFile(myTarget).isFile() || !ourPendingAttributeCaches.add(cacheFile)) {
+      return;
+    }
+    ApplicationManager.getApplication().executeOnPooledThread(() -> {
+      try {
+        // public.xml is parsed again, so that it matches the stamps even if it was parsed earlier in the session
+        MyPublicResourceCacheBuilder builder = parsePublicXml(getPublicXmlFile(myTarget));
+        new FrameworkAttributeCache(attrDefs, builder.getPublicResourceCache(), builder.getIdMap()).write(cacheFile, sourceFiles, stamps);
+      }
+      catch (IOException e) {
+        LOG.warn("Unable to write the framework attribute cache " + cacheFile, e);
+      }
+      finally {
+        ourPendingAttributeCaches.remove(cacheFile);
+      }
+    });
+  }
+
   @Nullable
   private Map<String, Set<String>> getPublicResourceCache() {
+    readAttributeCache();
     synchronized (myPublicResourceCacheLock) {
       if (myPublicResourceCache == null) {
         parsePublicResCache();
@@ -121,6 +197,7 @@ public class AndroidTargetData {
 
   @Nullable
   public TIntObjectHashMap<String> getPublicIdMap() {
+    readAttributeCache();
     synchronized (myPublicResourceCacheLock) {
       if (myPublicResourceIdMap == null) {
         parsePublicResCache();
@@ -139,10 +216,23 @@ public class AndroidTargetData {
     return set != null && set.contains(name);
   }
 
+  @NotNull
+  static File getPublicXmlFile(@NotNull IAndroidTarget target) {
+    return new File(target.getPath(IAndroidTarget.RESOURCES), SdkConstants.FD_RES_VALUES + File.separator + "public.xml");
+  }
+
+  @NotNull
+  private static MyPublicResourceCacheBuilder parsePublicXml(@NotNull File publicXml) throws IOException {
+    final MyPublicResourceCacheBuilder builder = new MyPublicResourceCacheBuilder();
+    try (InputStream stream = new BufferedInputStream(new FileInputStream(publicXml))) {
+      NanoXmlUtil.parse(stream, builder);
+    }
+    return builder;
+  }
+
   @Nullable
   private void parsePublicResCache() {
-    final String resDirPath = myTarget.getPath(IAndroidTarget.RESOURCES);
-    final String publicXmlPath = resDirPath + '/' + SdkConstants.FD_RES_VALUES + "/public.xml";
+    final String publicXmlPath = getPublicXmlFile(myTarget).getPath();
     final VirtualFile publicXml = LocalFileSystem.getInstance().findFileByPath(FileUtil.toSystemIndependentName(publicXmlPath));
 
     if (publicXml != null) {
@@ -224,9 +314,9 @@ public class AndroidTargetData {
 
   @Nullable
   public synchronized FrameworkResources getFrameworkResources(boolean withLocale) throws IOException {
-    // if the framework resources that we got was created by someone else who didn't need locale data
-    if (withLocale && myFrameworkResources instanceof FrameworkResourceLoader.IdeFrameworkResources && ((FrameworkResourceLoader.IdeFrameworkResources)myFrameworkResources).getSkippedLocales()) {
-      myFrameworkResources = null;
+    // if the framework resources that we got was created by someone else who didn't need locale data, add the locales to them
+    if (withLocale && myFrameworkResources instanceof FrameworkResourceLoader.IdeFrameworkResources) {
+      ((FrameworkResourceLoader.IdeFrameworkResources)myFrameworkResources).loadLocales();
     }
     if (myFrameworkResources == null) {
       myFrameworkResources = FrameworkResourceLoader.load(myTarget, withLocale);
@@ -244,8 +334,11 @@ public class AndroidTargetData {
   }
 
   private class PublicAttributeDefinitions extends FilteredAttributeDefinitions {
-    protected PublicAttributeDefinitions(@NotNull AttributeDefinitions wrappee) {
+    private final AttributeDefinitionsImpl myAllAttrDefs;
+
+    protected PublicAttributeDefinitions(@NotNull AttributeDefinitionsImpl wrappee) {
       super(wrappee);
+      myAllAttrDefs = wrappee;
     }
 
     @Override
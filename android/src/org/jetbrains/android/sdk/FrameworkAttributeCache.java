@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.sdk;
+
+import com.android.annotations.VisibleForTesting;
+import com.android.sdklib.IAndroidTarget;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.IOUtil;
+import gnu.trove.TIntObjectHashMap;
+import org.jetbrains.android.dom.attrs.AttributeDefinitionsImpl;
+import org.jetbrains.android.util.AndroidUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Attribute definitions and public resources of a platform, stored in the Android system directory so that they are read without
+ * building the PSI of {@code attrs.xml} and {@code attrs_manifest.xml} or parsing {@code public.xml} again.
+ * <p>
+ * There is one cache file per platform, API level and revision. A cache file is only used if it was written with the same format version
+ * from the same source files, with the same modification times and lengths.
+ */
+final class FrameworkAttributeCache {
+  private static final Logger LOG = Logger.getInstance(FrameworkAttributeCache.class);
+
+  private static final int MAGIC = 0x46415452;
+  /** Version of the cache format, to increase when the format changes */
+  private static final int VERSION = 1;
+
+  @NotNull private final AttributeDefinitionsImpl myAttrDefs;
+  @NotNull private final Map<String, Set<String>> myPublicResources;
+  @NotNull private final TIntObjectHashMap<String> myPublicIdMap;
+
+  FrameworkAttributeCache(@NotNull AttributeDefinitionsImpl attrDefs,
+                          @NotNull Map<String, Set<String>> publicResources,
+                          @NotNull TIntObjectHashMap<String> publicIdMap) {
+    myAttrDefs = attrDefs;
+    myPublicResources = publicResources;
+    myPublicIdMap = publicIdMap;
+  }
+
+  @NotNull
+  AttributeDefinitionsImpl getAttributeDefinitions() {
+    return myAttrDefs;
+  }
+
+  /** Returns the names of the public resources by resource type */
+  @NotNull
+  Map<String, Set<String>> getPublicResources() {
+    return myPublicResources;
+  }
+
+  /** Returns the references to the public resources by resource ID */
+  @NotNull
+  TIntObjectHashMap<String> getPublicIdMap() {
+    return myPublicIdMap;
+  }
+
+  /**
+   * Returns the files the cache of the given target is built from: {@code attrs.xml}, {@code attrs_manifest.xml} and {@code public.xml}.
+   */
+  @NotNull
+  static File[] getSourceFiles(@NotNull IAndroidTarget target) {
+    return new File[]{
+      new File(target.getPath(IAndroidTarget.ATTRIBUTES)),
+      new File(target.getPath(IAndroidTarget.MANIFEST_ATTRIBUTES)),
+      AndroidTargetData.getPublicXmlFile(target)
+    };
+  }
+
+  @NotNull
+  static File getCacheFile(@NotNull IAndroidTarget target) {
+    String name = String.format("%1$s-r%2$d-%3$08x.bin", target.getVersion().getApiString(), target.getRevision(),
+                                FileUtil.pathHashCode(target.getLocation()));
+    return new File(new File(AndroidUtils.getAndroidSystemDirectoryOsPath(), "framework-attrs"), name);
+  }
+
+  /**
+   * Reads the cache of the given target, or returns null if there is no up to date one.
+   */
+  @Nullable
+  static FrameworkAttributeCache read(@NotNull IAndroidTarget target) {
+    return read(getCacheFile(target), getSourceFiles(target));
+  }
+
+  @VisibleForTesting
+  @Nullable
+  static FrameworkAttributeCache read(@NotNull File cacheFile, @NotNull File[] sourceFiles) {
+    if (!cacheFile.isFile()) {
+      return null;
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != sourceFiles.length) {
+        return null;
+      }
+      for (File file : sourceFiles) {
+        if (!in.readUTF().equals(file.getAbsolutePath()) || in.readLong() != file.lastModified() || in.readLong() != file.length()) {
+          return null;
+        }
+      }
+
+      AttributeDefinitionsImpl attrDefs = AttributeDefinitionsImpl.read(in);
+
+      Map<String, Set<String>> publicResources = new HashMap<>();
+      for (int i = DataInputOutputUtil.readINT(in); i > 0; i--) {
+        String type = IOUtil.readUTF(in);
+        int size = DataInputOutputUtil.readINT(in);
+        Set<String> names = new HashSet<>(size);
+        for (int j = 0; j < size; j++) {
+          names.add(IOUtil.readUTF(in));
+        }
+        publicResources.put(type, names);
+      }
+
+      int size = DataInputOutputUtil.readINT(in);
+      TIntObjectHashMap<String> publicIdMap = new TIntObjectHashMap<>(size);
+      for (int i = 0; i < size; i++) {
+        int id = in.readInt();
+        publicIdMap.put(id, IOUtil.readUTF(in));
+      }
+      return new FrameworkAttributeCache(attrDefs, publicResources, publicIdMap);
+    }
+    catch (IOException | RuntimeException e) {
+      LOG.warn("Unable to read the framework attribute cache " + cacheFile, e);
+      return null;
+    }
+  }
+
+  /**
+   * Returns the modification times and lengths of the given files, to record in a cache built from them.
+   */
+  @NotNull
+  static long[] getStamps(@NotNull File[] sourceFiles) {
+    long[] stamps = new long[sourceFiles.length * 2];
+    for (int i = 0; i < sourceFiles.length; i++) {
+      stamps[2 * i] = sourceFiles[i].lastModified();
+      stamps[2 * i + 1] = sourceFiles[i].length();
+    }
+    return stamps;
+  }
+
+  /**
+   * Writes this cache, built from the given source files when they had the given {@link #getStamps stamps}. Nothing is written if the
+   * source files have changed since.
+   */
+  void write(@NotNull File cacheFile, @NotNull File[] sourceFiles, @NotNull long[] stamps) throws IOException {
+    if (!Arrays.equals(getStamps(sourceFiles), stamps)) {
+      return;
+    }
+
+    FileUtil.createParentDirs(cacheFile);
+    File tempFile = FileUtil.createTempFile(cacheFile.getParentFile(), cacheFile.getName(), ".tmp", true);
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(sourceFiles.length);
+        for (int i = 0; i < sourceFiles.length; i++) {
+          out.writeUTF(sourceFiles[i].getAbsolutePath());
+          out.writeLong(stamps[2 * i]);
+          out.writeLong(stamps[2 * i + 1]);
+        }
+
+        myAttrDefs.write(out);
+
+        DataInputOutputUtil.writeINT(out, myPublicResources.size());
+        for (Map.Entry<String, Set<String>> entry : myPublicResources.entrySet()) {
+          IOUtil.writeUTF(out, entry.getKey());
+          DataInputOutputUtil.writeINT(out, entry.getValue().size());
+          for (String name : entry.getValue()) {
+            IOUtil.writeUTF(out, name);
+          }
+        }
+
+        DataInputOutputUtil.writeINT(out, myPublicIdMap.size());
+        IOException[] error = new IOException[1];
+        myPublicIdMap.forEachEntry((id, reference) -> {
+          try {
+            out.writeInt(id);
+            IOUtil.writeUTF(out, reference);
+            return true;
+          }
+          catch (IOException e) {
+            error[0] = e;
+            return false;
+          }
+        });
+        if (error[0] != null) {
+          throw error[0];
+        }
+      }
+
+      if (!Arrays.equals(getStamps(sourceFiles), stamps)) {
+        throw new IOException("The source files of " + cacheFile + " changed while writing it");
+      }
+      Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    finally {
+      FileUtil.delete(tempFile);
+    }
+  }
+}
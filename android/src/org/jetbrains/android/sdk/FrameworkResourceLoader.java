@@ -20,13 +20,15 @@ import com.android.annotations.NonNull;
 import com.android.ide.common.resources.FrameworkResources;
 import com.android.ide.common.resources.ResourceDeltaKind;
 import com.android.ide.common.resources.ResourceFolder;
+import com.android.ide.common.resources.ResourceValueMap;
 import com.android.ide.common.resources.ScanningContext;
 import com.android.ide.common.resources.configuration.FolderConfiguration;
 import com.android.io.IAbstractFile;
 import com.android.io.IAbstractFolder;
 import com.android.io.IAbstractResource;
+import com.android.resources.ResourceFolderType;
+import com.android.resources.ResourceType;
 import com.android.sdklib.IAndroidTarget;
-import com.android.tools.idea.io.BufferingFolderWrapper;
 import com.android.tools.idea.log.LogWrapper;
 import com.android.utils.ILogger;
 import com.intellij.openapi.diagnostic.Logger;
@@ -36,6 +38,9 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 /** Loader which loads in a {@link com.android.ide.common.resources.FrameworkResources} */
 public class FrameworkResourceLoader {
@@ -53,19 +58,25 @@ public class FrameworkResourceLoader {
       return null;
     }
 
-    return loadPlatformResources(resFolder, logger, withLocale);
+    return loadPlatformResources(FrameworkResourceSnapshot.getResFolder(myTarget, resFolder), logger, withLocale);
   }
 
-  private static FrameworkResources loadPlatformResources(File resFolder, ILogger log, boolean withLocale) throws IOException {
-    final IAbstractFolder resFolderWrapper = new BufferingFolderWrapper(resFolder);
+  private static FrameworkResources loadPlatformResources(IAbstractFolder resFolderWrapper, ILogger log, boolean withLocale)
+    throws IOException {
     final FrameworkResources resources = new IdeFrameworkResources(resFolderWrapper, withLocale);
     resources.ensureInitialized();
     resources.loadPublicResources(log);
     return resources;
   }
 
+  /**
+   * Framework resources which can be loaded without the locale folders, and have them added later by {@link #loadLocales()}. Adding
+   * the locales changes the resources in place, so callers caching values computed from the resources should check
+   * {@link #getModificationCount()}. The resources are read and modified while holding the lock of the repository.
+   */
   public static class IdeFrameworkResources extends FrameworkResources {
     private boolean myWithLocales;
+    private long myModificationCount;
 
     public IdeFrameworkResources(@NonNull IAbstractFolder resFolder, boolean withLocale) {
       super(resFolder);
@@ -85,6 +96,48 @@ public class FrameworkResourceLoader {
       return !myWithLocales;
     }
 
+    /**
+     * Returns a count which is incremented whenever folders are added to the resources after they were initialized.
+     */
+    public synchronized long getModificationCount() {
+      return myModificationCount;
+    }
+
+    /**
+     * Loads the locale folders skipped when the resources were loaded without locales, without loading the other folders again.
+     */
+    public synchronized void loadLocales() {
+      if (myWithLocales) {
+        return;
+      }
+      myWithLocales = true;
+      if (myCleared) {
+        // The locales will be loaded with the other folders
+        return;
+      }
+      ScanningContext context = new ScanningContext();
+      for (IAbstractResource res : getResFolder().listMembers()) {
+        if (res instanceof IAbstractFolder && !isSkipped(res.getName()) && isLocaleFolder(res.getName())) {
+          processFolderFiles((IAbstractFolder)res, context);
+        }
+      }
+      myModificationCount++;
+    }
+
+    @Override
+    @NonNull
+    public synchronized Map<ResourceType, ResourceValueMap> getConfiguredResources(@NonNull FolderConfiguration referenceConfig) {
+      return super.getConfiguredResources(referenceConfig);
+    }
+
+    @Override
+    @Nullable
+    public synchronized List<ResourceFolder> getFolders(@NonNull ResourceFolderType type) {
+      // Copied, since the list of folders may change while the caller iterates over it
+      List<ResourceFolder> folders = super.getFolders(type);
+      return folders != null ? new ArrayList<>(folders) : null;
+    }
+
     @Override
     public synchronized boolean ensureInitialized() {
       if (myCleared && !myInitializing) {
@@ -97,31 +150,19 @@ public class FrameworkResourceLoader {
           if (res instanceof IAbstractFolder) {
             IAbstractFolder folder = (IAbstractFolder)res;
             String resFolderName = folder.getName();
-            if (resFolderName.startsWith("values-mcc") || resFolderName.startsWith("raw-")) {
+            if (isSkipped(resFolderName)) {
               continue;
             }
 
             // Skip locale-specific folders
-            if (!myWithLocales && resFolderName.startsWith("values-")) {
+            if (!myWithLocales && isLocaleFolder(resFolderName)) {
               // Can I find out which resources we use in layoutlib?
               // Can I find out which ones we *expose* through public? I should filter JUST those!
               // I guess I could cache this stuff...?
-              FolderConfiguration config = FolderConfiguration.getConfigForFolder(resFolderName);
-              if (config == null || config.getLocaleQualifier() != null) {
-                continue;
-              }
+              continue;
             }
 
-            ResourceFolder resFolder = processFolder(folder);
-            if (resFolder != null) {
-              IAbstractResource[] files = folder.listMembers();
-              for (IAbstractResource fileRes : files) {
-                if (fileRes instanceof IAbstractFile) {
-                  IAbstractFile file = (IAbstractFile)fileRes;
-                  resFolder.processFile(file, ResourceDeltaKind.ADDED, context);
-                }
-              }
-            }
+            processFolderFiles(folder, context);
           }
         }
 
@@ -132,5 +173,30 @@ public class FrameworkResourceLoader {
 
       return false;
     }
+
+    private static boolean isSkipped(@NotNull String resFolderName) {
+      return resFolderName.startsWith("values-mcc") || resFolderName.startsWith("raw-");
+    }
+
+    private static boolean isLocaleFolder(@NotNull String resFolderName) {
+      if (!resFolderName.startsWith("values-")) {
+        return false;
+      }
+      FolderConfiguration config = FolderConfiguration.getConfigForFolder(resFolderName);
+      return config == null || config.getLocaleQualifier() != null;
+    }
+
+    private void processFolderFiles(@NotNull IAbstractFolder folder, @NotNull ScanningContext context) {
+      ResourceFolder resFolder = processFolder(folder);
+      if (resFolder != null) {
+        IAbstractResource[] files = folder.listMembers();
+        for (IAbstractResource fileRes : files) {
+          if (fileRes instanceof IAbstractFile) {
+            IAbstractFile file = (IAbstractFile)fileRes;
+            resFolder.processFile(file, ResourceDeltaKind.ADDED, context);
+          }
+        }
+      }
+    }
   }
 }
@@ -0,0 +1,353 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.sdk;
+
+import com.android.annotations.VisibleForTesting;
+import com.android.io.IAbstractFile;
+import com.android.io.IAbstractFolder;
+import com.android.io.IAbstractResource;
+import com.android.io.StreamException;
+import com.android.sdklib.IAndroidTarget;
+import com.android.tools.idea.io.BufferingFileWrapper;
+import com.android.tools.idea.io.BufferingFolderWrapper;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.android.util.AndroidUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.android.SdkConstants.DOT_XML;
+
+/**
+ * Binary snapshot of the {@code res} folder of a platform, read by {@link FrameworkResourceLoader} instead of the folder itself.
+ * <p>
+ * The snapshot holds the names of the resource folders and files, and the contents of the XML files (the only files read when loading
+ * the framework resources). It is written once per platform and API level in the Android system directory, and the contents are memory
+ * mapped when it is read. Loading the resources then doesn't list and open thousands of files, and the contents of the locale folders
+ * are only paged in if the locales are loaded. A snapshot is only used if it was written with the same format version for the same
+ * folder, and the folder, its subfolders and the stored files still have the modification times (and, for the files, the lengths) they
+ * had when it was written. Checking the stamps is much cheaper than reading the files.
+ */
+final class FrameworkResourceSnapshot {
+  private static final Logger LOG = Logger.getInstance(FrameworkResourceSnapshot.class);
+
+  private static final int MAGIC = 0x46524553;
+  /** Version of the snapshot format, to increase when the format changes */
+  private static final int VERSION = 2;
+  /** Length of the files that aren't stored in the snapshot */
+  private static final int NOT_STORED = -1;
+
+  /** Snapshot files being written */
+  private static final Set<File> ourPendingSnapshots = ConcurrentHashMap.newKeySet();
+
+  @NotNull private final File myResFolder;
+  /** Offsets, lengths and modification times of the files by folder and file name, in the order of the folder */
+  @NotNull private final Map<String, Map<String, long[]>> myFolders;
+  @NotNull private final ByteBuffer myData;
+
+  private FrameworkResourceSnapshot(@NotNull File resFolder, @NotNull Map<String, Map<String, long[]>> folders, @NotNull ByteBuffer data) {
+    myResFolder = resFolder;
+    myFolders = folders;
+    myData = data;
+  }
+
+  /**
+   * Returns the folder to load the framework resources of the given target from. This is the snapshot of the folder if there is an up
+   * to date one, otherwise the folder itself, and a snapshot is written in the background for the next time.
+   */
+  @NotNull
+  static IAbstractFolder getResFolder(@NotNull IAndroidTarget target, @NotNull File resFolder) {
+    File snapshotFile = getSnapshotFile(target, resFolder);
+    FrameworkResourceSnapshot snapshot = read(snapshotFile, resFolder);
+    if (snapshot != null) {
+      return snapshot.getRootFolder();
+    }
+    if (ourPendingSnapshots.add(snapshotFile)) {
+      ApplicationManager.getApplication().executeOnPooledThread(() -> {
+        try {
+          write(resFolder, snapshotFile);
+        }
+        catch (IOException e) {
+          LOG.warn("Unable to write the framework resource snapshot " + snapshotFile, e);
+        }
+        finally {
+          ourPendingSnapshots.remove(snapshotFile);
+        }
+      });
+    }
+    return new BufferingFolderWrapper(resFolder);
+  }
+
+  @NotNull
+  private static File getSnapshotFile(@NotNull IAndroidTarget target, @NotNull File resFolder) {
+    String name = String.format("%1$s-r%2$d-%3$08x.bin", target.getVersion().getApiString(), target.getRevision(),
+                                FileUtil.pathHashCode(resFolder.getAbsolutePath()));
+    return new File(new File(AndroidUtils.getAndroidSystemDirectoryOsPath(), "framework-res"), name);
+  }
+
+  /**
+   * Writes a snapshot of the given resource folder.
+   */
+  @VisibleForTesting
+  static void write(@NotNull File resFolder, @NotNull File snapshotFile) throws IOException {
+    long stamp = resFolder.lastModified();
+    File[] folders = resFolder.listFiles(File::isDirectory);
+    if (folders == null) {
+      return;
+    }
+    Arrays.sort(folders);
+
+    // The header is written first, with the offsets of the contents of the files in the data that follows it
+    List<File> storedFiles = new ArrayList<>();
+    ByteArrayOutputStream header = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(header);
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeUTF(resFolder.getAbsolutePath());
+    out.writeLong(stamp);
+    out.writeInt(folders.length);
+    long offset = 0;
+    for (File folder : folders) {
+      File[] files = folder.listFiles(File::isFile);
+      if (files == null) {
+        files = new File[0];
+      }
+      Arrays.sort(files);
+      out.writeUTF(folder.getName());
+      out.writeLong(folder.lastModified());
+      out.writeInt(files.length);
+      for (File file : files) {
+        out.writeUTF(file.getName());
+        if (file.getName().endsWith(DOT_XML)) {
+          long length = file.length();
+          out.writeLong(offset);
+          out.writeLong(length);
+          out.writeLong(file.lastModified());
+          offset += length;
+          storedFiles.add(file);
+        }
+        else {
+          out.writeLong(0);
+          out.writeLong(NOT_STORED);
+          out.writeLong(0);
+        }
+      }
+    }
+    out.writeLong(offset);
+    if (offset > Integer.MAX_VALUE) {
+      // The data has to fit in a single mapped buffer
+      return;
+    }
+
+    FileUtil.createParentDirs(snapshotFile);
+    File tempFile = FileUtil.createTempFile(snapshotFile.getParentFile(), snapshotFile.getName(), ".tmp", true);
+    try {
+      try (OutputStream stream = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+        header.writeTo(stream);
+        for (File file : storedFiles) {
+          byte[] bytes = FileUtil.loadFileBytes(file);
+          if (bytes.length != file.length()) {
+            throw new IOException(file + " changed while writing the snapshot");
+          }
+          stream.write(bytes);
+        }
+      }
+      // A change made while the snapshot was written is caught by the stamps when it is read, except for the root folder
+      if (resFolder.lastModified() != stamp) {
+        throw new IOException(resFolder + " changed while writing the snapshot");
+      }
+      Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    finally {
+      FileUtil.delete(tempFile);
+    }
+  }
+
+  /**
+   * Reads the snapshot of the given resource folder, or returns null if the snapshot doesn't exist or is out of date.
+   */
+  @VisibleForTesting
+  @Nullable
+  static FrameworkResourceSnapshot read(@NotNull File snapshotFile, @NotNull File resFolder) {
+    if (!snapshotFile.isFile()) {
+      return null;
+    }
+    try {
+      Map<String, Map<String, long[]>> folders = new LinkedHashMap<>();
+      long dataLength;
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(resFolder.getAbsolutePath()) ||
+            in.readLong() != resFolder.lastModified()) {
+          return null;
+        }
+        int folderCount = in.readInt();
+        for (int i = 0; i < folderCount; i++) {
+          String folderName = in.readUTF();
+          File folder = new File(resFolder, folderName);
+          if (in.readLong() != folder.lastModified()) {
+            return null;
+          }
+          int fileCount = in.readInt();
+          Map<String, long[]> files = new LinkedHashMap<>();
+          for (int j = 0; j < fileCount; j++) {
+            String fileName = in.readUTF();
+            long[] entry = new long[]{in.readLong(), in.readLong(), in.readLong()};
+            if (entry[1] != NOT_STORED && !isUpToDate(new File(folder, fileName), entry)) {
+              return null;
+            }
+            files.put(fileName, entry);
+          }
+          folders.put(folderName, files);
+        }
+        dataLength = in.readLong();
+      }
+
+      // The data is at the end of the file
+      try (FileChannel channel = FileChannel.open(snapshotFile.toPath(), StandardOpenOption.READ)) {
+        ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, channel.size() - dataLength, dataLength);
+        return new FrameworkResourceSnapshot(resFolder, folders, data);
+      }
+    }
+    catch (IOException | RuntimeException e) {
+      LOG.warn("Unable to read the framework resource snapshot " + snapshotFile, e);
+      return null;
+    }
+  }
+
+  private static boolean isUpToDate(@NotNull File file, @NotNull long[] entry) {
+    return file.lastModified() == entry[2] && file.length() == entry[1];
+  }
+
+  @NotNull
+  IAbstractFolder getRootFolder() {
+    return new RootFolder();
+  }
+
+  @NotNull
+  private byte[] getContents(@NotNull long[] entry) {
+    ByteBuffer buffer = myData.duplicate();
+    buffer.position((int)entry[0]);
+    byte[] bytes = new byte[(int)entry[1]];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  private final class RootFolder extends BufferingFolderWrapper {
+    @NotNull private final Map<String, SnapshotFolder> myMembers = new LinkedHashMap<>();
+
+    private RootFolder() {
+      super(myResFolder);
+      for (Map.Entry<String, Map<String, long[]>> entry : myFolders.entrySet()) {
+        myMembers.put(entry.getKey(), new SnapshotFolder(new File(myResFolder, entry.getKey()), entry.getValue()));
+      }
+    }
+
+    @Override
+    public boolean hasFile(String name) {
+      return false;
+    }
+
+    @Override
+    public IAbstractFolder getFolder(String name) {
+      SnapshotFolder folder = myMembers.get(name);
+      return folder != null ? folder : super.getFolder(name);
+    }
+
+    @Override
+    public IAbstractResource[] listMembers() {
+      return myMembers.values().toArray(new IAbstractResource[0]);
+    }
+
+    @Override
+    public boolean exists() {
+      return true;
+    }
+  }
+
+  private final class SnapshotFolder extends BufferingFolderWrapper {
+    @NotNull private final File myFolder;
+    @NotNull private final Map<String, long[]> myFiles;
+
+    private SnapshotFolder(@NotNull File folder, @NotNull Map<String, long[]> files) {
+      super(folder);
+      myFolder = folder;
+      myFiles = files;
+    }
+
+    @Override
+    public boolean hasFile(String name) {
+      return myFiles.containsKey(name);
+    }
+
+    @Override
+    public IAbstractFile getFile(String name) {
+      long[] entry = myFiles.get(name);
+      return entry != null ? new SnapshotFile(new File(myFolder, name), this, entry) : super.getFile(name);
+    }
+
+    @Override
+    public IAbstractResource[] listMembers() {
+      IAbstractResource[] members = new IAbstractResource[myFiles.size()];
+      int i = 0;
+      for (Map.Entry<String, long[]> entry : myFiles.entrySet()) {
+        members[i++] = new SnapshotFile(new File(myFolder, entry.getKey()), this, entry.getValue());
+      }
+      return members;
+    }
+
+    @Override
+    public boolean exists() {
+      return true;
+    }
+  }
+
+  private final class SnapshotFile extends BufferingFileWrapper {
+    @NotNull private final SnapshotFolder myParent;
+    @NotNull private final long[] myEntry;
+
+    private SnapshotFile(@NotNull File file, @NotNull SnapshotFolder parent, @NotNull long[] entry) {
+      super(file);
+      myParent = parent;
+      myEntry = entry;
+    }
+
+    @Override
+    public InputStream getContents() throws StreamException {
+      return myEntry[1] == NOT_STORED ? super.getContents() : new ByteArrayInputStream(FrameworkResourceSnapshot.this.getContents(myEntry));
+    }
+
+    @Override
+    public boolean exists() {
+      return true;
+    }
+
+    @NotNull
+    @Override
+    public IAbstractFolder getParentFolder() {
+      return myParent;
+    }
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.configurations;
+
+import com.android.ide.common.resources.configuration.FolderConfiguration;
+import com.android.resources.ResourceType;
+import com.android.tools.idea.res.AppResourceRepository;
+import com.android.tools.idea.res.LocalResourceRepository;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.android.AndroidTestCase;
+
+import java.util.List;
+
+@SuppressWarnings("ConstantConditions")
+public class ConfigurationMatchIndexTest extends AndroidTestCase {
+  private static final String TEST_FILE = "xmlpull/layout.xml";
+
+  public void testMatchesRepository() {
+    VirtualFile portrait = myFixture.copyFileToProject(TEST_FILE, "res/layout/layout1.xml");
+    VirtualFile landscape = myFixture.copyFileToProject(TEST_FILE, "res/layout-land/layout1.xml");
+    LocalResourceRepository resources = AppResourceRepository.getOrCreateInstance(myModule);
+    ConfigurationMatchIndex index = new ConfigurationMatchIndex();
+
+    String[] configs = {"", "land", "port", "fr-land", "de-port-night", "land-xhdpi-car", "sw600dp-land-v21"};
+    for (String qualifiers : configs) {
+      FolderConfiguration config = FolderConfiguration.getConfigForQualifierString(qualifiers);
+      List<VirtualFile> expected = resources.getMatchingFiles(portrait, ResourceType.LAYOUT, config);
+      assertEquals(qualifiers, expected, index.getMatchingFiles(resources, portrait, ResourceType.LAYOUT, config));
+      assertEquals(qualifiers, expected, index.getMatchingFiles(resources, landscape, ResourceType.LAYOUT, config));
+    }
+    assertEquals(landscape, index.getMatchingFile(resources, portrait, ResourceType.LAYOUT,
+                                                  FolderConfiguration.getConfigForQualifierString("fr-land-night")));
+
+    // Only the orientation distinguishes the candidates, so there are three distinct queries: landscape, portrait, and none
+    assertEquals(2 * configs.length + 1, index.getLookupCount());
+    assertEquals(3, index.getQueryCount());
+  }
+
+  public void testUpdatedWhenFoldersChange() {
+    VirtualFile file = myFixture.copyFileToProject(TEST_FILE, "res/layout/layout1.xml");
+    LocalResourceRepository resources = AppResourceRepository.getOrCreateInstance(myModule);
+    ConfigurationMatchIndex index = new ConfigurationMatchIndex();
+    FolderConfiguration config = FolderConfiguration.getConfigForQualifierString("fr-land");
+    assertEquals(file, index.getMatchingFile(resources, file, ResourceType.LAYOUT, config));
+
+    // Once the repository has seen the new folder the index must not return the stale match
+    myFixture.copyFileToProject(TEST_FILE, "res/layout-fr/layout1.xml");
+    resources = AppResourceRepository.getOrCreateInstance(myModule);
+    assertEquals(resources.getMatchingFile(file, ResourceType.LAYOUT, config),
+                 index.getMatchingFile(resources, file, ResourceType.LAYOUT, config));
+  }
+}
@@ -15,12 +15,17 @@
  */
 package com.android.tools.idea.configurations;
 
+import com.android.ide.common.rendering.api.ResourceValue;
 import com.android.ide.common.resources.ResourceRepository;
 import com.android.ide.common.resources.ResourceResolver;
+import com.android.ide.common.resources.ResourceValueMap;
+import com.android.resources.ResourceType;
 import com.android.sdklib.devices.Device;
 import com.android.sdklib.devices.Screen;
+import com.android.tools.idea.rendering.Locale;
 import com.android.tools.idea.res.LocalResourceRepository;
 import com.android.tools.idea.res.ModuleResourceRepository;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.Iterables;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.command.WriteCommandAction;
@@ -35,6 +40,9 @@ import org.jetbrains.android.facet.AndroidFacet;
 import org.jetbrains.android.sdk.FrameworkResourceLoader;
 import org.junit.Ignore;
 
+import java.util.Iterator;
+import java.util.Map;
+
 public class ResourceResolverCacheTest extends AndroidTestCase {
 
   public void test() throws Exception {
@@ -174,4 +182,79 @@ public class ResourceResolverCacheTest extends AndroidTestCase {
     // We've only changed the theme so the resource maps won't change. They are indexed per device config.
     assertDoesntContain(cache.myResolverMap.keySet(), customResolverMapKey);
   }
+
+  public void testFrameworkLocalesAddedAfterCaching() {
+    VirtualFile file = myFixture.copyFileToProject("render/layout1.xml", "res/layout/layout1.xml");
+    ConfigurationManager configurationManager = ConfigurationManager.getOrCreateInstance(myModule);
+    Configuration configuration = configurationManager.getConfiguration(file);
+    ResourceResolverCache cache = configurationManager.getResolverCache();
+
+    ResourceValue cancel = configuration.getResourceResolver().findResValue("@android:string/cancel", false);
+    assertNotNull(cancel);
+    ResourceRepository frameworkResources = cache.getFrameworkResources(configuration.getFullConfig(), configuration.getTarget());
+    assertTrue(frameworkResources instanceof FrameworkResourceLoader.IdeFrameworkResources);
+    FrameworkResourceLoader.IdeFrameworkResources ideFrameworkResources = (FrameworkResourceLoader.IdeFrameworkResources)frameworkResources;
+    assertTrue(ideFrameworkResources.getSkippedLocales());
+    long generation = ideFrameworkResources.getModificationCount();
+
+    // The locales are added to the same repository, so the values cached for it without the locales must not be reused
+    Configuration french = Configuration.copy(configuration);
+    french.setLocale(Locale.create("fr"));
+    ResourceValue frenchCancel = french.getResourceResolver().findResValue("@android:string/cancel", false);
+    assertSame(frameworkResources, cache.getFrameworkResources(french.getFullConfig(), french.getTarget()));
+    assertFalse(ideFrameworkResources.getSkippedLocales());
+    assertTrue(generation < ideFrameworkResources.getModificationCount());
+    assertNotNull(frenchCancel);
+    assertFalse(cancel.getValue().equals(frenchCancel.getValue()));
+
+    // The default configuration still resolves to the default values
+    assertEquals(cancel.getValue(), configuration.getResourceResolver().findResValue("@android:string/cancel", false).getValue());
+  }
+
+  public void testSharedConfiguredResources() {
+    VirtualFile file = myFixture.copyFileToProject("render/layout1.xml", "res/layout/layout1.xml");
+    myFixture.copyFileToProject("javadoc/strings/strings.xml", "res/values/strings.xml");
+    ConfigurationManager configurationManager = ConfigurationManager.getOrCreateInstance(myModule);
+    Configuration configuration = configurationManager.getConfiguration(file);
+    ResourceResolverCache cache = configurationManager.getResolverCache();
+
+    // The project has no locale specific resources so the French configuration resolves to the same app resources
+    Configuration french = Configuration.copy(configuration);
+    french.setLocale(Locale.create("fr"));
+    assertNotSame(configuration.getResourceResolver(), french.getResourceResolver());
+
+    assertEquals(2, cache.myAppResourceMap.size());
+    Iterator<Map<ResourceType, ResourceValueMap>> appResources = cache.myAppResourceMap.values().iterator();
+    Map<ResourceType, ResourceValueMap> first = appResources.next();
+    Map<ResourceType, ResourceValueMap> second = appResources.next();
+    assertSame(first.get(ResourceType.STRING), second.get(ResourceType.STRING));
+    assertSame(first.get(ResourceType.LAYOUT), second.get(ResourceType.LAYOUT));
+  }
+
+  public void testEvictionAndStats() {
+    VirtualFile file = myFixture.copyFileToProject("render/layout1.xml", "res/layout/layout1.xml");
+    myFixture.copyFileToProject("javadoc/strings/strings.xml", "res/values/strings.xml");
+    ConfigurationManager configurationManager = ConfigurationManager.getOrCreateInstance(myModule);
+    Configuration configuration = configurationManager.getConfiguration(file);
+    Configuration french = Configuration.copy(configuration);
+    french.setLocale(Locale.create("fr"));
+
+    // A cache that can't hold anything keeps only the most recently used configuration
+    ResourceResolverCache cache = new ResourceResolverCache(configurationManager, 0);
+    String theme = configuration.getTheme();
+    ResourceResolver resolver = cache.getResourceResolver(configuration.getTarget(), theme, configuration.getFullConfig());
+    assertSame(resolver, cache.getResourceResolver(configuration.getTarget(), theme, configuration.getFullConfig()));
+    cache.getResourceResolver(french.getTarget(), theme, french.getFullConfig());
+    assertEquals(1, cache.myAppResourceMap.size());
+    assertEquals(1, cache.myResolverMap.size());
+
+    CacheStats stats = cache.getResolverStats();
+    assertEquals(1, stats.hitCount());
+    assertEquals(2, stats.missCount());
+    assertEquals(1, stats.evictionCount());
+
+    // The evicted configuration is computed again
+    assertNotSame(resolver, cache.getResourceResolver(configuration.getTarget(), theme, configuration.getFullConfig()));
+    assertEquals(3, cache.getResolverStats().missCount());
+  }
 }
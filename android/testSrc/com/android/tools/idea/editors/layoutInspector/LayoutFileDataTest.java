@@ -19,16 +19,21 @@ import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import org.jetbrains.android.AndroidTestCase;
 
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Paths;
 
 public class LayoutFileDataTest extends AndroidTestCase {
-  public void testParsingLayoutFile() throws IOException {
-    VirtualFile file = myFixture.copyFileToProject("editors/layoutInspector/LayoutCapture.li");
+  private LayoutFileData loadTestCapture() throws IOException {
     File testData = Paths.get(getTestDataPath(), "editors/layoutInspector/LayoutCapture.li").toFile();
     VirtualFile layoutFile = LocalFileSystem.getInstance().findFileByIoFile(testData);
-    LayoutFileData fileData = new LayoutFileData(layoutFile);
+    return new LayoutFileData(layoutFile);
+  }
+
+  public void testParsingLayoutFile() throws IOException {
+    VirtualFile file = myFixture.copyFileToProject("editors/layoutInspector/LayoutCapture.li");
+    LayoutFileData fileData = loadTestCapture();
 
     assertNotNull(fileData.getBufferedImage());
     assertEquals(1920, fileData.getBufferedImage().getHeight());
@@ -37,4 +42,18 @@ public class LayoutFileDataTest extends AndroidTestCase {
     assertNotNull(fileData.getNode());
     assertEquals(3, fileData.getNode().getChildCount());
   }
+
+  public void testPreviewThumbnail() throws IOException {
+    LayoutFileData fileData = loadTestCapture();
+
+    BufferedImage thumbnail = fileData.getPreviewThumbnail(960);
+    assertNotNull(thumbnail);
+    assertEquals(960, thumbnail.getHeight());
+    assertEquals(540, thumbnail.getWidth());
+    assertFalse(fileData.isBufferedImageDecoded());
+
+    assertEquals(1920, fileData.getBufferedImage().getHeight());
+    assertTrue(fileData.isBufferedImageDecoded());
+    assertSame(fileData.getBufferedImage(), fileData.getPreviewThumbnail(960));
+  }
 }
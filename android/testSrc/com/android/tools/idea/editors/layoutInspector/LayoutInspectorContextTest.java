@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.editors.layoutInspector;
+
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.ui.UIUtil;
+import org.jetbrains.android.AndroidTestCase;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+public class LayoutInspectorContextTest extends AndroidTestCase {
+  public void testFullPreviewIsDecodedOnDemand() throws Exception {
+    File testFile = Paths.get(getTestDataPath(), "editors/layoutInspector/LayoutCapture.li").toFile();
+    VirtualFile layoutFile = LocalFileSystem.getInstance().findFileByIoFile(testFile);
+    LayoutFileData fileData = new LayoutFileData(layoutFile);
+    List<Runnable> tasks = new ArrayList<>();
+    LayoutInspectorContext context = new LayoutInspectorContext(fileData, getProject(), tasks::add);
+
+    // The thumbnail is shown until the preview is painted larger than it
+    BufferedImage thumbnail = context.getBufferedImage();
+    assertNotNull(thumbnail);
+    assertTrue(thumbnail.getHeight() < 1920);
+    assertTrue(tasks.isEmpty());
+    assertFalse(fileData.isBufferedImageDecoded());
+
+    context.onPreviewUpscaled();
+    context.onPreviewUpscaled();
+    assertEquals(1, tasks.size());
+
+    tasks.get(0).run();
+    UIUtil.dispatchAllInvocationEvents();
+    assertTrue(fileData.isBufferedImageDecoded());
+    BufferedImage image = context.getBufferedImage();
+    assertNotNull(image);
+    assertEquals(1920, image.getHeight());
+  }
+}
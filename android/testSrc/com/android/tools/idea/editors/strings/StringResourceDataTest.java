@@ -40,6 +40,8 @@ import java.util.stream.Collectors;
 
 public class StringResourceDataTest extends AndroidTestCase {
   private VirtualFile resourceDirectory;
+  private LocalResourceRepository parent;
+  private StringResourceRepository repository;
   private StringResourceData data;
 
   @Override
@@ -63,10 +65,11 @@ public class StringResourceDataTest extends AndroidTestCase {
 
     Disposer.register(myFacet, dynamicResourceValueRepository);
 
-    LocalResourceRepository parent =
+    parent =
       ModuleResourceRepository.createForTest(myFacet, Collections.singletonList(resourceDirectory), null, dynamicResourceValueRepository);
 
-    data = StringResourceRepository.create(parent).getData(myFacet);
+    repository = StringResourceRepository.create(parent);
+    data = repository.getData(myFacet);
   }
 
   public void testSummarizeLocales() {
@@ -255,6 +258,29 @@ public class StringResourceDataTest extends AndroidTestCase {
     assertEquals("Hello", tag.getValue().getText());
   }
 
+  public void testReusesUnchangedDirectories() {
+    StringResource key1 = data.getStringResource(newStringResourceKey("key1"));
+    StringResourceData reloaded = repository.getData(myFacet, data);
+
+    assertEquals(data.getKeys(), reloaded.getKeys());
+    assertSame(key1, reloaded.getStringResource(newStringResourceKey("key1")));
+
+    assertTrue(key1.putTranslation(Locale.create("hi"), "Key 1 hi"));
+    reloaded = repository.getData(myFacet, data);
+
+    assertNotSame(key1, reloaded.getStringResource(newStringResourceKey("key1")));
+    assertEquals("Key 1 hi", reloaded.getStringResource(newStringResourceKey("key1")).getTranslationAsString(Locale.create("hi")));
+  }
+
+  public void testRebindsReusedResources() {
+    StringResource key1 = data.getStringResource(newStringResourceKey("key1"));
+    StringResourceRepository reloadedRepository = StringResourceRepository.create(parent);
+    StringResourceData reloaded = reloadedRepository.getData(myFacet, data);
+
+    assertSame(key1, reloaded.getStringResource(newStringResourceKey("key1")));
+    assertSame(reloadedRepository, key1.getRepository());
+  }
+
   @NotNull
   private StringResourceKey newStringResourceKey(@NotNull String name) {
     return new StringResourceKey(name, resourceDirectory);
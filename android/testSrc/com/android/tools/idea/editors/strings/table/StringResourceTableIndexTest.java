@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.editors.strings.table;
+
+import com.android.tools.idea.editors.strings.StringResource;
+import com.android.tools.idea.editors.strings.StringResourceRepository;
+import com.android.tools.idea.rendering.Locale;
+import com.android.tools.idea.res.ModuleResourceRepository;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.android.AndroidTestCase;
+
+import javax.swing.event.TableModelEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+public final class StringResourceTableIndexTest extends AndroidTestCase {
+  private StringResourceRepository myRepository;
+  private StringResourceTableModel myModel;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myFacet.getProperties().ALLOW_USER_CONFIGURATION = false;
+
+    VirtualFile resourceDirectory = myFixture.copyDirectoryToProject("stringsEditor/base/res", "res");
+    myRepository =
+      StringResourceRepository.create(ModuleResourceRepository.createForTest(myFacet, Collections.singletonList(resourceDirectory)));
+    myModel = new StringResourceTableModel(myRepository, myFacet);
+  }
+
+  /**
+   * Checks the index against the filter rules applied to the cells of the model.
+   */
+  private void checkIndex() {
+    StringResourceTableIndex index = myModel.getIndex();
+    assertNotNull(index);
+
+    for (int row = 0; row < myModel.getRowCount(); row++) {
+      int r = row;
+      boolean untranslatable = (boolean)myModel.getValueAt(row, StringResourceTableModel.UNTRANSLATABLE_COLUMN);
+      assertEquals(untranslatable, index.isUntranslatable(row));
+
+      boolean needsTranslations = !untranslatable && IntStream.range(StringResourceTableModel.DEFAULT_VALUE_COLUMN, myModel.getColumnCount())
+        .anyMatch(column -> myModel.getValueAt(r, column).toString().isEmpty());
+      assertEquals(myModel.getKey(row).getName(), needsTranslations, index.needsTranslations(row));
+
+      for (int column = StringResourceTableModel.FIXED_COLUMN_COUNT; column < myModel.getColumnCount(); column++) {
+        Locale locale = myModel.getLocale(column);
+        assertNotNull(locale);
+        assertEquals(!untranslatable && myModel.getValueAt(row, column).toString().isEmpty(), index.needsTranslation(row, locale));
+      }
+
+      assertTrue(index.containsText(row, myModel.getKey(row).getName()));
+    }
+  }
+
+  public void testMatchesCells() {
+    checkIndex();
+  }
+
+  public void testUpdatesEditedRows() {
+    checkIndex();
+    int row = IntStream.range(0, myModel.getRowCount())
+      .filter(r -> myModel.getKey(r).getName().equals("key1"))
+      .findFirst()
+      .getAsInt();
+    int column = IntStream.range(StringResourceTableModel.FIXED_COLUMN_COUNT, myModel.getColumnCount())
+      .filter(c -> Locale.create("hi").equals(myModel.getLocale(c)))
+      .findFirst()
+      .getAsInt();
+
+    StringResourceTableIndex index = myModel.getIndex();
+    assertNotNull(index);
+    assertTrue(index.needsTranslation(row, Locale.create("hi")));
+    assertFalse(index.containsText(row, "Key 1 in Hindi"));
+
+    myModel.setValueAt("Key 1 in Hindi", row, column);
+    assertFalse(index.needsTranslation(row, Locale.create("hi")));
+    assertTrue(index.containsText(row, "Key 1 in Hindi"));
+    checkIndex();
+  }
+
+  public void testUpdateReusesUnchangedRows() {
+    StringResourceTableIndex index = myModel.getIndex();
+    assertNotNull(index);
+    StringResource key1 = myModel.getStringResourceAt(0);
+    List<TableModelEvent> events = new ArrayList<>();
+    myModel.addTableModelListener(events::add);
+
+    assertTrue(myModel.update(myRepository, myRepository.getData(myFacet, myModel.getData())));
+    assertSame(key1, myModel.getStringResourceAt(0));
+    assertSame(index, myModel.getIndex());
+    assertEquals(Collections.emptyList(), events);
+    checkIndex();
+  }
+
+  public void testUpdateRecomputesChangedRows() {
+    checkIndex();
+    int row = IntStream.range(0, myModel.getRowCount())
+      .filter(r -> myModel.getKey(r).getName().equals("key1"))
+      .findFirst()
+      .getAsInt();
+    List<TableModelEvent> events = new ArrayList<>();
+    myModel.addTableModelListener(events::add);
+
+    // Edit the resources behind the back of the model, like an editor of the strings.xml file would
+    assertTrue(myModel.getStringResourceAt(row).putTranslation(Locale.create("hi"), "Key 1 in Hindi"));
+    assertTrue(myModel.update(myRepository, myRepository.getData(myFacet, myModel.getData())));
+
+    assertFalse(events.isEmpty());
+    for (TableModelEvent event : events) {
+      assertEquals(TableModelEvent.UPDATE, event.getType());
+      assertTrue(event.getFirstRow() >= 0);
+    }
+    StringResourceTableIndex index = myModel.getIndex();
+    assertNotNull(index);
+    assertFalse(index.needsTranslation(row, Locale.create("hi")));
+    checkIndex();
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.editors.vmtrace;
+
+import com.android.tools.perflib.vmtrace.ThreadInfo;
+import com.android.tools.perflib.vmtrace.VmTraceData;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import junit.framework.TestCase;
+import org.jetbrains.android.AndroidTestBase;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class VmTraceLoaderTest extends TestCase {
+  private static final File TRACE_FILE = new File(AndroidTestBase.getTestDataPath(), "vmtrace/basic.trace");
+
+  public void testParse() throws Exception {
+    VmTraceData data = VmTraceLoader.parse(TRACE_FILE, new EmptyProgressIndicator());
+    List<String> threads = new ArrayList<>();
+    for (ThreadInfo thread : data.getThreads(true)) {
+      threads.add(thread.getName());
+    }
+    assertThat(threads).contains("main");
+  }
+
+  public void testParseStopsWhenCancelled() throws Exception {
+    // Cancels the indicator the first time the parser checks it, which happens while it is reading the trace
+    ProgressIndicator indicator = new EmptyProgressIndicator() {
+      @Override
+      public void checkCanceled() {
+        cancel();
+        super.checkCanceled();
+      }
+    };
+    try {
+      VmTraceLoader.parse(TRACE_FILE, indicator);
+      fail("Parsing should stop once the indicator is cancelled");
+    }
+    catch (ProcessCanceledException expected) {
+    }
+  }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.fonts;
+
+import com.android.ide.common.fonts.FontFamily;
+import com.android.ide.common.fonts.FontProvider;
+import com.android.ide.common.fonts.FontSource;
+import com.android.tools.idea.fonts.FontPrefetcher.FileRequest;
+import com.google.common.collect.ImmutableList;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.Font;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.android.ide.common.fonts.FontProviderKt.GOOGLE_FONT_AUTHORITY;
+import static com.google.common.truth.Truth.assertThat;
+
+public class FontPrefetcherTest extends FontTestCase {
+  private File myProviderFont;
+  private final Map<String, AtomicInteger> myFetchCounts = new ConcurrentHashMap<>();
+  private final AtomicInteger myRunningFetches = new AtomicInteger();
+  private final AtomicInteger myMaxRunningFetches = new AtomicInteger();
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    myProviderFont = new File(getTestDataPath(), "fonts/customfont.ttf");
+  }
+
+  /**
+   * Stands in for the font provider: every url is downloaded as a copy of the same local font file.
+   */
+  private void fetchLocally(@NotNull FileRequest request) throws IOException {
+    myFetchCounts.computeIfAbsent(request.myUrl, url -> new AtomicInteger()).incrementAndGet();
+    int running = myRunningFetches.incrementAndGet();
+    myMaxRunningFetches.accumulateAndGet(running, Math::max);
+    try {
+      Thread.sleep(10);
+      FileUtil.copy(myProviderFont, request.myTarget);
+    }
+    catch (InterruptedException ex) {
+      throw new IOException(ex);
+    }
+    finally {
+      myRunningFetches.decrementAndGet();
+    }
+  }
+
+  @NotNull
+  private List<FileRequest> createRequests(@NotNull String prefix, int count) {
+    List<FileRequest> requests = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      String name = prefix + i;
+      requests.add(new FileRequest("https://fonts.com/" + name + "/v1/" + name + ".ttf", myFontPath,
+                                   makeFile(new File(GOOGLE_FONT_AUTHORITY), "fonts", name, "v1", name + ".ttf")));
+    }
+    return requests;
+  }
+
+  private static boolean fetch(@NotNull FontPrefetcher prefetcher, @NotNull List<FileRequest> files, boolean urgent) throws Exception {
+    CompletableFuture<Boolean> done = new CompletableFuture<>();
+    prefetcher.fetch(files, urgent, done::complete);
+    return done.get(30, TimeUnit.SECONDS);
+  }
+
+  public void testFilesAreDownloadedOnceWithBoundedConcurrency() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    FontPrefetcher prefetcher = new FontPrefetcher(request -> {
+      release.await();
+      fetchLocally(request);
+    }, null);
+    List<FileRequest> requests = createRequests("font", 20);
+    CompletableFuture<Boolean> first = new CompletableFuture<>();
+    prefetcher.fetch(requests.subList(0, 15), false, first::complete);
+    CompletableFuture<Boolean> second = new CompletableFuture<>();
+    prefetcher.fetch(createRequests("font", 20).subList(5, 20), false, second::complete);
+    release.countDown();
+    assertTrue(first.get(30, TimeUnit.SECONDS));
+    assertTrue(second.get(30, TimeUnit.SECONDS));
+
+    for (FileRequest request : requests) {
+      assertTrue(request.myTarget.exists());
+    }
+    assertThat(myFetchCounts).hasSize(20);
+    for (AtomicInteger count : myFetchCounts.values()) {
+      assertEquals(1, count.get());
+    }
+    assertThat(myMaxRunningFetches.get()).isAtMost(FontPrefetcher.MAX_PARALLEL_DOWNLOADS);
+    assertTrue(prefetcher.getPendingFiles().isEmpty());
+  }
+
+  public void testFailedDownloads() throws Exception {
+    FontPrefetcher prefetcher = new FontPrefetcher(request -> {
+      if (request.myUrl.contains("broken")) {
+        throw new IOException("Not found");
+      }
+      fetchLocally(request);
+    }, null);
+    assertTrue(fetch(prefetcher, Collections.emptyList(), false));
+    assertTrue(fetch(prefetcher, createRequests("font", 3), false));
+    assertFalse(fetch(prefetcher, ImmutableList.<FileRequest>builder()
+      .addAll(createRequests("other", 3))
+      .addAll(createRequests("broken", 1))
+      .build(), false));
+  }
+
+  public void testUrgentAndPrioritizedFilesGoFirst() throws Exception {
+    CountDownLatch started = new CountDownLatch(FontPrefetcher.MAX_PARALLEL_DOWNLOADS);
+    CountDownLatch release = new CountDownLatch(1);
+    FontPrefetcher prefetcher = new FontPrefetcher(request -> {
+      started.countDown();
+      release.await();
+      fetchLocally(request);
+    }, null);
+
+    List<FileRequest> requests = createRequests("font", 10);
+    CompletableFuture<Boolean> all = new CompletableFuture<>();
+    prefetcher.fetch(requests, false, all::complete);
+    assertTrue(started.await(30, TimeUnit.SECONDS));
+
+    List<FileRequest> urgent = createRequests("selected", 1);
+    CompletableFuture<Boolean> selected = new CompletableFuture<>();
+    prefetcher.fetch(urgent, true, selected::complete);
+    assertThat(prefetcher.getPendingFiles().get(0)).isEqualTo(urgent.get(0).myTarget);
+
+    prefetcher.prioritize(ImmutableList.of(requests.get(8).myTarget, requests.get(9).myTarget));
+    assertThat(prefetcher.getPendingFiles().subList(0, 3))
+      .containsExactly(requests.get(8).myTarget, requests.get(9).myTarget, urgent.get(0).myTarget).inOrder();
+
+    release.countDown();
+    assertTrue(all.get(30, TimeUnit.SECONDS));
+    assertTrue(selected.get(30, TimeUnit.SECONDS));
+  }
+
+  public void testTrimFontCache() throws IOException {
+    DownloadableFontCacheServiceImpl service = DownloadableFontCacheServiceImpl.getInstance();
+    File directory = makeFile(myFontPath, GOOGLE_FONT_AUTHORITY, "directory", "font_directory.xml");
+    FileUtil.writeToFile(directory, new byte[1000]);
+    directory.setLastModified(1000);
+    long now = System.currentTimeMillis();
+    List<File> files = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      File file = makeFile(myFontPath, GOOGLE_FONT_AUTHORITY, "fonts", "font" + i, "v1", "font" + i + ".ttf");
+      FileUtil.writeToFile(file, new byte[100]);
+      // font0 is the most recently used file
+      assertTrue(file.setLastModified(now - i * 10000));
+      files.add(file);
+    }
+
+    service.trimFontCache(1000);
+    for (File file : files) {
+      assertTrue(file.exists());
+    }
+
+    service.trimFontCache(250);
+    assertTrue(files.get(0).exists());
+    assertTrue(files.get(1).exists());
+    assertFalse(files.get(2).exists());
+    assertFalse(files.get(3).exists());
+    assertFalse(files.get(4).exists());
+    assertTrue(directory.exists());
+  }
+
+  public void testLoadedFontsAreCached() throws Exception {
+    File menuFile = makeFile(myFontPath, GOOGLE_FONT_AUTHORITY, "fonts", "custom", "v1", "custom.ttf");
+    FileUtil.copy(myProviderFont, menuFile);
+    assertTrue(menuFile.setLastModified(1000));
+    FontFamily family = new FontFamily(FontProvider.GOOGLE_PROVIDER, FontSource.DOWNLOADABLE, "Custom",
+                                       "https://fonts.com/custom/v1/custom.ttf", "", Collections.emptyList());
+
+    DownloadableFontCacheService service = DownloadableFontCacheService.getInstance();
+    Font font = service.loadMenuFont(family);
+    assertNotNull(font);
+    assertSame(font, service.loadMenuFont(family));
+    // Loading a font marks its file as recently used
+    assertThat(menuFile.lastModified()).isGreaterThan(1000L);
+  }
+}
@@ -18,11 +18,16 @@ package com.android.tools.idea.gradle.dsl.model;
 import com.android.tools.idea.gradle.dsl.api.BuildScriptModel;
 import com.android.tools.idea.gradle.dsl.api.GradleBuildModel;
 import com.android.tools.idea.gradle.dsl.api.repositories.RepositoryModel;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
 
 import java.io.IOException;
 import java.util.List;
 
 import static com.google.common.truth.Truth.assertThat;
+import static com.intellij.openapi.command.WriteCommandAction.runWriteCommandAction;
+import static com.intellij.openapi.vfs.VfsUtil.findFileByIoFile;
 
 /**
  * Tests for {@link GradleBuildModelImpl}.
@@ -102,4 +107,36 @@ public class GradleBuildModelImplTest extends GradleFileModelTestCase {
     repositories = buildModel.repositories().repositories();
     assertThat(repositories).hasSize(0);
   }
+
+  public void testParentModuleFileIsShared() throws IOException {
+    writeToSettingsFile("include ':" + SUB_MODULE_NAME + "'");
+    writeToBuildFile("ext.SDK_VERSION = 21");
+    writeToSubModuleBuildFile("android {\n" +
+                              "  compileSdkVersion SDK_VERSION\n" +
+                              "}");
+
+    GradleBuildModelImpl first = (GradleBuildModelImpl)getSubModuleGradleBuildModel();
+    GradleBuildModelImpl second = (GradleBuildModelImpl)getSubModuleGradleBuildModel();
+    assertNotSame(first.myGradleDslFile, second.myGradleDslFile);
+    assertNotNull(first.myGradleDslFile.getParentModuleDslFile());
+    assertSame(first.myGradleDslFile.getParentModuleDslFile(), second.myGradleDslFile.getParentModuleDslFile());
+    assertEquals("compileSdkVersion", "21", second.android().compileSdkVersion());
+
+    // Changing the parent module build file only parses it again
+    VirtualFile buildFile = findFileByIoFile(myBuildFile, true);
+    assertNotNull(buildFile);
+    runWriteCommandAction(myProject, () -> {
+      try {
+        VfsUtil.saveText(buildFile, "ext.SDK_VERSION = 25");
+      }
+      catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    });
+    PsiDocumentManager.getInstance(myProject).commitAllDocuments();
+
+    GradleBuildModelImpl third = (GradleBuildModelImpl)getSubModuleGradleBuildModel();
+    assertNotSame(first.myGradleDslFile.getParentModuleDslFile(), third.myGradleDslFile.getParentModuleDslFile());
+    assertEquals("compileSdkVersion", "25", third.android().compileSdkVersion());
+  }
 }
@@ -15,6 +15,8 @@
  */
 package com.android.tools.idea.gradle.project.build;
 
+import com.android.ide.common.blame.Message;
+import com.android.ide.common.blame.SourceFilePosition;
 import com.intellij.openapi.project.Project;
 import com.intellij.testFramework.IdeaTestCase;
 import org.mockito.Mock;
@@ -72,4 +74,10 @@ public class GradleBuildStateTest extends IdeaTestCase {
     assertFalse(myBuildState.isBuildInProgress());
     verify(myListener).buildFinished(SUCCESS, myContext);
   }
+
+  public void testBuildMessageParsed() {
+    Message message = new Message(Message.Kind.ERROR, "error", SourceFilePosition.UNKNOWN);
+    myBuildState.buildMessageParsed(message);
+    verify(myListener).buildMessageParsed(message);
+  }
 }
\ No newline at end of file
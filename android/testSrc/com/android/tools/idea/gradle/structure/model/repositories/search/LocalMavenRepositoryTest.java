@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.gradle.structure.model.repositories.search;
+
+import com.android.ide.common.repository.GradleVersion;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.testFramework.IdeaTestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Tests for {@link LocalMavenRepository}.
+ */
+public class LocalMavenRepositoryTest extends IdeaTestCase {
+  private File myRoot;
+  private LocalMavenRepository myRepository;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myRoot = createTempDirectory();
+    createArtifact("com.android.support", "appcompat-v7", "25.3.1", "26.0.0");
+    createArtifact("com.android.support", "design", "26.0.0");
+    createArtifact("com.google.guava", "guava", "19.0");
+    myRepository = new LocalMavenRepository(myRoot, "Local");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      LocalMavenRepositoryIndex.clear();
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testSearch() {
+    assertThat(search("app", null)).containsExactly("com.android.support:appcompat-v7:26.0.0,25.3.1");
+    assertThat(search("g", "com.google")).containsExactly("com.google.guava:guava:19.0");
+    assertThat(search("", "com.android")).containsExactly("com.android.support:appcompat-v7:26.0.0,25.3.1",
+                                                          "com.android.support:design:26.0.0");
+    assertThat(search("junit", null)).isEmpty();
+  }
+
+  public void testFuzzySearch() {
+    assertThat(search("appcompatv7", null)).containsExactly("com.android.support:appcompat-v7:26.0.0,25.3.1");
+  }
+
+  public void testIndexIsUpdated() throws IOException {
+    assertThat(search("guava", null)).containsExactly("com.google.guava:guava:19.0");
+
+    createArtifact("com.google.guava", "guava", "20.0");
+    createArtifact("junit", "junit", "4.12");
+    LocalMavenRepositoryIndex.getInstance(myRoot.toPath()).validate();
+    assertThat(search("guava", null)).containsExactly("com.google.guava:guava:20.0,19.0");
+    assertThat(search("junit", null)).containsExactly("junit:junit:4.12");
+
+    File designDirectory = new File(myRoot, "com/android/support/design");
+    FileUtil.delete(designDirectory);
+    touch(designDirectory.getParentFile());
+    LocalMavenRepositoryIndex.getInstance(myRoot.toPath()).validate();
+    assertThat(search("design", null)).isEmpty();
+  }
+
+  @NotNull
+  private List<String> search(@NotNull String artifactName, String groupId) {
+    SearchResult result = myRepository.search(new SearchRequest(artifactName, groupId, 50, 0));
+    assertNull(result.getError());
+    return result.getArtifacts().stream()
+                 .map(artifact -> artifact.getGroupId() + ":" + artifact.getName() + ":" +
+                                  artifact.getVersions().stream().map(GradleVersion::toString).collect(Collectors.joining(",")))
+                 .collect(Collectors.toList());
+  }
+
+  private void createArtifact(@NotNull String groupId, @NotNull String artifactId, @NotNull String... versions) throws IOException {
+    File directory = new File(myRoot, groupId.replace('.', '/') + "/" + artifactId);
+    boolean existed = directory.isDirectory();
+    FileUtil.writeToFile(new File(directory, "maven-metadata.xml"),
+                         "<metadata><groupId>" + groupId + "</groupId><artifactId>" + artifactId + "</artifactId></metadata>");
+    for (String version : versions) {
+      FileUtil.createDirectory(new File(directory, version));
+    }
+    // Make sure the change is visible even if the file system has a coarse time resolution
+    touch(directory);
+    if (!existed) {
+      for (File parent = directory.getParentFile(); !FileUtil.filesEqual(parent, myRoot.getParentFile()); parent = parent.getParentFile()) {
+        touch(parent);
+      }
+    }
+  }
+
+  private static void touch(@NotNull File directory) {
+    directory.setLastModified(directory.lastModified() + 2000);
+  }
+}
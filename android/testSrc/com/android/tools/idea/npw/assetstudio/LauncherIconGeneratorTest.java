@@ -21,6 +21,7 @@ import com.android.tools.idea.npw.assetstudio.assets.VectorAsset;
 import com.android.tools.idea.projectsystem.AndroidModuleTemplate;
 import com.google.common.base.Joiner;
 import com.google.common.io.Files;
+import com.google.common.util.concurrent.Futures;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.testFramework.ThreadTracker;
@@ -131,6 +132,23 @@ public class LauncherIconGeneratorTest extends AndroidTestCase {
     return asset;
   }
 
+  @NotNull
+  private BaseAsset createClipartAsset() {
+    VectorAsset asset = new VectorAsset();
+    asset.path().set(new File(FileUtil.join(getTestDataPath(), "clipart", "ic_android_black_24dp.xml")));
+    asset.outputWidth().set(432);
+    asset.outputHeight().set(432);
+    return asset;
+  }
+
+  @NotNull
+  private static BufferedImage getCachedImage(@NotNull GraphicGeneratorContext context, @NotNull Object key, @NotNull boolean[] created) {
+    return Futures.getUnchecked(context.getFromCacheOrCreate(key, () -> {
+      created[0] = true;
+      return Futures.immediateFuture(new BufferedImage(108, 108, BufferedImage.TYPE_INT_ARGB));
+    }));
+  }
+
   private void checkGeneratedIcons(String[] expectedFilenames) throws IOException {
     Map<File, GeneratedIcon> pathIconMap = myIconGenerator.generateIntoIconMap(myProjectPaths);
     Set<File> unexpectedFiles = new HashSet<>(pathIconMap.keySet());
@@ -256,4 +274,54 @@ public class LauncherIconGeneratorTest extends AndroidTestCase {
     myIconGenerator.webIconShape().set(IconGenerator.Shape.CIRCLE);
     checkGeneratedIcons(expectedFilenames);
   }
+
+  public void testPreviewImagesArePublishedBeforeOutputIcons() throws Exception {
+    myIconGenerator.sourceAsset().setNullableValue(createClipartAsset());
+    myIconGenerator.backgroundImageAsset().setNullableValue(null);
+    LauncherIconGenerator.LauncherIconOptions options = myIconGenerator.createOptions(false);
+    options.generatePreviewIcons = true;
+
+    List<GeneratedIcon> previews = new ArrayList<>();
+    List<GeneratedIcon> icons = new ArrayList<>(
+      myIconGenerator.generateIcons(myIconGenerator.getGraphicGeneratorContext(), options, "ic_launcher", previews::addAll));
+
+    assertFalse(previews.isEmpty());
+    for (GeneratedIcon preview : previews) {
+      assertEquals(IconCategory.PREVIEW, preview.getCategory());
+    }
+    assertTrue(icons.size() > previews.size());
+    assertEquals(previews, icons.subList(0, previews.size()));
+  }
+
+  public void testImageKeyReuse() throws Exception {
+    GraphicGeneratorContext context = new GraphicGeneratorContext(40);
+    disposeOnTearDown(context);
+    Rectangle rect = new Rectangle(0, 0, 108, 108);
+    boolean[] created = new boolean[1];
+
+    // A layer is reused for a key made of equal values.
+    BufferedImage background = getCachedImage(context, new LauncherIconGenerator.ImageKey("color", 0x26A69A, rect), created);
+    assertTrue(created[0]);
+    created[0] = false;
+    assertSame(background, getCachedImage(context, new LauncherIconGenerator.ImageKey("color", 0x26A69A, new Rectangle(rect)), created));
+    assertFalse(created[0]);
+    BufferedImage foreground = getCachedImage(context, new LauncherIconGenerator.ImageKey("empty", rect), created);
+    assertTrue(created[0]);
+
+    // The merged image is reused while the layers it was created from are cached.
+    created[0] = false;
+    BufferedImage merged = getCachedImage(context, new LauncherIconGenerator.ImageKey("merged", background, foreground), created);
+    assertTrue(created[0]);
+    created[0] = false;
+    assertSame(merged, getCachedImage(context, new LauncherIconGenerator.ImageKey("merged", background, foreground), created));
+    assertFalse(created[0]);
+
+    // Images are compared by identity, and keys of different kinds never match.
+    BufferedImage copy = new BufferedImage(108, 108, BufferedImage.TYPE_INT_ARGB);
+    assertNotSame(merged, getCachedImage(context, new LauncherIconGenerator.ImageKey("merged", copy, foreground), created));
+    assertTrue(created[0]);
+    created[0] = false;
+    assertNotSame(foreground, getCachedImage(context, new LauncherIconGenerator.ImageKey("trimmed", rect), created));
+    assertTrue(created[0]);
+  }
 }
@@ -20,6 +20,7 @@ import com.android.ddmlib.ClientData;
 import com.android.tools.idea.editors.hprof.HprofCaptureType;
 import com.google.wireless.android.sdk.stats.AndroidStudioEvent.ProfilerCaptureType;
 import com.intellij.icons.AllIcons;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.extensions.DefaultPluginDescriptor;
 import com.intellij.openapi.extensions.Extensions;
 import com.intellij.openapi.extensions.ExtensionsArea;
@@ -35,13 +36,19 @@ import org.jetbrains.android.AndroidTestBase;
 import org.jetbrains.annotations.NotNull;
 
 import javax.swing.*;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static com.intellij.openapi.util.io.FileUtil.toCanonicalPath;
 import static com.intellij.openapi.util.io.FileUtil.toSystemDependentName;
@@ -145,6 +152,91 @@ public class CaptureServiceTest extends IdeaTestCase {
     assertFalse(handle.getFile().exists());
   }
 
+  public void testBoundedWriterCoalescesWrites() throws Exception {
+    File file = createTempFile("capture.bin", "");
+    CaptureHandle handle = new CaptureHandle(file, mock(CaptureType.class), false);
+    AsyncWriterDelegate delegate = new AsyncWriterDelegate(4096);
+    ApplicationManager.getApplication().executeOnPooledThread(delegate);
+
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    for (int i = 0; i < 200; i++) {
+      byte[] data = new byte[100 + i];
+      Arrays.fill(data, (byte)i);
+      expected.write(data);
+      if (i % 2 == 0) {
+        delegate.queueWrite(handle, data);
+      }
+      else {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+        buffer.put(data).flip();
+        delegate.queueWrite(handle, buffer);
+      }
+    }
+    // Larger than the whole queue
+    byte[] large = new byte[10000];
+    Arrays.fill(large, (byte)-1);
+    expected.write(large);
+    delegate.queueWrite(handle, large);
+
+    CountDownLatch latch = new CountDownLatch(1);
+    delegate.closeFileAndRunTaskAsynchronously(handle, latch::countDown);
+    latch.await();
+    delegate.queueExit();
+
+    assertTrue(Arrays.equals(expected.toByteArray(), readFully(file)));
+    assertEquals(expected.size(), handle.getBytesWritten());
+    assertEquals(0, handle.getQueuedBytes());
+    assertTrue(handle.getMaxQueuedBytes() <= large.length);
+  }
+
+  public void testWriterCoalescesQueuedWrites() throws Exception {
+    File file = createTempFile("capture.bin", "");
+    CaptureHandle handle = new CaptureHandle(file, mock(CaptureType.class), false);
+    AsyncWriterDelegate delegate = new AsyncWriterDelegate(1024 * 1024);
+
+    // Queue all the writes before the writer thread starts, so that they are all waiting when it takes the first one
+    int appends = 200;
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    for (int i = 0; i < appends; i++) {
+      byte[] data = new byte[100 + i];
+      Arrays.fill(data, (byte)i);
+      expected.write(data);
+      delegate.queueWrite(handle, data);
+    }
+    CountDownLatch latch = new CountDownLatch(1);
+    delegate.closeFileAndRunTaskAsynchronously(handle, latch::countDown);
+    ApplicationManager.getApplication().executeOnPooledThread(delegate);
+    latch.await();
+    delegate.queueExit();
+
+    assertTrue(Arrays.equals(expected.toByteArray(), readFully(file)));
+    int maxWrites = (appends + AsyncWriterDelegate.MAX_BUFFERS_PER_WRITE - 1) / AsyncWriterDelegate.MAX_BUFFERS_PER_WRITE;
+    assertEquals(maxWrites, handle.getWriteCount());
+  }
+
+  public void testWritesFailOnceWriterHasExited() throws Exception {
+    CaptureHandle handle = new CaptureHandle(createTempFile("capture.bin", ""), mock(CaptureType.class), false);
+    AsyncWriterDelegate delegate = new AsyncWriterDelegate(1024);
+
+    // The queue is full and the writer exits before writing it, so the blocked producer must be released
+    delegate.queueExit();
+    delegate.queueWrite(handle, new byte[1024]);
+    Future<Void> producer = ApplicationManager.getApplication().executeOnPooledThread(() -> {
+      delegate.queueWrite(handle, new byte[512]);
+      return null;
+    });
+    ApplicationManager.getApplication().executeOnPooledThread(delegate).get(10, TimeUnit.SECONDS);
+
+    try {
+      producer.get(10, TimeUnit.SECONDS);
+      fail("Write after the writer exited should fail");
+    }
+    catch (ExecutionException e) {
+      assertInstanceOf(e.getCause(), IOException.class);
+    }
+    assertEquals(0, handle.getQueuedBytes());
+  }
+
   public void testSuggestedNameWithColon() {
     CaptureService service = CaptureService.getInstance(myProject);
     String timestamp = new SimpleDateFormat("yyyy.MM.dd_HH").format(new Date());
@@ -16,14 +16,53 @@
 package com.android.tools.idea.rendering.webp;
 
 import com.android.tools.adtui.webp.WebpNativeLibHelper;
+import com.android.tools.idea.rendering.webp.ConvertToWebpAction.SavingsEstimate;
+import com.android.tools.idea.rendering.webp.ConvertToWebpAction.WebpConversionTask;
+import com.intellij.openapi.application.WriteAction;
+import com.intellij.openapi.progress.DumbProgressIndicator;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.PlatformTestUtil;
 import org.jetbrains.android.AndroidTestCase;
+import org.jetbrains.annotations.NotNull;
 
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 
 import static com.google.common.truth.Truth.assertThat;
 
 public class ConvertToWebpActionTest extends AndroidTestCase {
+  private File myCacheDirectory;
+  private WebpEncodeCache myEncodeCache;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myCacheDirectory = FileUtil.createTempDirectory("webp-cache", null);
+    myEncodeCache = new WebpEncodeCache(myCacheDirectory);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      FileUtil.delete(myCacheDirectory);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
   public void testConvert() throws Exception {
     // Regression test for issue 226893
     // Ensure that images that are too large to encode are encoded anyway if the user asked for it
@@ -44,7 +83,7 @@ public class ConvertToWebpActionTest extends AndroidTestCase {
     VirtualFile xhdpiFolder = xhdpi.getParent();
 
     ConvertToWebpAction action = new ConvertToWebpAction();
-    action.convert(getProject(), settings, true, Arrays.asList(mdpi, xhdpi));
+    action.convert(getProject(), settings, true, Arrays.asList(mdpi, xhdpi), myEncodeCache);
 
     // Check that we only converted the xhdpi image (the mdpi image encodes to a larger image)
     assertThat(xhdpiFolder.findChild("ic_action_name.png")).isNull();
@@ -75,7 +114,7 @@ public class ConvertToWebpActionTest extends AndroidTestCase {
     VirtualFile xhdpiFolder = xhdpi.getParent();
 
     ConvertToWebpAction action = new ConvertToWebpAction();
-    action.convert(getProject(), settings, true, Arrays.asList(mdpi, xhdpi, gray));
+    action.convert(getProject(), settings, true, Arrays.asList(mdpi, xhdpi, gray), myEncodeCache);
 
     // Check that we converted both images
     assertThat(xhdpiFolder.findChild("ic_action_name.png")).isNull();
@@ -85,4 +124,204 @@ public class ConvertToWebpActionTest extends AndroidTestCase {
     assertThat(mdpiFolder.findChild("ic_arrow_back.webp")).isNotNull();
     assertThat(mdpiFolder.findChild("ic_arrow_back.png")).isNull();
   }
-}
\ No newline at end of file
+
+  public void testFailedFilesNotEncodedAgain() throws Exception {
+    if (!WebpNativeLibHelper.loadNativeLibraryIfNeeded()) {
+      System.out.println("Skipping " + getClass().getSimpleName() + " because the webp decoder is not available");
+      return;
+    }
+
+    WebpConversionSettings settings = new WebpConversionSettings();
+    settings.skipTransparentImages = false;
+    settings.skipLargerImages = false;
+    settings.previewConversion = false;
+
+    VirtualFile image = myFixture.addFileToProject("res/drawable-mdpi/broken.png", "Not an image").getVirtualFile();
+    WebpConversionTask task = new WebpConversionTask(getProject(), settings, false, Collections.singletonList(image), myEncodeCache);
+    task.run(new DumbProgressIndicator());
+
+    // The image fails to encode while the task runs. Once it's finished, it isn't encoded again, which would now succeed.
+    byte[] valid = FileUtil.loadFileBytes(new File(getTestDataPath(), "webp/ic_action_name-xhdpi.png"));
+    WriteAction.run(() -> image.setBinaryContent(valid));
+    task.onFinished();
+
+    assertThat(image.isValid()).isTrue();
+    assertThat(image.getParent().findChild("broken.webp")).isNull();
+  }
+
+  public void testSelectSample() throws Exception {
+    List<VirtualFile> images = generateImages(1);
+    List<WebpConvertedFile> files = new ArrayList<>();
+    // Sizes in reverse order, the sample is taken from the files sorted by size
+    for (int size = 99; size >= 0; size--) {
+      files.add(new WebpConvertedFile(images.get(0), size));
+    }
+
+    assertThat(ConvertToWebpAction.selectSample(files, 100)).isSameAs(files);
+    List<Long> sizes = new ArrayList<>();
+    for (WebpConvertedFile file : ConvertToWebpAction.selectSample(files, 10)) {
+      sizes.add(file.sourceFileSize);
+    }
+    assertThat(sizes).containsExactly(5L, 15L, 25L, 35L, 45L, 55L, 65L, 75L, 85L, 95L).inOrder();
+  }
+
+  public void testEncodeCache() throws Exception {
+    WebpConversionSettings settings = new WebpConversionSettings();
+    settings.skipTransparentImages = false;
+    VirtualFile image = generateImages(1).get(0);
+    File directory = FileUtil.createTempDirectory("webp-cache", null);
+    try {
+      WebpEncodeCache cache = new WebpEncodeCache(directory);
+      cache.put(WebpEncodeCache.getKey(image.contentsToByteArray(), settings), new byte[]{1, 2, 3});
+
+      // The cached encoding is used instead of encoding the image again
+      WebpConvertedFile file = new WebpConvertedFile(image, image.getLength());
+      assertThat(new WebpEncoder(settings, cache).encode(file)).isTrue();
+      assertThat(file.encoded).isEqualTo(new byte[]{1, 2, 3});
+      assertThat(file.saved).isEqualTo(image.getLength() - 3);
+    }
+    finally {
+      FileUtil.delete(directory);
+    }
+  }
+
+  public void testDryRun() throws Exception {
+    if (!WebpNativeLibHelper.loadNativeLibraryIfNeeded()) {
+      System.out.println("Skipping " + getClass().getSimpleName() + " because the webp decoder is not available");
+      return;
+    }
+
+    WebpConversionSettings settings = new WebpConversionSettings();
+    settings.skipTransparentImages = false;
+    settings.skipLargerImages = false;
+    settings.dryRun = true;
+
+    List<VirtualFile> images = generateImages(120);
+    WebpConversionTask task = new WebpConversionTask(getProject(), settings, false, images, myEncodeCache);
+    task.run(new DumbProgressIndicator());
+    task.onFinished();
+
+    // Nothing was converted
+    for (VirtualFile image : images) {
+      assertThat(image.isValid()).isTrue();
+      assertThat(image.getParent().findChild(image.getNameWithoutExtension() + ".webp")).isNull();
+    }
+
+    SavingsEstimate estimate = task.getSavingsEstimate();
+    assertThat(estimate).isNotNull();
+    assertThat(estimate.fileCount).isEqualTo(120);
+    assertThat(estimate.sampleCount).isEqualTo(ConvertToWebpAction.DRY_RUN_SAMPLE_SIZE);
+
+    // Compare with the savings of encoding all the images
+    long saved = 0;
+    long size = 0;
+    for (VirtualFile image : images) {
+      WebpConvertedFile file = new WebpConvertedFile(image, image.getLength());
+      assertThat(file.convert(settings)).isTrue();
+      saved += file.saved;
+      size += file.sourceFileSize;
+    }
+    assertThat(estimate.size).isEqualTo(size);
+    assertThat((double)estimate.saved).isWithin(0.2 * Math.abs(saved)).of(saved);
+  }
+
+  public void testDecodedImagesBudget() throws Exception {
+    if (!WebpNativeLibHelper.loadNativeLibraryIfNeeded()) {
+      System.out.println("Skipping " + getClass().getSimpleName() + " because the webp decoder is not available");
+      return;
+    }
+
+    WebpConversionSettings settings = new WebpConversionSettings();
+    settings.skipTransparentImages = false;
+
+    // Every image takes the whole budget, so they are decoded one at a time
+    List<WebpConvertedFile> files = createConvertedFiles(generateImages(20));
+    new WebpEncoder(settings, null, 1).encode(files, new EmptyProgressIndicator());
+    for (WebpConvertedFile file : files) {
+      assertThat(file.encoded).isNotNull();
+    }
+  }
+
+  /**
+   * Encodes a generated set of drawables in parallel, and checks that the encodings are the same as when encoding them one at a time.
+   */
+  public void testParallelEncodingBenchmark() throws Exception {
+    if (!WebpNativeLibHelper.loadNativeLibraryIfNeeded()) {
+      System.out.println("Skipping " + getClass().getSimpleName() + " because the webp decoder is not available");
+      return;
+    }
+
+    WebpConversionSettings settings = new WebpConversionSettings();
+    settings.skipTransparentImages = false;
+    settings.quality = 75;
+
+    List<VirtualFile> images = generateImages(200);
+    List<byte[]> expected = new ArrayList<>();
+    for (WebpConvertedFile file : createConvertedFiles(images)) {
+      assertThat(file.convert(settings)).isTrue();
+      expected.add(file.encoded);
+    }
+
+    List<WebpConvertedFile> files = new ArrayList<>();
+    PlatformTestUtil.startPerformanceTest("parallel WebP encoding", 10000, () -> {
+      files.clear();
+      files.addAll(createConvertedFiles(images));
+      new WebpEncoder(settings, null).encode(files, new EmptyProgressIndicator());
+    }).attempts(2).usesAllCPUCores().assertTiming();
+
+    for (int i = 0; i < files.size(); i++) {
+      assertThat(files.get(i).encoded).isEqualTo(expected.get(i));
+    }
+  }
+
+  @NotNull
+  private static List<WebpConvertedFile> createConvertedFiles(@NotNull List<VirtualFile> images) {
+    List<WebpConvertedFile> files = new ArrayList<>();
+    for (VirtualFile image : images) {
+      files.add(new WebpConvertedFile(image, image.getLength()));
+    }
+    return files;
+  }
+
+  /**
+   * Generates opaque PNG drawables of various sizes and densities in the project, standing in for the images of a large app.
+   */
+  @NotNull
+  private List<VirtualFile> generateImages(int count) throws IOException {
+    String[] densities = {"mdpi", "hdpi", "xhdpi", "xxhdpi"};
+    float[] scales = {1, 1.5f, 2, 3};
+    File res = new File(myFixture.getTempDirPath(), "generated/res");
+    Random random = new Random(42);
+    List<File> files = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      int density = i % densities.length;
+      int size = Math.round((24 + 24 * random.nextInt(6)) * scales[density]);
+      BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+      Graphics2D g = image.createGraphics();
+      g.setPaint(new GradientPaint(0, 0, new Color(random.nextInt(0xFFFFFF)), size, size, new Color(random.nextInt(0xFFFFFF))));
+      g.fillRect(0, 0, size, size);
+      g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+      for (int shape = 0; shape < 5; shape++) {
+        g.setColor(new Color(random.nextInt(0xFFFFFF)));
+        g.fillOval(random.nextInt(size), random.nextInt(size), 1 + random.nextInt(size), 1 + random.nextInt(size));
+      }
+      g.dispose();
+
+      File file = new File(res, "drawable-" + densities[density] + "/generated_" + i + ".png");
+      FileUtil.createParentDirs(file);
+      ImageIO.write(image, "PNG", file);
+      files.add(file);
+    }
+
+    VirtualFile resDir = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(res);
+    assertThat(resDir).isNotNull();
+    VfsUtil.markDirtyAndRefresh(false, true, true, resDir);
+    List<VirtualFile> images = new ArrayList<>();
+    for (File file : files) {
+      VirtualFile image = LocalFileSystem.getInstance().findFileByIoFile(file);
+      assertThat(image).isNotNull();
+      images.add(image);
+    }
+    return images;
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering.webp;
+
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.TestCase;
+
+import java.io.File;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class WebpEncodeCacheTest extends TestCase {
+  private File myDirectory;
+  private WebpEncodeCache myCache;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDirectory = FileUtil.createTempDirectory("webp-cache", null);
+    myCache = new WebpEncodeCache(myDirectory);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      FileUtil.delete(myDirectory);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testKeys() {
+    WebpConversionSettings settings = new WebpConversionSettings();
+    settings.quality = 75;
+    byte[] source = {1, 2, 3};
+    String key = WebpEncodeCache.getKey(source, settings);
+    assertThat(WebpEncodeCache.getKey(new byte[]{1, 2, 3}, settings)).isEqualTo(key);
+    assertThat(WebpEncodeCache.getKey(new byte[]{1, 2, 4}, settings)).isNotEqualTo(key);
+
+    settings.quality = 80;
+    assertThat(WebpEncodeCache.getKey(source, settings)).isNotEqualTo(key);
+
+    settings.lossless = true;
+    String losslessKey = WebpEncodeCache.getKey(source, settings);
+    settings.quality = 75;
+    // The quality doesn't apply to lossless encodings
+    assertThat(WebpEncodeCache.getKey(source, settings)).isEqualTo(losslessKey);
+    assertThat(losslessKey).isNotEqualTo(key);
+  }
+
+  public void testGetAndPut() {
+    assertThat(myCache.get("a")).isNull();
+    myCache.put("a", new byte[]{1, 2, 3});
+    assertThat(myCache.get("a")).isEqualTo(new byte[]{1, 2, 3});
+
+    myCache.put("a", new byte[]{4});
+    assertThat(myCache.get("a")).isEqualTo(new byte[]{4});
+
+    // Another instance reads the same files
+    assertThat(new WebpEncodeCache(myDirectory).get("a")).isEqualTo(new byte[]{4});
+  }
+
+  public void testTrim() {
+    myCache.put("a", new byte[100]);
+    myCache.put("b", new byte[100]);
+    myCache.put("c", new byte[100]);
+    long now = System.currentTimeMillis();
+    assertTrue(new File(myDirectory, "a.webp").setLastModified(now - 30000));
+    assertTrue(new File(myDirectory, "b.webp").setLastModified(now - 20000));
+    assertTrue(new File(myDirectory, "c.webp").setLastModified(now - 10000));
+
+    // Using an encoding makes it the most recently used one
+    assertThat(myCache.get("a")).isNotNull();
+
+    myCache.trim(300);
+    assertThat(new File(myDirectory, "b.webp").exists()).isTrue();
+
+    myCache.trim(200);
+    assertThat(myCache.get("b")).isNull();
+    assertThat(myCache.get("a")).isNotNull();
+    assertThat(myCache.get("c")).isNotNull();
+  }
+}
@@ -19,6 +19,7 @@ import com.android.ddmlib.AdbCommandRejectedException;
 import com.android.ddmlib.IDevice;
 import com.android.ddmlib.ShellCommandUnresponsiveException;
 import com.android.ddmlib.TimeoutException;
+import com.android.tools.idea.run.tasks.LaunchTaskDurations.PhaseTimings;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.io.FileUtil;
 import junit.framework.TestCase;
@@ -38,6 +39,7 @@ public class InstalledApkCacheTest extends TestCase {
   private File myFile;
   private String myPkgName;
   private String myDumpSysOutput;
+  private int myShellCommandCount;
 
   @Override
   public void setUp() throws Exception {
@@ -65,6 +67,7 @@ public class InstalledApkCacheTest extends TestCase {
       @Override
       protected String executeShellCommand(@NotNull IDevice device, @NotNull String cmd, long timeout, @NotNull TimeUnit timeUnit)
         throws TimeoutException, AdbCommandRejectedException, ShellCommandUnresponsiveException, IOException, InterruptedException {
+        myShellCommandCount++;
         return myDumpSysOutput;
       }
     };
@@ -93,6 +96,23 @@ public class InstalledApkCacheTest extends TestCase {
     assertFalse(myService.isInstalled(myDevice1, myFile, myPkgName, null));
   }
 
+  public void testDigestCache() throws Exception {
+    PhaseTimings timings = new PhaseTimings();
+    myService.setInstalled(myDevice1, myFile, myPkgName, timings);
+    myService.setInstalled(myDevice2, myFile, myPkgName, timings);
+    assertTrue(myService.isInstalled(myDevice1, myFile, myPkgName, null, timings));
+    assertTrue(myService.isInstalled(myDevice2, myFile, myPkgName, null, timings));
+    assertEquals(1, myService.getDigestCacheSize());
+    assertEquals(4, myShellCommandCount);
+
+    // A modified apk is detected without querying the device
+    FileUtil.writeToFile(myFile, "changed!");
+    assertFalse(myService.isInstalled(myDevice1, myFile, myPkgName, null, timings));
+    assertFalse(myService.isInstalled(myDevice2, myFile, myPkgName, null, timings));
+    assertEquals(4, myShellCommandCount);
+    assertEquals(1, myService.getDigestCacheSize());
+  }
+
   public void testUploadApkAfterDisconnect() throws Exception {
     myService.setInstalled(myDevice1, myFile, myPkgName);
     myService.setInstalled(myDevice2, myFile, myPkgName);
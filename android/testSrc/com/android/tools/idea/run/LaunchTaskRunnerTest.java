@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.run;
+
+import com.android.ddmlib.IDevice;
+import com.android.tools.idea.run.tasks.LaunchTask;
+import com.android.tools.idea.run.tasks.LaunchTasksProvider;
+import com.android.tools.idea.run.util.LaunchStatus;
+import com.google.common.util.concurrent.Futures;
+import com.intellij.execution.process.ProcessHandler;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.testFramework.IdeaTestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for the launch of {@link LaunchTaskRunner} on several devices at the same time.
+ */
+public class LaunchTaskRunnerTest extends IdeaTestCase {
+  private static final int DEVICE_COUNT = 3;
+
+  private final Set<String> myPerformed = Collections.newSetFromMap(new ConcurrentHashMap<>());
+  private ProcessHandler myProcessHandler;
+  private List<IDevice> myDevices;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myProcessHandler = mock(ProcessHandler.class);
+    myDevices = new ArrayList<>();
+    for (int i = 0; i < DEVICE_COUNT; i++) {
+      IDevice device = mock(IDevice.class);
+      when(device.getSerialNumber()).thenReturn("device" + i);
+      myDevices.add(device);
+    }
+  }
+
+  public void testLaunchesOnDevicesInParallel() throws Exception {
+    // Every device waits for all the devices to be launching before it completes
+    CountDownLatch launching = new CountDownLatch(DEVICE_COUNT);
+    createRunner(device -> {
+      launching.countDown();
+      return launching.await(10, TimeUnit.SECONDS);
+    }).run(new EmptyProgressIndicator());
+
+    assertEquals(0, launching.getCount());
+    for (IDevice device : myDevices) {
+      assertTrue(myPerformed.contains(device.getSerialNumber() + ":second"));
+    }
+    verify(myProcessHandler, never()).destroyProcess();
+  }
+
+  public void testFailureOnOneDeviceStopsTheOthers() throws Exception {
+    createRunner(device -> {
+      if (device == myDevices.get(1)) {
+        return false;
+      }
+      return waitUntilCancelled();
+    }).run(new EmptyProgressIndicator());
+
+    assertTrue(myPerformed.isEmpty());
+    verify(myProcessHandler).destroyProcess();
+  }
+
+  public void testCancellingTheLaunchStopsAllDevices() throws Exception {
+    ProgressIndicator indicator = new EmptyProgressIndicator();
+    CountDownLatch launching = new CountDownLatch(DEVICE_COUNT);
+    LaunchTaskRunner runner = createRunner(device -> {
+      launching.countDown();
+      return waitUntilCancelled();
+    });
+    Thread canceller = new Thread(() -> {
+      try {
+        launching.await(10, TimeUnit.SECONDS);
+      }
+      catch (InterruptedException ignored) {
+      }
+      indicator.cancel();
+    });
+    canceller.start();
+    runner.run(indicator);
+    canceller.join();
+
+    assertTrue(myPerformed.isEmpty());
+    verify(myProcessHandler).destroyProcess();
+  }
+
+  /**
+   * Waits for the launch on the current device to be cancelled. Fails the task if it isn't cancelled in time.
+   */
+  private static boolean waitUntilCancelled() throws InterruptedException {
+    ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+    assertNotNull(indicator);
+    for (int i = 0; i < 1000; i++) {
+      indicator.checkCanceled();
+      Thread.sleep(10);
+    }
+    return false;
+  }
+
+  /**
+   * Creates a runner that performs two tasks on every device: the given one, then one that records that it was performed.
+   */
+  @NotNull
+  private LaunchTaskRunner createRunner(@NotNull DeviceTask firstTask) throws Exception {
+    List<AndroidDevice> devices = new ArrayList<>();
+    for (IDevice device : myDevices) {
+      AndroidDevice androidDevice = mock(AndroidDevice.class);
+      when(androidDevice.getLaunchedDevice()).thenReturn(Futures.immediateFuture(device));
+      devices.add(androidDevice);
+    }
+
+    LaunchTasksProvider provider = mock(LaunchTasksProvider.class);
+    when(provider.getTasks(any(IDevice.class), any(LaunchStatus.class), any(ConsolePrinter.class))).thenAnswer(invocation -> {
+      List<LaunchTask> tasks = new ArrayList<>();
+      tasks.add(new TestTask("first", firstTask));
+      tasks.add(new TestTask("second", device -> myPerformed.add(device.getSerialNumber() + ":second")));
+      return tasks;
+    });
+
+    return new LaunchTaskRunner(myProject, "app", mock(LaunchInfo.class), myProcessHandler, new DeviceFutures(devices), provider);
+  }
+
+  private interface DeviceTask {
+    boolean perform(@NotNull IDevice device) throws InterruptedException;
+  }
+
+  private static class TestTask implements LaunchTask {
+    @NotNull private final String myDescription;
+    @NotNull private final DeviceTask myTask;
+
+    private TestTask(@NotNull String description, @NotNull DeviceTask task) {
+      myDescription = description;
+      myTask = task;
+    }
+
+    @NotNull
+    @Override
+    public String getDescription() {
+      return myDescription;
+    }
+
+    @Override
+    public int getDuration() {
+      return 1;
+    }
+
+    @Override
+    public boolean perform(@NotNull IDevice device, @NotNull LaunchStatus launchStatus, @NotNull ConsolePrinter printer) {
+      try {
+        return myTask.perform(device);
+      }
+      catch (InterruptedException e) {
+        throw new ProcessCanceledException(e);
+      }
+    }
+  }
+}
@@ -15,9 +15,15 @@
  */
 package com.android.tools.idea.sdk.install.patch;
 
+import com.android.repository.Revision;
 import com.android.repository.api.*;
+import com.android.repository.impl.meta.RepositoryPackages;
 import com.android.repository.impl.meta.SchemaModuleUtil;
+import com.android.repository.testframework.FakeDownloader;
+import com.android.repository.testframework.FakePackage.FakeLocalPackage;
+import com.android.repository.testframework.FakePackage.FakeRemotePackage;
 import com.android.repository.testframework.FakeProgressIndicator;
+import com.android.repository.testframework.FakeRepoManager;
 import com.android.repository.testframework.MockFileOp;
 import com.google.common.collect.ImmutableList;
 import com.intellij.util.PathUtil;
@@ -27,8 +33,12 @@ import org.jetbrains.annotations.NotNull;
 import javax.xml.bind.JAXBException;
 import java.awt.*;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.InputStream;
+import java.net.URL;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 /**
  * Tests for {@link PatchInstallerFactory}.
@@ -107,6 +117,55 @@ public class PatchInstallerTest extends TestCase {
     assertTrue(FakeRunner.ourDidRun);
   }
 
+  public void testFallbackWhenPatchDownloadFails() throws Exception {
+    FakeRemotePackage remote = new FakeRemotePackage("pkg");
+    remote.setRevision(new Revision(2));
+    remote.setCompleteUrl("http://example.com/2/arch1");
+    remote.setPatchInfo("http://example.com/2/patch", new Revision(1));
+    FakeLocalPackage local = new FakeLocalPackage("pkg");
+    local.setRevision(new Revision(1));
+    RepositoryPackages packages = new RepositoryPackages();
+    packages.setLocalPkgInfos(ImmutableList.of(local));
+    packages.setRemotePkgInfos(ImmutableList.of(remote));
+    RepoManager mgr = new FakeRepoManager(new File("/sdk"), packages);
+
+    // Only the complete package can be downloaded
+    FakeDownloader downloader = new FakeDownloader(ourFileOp);
+    ByteArrayOutputStream zip = new ByteArrayOutputStream();
+    try (ZipOutputStream out = new ZipOutputStream(zip)) {
+      out.putNextEntry(new ZipEntry("pkg/file.txt"));
+      out.write("contents".getBytes());
+      out.closeEntry();
+    }
+    downloader.registerUrl(new URL("http://example.com/2/arch1"), zip.toByteArray());
+
+    FakeProgressIndicator progress = new FakeProgressIndicator();
+    PatchInstaller installer = new PatchInstaller(local, remote, downloader, mgr, ourFileOp);
+    // There is no patcher to generate a patch from the complete package, so the preparation still fails in the end
+    assertFalse(installer.doPrepare(new File("/tmp/install"), progress));
+    assertTrue(progress.getWarnings().contains("Patch failed to download, installing the complete package instead."));
+    assertTrue(ourFileOp.exists(new File("/tmp/install/unzip/pkg/file.txt")));
+  }
+
+  public void testNoFallbackWhenCancelled() throws Exception {
+    FakeRemotePackage remote = new FakeRemotePackage("pkg");
+    remote.setRevision(new Revision(2));
+    remote.setCompleteUrl("http://example.com/2/arch1");
+    remote.setPatchInfo("http://example.com/2/patch", new Revision(1));
+    FakeLocalPackage local = new FakeLocalPackage("pkg");
+    local.setRevision(new Revision(1));
+    RepositoryPackages packages = new RepositoryPackages();
+    packages.setLocalPkgInfos(ImmutableList.of(local));
+    packages.setRemotePkgInfos(ImmutableList.of(remote));
+    RepoManager mgr = new FakeRepoManager(new File("/sdk"), packages);
+
+    FakeProgressIndicator progress = new FakeProgressIndicator();
+    progress.cancel();
+    PatchInstaller installer = new PatchInstaller(local, remote, new FakeDownloader(ourFileOp), mgr, ourFileOp);
+    assertFalse(installer.doPrepare(new File("/tmp/install"), progress));
+    assertFalse(progress.getWarnings().contains("Patch failed to download, installing the complete package instead."));
+  }
+
   private static RemotePackage getRemotePackage(@NotNull RepoManager repoManager, @NotNull ProgressIndicator progress)
     throws JAXBException {
     InputStream remoteInput = new ByteArrayInputStream(REMOTE.getBytes());
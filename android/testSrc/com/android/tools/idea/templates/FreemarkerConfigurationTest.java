@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.templates;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import freemarker.core.ParseException;
+import freemarker.template.Template;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the shared {@link FreemarkerConfiguration} of a template root folder.
+ */
+public class FreemarkerConfigurationTest {
+  @Rule
+  public TemporaryFolder myTemporaryFolder = new TemporaryFolder();
+
+  private static String process(Template template) throws Exception {
+    StringWriter out = new StringWriter();
+    template.process(Collections.singletonMap("name", "World"), out);
+    return out.toString();
+  }
+
+  @Test
+  public void testSharedTemplatesAreCachedUntilModified() throws Exception {
+    File root = myTemporaryFolder.newFolder("templates");
+    File file = new File(root, "hello.ftl");
+    Files.write("Hello ${name}", file, Charsets.UTF_8);
+
+    FreemarkerConfiguration configuration = FreemarkerConfiguration.getShared(root);
+    assertSame(configuration, FreemarkerConfiguration.getShared(root));
+    Template template = configuration.getTemplate("root://hello.ftl");
+    assertSame(template, configuration.getTemplate("root://hello.ftl"));
+    assertEquals("Hello World", process(template));
+
+    Files.write("Goodbye ${name}", file, Charsets.UTF_8);
+    assertTrue(file.setLastModified(file.lastModified() + 2000));
+    Template modified = configuration.getTemplate("root://hello.ftl");
+    assertNotSame(template, modified);
+    assertEquals("Goodbye World", process(modified));
+  }
+
+  @Test
+  public void testPreloadTemplates() throws Exception {
+    File root = myTemporaryFolder.newFolder("templates");
+    Files.write("<#include \"common.ftl\">${greeting} ${name}", new File(root, "hello.ftl"), Charsets.UTF_8);
+    Files.write("<#assign greeting=\"Hello\">", new File(root, "common.ftl"), Charsets.UTF_8);
+    Files.write("<#if>", new File(root, "broken.ftl"), Charsets.UTF_8);
+
+    FreemarkerConfiguration configuration = FreemarkerConfiguration.getShared(root);
+    configuration.preloadTemplates(ImmutableList.of("root://hello.ftl", "root://broken.ftl", "root://missing.ftl"));
+    assertEquals("Hello World", process(configuration.getTemplate("root://hello.ftl")));
+    try {
+      configuration.getTemplate("root://broken.ftl");
+      fail("Expected a parse error");
+    }
+    catch (ParseException expected) {
+    }
+  }
+}
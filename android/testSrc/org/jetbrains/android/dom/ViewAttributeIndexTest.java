@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.dom;
+
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.xml.XmlName;
+import org.jetbrains.android.AndroidTestCase;
+import org.jetbrains.android.resourceManagers.ModuleResourceManagers;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.android.SdkConstants.ANDROID_URI;
+
+public class ViewAttributeIndexTest extends AndroidTestCase {
+  private PsiClass findClass(String name) {
+    PsiClass psiClass = JavaPsiFacade.getInstance(getProject()).findClass(name, GlobalSearchScope.allScope(getProject()));
+    assertNotNull(psiClass);
+    return psiClass;
+  }
+
+  private static Set<XmlName> getNames(List<ViewAttributeIndex.StyleableAttribute> attributes) {
+    Set<XmlName> names = new HashSet<>();
+    for (ViewAttributeIndex.StyleableAttribute attribute : attributes) {
+      assertTrue("Duplicate attribute " + attribute.getName(), names.add(attribute.getName()));
+    }
+    return names;
+  }
+
+  public void testClassAttributes() {
+    ViewAttributeIndex index = ViewAttributeIndex.getInstance(myFacet);
+    List<ViewAttributeIndex.StyleableAttribute> attributes = index.getClassAttributes(findClass("android.widget.TextView"));
+    Set<XmlName> names = getNames(attributes);
+    assertTrue(names.contains(new XmlName("text", ANDROID_URI)));
+    assertTrue(names.contains(new XmlName("background", ANDROID_URI)));
+
+    // The attributes of the superclass are shared
+    assertSame(index.getClassAttributes(findClass("android.view.View")), index.getClassAttributes(findClass("android.view.View")));
+    assertSame(attributes, ViewAttributeIndex.getInstance(myFacet).getClassAttributes(findClass("android.widget.TextView")));
+  }
+
+  public void testLayoutParamAttributes() {
+    ViewAttributeIndex index = ViewAttributeIndex.getInstance(myFacet);
+    Set<XmlName> names = getNames(index.getLayoutParamAttributes(findClass("android.widget.LinearLayout")));
+    assertTrue(names.contains(new XmlName("layout_weight", ANDROID_URI)));
+    assertTrue(names.contains(new XmlName("layout_marginStart", ANDROID_URI)));
+    assertTrue(names.contains(new XmlName("layout_width", ANDROID_URI)));
+    assertFalse(names.contains(new XmlName("layout_below", ANDROID_URI)));
+  }
+
+  public void testInvalidation() {
+    ViewAttributeIndex index = ViewAttributeIndex.getInstance(myFacet);
+    assertSame(index, ViewAttributeIndex.getInstance(myFacet));
+    ModuleResourceManagers.getInstance(myFacet).getLocalResourceManager().invalidateAttributeDefinitions();
+    assertNotSame(index, ViewAttributeIndex.getInstance(myFacet));
+  }
+}
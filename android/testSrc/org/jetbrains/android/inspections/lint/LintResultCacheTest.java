@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.inspections.lint;
+
+import com.android.tools.lint.checks.HardcodedValuesDetector;
+import com.android.tools.lint.client.api.DefaultConfiguration;
+import com.android.tools.lint.detector.api.Issue;
+import com.intellij.openapi.application.WriteAction;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.android.AndroidTestCase;
+
+import java.util.Collections;
+import java.util.Set;
+
+public class LintResultCacheTest extends AndroidTestCase {
+  private static final Set<Issue> ISSUES = Collections.singleton(HardcodedValuesDetector.ISSUE);
+
+  private State createState(VirtualFile file, String content, String dependencyStamp) {
+    State state = new State(myModule, file, content, ISSUES);
+    state.setDependencyStamp(dependencyStamp);
+    return state;
+  }
+
+  public void testRestoresUnchangedFile() {
+    VirtualFile file = myFixture.copyFileToProject("R.java", "src/p1/p2/R.java");
+    LintResultCache cache = new LintResultCache();
+
+    State state = createState(file, "content", "stamp");
+    assertFalse(cache.restore(state));
+    state.getProblems().add(new ProblemData(HardcodedValuesDetector.ISSUE, "message", new TextRange(0, 4), null, null));
+    cache.store(state, 1000);
+    assertEquals(1, cache.size());
+
+    State unchanged = createState(file, "content", "stamp");
+    assertTrue(cache.restore(unchanged));
+    assertEquals(1, unchanged.getProblems().size());
+    assertEquals("message", unchanged.getProblems().get(0).getMessage());
+
+    assertFalse(cache.restore(createState(file, "edited content", "stamp")));
+    assertFalse(cache.restore(createState(file, "content", "resources changed")));
+
+    assertEquals(1, cache.getStats().hitCount());
+    assertEquals(3, cache.getStats().missCount());
+    assertEquals(1000, cache.getSavedTimeNanos());
+  }
+
+  public void testSkipsDirtyAndUncachedStates() {
+    VirtualFile file = myFixture.copyFileToProject("R.java", "src/p1/p2/R.java");
+    LintResultCache cache = new LintResultCache();
+
+    State dirty = createState(file, "content", "stamp");
+    dirty.markDirty();
+    cache.store(dirty, 1000);
+    cache.store(createState(file, "content", null), 1000);
+    assertEquals(0, cache.size());
+    assertFalse(cache.restore(createState(file, "content", null)));
+  }
+
+  public void testDependencyStampIgnoresUnrelatedFiles() throws Exception {
+    VirtualFile file = myFixture.addFileToProject("proguard-project.txt", "-keep class *").getVirtualFile();
+    String stamp = LintResultCache.getDependencyStamp(myModule, file, ISSUES);
+
+    // Changes to files outside of what the detectors look at don't invalidate the results
+    myFixture.addFileToProject("notes.txt", "notes");
+    assertEquals(stamp, LintResultCache.getDependencyStamp(myModule, file, ISSUES));
+
+    VirtualFile manifest = myFacet.getMainIdeaSourceProvider().getManifestFile();
+    assertNotNull(manifest);
+    WriteAction.run(() -> VfsUtil.saveText(manifest, VfsUtilCore.loadText(manifest) + "\n"));
+    assertFalse(stamp.equals(LintResultCache.getDependencyStamp(myModule, file, ISSUES)));
+  }
+
+  public void testDependencyStampTracksLintConfiguration() throws Exception {
+    VirtualFile file = myFixture.copyFileToProject("R.java", "src/p1/p2/R.java");
+    String stamp = LintResultCache.getDependencyStamp(myModule, file, ISSUES);
+
+    VirtualFile lintXml = myFixture.addFileToProject(DefaultConfiguration.CONFIG_FILE_NAME, "<lint></lint>").getVirtualFile();
+    String withConfiguration = LintResultCache.getDependencyStamp(myModule, file, ISSUES);
+    assertFalse(stamp.equals(withConfiguration));
+
+    WriteAction.run(() -> VfsUtil.saveText(lintXml, "<lint><issue id=\"NewApi\" severity=\"ignore\" /></lint>"));
+    assertFalse(withConfiguration.equals(LintResultCache.getDependencyStamp(myModule, file, ISSUES)));
+  }
+
+  public void testDependencyStampTracksJavaStructureForXml() throws Exception {
+    VirtualFile layout = myFixture.addFileToProject("res/layout/layout.xml", "<LinearLayout />").getVirtualFile();
+    String stamp = LintResultCache.getDependencyStamp(myModule, layout, ISSUES);
+
+    // Layout detectors resolve view classes, so adding a class invalidates the results of XML files too
+    myFixture.addFileToProject("src/p1/p2/MyView.java", "package p1.p2; public class MyView {}");
+    assertFalse(stamp.equals(LintResultCache.getDependencyStamp(myModule, layout, ISSUES)));
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.inspections.lint;
+
+import com.android.tools.lint.checks.HardcodedValuesDetector;
+import com.android.tools.lint.checks.UnusedResourceDetector;
+import com.android.tools.lint.detector.api.Issue;
+import com.google.common.collect.ImmutableSet;
+import com.intellij.analysis.AnalysisScope;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.fixtures.IdeaProjectTestFixture;
+import com.intellij.testFramework.fixtures.TestFixtureBuilder;
+import org.jetbrains.android.AndroidTestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+
+import static com.android.builder.model.AndroidProject.PROJECT_TYPE_LIBRARY;
+
+/**
+ * Performance test of the sharded batch lint on a generated multi-module project. The timing depends on the number of
+ * cores of the machine, so it only runs on the perf buildbot.
+ */
+public class ShardedLintRunnerPerfTest extends AndroidTestCase {
+  private static final int LIBRARY_COUNT = 6;
+  private static final int LAYOUTS_PER_MODULE = 10;
+  private static final Set<Issue> ISSUES = ImmutableSet.of(HardcodedValuesDetector.ISSUE, UnusedResourceDetector.ISSUE);
+
+  @Override
+  protected void configureAdditionalModules(@NotNull TestFixtureBuilder<IdeaProjectTestFixture> projectBuilder,
+                                            @NotNull List<MyAdditionalModuleData> modules) {
+    for (int i = 0; i < LIBRARY_COUNT; i++) {
+      addModuleWithAndroidFacet(projectBuilder, modules, "lib" + i, PROJECT_TYPE_LIBRARY, true);
+    }
+  }
+
+  public void testMultiModuleFixture() {
+    for (int layout = 0; layout < LAYOUTS_PER_MODULE; layout++) {
+      myFixture.copyFileToProject("lint/hardcodedQuickfix1.xml", "res/layout/main" + layout + ".xml");
+      for (int i = 0; i < LIBRARY_COUNT; i++) {
+        myFixture.copyFileToProject("lint/hardcodedQuickfix1.xml",
+                                    getAdditionalModulePath("lib" + i) + "/res/layout/lib" + i + "_" + layout + ".xml");
+      }
+    }
+    List<Module> modules = Arrays.asList(ModuleManager.getInstance(getProject()).getModules());
+    ShardedLintRunner runner = new ShardedLintRunner(getProject(), new AnalysisScope(getProject()), ShardedLintRunner.DEFAULT_PARALLELISM);
+
+    PlatformTestUtil.startPerformanceTest("sharded batch lint", 10000, () -> runner.run(modules, null, ISSUES, new HashMap<>()))
+      .attempts(2).usesAllCPUCores().assertTiming();
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.inspections.lint;
+
+import com.android.tools.idea.lint.LintIdeClient;
+import com.android.tools.idea.lint.LintIdeIssueRegistry;
+import com.android.tools.idea.lint.LintIdeRequest;
+import com.android.tools.lint.checks.ApiDetector;
+import com.android.tools.lint.checks.GradleDetector;
+import com.android.tools.lint.checks.HardcodedValuesDetector;
+import com.android.tools.lint.checks.ProguardDetector;
+import com.android.tools.lint.checks.UnusedResourceDetector;
+import com.android.tools.lint.client.api.LintDriver;
+import com.android.tools.lint.detector.api.Issue;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.intellij.analysis.AnalysisScope;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.fixtures.IdeaProjectTestFixture;
+import com.intellij.testFramework.fixtures.TestFixtureBuilder;
+import org.jetbrains.android.AndroidTestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.util.*;
+
+import static com.android.SdkConstants.FN_ANDROID_MANIFEST_XML;
+import static com.android.builder.model.AndroidProject.PROJECT_TYPE_LIBRARY;
+
+public class ShardedLintRunnerTest extends AndroidTestCase {
+  private static final int LIBRARY_COUNT = 6;
+  private static final int LAYOUTS_PER_MODULE = 10;
+  private static final Set<Issue> ISSUES = ImmutableSet.of(HardcodedValuesDetector.ISSUE, UnusedResourceDetector.ISSUE);
+
+  @Override
+  protected void configureAdditionalModules(@NotNull TestFixtureBuilder<IdeaProjectTestFixture> projectBuilder,
+                                            @NotNull List<MyAdditionalModuleData> modules) {
+    for (int i = 0; i < LIBRARY_COUNT; i++) {
+      addModuleWithAndroidFacet(projectBuilder, modules, "lib" + i, PROJECT_TYPE_LIBRARY, true);
+    }
+  }
+
+  /**
+   * Generates a multi-module fixture where every module has its own copies of a layout with hardcoded text.
+   */
+  private List<Module> createFixture() {
+    for (int layout = 0; layout < LAYOUTS_PER_MODULE; layout++) {
+      myFixture.copyFileToProject("lint/hardcodedQuickfix1.xml", "res/layout/main" + layout + ".xml");
+      for (int i = 0; i < LIBRARY_COUNT; i++) {
+        myFixture.copyFileToProject("lint/hardcodedQuickfix1.xml",
+                                    getAdditionalModulePath("lib" + i) + "/res/layout/lib" + i + "_" + layout + ".xml");
+      }
+    }
+    return Arrays.asList(ModuleManager.getInstance(getProject()).getModules());
+  }
+
+  private Map<Issue, Map<File, List<ProblemData>>> runSerial(List<Module> modules, Set<Issue> issues) {
+    Map<Issue, Map<File, List<ProblemData>>> problems = new HashMap<>();
+    LintIdeClient client = LintIdeClient.forBatch(getProject(), problems, new AnalysisScope(getProject()), issues);
+    new LintDriver(new LintIdeIssueRegistry(), client, new LintIdeRequest(client, getProject(), null, modules, false)).analyze();
+    return problems;
+  }
+
+  private Map<Issue, Map<File, List<ProblemData>>> runSharded(List<Module> modules, Set<Issue> issues) {
+    Map<Issue, Map<File, List<ProblemData>>> problems = new HashMap<>();
+    new ShardedLintRunner(getProject(), new AnalysisScope(getProject()), 4).run(modules, null, issues, problems);
+    return problems;
+  }
+
+  private static Set<String> describe(Map<Issue, Map<File, List<ProblemData>>> problems) {
+    Set<String> result = Sets.newTreeSet();
+    problems.forEach((issue, files) -> files.forEach((file, list) -> {
+      for (ProblemData problem : list) {
+        result.add(issue.getId() + ":" + file.getName() + ":" + problem.getTextRange() + ":" + problem.getMessage());
+      }
+    }));
+    return result;
+  }
+
+  public void testIssueSplit() {
+    assertFalse(ShardedLintRunner.isProjectWide(HardcodedValuesDetector.ISSUE));
+    assertTrue(ShardedLintRunner.isProjectWide(UnusedResourceDetector.ISSUE));
+    // The shards only list the sources, resources and manifest of their module
+    assertTrue(ShardedLintRunner.isProjectWide(ProguardDetector.WRONG_KEEP));
+    assertTrue(ShardedLintRunner.isProjectWide(GradleDetector.DEPENDENCY));
+    assertFalse(ShardedLintRunner.isApplicable(Collections.singletonList(myModule), 4));
+    assertFalse(ShardedLintRunner.isApplicable(Arrays.asList(ModuleManager.getInstance(getProject()).getModules()), 1));
+  }
+
+  public void testMergeDropsDuplicates() {
+    File file = new File("layout.xml");
+    ProblemData problem = new ProblemData(HardcodedValuesDetector.ISSUE, "message", new TextRange(1, 5), null, null);
+    Map<Issue, Map<File, List<ProblemData>>> shard = new HashMap<>();
+    shard.computeIfAbsent(HardcodedValuesDetector.ISSUE, k -> new HashMap<>()).put(file, Collections.singletonList(problem));
+
+    Map<Issue, Map<File, List<ProblemData>>> merged = new HashMap<>();
+    ShardedLintRunner.merge(shard, merged);
+    ShardedLintRunner.merge(shard, merged);
+    assertEquals(1, merged.get(HardcodedValuesDetector.ISSUE).get(file).size());
+  }
+
+  public void testMatchesSerialLint() {
+    List<Module> modules = createFixture();
+    Set<String> serial = describe(runSerial(modules, ISSUES));
+    assertFalse(serial.isEmpty());
+    assertEquals(serial, describe(runSharded(modules, ISSUES)));
+  }
+
+  public void testRunsProguardIssuesOnWholeProject() {
+    List<Module> modules = createFixture();
+    VirtualFile proguardCfg = myFixture.copyFileToProject("lint/global/proguard/proguard.cfg", "proguard.cfg");
+    myFacet.getProperties().RUN_PROGUARD = true;
+    myFacet.getProperties().myProGuardCfgFiles = Collections.singletonList(proguardCfg.getUrl());
+
+    Set<Issue> issues = ImmutableSet.of(HardcodedValuesDetector.ISSUE, ProguardDetector.WRONG_KEEP);
+    Set<String> serial = describe(runSerial(modules, issues));
+    assertTrue(serial.stream().anyMatch(problem -> problem.startsWith(ProguardDetector.WRONG_KEEP.getId() + ":")));
+    assertEquals(serial, describe(runSharded(modules, issues)));
+  }
+
+  public void testLibraryShardUsesApplicationMinSdk() {
+    List<Module> modules = createFixture();
+    myFixture.addFileToProject(FN_ANDROID_MANIFEST_XML, manifestWithMinSdk(21));
+    myFixture.addFileToProject(getAdditionalModulePath("lib0") + "/" + FN_ANDROID_MANIFEST_XML, manifestWithMinSdk(1));
+    myFixture.addFileToProject(getAdditionalModulePath("lib0") + "/res/layout/grid.xml",
+                               "<GridLayout xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+                               "    android:layout_width=\"match_parent\"\n" +
+                               "    android:layout_height=\"match_parent\" />\n");
+
+    Set<Issue> issues = ImmutableSet.of(ApiDetector.UNSUPPORTED);
+    // Checked on its own the library reports the view, since its own min SDK is lower than the one GridLayout needs
+    Module library = ModuleManager.getInstance(getProject()).findModuleByName("lib0");
+    assertNotNull(library);
+    assertFalse(describe(runSerial(Collections.singletonList(library), issues)).isEmpty());
+
+    // As part of the application it uses the min SDK of the application, and so must the library shard
+    Set<String> serial = describe(runSerial(modules, issues));
+    assertTrue(serial.isEmpty());
+    assertEquals(serial, describe(runSharded(modules, issues)));
+  }
+
+  @NotNull
+  private static String manifestWithMinSdk(int minSdk) {
+    return "<manifest xmlns:android=\"http://schemas.android.com/apk/res/android\" package=\"p1.p2\">\n" +
+           "    <uses-sdk android:minSdkVersion=\"" + minSdk + "\" />\n" +
+           "</manifest>\n";
+  }
+}
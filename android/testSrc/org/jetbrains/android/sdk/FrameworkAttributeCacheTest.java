@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.sdk;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.psi.xml.XmlFile;
+import gnu.trove.TIntObjectHashMap;
+import org.jetbrains.android.AndroidTestCase;
+import org.jetbrains.android.dom.attrs.AttributeDefinition;
+import org.jetbrains.android.dom.attrs.AttributeDefinitionsImpl;
+import org.jetbrains.android.dom.attrs.AttributeFormat;
+import org.jetbrains.android.dom.attrs.StyleableDefinition;
+
+import java.io.File;
+import java.util.*;
+
+public class FrameworkAttributeCacheTest extends AndroidTestCase {
+  private static final String ATTRS =
+    "<resources>\n" +
+    "  <!-- Color of text. -->\n" +
+    "  <attr name=\"textColor\" format=\"reference|color\" />\n" +
+    "  <declare-styleable name=\"View\">\n" +
+    "    <!-- Controls the visibility of the view. -->\n" +
+    "    <attr name=\"visibility\">\n" +
+    "      <!-- Visible on screen. -->\n" +
+    "      <enum name=\"visible\" value=\"0\" />\n" +
+    "      <enum name=\"gone\" value=\"2\" />\n" +
+    "    </attr>\n" +
+    "  </declare-styleable>\n" +
+    "  <declare-styleable name=\"TextView\" parent=\"View\">\n" +
+    "    <attr name=\"textColor\" />\n" +
+    "  </declare-styleable>\n" +
+    "</resources>";
+
+  private File myRoot;
+  private File myCacheFile;
+  private File[] mySourceFiles;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    myRoot = FileUtil.createTempDirectory("framework", "attrs");
+    myCacheFile = new File(myRoot, "cache.bin");
+    File attrs = new File(myRoot, "attrs.xml");
+    File publicXml = new File(myRoot, "public.xml");
+    FileUtil.writeToFile(attrs, ATTRS);
+    FileUtil.writeToFile(publicXml, "<resources><public type=\"attr\" name=\"textColor\" id=\"0x01010098\" /></resources>");
+    mySourceFiles = new File[]{attrs, publicXml};
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    try {
+      FileUtil.delete(myRoot);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  private static List<String> getNames(List<? extends StyleableDefinition> styleables) {
+    List<String> names = new ArrayList<>();
+    for (StyleableDefinition styleable : styleables) {
+      names.add(styleable.getName());
+    }
+    return names;
+  }
+
+  public void testWriteAndRead() throws Exception {
+    XmlFile file = (XmlFile)myFixture.addFileToProject("res/values/attrs.xml", ATTRS);
+    AttributeDefinitionsImpl attrDefs = new AttributeDefinitionsImpl(file);
+    Map<String, Set<String>> publicResources = new HashMap<>();
+    publicResources.put("attr", new HashSet<>(Collections.singletonList("textColor")));
+    TIntObjectHashMap<String> publicIdMap = new TIntObjectHashMap<>();
+    publicIdMap.put(0x01010098, "@android:attr/textColor");
+
+    assertNull(FrameworkAttributeCache.read(myCacheFile, mySourceFiles));
+    long[] stamps = FrameworkAttributeCache.getStamps(mySourceFiles);
+    new FrameworkAttributeCache(attrDefs, publicResources, publicIdMap).write(myCacheFile, mySourceFiles, stamps);
+    FrameworkAttributeCache cache = FrameworkAttributeCache.read(myCacheFile, mySourceFiles);
+    assertNotNull(cache);
+
+    AttributeDefinitionsImpl cached = cache.getAttributeDefinitions();
+    assertEquals(attrDefs.getAttributeNames(), cached.getAttributeNames());
+    AttributeDefinition textColor = cached.getAttrDefByName("textColor");
+    assertNotNull(textColor);
+    assertEquals(EnumSet.of(AttributeFormat.Reference, AttributeFormat.Color), textColor.getFormats());
+    assertEquals(attrDefs.getAttrDefByName("textColor").getDocValue(null), textColor.getDocValue(null));
+
+    AttributeDefinition visibility = cached.getAttrDefByName("visibility");
+    assertNotNull(visibility);
+    assertEquals(Collections.singletonList("View"), visibility.getParentStyleables());
+    assertEquals(Arrays.asList("visible", "gone"), Arrays.asList(visibility.getValues()));
+    assertEquals(Integer.valueOf(2), visibility.getValueMapping("gone"));
+    assertEquals(attrDefs.getAttrDefByName("visibility").getValueDoc("visible"), visibility.getValueDoc("visible"));
+    assertEquals(attrDefs.getEnumMap(), cached.getEnumMap());
+
+    StyleableDefinition textView = cached.getStyleableByName("TextView");
+    assertNotNull(textView);
+    assertSame(textColor, textView.getAttributes().get(0));
+    assertEquals(Collections.singletonList("View"), getNames(cached.getStyleableByName("TextView").getParents()));
+    assertEquals(Collections.singletonList("TextView"), getNames(cached.getStyleableByName("View").getChildren()));
+
+    assertEquals(publicResources, cache.getPublicResources());
+    assertEquals("@android:attr/textColor", cache.getPublicIdMap().get(0x01010098));
+  }
+
+  public void testOutOfDate() throws Exception {
+    XmlFile file = (XmlFile)myFixture.addFileToProject("res/values/attrs.xml", ATTRS);
+    FrameworkAttributeCache cache =
+      new FrameworkAttributeCache(new AttributeDefinitionsImpl(file), Collections.emptyMap(), new TIntObjectHashMap<>());
+    long[] stamps = FrameworkAttributeCache.getStamps(mySourceFiles);
+
+    // A source file changing after it was read isn't cached
+    FileUtil.writeToFile(mySourceFiles[1], "<resources/>");
+    cache.write(myCacheFile, mySourceFiles, stamps);
+    assertFalse(myCacheFile.exists());
+
+    cache.write(myCacheFile, mySourceFiles, FrameworkAttributeCache.getStamps(mySourceFiles));
+    assertNotNull(FrameworkAttributeCache.read(myCacheFile, mySourceFiles));
+    FileUtil.writeToFile(mySourceFiles[0], "<resources/>");
+    assertNull(FrameworkAttributeCache.read(myCacheFile, mySourceFiles));
+  }
+}
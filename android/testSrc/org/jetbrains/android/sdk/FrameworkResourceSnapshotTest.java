@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.sdk;
+
+import com.android.io.IAbstractFile;
+import com.android.io.IAbstractFolder;
+import com.android.io.IAbstractResource;
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.TestCase;
+import org.jetbrains.android.sdk.FrameworkResourceLoader.IdeFrameworkResources;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class FrameworkResourceSnapshotTest extends TestCase {
+  private File myResFolder;
+  private File mySnapshotFile;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    File root = FileUtil.createTempDirectory("framework", "res");
+    myResFolder = new File(root, "res");
+    mySnapshotFile = new File(root, "snapshot.bin");
+    FileUtil.writeToFile(new File(myResFolder, "values/strings.xml"), "<resources><string name=\"hello\">Hello</string></resources>");
+    FileUtil.writeToFile(new File(myResFolder, "values-fr/strings.xml"), "<resources><string name=\"hello\">Bonjour</string></resources>");
+    FileUtil.writeToFile(new File(myResFolder, "drawable/icon.png"), new byte[]{1, 2, 3});
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      FileUtil.delete(myResFolder.getParentFile());
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  private static String getContents(IAbstractFile file) throws Exception {
+    try (InputStream stream = file.getContents()) {
+      return new String(ByteStreams.toByteArray(stream), Charsets.UTF_8);
+    }
+  }
+
+  private static List<String> getNames(IAbstractResource[] resources) {
+    List<String> names = new ArrayList<>();
+    for (IAbstractResource resource : resources) {
+      names.add(resource.getName());
+    }
+    return names;
+  }
+
+  public void testSnapshot() throws Exception {
+    assertNull(FrameworkResourceSnapshot.read(mySnapshotFile, myResFolder));
+    FrameworkResourceSnapshot.write(myResFolder, mySnapshotFile);
+    FrameworkResourceSnapshot snapshot = FrameworkResourceSnapshot.read(mySnapshotFile, myResFolder);
+    assertNotNull(snapshot);
+
+    IAbstractFolder root = snapshot.getRootFolder();
+    assertEquals(myResFolder.getPath(), root.getPath());
+    assertEquals(Arrays.asList("drawable", "values", "values-fr"), getNames(root.listMembers()));
+
+    IAbstractFolder values = root.getFolder("values");
+    assertTrue(values.hasFile("strings.xml"));
+    assertFalse(values.hasFile("colors.xml"));
+    IAbstractFile strings = values.getFile("strings.xml");
+    assertEquals(new File(myResFolder, "values/strings.xml").getPath(), strings.getOsLocation());
+    assertEquals("<resources><string name=\"hello\">Hello</string></resources>", getContents(strings));
+    assertSame(values, strings.getParentFolder());
+
+    // Files other than XML files are read from disk
+    IAbstractFile icon = root.getFolder("drawable").getFile("icon.png");
+    try (InputStream stream = icon.getContents()) {
+      assertEquals(3, ByteStreams.toByteArray(stream).length);
+    }
+  }
+
+  public void testOutOfDateSnapshot() throws Exception {
+    FrameworkResourceSnapshot.write(myResFolder, mySnapshotFile);
+    assertTrue(myResFolder.setLastModified(myResFolder.lastModified() - 10000));
+    assertNull(FrameworkResourceSnapshot.read(mySnapshotFile, myResFolder));
+    assertNull(FrameworkResourceSnapshot.read(mySnapshotFile, new File(myResFolder.getParentFile(), "other")));
+  }
+
+  public void testOutOfDateFolder() throws Exception {
+    FrameworkResourceSnapshot.write(myResFolder, mySnapshotFile);
+    File values = new File(myResFolder, "values");
+    assertTrue(values.setLastModified(values.lastModified() - 10000));
+    assertNull(FrameworkResourceSnapshot.read(mySnapshotFile, myResFolder));
+  }
+
+  public void testOutOfDateFile() throws Exception {
+    FrameworkResourceSnapshot.write(myResFolder, mySnapshotFile);
+    File strings = new File(myResFolder, "values/strings.xml");
+    long stamp = strings.lastModified();
+    long folderStamp = strings.getParentFile().lastModified();
+    // Edited in place, which doesn't change the modification time of the folder
+    FileUtil.writeToFile(strings, "<resources><string name=\"hello\">Hi</string></resources>");
+    assertTrue(strings.setLastModified(stamp - 10000));
+    assertTrue(strings.getParentFile().setLastModified(folderStamp));
+    assertNull(FrameworkResourceSnapshot.read(mySnapshotFile, myResFolder));
+  }
+
+  public void testLoadLocales() throws Exception {
+    FrameworkResourceSnapshot.write(myResFolder, mySnapshotFile);
+    FrameworkResourceSnapshot snapshot = FrameworkResourceSnapshot.read(mySnapshotFile, myResFolder);
+    assertNotNull(snapshot);
+
+    IdeFrameworkResources resources = new IdeFrameworkResources(snapshot.getRootFolder(), false);
+    resources.ensureInitialized();
+    assertTrue(resources.getSkippedLocales());
+    assertTrue(resources.getLanguages().isEmpty());
+
+    resources.loadLocales();
+    assertFalse(resources.getSkippedLocales());
+    assertTrue(resources.getLanguages().contains("fr"));
+  }
+}
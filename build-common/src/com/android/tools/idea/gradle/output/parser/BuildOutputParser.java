@@ -18,19 +18,23 @@ package com.android.tools.idea.gradle.output.parser;
 import com.android.ide.common.blame.Message;
 import com.android.ide.common.blame.parser.PatternAwareOutputParser;
 import com.android.ide.common.blame.parser.ToolOutputParser;
+import com.google.common.collect.ImmutableList;
 import org.jetbrains.android.sdk.MessageBuildingSdkLog;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Parses Gradle's build output and creates the messages to be displayed in the "Messages" tool window.
  */
 public class BuildOutputParser{
+  private final List<PatternAwareOutputParser> parsers;
   private final ToolOutputParser parser;
 
   public BuildOutputParser(@NotNull Iterable<PatternAwareOutputParser> parsers) {
-    parser = new ToolOutputParser(parsers, new MessageBuildingSdkLog());
+    this.parsers = ImmutableList.copyOf(parsers);
+    parser = new ToolOutputParser(this.parsers, new MessageBuildingSdkLog());
   }
 
   @NotNull
@@ -42,4 +46,12 @@ public class BuildOutputParser{
   public List<Message> parseGradleOutput(@NotNull String output, boolean ignoreUnrecognizedText) {
     return parser.parseToolOutput(output, ignoreUnrecognizedText);
   }
+
+  /**
+   * Returns a parser for output that is still being produced, which passes the messages to the given consumer as soon as they are parsed.
+   */
+  @NotNull
+  public StreamingBuildOutputParser createStreamingParser(boolean ignoreUnrecognizedText, @NotNull Consumer<Message> consumer) {
+    return new StreamingBuildOutputParser(parsers, ignoreUnrecognizedText, consumer);
+  }
 }
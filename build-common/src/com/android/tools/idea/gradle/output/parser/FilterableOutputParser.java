@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.gradle.output.parser;
+
+import com.android.ide.common.blame.parser.PatternAwareOutputParser;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link PatternAwareOutputParser} that can tell cheaply whether a line may start one of the messages it handles.
+ * <p>
+ * {@link StreamingBuildOutputParser} only gives a line to the parsers that may handle it, so lines that are plain build output (the vast
+ * majority of them) are not matched against the patterns of every parser.
+ */
+public interface FilterableOutputParser extends PatternAwareOutputParser {
+  /**
+   * Returns false if {@link #parse} would return false for the given line without reading any other line.
+   */
+  boolean mayParse(@NotNull String line);
+}
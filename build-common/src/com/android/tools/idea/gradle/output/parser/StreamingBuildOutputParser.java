@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.gradle.output.parser;
+
+import com.android.ide.common.blame.Message;
+import com.android.ide.common.blame.SourceFilePosition;
+import com.android.ide.common.blame.parser.ParsingFailedException;
+import com.android.ide.common.blame.parser.PatternAwareOutputParser;
+import com.android.ide.common.blame.parser.util.OutputLineReader;
+import com.android.utils.ILogger;
+import com.google.common.collect.ImmutableList;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.android.sdk.MessageBuildingSdkLog;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Parses Gradle's build output as it is produced, instead of parsing the whole output once the build is finished.
+ * <p>
+ * Output is appended in chunks of any size, and every complete line goes through the same {@link PatternAwareOutputParser}s, in the same
+ * order, as with {@link BuildOutputParser#parseGradleOutput(String, boolean)}. Parsers implementing {@link FilterableOutputParser} are
+ * skipped for the lines they can't handle. The parsed messages are passed to a consumer as soon as they are parsed.
+ * <p>
+ * Some messages span several lines (e.g. Gradle's failure summary or javac errors), and their parsers read the following lines from the
+ * given {@link OutputLineReader}. A line is only parsed once a few lines following it are available, and a parser reading all the
+ * available lines is run again when more output arrives, so the messages are the same as if the whole output had been parsed at once.
+ * The parsers read the pending lines in place, without joining them again, and only the lines that haven't been parsed yet are kept in
+ * memory.
+ * <p>
+ * This class is thread safe; the consumer is called while holding the lock of the parser.
+ */
+public class StreamingBuildOutputParser {
+  private static final Logger LOG = Logger.getInstance(StreamingBuildOutputParser.class);
+
+  /** Number of lines that must follow a line before it is parsed, unless the output is complete */
+  private static final int MIN_LOOKAHEAD = 8;
+
+  /** Initial number of lines given to the parsers of a line */
+  private static final int INITIAL_WINDOW = 64;
+
+  @NotNull private final List<PatternAwareOutputParser> myParsers;
+  private final boolean myIgnoreUnrecognizedText;
+  @NotNull private final Consumer<Message> myConsumer;
+  @NotNull private final ILogger myLogger = new MessageBuildingSdkLog();
+
+  @NotNull private final StringBuilder myPartialLine = new StringBuilder();
+  @NotNull private final List<String> myLines = new ArrayList<>();
+  /** Index in {@link #myLines} of the first line that hasn't been parsed */
+  private int myHead;
+  /** Number of available lines needed before parsing again a line whose parsers read all the available lines */
+  private int myRetryLineCount;
+  private int myWindow = INITIAL_WINDOW;
+
+  /** The last published message, which some parsers look at to drop duplicated messages */
+  @Nullable private Message myLastMessage;
+  private boolean myClosed;
+  private boolean myStopped;
+
+  public StreamingBuildOutputParser(@NotNull Iterable<PatternAwareOutputParser> parsers,
+                                    boolean ignoreUnrecognizedText,
+                                    @NotNull Consumer<Message> consumer) {
+    myParsers = ImmutableList.copyOf(parsers);
+    myIgnoreUnrecognizedText = ignoreUnrecognizedText;
+    myConsumer = consumer;
+  }
+
+  /**
+   * Appends a chunk of output, which doesn't need to end at a line boundary.
+   */
+  public synchronized void append(@NotNull CharSequence text) {
+    if (myClosed) {
+      throw new IllegalStateException("The output is already complete");
+    }
+    int start = 0;
+    for (int i = 0; i < text.length(); i++) {
+      if (text.charAt(i) == '\n') {
+        myPartialLine.append(text, start, i);
+        addLine();
+        start = i + 1;
+      }
+    }
+    myPartialLine.append(text, start, text.length());
+    parse();
+  }
+
+  /**
+   * Parses the remaining output. Must be called once the build is finished.
+   */
+  public synchronized void close() {
+    if (myClosed) {
+      return;
+    }
+    if (myPartialLine.length() > 0) {
+      addLine();
+    }
+    // Like OutputLineReader, don't give the trailing empty lines of the output to the parsers
+    while (myLines.size() > myHead && myLines.get(myLines.size() - 1).isEmpty()) {
+      myLines.remove(myLines.size() - 1);
+    }
+    myClosed = true;
+    parse();
+    myLines.clear();
+    myHead = 0;
+  }
+
+  private void addLine() {
+    int length = myPartialLine.length();
+    if (length > 0 && myPartialLine.charAt(length - 1) == '\r') {
+      myPartialLine.setLength(length - 1);
+    }
+    myLines.add(myPartialLine.toString());
+    myPartialLine.setLength(0);
+  }
+
+  private void parse() {
+    while (!myStopped && myHead < myLines.size()) {
+      String line = myLines.get(myHead);
+      if (line.isEmpty()) {
+        myHead++;
+        continue;
+      }
+      int available = myLines.size() - myHead;
+      if (!myClosed && (available <= MIN_LOOKAHEAD || available < myRetryLineCount)) {
+        break;
+      }
+
+      int end = Math.min(myLines.size(), myHead + myWindow);
+      int consumed = parseLine(line, end);
+      if (consumed < 0) {
+        if (end < myLines.size()) {
+          // There are more lines to give to the parsers
+          myWindow *= 2;
+        }
+        else {
+          myRetryLineCount = available * 2;
+          break;
+        }
+      }
+      else {
+        myHead += consumed;
+        myRetryLineCount = 0;
+        myWindow = INITIAL_WINDOW;
+      }
+    }
+
+    if (myHead > INITIAL_WINDOW && myHead > myLines.size() / 2) {
+      myLines.subList(0, myHead).clear();
+      myHead = 0;
+    }
+  }
+
+  /**
+   * Parses the line at the head of the unparsed lines, giving the parsers the lines up to the given index.
+   *
+   * @return the number of lines consumed by the parsers, or -1 if they read all the given lines and may need more of them
+   */
+  private int parseLine(@NotNull String line, int end) {
+    PendingLineReader reader = new PendingLineReader(myLines, myHead, end);
+    reader.readLine();
+
+    List<Message> messages = new ArrayList<>();
+    if (myLastMessage != null) {
+      messages.add(myLastMessage);
+    }
+    int previousCount = messages.size();
+    boolean handled = false;
+    for (PatternAwareOutputParser parser : myParsers) {
+      if (parser instanceof FilterableOutputParser && !((FilterableOutputParser)parser).mayParse(line)) {
+        continue;
+      }
+      try {
+        if (parser.parse(line, reader, messages, myLogger)) {
+          handled = true;
+          break;
+        }
+      }
+      catch (ParsingFailedException e) {
+        // The messages already published can't be taken back, so the line is displayed as is
+        LOG.debug("Failed to parse \"" + line + "\"", e);
+        messages.subList(previousCount, messages.size()).clear();
+        break;
+      }
+    }
+
+    if (reader.getRemainingLineCount() == 0 && (end < myLines.size() || !myClosed)) {
+      return -1;
+    }
+
+    if (!handled && !myIgnoreUnrecognizedText) {
+      messages.add(new Message(Message.Kind.SIMPLE, line.trim(), SourceFilePosition.UNKNOWN));
+    }
+    for (int i = previousCount; i < messages.size(); i++) {
+      myConsumer.accept(messages.get(i));
+    }
+    if (messages.size() > previousCount) {
+      myLastMessage = messages.get(messages.size() - 1);
+      if (handled && myLastMessage.getText().contains("Build cancelled")) {
+        myStopped = true;
+      }
+    }
+    return reader.getConsumedLineCount();
+  }
+
+  /**
+   * Reads the pending lines in place, up to the end of the window given to the parsers, so that parsing a line doesn't copy the lines
+   * following it. Behaves like an {@link OutputLineReader} created from the text of these lines.
+   */
+  private static class PendingLineReader extends OutputLineReader {
+    @NotNull private final List<String> myLines;
+    private final int myStart;
+    private final int myEnd;
+    private int myPosition;
+
+    PendingLineReader(@NotNull List<String> lines, int start, int end) {
+      super("");
+      myLines = lines;
+      myStart = start;
+      myEnd = end;
+      myPosition = start;
+    }
+
+    @Override
+    @Nullable
+    public String readLine() {
+      return myPosition >= 0 && myPosition < myEnd ? myLines.get(myPosition++) : null;
+    }
+
+    @Override
+    public int getLineCount() {
+      return myEnd;
+    }
+
+    @Override
+    public void skipNextLine() {
+      myPosition++;
+    }
+
+    @Override
+    public void pushBack() {
+      myPosition--;
+    }
+
+    @Override
+    @Nullable
+    public String peek(int lineOffset) {
+      int index = myPosition + lineOffset;
+      return index >= 0 && index < myEnd ? myLines.get(index) : null;
+    }
+
+    @Override
+    public boolean hasNextLine() {
+      return myPosition < myEnd - 1;
+    }
+
+    int getConsumedLineCount() {
+      // The line being parsed is always consumed, even if a parser pushed it back
+      return Math.max(1, Math.min(myPosition, myEnd) - myStart);
+    }
+
+    int getRemainingLineCount() {
+      return Math.max(0, myEnd - myPosition);
+    }
+  }
+}
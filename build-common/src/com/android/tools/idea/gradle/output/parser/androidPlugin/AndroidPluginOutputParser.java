@@ -20,8 +20,8 @@ import com.android.ide.common.blame.SourceFile;
 import com.android.ide.common.blame.SourceFilePosition;
 import com.android.ide.common.blame.SourcePosition;
 import com.android.ide.common.blame.parser.ParsingFailedException;
-import com.android.ide.common.blame.parser.PatternAwareOutputParser;
 import com.android.ide.common.blame.parser.util.OutputLineReader;
+import com.android.tools.idea.gradle.output.parser.FilterableOutputParser;
 import com.android.utils.ILogger;
 import com.intellij.openapi.util.text.StringUtil;
 import org.jetbrains.annotations.NotNull;
@@ -29,12 +29,18 @@ import org.jetbrains.annotations.NotNull;
 import java.util.List;
 import java.util.regex.Pattern;
 
-public class AndroidPluginOutputParser implements PatternAwareOutputParser {
+public class AndroidPluginOutputParser implements FilterableOutputParser {
   private static final int SEGMENT_COUNT = 3;
 
   // Sample: 128            android:configChanges="orientation|keyboardHidden|keyboard|screenSize"
   private static final Pattern IGNORED_MESSAGE_PATTERN = Pattern.compile("[\\d]+[\\s]+[\\w]+:[\\w]+=[\"|'].*[\"|']");
 
+  @Override
+  public boolean mayParse(@NotNull String line) {
+    // pattern is type|path|message
+    return line.indexOf('|') >= 0;
+  }
+
   @Override
   public boolean parse(@NotNull String line, @NotNull OutputLineReader reader, @NotNull List<Message> messages, @NotNull ILogger logger)
     throws ParsingFailedException {
@@ -20,9 +20,9 @@ import com.android.ide.common.blame.SourceFile;
 import com.android.ide.common.blame.SourceFilePosition;
 import com.android.ide.common.blame.SourcePosition;
 import com.android.ide.common.blame.parser.ParsingFailedException;
-import com.android.ide.common.blame.parser.PatternAwareOutputParser;
 import com.android.ide.common.blame.parser.util.OutputLineReader;
 import com.android.ide.common.blame.parser.util.ParserUtil;
+import com.android.tools.idea.gradle.output.parser.FilterableOutputParser;
 import com.android.utils.ILogger;
 import org.jetbrains.annotations.NotNull;
 
@@ -38,10 +38,15 @@ import java.util.regex.Pattern;
  * [Stack trace]
  * </pre>
  */
-public class DexExceptionParser implements PatternAwareOutputParser {
+public class DexExceptionParser implements FilterableOutputParser {
   private static final Pattern ERROR = Pattern.compile("UNEXPECTED TOP-LEVEL EXCEPTION:");
   private static final Pattern ALREADY_ADDED_EXCEPTION = Pattern.compile("already added: L(.+);");
 
+  @Override
+  public boolean mayParse(@NotNull String line) {
+    return line.startsWith("UNEXPECTED ");
+  }
+
   @Override
   public boolean parse(@NotNull String line, @NotNull OutputLineReader reader, @NotNull List<Message> messages, @NotNull ILogger logger)
     throws ParsingFailedException {
@@ -20,8 +20,8 @@ import com.android.ide.common.blame.SourceFile;
 import com.android.ide.common.blame.SourceFilePosition;
 import com.android.ide.common.blame.SourcePosition;
 import com.android.ide.common.blame.parser.ParsingFailedException;
-import com.android.ide.common.blame.parser.PatternAwareOutputParser;
 import com.android.ide.common.blame.parser.util.OutputLineReader;
+import com.android.tools.idea.gradle.output.parser.FilterableOutputParser;
 import com.android.utils.ILogger;
 import org.jetbrains.annotations.NotNull;
 
@@ -38,7 +38,7 @@ import java.util.regex.Pattern;
  * [path:line] message
  * </pre>
  */
-public class ManifestMergeFailureParser implements PatternAwareOutputParser {
+public class ManifestMergeFailureParser implements FilterableOutputParser {
   // Only allow : in the second position (Windows drive letter)
   // Format emitted by the old manifest merger (it will go away in the not too distant future.)
   private static final Pattern ERROR1 = Pattern.compile("\\[([^:].[^:]+):(\\d+)\\] (.+)");
@@ -46,6 +46,11 @@ public class ManifestMergeFailureParser implements PatternAwareOutputParser {
   // path:line:column messageType:
   private static final Pattern ERROR2 = Pattern.compile("([^:].[^:]+):(\\d+):(\\d+) (.+):");
 
+  @Override
+  public boolean mayParse(@NotNull String line) {
+    return line.indexOf(':') >= 0;
+  }
+
   @Override
   public boolean parse(@NotNull String line, @NotNull OutputLineReader reader, @NotNull List<Message> messages, @NotNull ILogger logger)
     throws ParsingFailedException {
@@ -4,8 +4,8 @@ import com.android.ide.common.blame.Message;
 import com.android.ide.common.blame.SourceFilePosition;
 import com.android.ide.common.blame.SourcePosition;
 import com.android.ide.common.blame.parser.ParsingFailedException;
-import com.android.ide.common.blame.parser.PatternAwareOutputParser;
 import com.android.ide.common.blame.parser.util.OutputLineReader;
+import com.android.tools.idea.gradle.output.parser.FilterableOutputParser;
 import com.android.utils.ILogger;
 import org.jetbrains.annotations.NotNull;
 
@@ -36,7 +36,13 @@ import java.util.List;
  * path:line:column: warning: message
  * </pre>
  */
-public class MergingExceptionParser implements PatternAwareOutputParser {
+public class MergingExceptionParser implements FilterableOutputParser {
+  @Override
+  public boolean mayParse(@NotNull String line) {
+    //noinspection SpellCheckingInspection
+    return line.contains("rror: ") || line.contains("arning: ");
+  }
+
   @Override
   public boolean parse(@NotNull String line, @NotNull OutputLineReader reader, @NotNull List<Message> messages, @NotNull ILogger logger)
     throws ParsingFailedException {
@@ -20,9 +20,9 @@ import com.android.ide.common.blame.SourceFile;
 import com.android.ide.common.blame.SourceFilePosition;
 import com.android.ide.common.blame.SourcePosition;
 import com.android.ide.common.blame.parser.ParsingFailedException;
-import com.android.ide.common.blame.parser.PatternAwareOutputParser;
 import com.android.ide.common.blame.parser.util.OutputLineReader;
 import com.android.ide.common.blame.parser.util.ParserUtil;
+import com.android.tools.idea.gradle.output.parser.FilterableOutputParser;
 import com.android.utils.ILogger;
 import org.jetbrains.annotations.NotNull;
 
@@ -41,10 +41,15 @@ import java.util.regex.Pattern;
  * <p/>
  * The second line with the pathname may not appear (which means we can't tell the user what file the error occurred in. Bummer.)
  */
-public class XmlValidationErrorParser implements PatternAwareOutputParser {
+public class XmlValidationErrorParser implements FilterableOutputParser {
   private static final Pattern FATAL_ERROR = Pattern.compile("\\[Fatal Error\\] :(\\d+):(\\d+): (.+)");
   private static final Pattern FILE_REFERENCE = Pattern.compile("Failed to parse (.+)");
 
+  @Override
+  public boolean mayParse(@NotNull String line) {
+    return line.startsWith("[Fatal Error]") || line.startsWith("Failed to parse ");
+  }
+
   @Override
   public boolean parse(@NotNull String line, @NotNull OutputLineReader reader, @NotNull List<Message> messages, @NotNull ILogger logger)
     throws ParsingFailedException {
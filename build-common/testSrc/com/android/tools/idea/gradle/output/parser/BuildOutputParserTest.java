@@ -38,6 +38,7 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
@@ -636,6 +637,70 @@ public class BuildOutputParserTest {
                  toString(parser.parseGradleOutput(output)));
   }
 
+  @Test
+  public void streamingParserMatchesWholeOutput() {
+    String output =
+      "Unrecognized line\n" +
+      "FAILURE: Build failed with an exception.\n" +
+      "* What went wrong:\n" +
+      " A problem occurred configuring project ':MyApplication1'.\n" +
+      "> Failed to notify project evaluation listener.\n" +
+      "   > Could not resolve all dependencies for configuration ':MyApplication1:_DebugCompile'.\n" +
+      "      > Problems pinging owner of lock '-7513739537696464924' at port: 55416\n" +
+      "\n" +
+      "* Try:\n" +
+      "Run with --stacktrace option to get the stack trace. Run with --info or --debug option to get more log output.\n" +
+      "\n" +
+      "BUILD FAILED\n" +
+      "\n" +
+      "Total time: 24.154 secs";
+    String expected = toString(parser.parseGradleOutput(output));
+
+    for (int chunkSize : new int[]{1, 7, 64, output.length()}) {
+      List<Message> messages = new ArrayList<>();
+      StreamingBuildOutputParser streamingParser = parser.createStreamingParser(false, messages::add);
+      for (int i = 0; i < output.length(); i += chunkSize) {
+        streamingParser.append(output.substring(i, Math.min(output.length(), i + chunkSize)));
+      }
+      streamingParser.close();
+      assertEquals("Chunks of " + chunkSize + " characters", expected, toString(messages));
+    }
+  }
+
+  @Test
+  public void streamingParserIgnoresTrailingEmptyLines() {
+    StringBuilder output = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      output.append("Compiling sources ").append(i).append('\n');
+    }
+    output.append("BUILD SUCCESSFUL\n\n\n\n");
+    String expected = toString(parser.parseGradleOutput(output.toString()));
+
+    List<Message> messages = new ArrayList<>();
+    StreamingBuildOutputParser streamingParser = parser.createStreamingParser(false, messages::add);
+    streamingParser.append(output);
+    streamingParser.close();
+    assertEquals(expected, toString(messages));
+  }
+
+  @Test
+  public void streamingParserPublishesMessagesIncrementally() {
+    List<Message> messages = new ArrayList<>();
+    StreamingBuildOutputParser streamingParser = parser.createStreamingParser(true, messages::add);
+    streamingParser.append("BUILD SUCCESSFUL\n");
+    assertEquals(0, messages.size());
+
+    for (int i = 0; i < 20; i++) {
+      streamingParser.append("Compiling sources " + i + "\n");
+    }
+    assertEquals("0: Info:BUILD SUCCESSFUL\n", toString(messages));
+
+    streamingParser.append("Total time: 1.5 secs");
+    streamingParser.close();
+    assertEquals("0: Info:BUILD SUCCESSFUL\n" +
+                 "1: Info:Total time: 1.5 secs\n", toString(messages));
+  }
+
   @Test
   public void duplicateResources() throws Exception {
     // To reproduce, create a source file with two duplicate string item definitions
@@ -37,6 +37,8 @@ public class Display3D extends JPanel {
   float[] myZBuffer = new float[1];
   TriData mTriData = new Cube();
   TriData myTransFormCache;
+  double[] myProjectedMatrix;
+  TiledRasterizer myRasterizer = new TiledRasterizer();
   ViewMatrix myViewMatrix = new ViewMatrix();
   Matrix myInvMatrix;
   boolean isImageInvalid = true;
@@ -137,31 +139,35 @@ public class Display3D extends JPanel {
     myViewMatrix.calcMatrix();
     myInvMatrix = myViewMatrix.invers();
 
-    int[] rgbData = ((DataBufferInt)myImage.getRaster().getDataBuffer()).getData();
     if (isImageInvalid) {
-      if (myTransFormCache == null) {
-        myTransFormCache = new TriData(mTriData);
-      }
+      renderImage(w, h);
+      isImageInvalid = false;
+    }
+    return myImage;
+  }
+
+  /**
+   * Projects the triangles and renders them into myImage. The projection is only recomputed when the
+   * view matrix changed since the last frame, otherwise the projected and binned geometry is reused.
+   */
+  private void renderImage(int w, int h) {
+    int[] rgbData = ((DataBufferInt)myImage.getRaster().getDataBuffer()).getData();
+    if (myTransFormCache == null) {
+      myTransFormCache = new TriData(mTriData);
+      myProjectedMatrix = null;
+    }
+    if (myProjectedMatrix == null || !Arrays.equals(myProjectedMatrix, myInvMatrix.m)) {
       if (mPerspective) {
         mTriData.transformP(myInvMatrix, myTransFormCache, w / 2f, h / 2f, 800);
       } else {
         mTriData.transform (myInvMatrix, myTransFormCache);
       }
-
-      Arrays.fill(myZBuffer, Float.MAX_VALUE);
-      Arrays.fill(rgbData, 0xFF000000);
-
-      if (mTriData.myTexture != null) {
-        Rasterize.toZBuff(myZBuffer, rgbData, w, h, myTransFormCache,
-                          mTriData.myTexture, mTriData.myTextureWidth, mTriData.myTextureHeight, myViewMatrix.m);
-      }
-      else { // run a simple render if no myTexture
-        Rasterize.simple(myZBuffer, rgbData, w, h, myTransFormCache);
-      }
-
-      isImageInvalid = false;
+      myProjectedMatrix = Arrays.copyOf(myInvMatrix.m, myInvMatrix.m.length);
+      myRasterizer.invalidate();
     }
-    return myImage;
+
+    myRasterizer.render(myZBuffer, rgbData, w, h, myTransFormCache,
+                        mTriData.myTexture, mTriData.myTextureWidth, mTriData.myTextureHeight, myViewMatrix.m);
   }
 
   public void setTriData(TriData data) {
@@ -201,28 +207,8 @@ public class Display3D extends JPanel {
       myViewMatrix.calcMatrix();
       myInvMatrix = myViewMatrix.invers();
     }
-    int[] rgbData = ((DataBufferInt)myImage.getRaster().getDataBuffer()).getData();
     if (isImageInvalid) {
-      if (myTransFormCache == null) {
-        myTransFormCache = new TriData(mTriData);
-      }
-      if (mPerspective) {
-        mTriData.transformP(myInvMatrix, myTransFormCache, w / 2f, h / 2f, 800);
-      } else {
-        mTriData.transform (myInvMatrix, myTransFormCache);
-      }
-
-      Arrays.fill(myZBuffer, Float.MAX_VALUE);
-      Arrays.fill(rgbData, 0xFF000000);
-
-      if (mTriData.myTexture != null) {
-        Rasterize.toZBuff(myZBuffer, rgbData, w, h, myTransFormCache,
-                          mTriData.myTexture, mTriData.myTextureWidth, mTriData.myTextureHeight, myViewMatrix.m);
-      }
-      else { // run a simple render if no myTexture
-        Rasterize.simple(myZBuffer, rgbData, w, h, myTransFormCache);
-      }
-
+      renderImage(w, h);
       isImageInvalid = false;
     }
     g.drawImage(myImage, 0, 0, getWidth(), getHeight(), null);
@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.layout3d;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Renders {@link TriData} the same way {@link Rasterize#toZBuff(float[], int[], int, int, TriData, int[], int, int, double[])}
+ * and {@link Rasterize#simple(float[], int[], int, int, TriData)} do, but splits the frame buffer into square tiles
+ * and rasterizes the tiles concurrently on a fork-join pool.
+ * <p>
+ * Each triangle is binned into the tiles its bounding box overlaps. Within a tile triangles are drawn in their original
+ * order so the output is identical to the single threaded renderer. Each tile tracks the farthest depth it can still
+ * contain once a triangle completely covers it; later triangles that are entirely behind that depth are rejected
+ * without being rasterized (early-z).
+ * <p>
+ * The binned geometry is kept between frames and only rebuilt after {@link #invalidate()} or when the buffer size,
+ * triangle set or texture changes, so repainting an unchanged projection skips the setup work entirely.
+ */
+public class TiledRasterizer {
+  public static final int DEFAULT_TILE_SIZE = 64;
+
+  /**
+   * Distance in pixels a tile corner has to be inside of a triangle edge to count the tile as fully covered.
+   * This keeps the coverage test conservative with respect to the 28.4 fixed point snapping in {@link Rasterize}.
+   */
+  private static final float COVERAGE_MARGIN = 0.5f;
+
+  /**
+   * Number of tiles below which a task is rasterized on the current thread instead of being split further.
+   */
+  private static final int TILES_PER_TASK = 2;
+
+  private final ForkJoinPool myPool;
+  private final int myTileSize;
+
+  private TriData myBinnedData;
+  private int[] myBinnedTexture;
+  private int myBinnedTextureWidth;
+  private int myBinnedTextureHeight;
+  private int myWidth;
+  private int myHeight;
+  private boolean myGeometryValid;
+
+  private int myTilesX;
+  private int myTilesY;
+  private int[][] myBins = new int[0][];
+  private int[] myBinSizes = new int[0];
+
+  /**
+   * Per triangle depth range, indexed by triangle number
+   */
+  private float[] myTriMinZ = new float[0];
+  private float[] myTriMaxZ = new float[0];
+
+  public TiledRasterizer() {
+    this(ForkJoinPool.commonPool(), DEFAULT_TILE_SIZE);
+  }
+
+  public TiledRasterizer(ForkJoinPool pool, int tileSize) {
+    if (tileSize <= 0) {
+      throw new IllegalArgumentException("tileSize must be positive: " + tileSize);
+    }
+    myPool = pool;
+    myTileSize = tileSize;
+  }
+
+  /**
+   * Must be called when the projected vertices of the {@link TriData} passed to {@link #render} have changed.
+   */
+  public void invalidate() {
+    myGeometryValid = false;
+  }
+
+  /**
+   * Clears the buffers and renders the projected triangles into them.
+   *
+   * @param zbuff   used to provide the z-buffer
+   * @param rgb     the image is output here
+   * @param w       the width of the image
+   * @param h       the height of the image
+   * @param tri     the projected data set, it contains triangles indexes etc
+   * @param texture the myTexture use to render the triangles with, or null for a simple flat shaded render
+   * @param tWidth  the width of the myTexture
+   * @param tHeight the height of the myTexture
+   * @param matrix  the matrix that define the transform
+   */
+  public void render(float[] zbuff, int[] rgb, int w, int h, TriData tri, int[] texture,
+                     int tWidth, int tHeight, double[] matrix) {
+    if (!myGeometryValid || myBinnedData != tri || myWidth != w || myHeight != h ||
+        myBinnedTexture != texture || myBinnedTextureWidth != tWidth || myBinnedTextureHeight != tHeight) {
+      myBinnedTexture = texture;
+      myBinnedTextureWidth = tWidth;
+      myBinnedTextureHeight = tHeight;
+      bin(tri, w, h, texture != null);
+    }
+    myPool.invoke(new TileTask(zbuff, rgb, tri, texture, tWidth, tHeight, matrix, 0, myTilesX * myTilesY));
+  }
+
+  private void bin(TriData tri, int w, int h, boolean textured) {
+    myBinnedData = tri;
+    myWidth = w;
+    myHeight = h;
+    myTilesX = (w + myTileSize - 1) / myTileSize;
+    myTilesY = (h + myTileSize - 1) / myTileSize;
+    int tiles = myTilesX * myTilesY;
+    if (myBins.length < tiles) {
+      myBins = Arrays.copyOf(myBins, tiles);
+      myBinSizes = new int[tiles];
+    }
+    Arrays.fill(myBinSizes, 0);
+
+    int triangles = tri.myIndex.length / 3;
+    if (myTriMinZ.length < triangles) {
+      myTriMinZ = new float[triangles];
+      myTriMaxZ = new float[triangles];
+    }
+
+    float[] vert = tri.myVert;
+    for (int t = 0; t < triangles; t++) {
+      int p1 = tri.myIndex[t * 3];
+      int p2 = tri.myIndex[t * 3 + 1];
+      int p3 = tri.myIndex[t * 3 + 2];
+      float fx1 = vert[p1], fy1 = vert[p1 + 1], fz1 = vert[p1 + 2];
+      float fx2 = vert[p2], fy2 = vert[p2 + 1], fz2 = vert[p2 + 2];
+      float fx3 = vert[p3], fy3 = vert[p3 + 1], fz3 = vert[p3 + 2];
+
+      // Textured faces are back face culled by Rasterize.render_perspectiveAffine, so never bin them
+      if (textured && surfaceType(tri, t) == 1 && ((fx1 - fx2) * (fy3 - fy2) - (fy1 - fy2) * (fx3 - fx2)) >= 0) {
+        continue;
+      }
+      myTriMinZ[t] = Math.min(fz1, Math.min(fz2, fz3));
+      myTriMaxZ[t] = Math.max(fz1, Math.max(fz2, fz3));
+
+      // Same pixel bounds as the 28.4 fixed point setup in Rasterize
+      int minx = ((int)(16.0f * Math.min(fx1, Math.min(fx2, fx3)) + .5f) + 0xF) >> 4;
+      int maxx = ((int)(16.0f * Math.max(fx1, Math.max(fx2, fx3)) + .5f) + 0xF) >> 4;
+      int miny = ((int)(16.0f * Math.min(fy1, Math.min(fy2, fy3)) + .5f) + 0xF) >> 4;
+      int maxy = ((int)(16.0f * Math.max(fy1, Math.max(fy2, fy3)) + .5f) + 0xF) >> 4;
+      minx = Math.max(minx, 0);
+      miny = Math.max(miny, 0);
+      maxx = Math.min(maxx, w);
+      maxy = Math.min(maxy, h);
+      if (minx >= maxx || miny >= maxy) {
+        continue;
+      }
+      int tx0 = minx / myTileSize;
+      int tx1 = (maxx - 1) / myTileSize;
+      int ty0 = miny / myTileSize;
+      int ty1 = (maxy - 1) / myTileSize;
+      for (int ty = ty0; ty <= ty1; ty++) {
+        for (int tx = tx0; tx <= tx1; tx++) {
+          addToBin(ty * myTilesX + tx, t);
+        }
+      }
+    }
+    myGeometryValid = true;
+  }
+
+  private void addToBin(int tile, int triangle) {
+    int[] bin = myBins[tile];
+    int size = myBinSizes[tile];
+    if (bin == null) {
+      bin = myBins[tile] = new int[16];
+    }
+    else if (size == bin.length) {
+      bin = myBins[tile] = Arrays.copyOf(bin, size * 2);
+    }
+    bin[size] = triangle;
+    myBinSizes[tile] = size + 1;
+  }
+
+  private static int surfaceType(TriData tri, int triangle) {
+    return (tri.mySurfaceType != null) ? tri.mySurfaceType[triangle] : 0;
+  }
+
+  /**
+   * @return true if every pixel sample of the rectangle [x0, x1) x [y0, y1) is inside the triangle
+   */
+  private static boolean covers(float fx1, float fy1, float fx2, float fy2, float fx3, float fy3,
+                                int x0, int y0, int x1, int y1) {
+    float area = (fx2 - fx1) * (fy3 - fy1) - (fy2 - fy1) * (fx3 - fx1);
+    if (area == 0) {
+      return false;
+    }
+    float sign = area > 0 ? 1 : -1;
+    return insideEdge(fx1, fy1, fx2, fy2, sign, x0, y0, x1 - 1, y1 - 1) &&
+           insideEdge(fx2, fy2, fx3, fy3, sign, x0, y0, x1 - 1, y1 - 1) &&
+           insideEdge(fx3, fy3, fx1, fy1, sign, x0, y0, x1 - 1, y1 - 1);
+  }
+
+  private static boolean insideEdge(float ax, float ay, float bx, float by, float sign,
+                                    int x0, int y0, int x1, int y1) {
+    float ex = bx - ax;
+    float ey = by - ay;
+    float margin = COVERAGE_MARGIN * (float)Math.sqrt(ex * ex + ey * ey);
+    return sign * (ex * (y0 - ay) - ey * (x0 - ax)) >= margin &&
+           sign * (ex * (y0 - ay) - ey * (x1 - ax)) >= margin &&
+           sign * (ex * (y1 - ay) - ey * (x0 - ax)) >= margin &&
+           sign * (ex * (y1 - ay) - ey * (x1 - ax)) >= margin;
+  }
+
+  private class TileTask extends RecursiveAction {
+    private final float[] myZBuff;
+    private final int[] myRgb;
+    private final TriData myTri;
+    private final int[] myTexture;
+    private final int myTextureWidth;
+    private final int myTextureHeight;
+    private final double[] myMatrix;
+    private final int myFrom;
+    private final int myTo;
+
+    TileTask(float[] zbuff, int[] rgb, TriData tri, int[] texture, int tWidth, int tHeight, double[] matrix,
+             int from, int to) {
+      myZBuff = zbuff;
+      myRgb = rgb;
+      myTri = tri;
+      myTexture = texture;
+      myTextureWidth = tWidth;
+      myTextureHeight = tHeight;
+      myMatrix = matrix;
+      myFrom = from;
+      myTo = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (myTo - myFrom <= TILES_PER_TASK) {
+        for (int tile = myFrom; tile < myTo; tile++) {
+          renderTile(tile);
+        }
+        return;
+      }
+      int mid = (myFrom + myTo) >>> 1;
+      invokeAll(new TileTask(myZBuff, myRgb, myTri, myTexture, myTextureWidth, myTextureHeight, myMatrix, myFrom, mid),
+                new TileTask(myZBuff, myRgb, myTri, myTexture, myTextureWidth, myTextureHeight, myMatrix, mid, myTo));
+    }
+
+    private void renderTile(int tile) {
+      int w = myWidth;
+      int h = myHeight;
+      int x0 = (tile % myTilesX) * myTileSize;
+      int y0 = (tile / myTilesX) * myTileSize;
+      int x1 = Math.min(x0 + myTileSize, w);
+      int y1 = Math.min(y0 + myTileSize, h);
+      for (int y = y0; y < y1; y++) {
+        Arrays.fill(myZBuff, y * w + x0, y * w + x1, Float.MAX_VALUE);
+        Arrays.fill(myRgb, y * w + x0, y * w + x1, 0xFF000000);
+      }
+
+      int[] bin = myBins[tile];
+      int size = myBinSizes[tile];
+      float farZ = Float.MAX_VALUE;
+      float[] vert = myTri.myVert;
+      int[] index = myTri.myIndex;
+      for (int i = 0; i < size; i++) {
+        int t = bin[i];
+        if (myTriMinZ[t] > farZ) {
+          continue;
+        }
+        int p1 = index[t * 3];
+        int p2 = index[t * 3 + 1];
+        int p3 = index[t * 3 + 2];
+        int type = surfaceType(myTri, t);
+        if (myTexture != null && type == 1) {
+          Rasterize.render_perspectiveAffine(myZBuff, myRgb, w, h, x0, y0, x1, y1,
+                                             vert[p1], vert[p1 + 1], vert[p1 + 2],
+                                             vert[p2], vert[p2 + 1], vert[p2 + 2],
+                                             vert[p3], vert[p3 + 1], vert[p3 + 2],
+                                             myTri.myTexture_uv[p1], myTri.myTexture_uv[p1 + 1],
+                                             myTri.myTexture_uv[p2], myTri.myTexture_uv[p2 + 1],
+                                             myTri.myTexture_uv[p3], myTri.myTexture_uv[p3 + 1],
+                                             myTexture, myTextureWidth, myTextureHeight, myMatrix);
+        }
+        else {
+          Rasterize.flat(myZBuff, myRgb, w, h, x0, y0, x1, y1,
+                         vert[p1], vert[p1 + 1], vert[p1 + 2],
+                         vert[p2], vert[p2 + 1], vert[p2 + 2],
+                         vert[p3], vert[p3 + 1], vert[p3 + 2],
+                         (type == 0) ? Rasterize.BLUE : Rasterize.GRAY);
+        }
+        if (myTriMaxZ[t] < farZ && covers(vert[p1], vert[p1 + 1], vert[p2], vert[p2 + 1], vert[p3], vert[p3 + 1], x0, y0, x1, y1)) {
+          farZ = myTriMaxZ[t];
+        }
+      }
+    }
+  }
+}
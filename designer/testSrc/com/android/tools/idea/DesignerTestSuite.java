@@ -28,6 +28,7 @@ import org.junit.runner.RunWith;
 @JarTestSuiteRunner.ExcludeClasses({
   DesignerTestSuite.class,
   NlDesignSurfaceTest.class, // Flaky
+  com.android.tools.idea.uibuilder.layout3d.TiledRasterizerPerfTest.class, // Rasterizer performance test only runs on perf buildbot
 })
 public class DesignerTestSuite extends IdeaTestSuiteBase {
 
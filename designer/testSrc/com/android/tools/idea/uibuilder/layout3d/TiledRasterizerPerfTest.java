@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.layout3d;
+
+import com.intellij.testFramework.PlatformTestUtil;
+import org.junit.Test;
+
+import static com.android.tools.idea.uibuilder.layout3d.TiledRasterizerTest.HEIGHT;
+import static com.android.tools.idea.uibuilder.layout3d.TiledRasterizerTest.WIDTH;
+import static com.android.tools.idea.uibuilder.layout3d.TiledRasterizerTest.createLayout;
+import static com.android.tools.idea.uibuilder.layout3d.TiledRasterizerTest.project;
+
+public class TiledRasterizerPerfTest {
+  /**
+   * Renders deep synthetic hierarchies while rotating the view.
+   */
+  @Test
+  public void testPerformanceSyntheticHierarchies() {
+    int[][] shapes = {{3, 3}, {5, 3}, {7, 2}};
+    Layout[] layouts = new Layout[shapes.length];
+    for (int i = 0; i < shapes.length; i++) {
+      layouts[i] = createLayout(shapes[i][0], shapes[i][1]);
+    }
+    float[] zbuff = new float[WIDTH * HEIGHT];
+    int[] rgb = new int[WIDTH * HEIGHT];
+    TiledRasterizer rasterizer = new TiledRasterizer();
+
+    PlatformTestUtil.startPerformanceTest("Tiled rasterization of synthetic hierarchies", 3000, () -> {
+      for (Layout layout : layouts) {
+        for (int step = 0; step < 20; step++) {
+          ViewMatrix viewMatrix = new ViewMatrix();
+          TriData projected = project(layout, viewMatrix, step);
+          rasterizer.invalidate();
+          rasterizer.render(zbuff, rgb, WIDTH, HEIGHT, projected,
+                            layout.myTexture, layout.myTextureWidth, layout.myTextureHeight, viewMatrix.m);
+        }
+      }
+    }).attempts(2).usesAllCPUCores().assertTiming();
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.layout3d;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class TiledRasterizerTest {
+  static final int WIDTH = 800;
+  static final int HEIGHT = 600;
+
+  /**
+   * Builds a synthetic view hierarchy with the given depth where every view has {@code fanOut} children
+   */
+  private static Layout.View createHierarchy(float x, float y, float w, float h, int depth, int fanOut) {
+    Layout.View view = new Layout.View(x, y, w, h);
+    if (depth > 0) {
+      float childHeight = h / fanOut;
+      for (int i = 0; i < fanOut; i++) {
+        view.addChild(createHierarchy(x + 4, y + i * childHeight + 4, w - 8, childHeight - 8, depth - 1, fanOut));
+      }
+    }
+    return view;
+  }
+
+  static Layout createLayout(int depth, int fanOut) {
+    BufferedImage img = new BufferedImage(1080, 1920, BufferedImage.TYPE_INT_ARGB);
+    for (int y = 0; y < img.getHeight(); y++) {
+      for (int x = 0; x < img.getWidth(); x++) {
+        img.setRGB(x, y, 0xFF000000 | (x & 0xFF) << 16 | (y & 0xFF) << 8 | ((x ^ y) & 0xFF));
+      }
+    }
+    return new Layout(img, createHierarchy(0, 0, img.getWidth(), img.getHeight(), depth, fanOut));
+  }
+
+  static TriData project(TriData data, ViewMatrix viewMatrix, int angleStep) {
+    viewMatrix.look(ViewMatrix.UP_AT, data, WIDTH, HEIGHT);
+    viewMatrix.setScreenWidth(1920);
+    viewMatrix.calcMatrix();
+    viewMatrix.trackBallDown(WIDTH / 2, HEIGHT / 2);
+    viewMatrix.trackBallMove(WIDTH / 2 + angleStep * 7, HEIGHT / 2 + angleStep * 3);
+    viewMatrix.trackBallUP(WIDTH / 2 + angleStep * 7, HEIGHT / 2 + angleStep * 3);
+    TriData projected = new TriData(data);
+    data.transform(viewMatrix.invers(), projected);
+    return projected;
+  }
+
+  private static void renderSerial(float[] zbuff, int[] rgb, TriData data, TriData projected, ViewMatrix viewMatrix) {
+    Arrays.fill(zbuff, Float.MAX_VALUE);
+    Arrays.fill(rgb, 0xFF000000);
+    if (data.myTexture != null) {
+      Rasterize.toZBuff(zbuff, rgb, WIDTH, HEIGHT, projected, data.myTexture, data.myTextureWidth, data.myTextureHeight, viewMatrix.m);
+    }
+    else {
+      Rasterize.simple(zbuff, rgb, WIDTH, HEIGHT, projected);
+    }
+  }
+
+  private static void assertSameAsSerial(TriData data, int tileSize) {
+    for (int step = 0; step < 5; step++) {
+      ViewMatrix viewMatrix = new ViewMatrix();
+      TriData projected = project(data, viewMatrix, step);
+
+      float[] expectedZ = new float[WIDTH * HEIGHT];
+      int[] expectedRgb = new int[WIDTH * HEIGHT];
+      renderSerial(expectedZ, expectedRgb, data, projected, viewMatrix);
+
+      float[] actualZ = new float[WIDTH * HEIGHT];
+      int[] actualRgb = new int[WIDTH * HEIGHT];
+      TiledRasterizer rasterizer = new TiledRasterizer(ForkJoinPool.commonPool(), tileSize);
+      rasterizer.render(actualZ, actualRgb, WIDTH, HEIGHT, projected,
+                        data.myTexture, data.myTextureWidth, data.myTextureHeight, viewMatrix.m);
+
+      assertArrayEquals(expectedRgb, actualRgb);
+      assertArrayEquals(expectedZ, actualZ, 0f);
+    }
+  }
+
+  @Test
+  public void testTexturedMatchesSerialRenderer() {
+    Layout layout = createLayout(3, 3);
+    assertSameAsSerial(layout, TiledRasterizer.DEFAULT_TILE_SIZE);
+    assertSameAsSerial(layout, 17);
+  }
+
+  @Test
+  public void testSimpleMatchesSerialRenderer() {
+    assertSameAsSerial(new Cube(), TiledRasterizer.DEFAULT_TILE_SIZE);
+    Layout layout = createLayout(2, 4);
+    layout.myTexture = null;
+    assertSameAsSerial(layout, 32);
+  }
+
+  @Test
+  public void testReusesBinnedGeometry() {
+    Layout layout = createLayout(3, 3);
+    ViewMatrix viewMatrix = new ViewMatrix();
+    TriData projected = project(layout, viewMatrix, 1);
+    float[] zbuff = new float[WIDTH * HEIGHT];
+    int[] rgb = new int[WIDTH * HEIGHT];
+    TiledRasterizer rasterizer = new TiledRasterizer();
+    rasterizer.render(zbuff, rgb, WIDTH, HEIGHT, projected, layout.myTexture, layout.myTextureWidth, layout.myTextureHeight, viewMatrix.m);
+    int[] first = Arrays.copyOf(rgb, rgb.length);
+
+    // Rendering again without invalidating must reuse the bins and produce the same frame
+    rasterizer.render(zbuff, rgb, WIDTH, HEIGHT, projected, layout.myTexture, layout.myTextureWidth, layout.myTextureHeight, viewMatrix.m);
+    assertArrayEquals(first, rgb);
+  }
+
+  @Test
+  public void testTextureChangeRebinsGeometry() {
+    Layout layout = createLayout(2, 3);
+    ViewMatrix viewMatrix = new ViewMatrix();
+    TriData projected = project(layout, viewMatrix, 2);
+    float[] zbuff = new float[WIDTH * HEIGHT];
+    int[] rgb = new int[WIDTH * HEIGHT];
+    TiledRasterizer rasterizer = new TiledRasterizer();
+    rasterizer.render(zbuff, rgb, WIDTH, HEIGHT, projected, layout.myTexture, layout.myTextureWidth, layout.myTextureHeight, viewMatrix.m);
+
+    // Textured rendering culls back faces while binning, so dropping the texture must not reuse those bins
+    float[] expectedZ = new float[WIDTH * HEIGHT];
+    int[] expectedRgb = new int[WIDTH * HEIGHT];
+    Arrays.fill(expectedZ, Float.MAX_VALUE);
+    Arrays.fill(expectedRgb, 0xFF000000);
+    Rasterize.simple(expectedZ, expectedRgb, WIDTH, HEIGHT, projected);
+    rasterizer.render(zbuff, rgb, WIDTH, HEIGHT, projected, null, 0, 0, viewMatrix.m);
+    assertArrayEquals(expectedRgb, rgb);
+    assertArrayEquals(expectedZ, zbuff, 0f);
+  }
+}
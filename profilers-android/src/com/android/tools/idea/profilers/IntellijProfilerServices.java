@@ -182,6 +182,11 @@ public class IntellijProfilerServices implements IdeProfilerServices {
         return StudioFlags.PROFILER_USE_JVMTI.get();
       }
 
+      @Override
+      public boolean isLiveAllocationAggregationEnabled() {
+        return StudioFlags.PROFILER_LIVE_ALLOCATION_AGGREGATION.get();
+      }
+
       @Override
       public boolean isLiveAllocationsEnabled() {
         return StudioFlags.PROFILER_USE_JVMTI.get() && StudioFlags.PROFILER_USE_LIVE_ALLOCATIONS.get();
@@ -86,6 +86,7 @@ final class MemoryClassSetView extends AspectObserver {
     myStage.getAspect().addDependency(this)
       .onChange(MemoryProfilerAspect.CURRENT_LOADED_CAPTURE, this::refreshCaptureObject)
       .onChange(MemoryProfilerAspect.CURRENT_CLASS, this::refreshClassSet)
+      .onChange(MemoryProfilerAspect.CURRENT_CLASS_INSTANCES, this::refreshAllInstances)
       .onChange(MemoryProfilerAspect.CURRENT_INSTANCE, this::refreshSelectedInstance)
       .onChange(MemoryProfilerAspect.CURRENT_HEAP_CONTENTS, this::refreshAllInstances)
       .onChange(MemoryProfilerAspect.CURRENT_FIELD_PATH, this::refreshFieldPath);
@@ -440,6 +441,11 @@ final class MemoryClassSetView extends AspectObserver {
   private void populateTreeContents() {
     assert myTree != null && myCaptureObject != null && myClassSet != null;
 
+    if (myClassSet.needsInstances()) {
+      // Only the allocation summaries of the class are loaded, the tree is populated again once its instances are loaded.
+      myCaptureObject.loadInstances(myClassSet);
+    }
+
     Comparator<MemoryObjectTreeNode<MemoryObject>> comparator = myTreeRoot == null ? myInitialComparator : myTreeRoot.getComparator();
     myTreeRoot = new LazyMemoryObjectTreeNode<MemoryObject>(myClassSet, true) {
       @Override
@@ -25,6 +25,7 @@ public interface FeatureConfig {
   boolean isEnergyProfilerEnabled();
   boolean isJniReferenceTrackingEnabled();
   boolean isJvmtiAgentEnabled();
+  boolean isLiveAllocationAggregationEnabled();
   boolean isLiveAllocationsEnabled();
   boolean isMemoryCaptureFilterEnabled();
   boolean isMemorySnapshotEnabled();
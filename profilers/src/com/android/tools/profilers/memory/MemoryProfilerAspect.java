@@ -26,6 +26,7 @@ public enum MemoryProfilerAspect {
   CURRENT_HEAP_UPDATED,
   CURRENT_HEAP_CONTENTS,
   CURRENT_CLASS,
+  CURRENT_CLASS_INSTANCES,
   CURRENT_INSTANCE,
   CURRENT_FIELD_PATH,
   CURRENT_FILTER,
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import com.android.tools.profiler.proto.MemoryProfiler.AllocationStack;
+import com.android.tools.profilers.stacktrace.ThreadId;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Allocation counts and sizes of the instances of a class allocated in the same heap, thread and callstack.
+ * <p>
+ * Summaries are classified by {@link ClassifierSet}s like the {@link InstanceObject}s they stand for, so they are only used for their
+ * class, heap, thread and callstack, and the instances themselves are loaded on demand (see {@link CaptureObject#loadInstances(ClassSet)}).
+ */
+public final class AllocationSummary implements InstanceObject {
+  @NotNull private final ClassDb.ClassEntry myClassEntry;
+  private final int myClassTag;
+  private final int myHeapId;
+  private final int myStackId;
+  private final int myThreadTag;
+  @NotNull private final ThreadId myThreadId;
+  @Nullable private final AllocationStack myCallstack;
+
+  private int mySnapshotCount;
+  private int myAllocationCount;
+  private int myDeallocationCount;
+  private long myTotalShallowSize;
+
+  public AllocationSummary(@NotNull ClassDb.ClassEntry classEntry,
+                           int classTag,
+                           int heapId,
+                           int stackId,
+                           int threadTag,
+                           @Nullable ThreadId threadId,
+                           @Nullable AllocationStack callstack) {
+    myClassEntry = classEntry;
+    myClassTag = classTag;
+    myHeapId = heapId;
+    myStackId = stackId;
+    myThreadTag = threadTag;
+    myThreadId = threadId == null ? ThreadId.INVALID_THREAD_ID : threadId;
+    myCallstack = callstack;
+  }
+
+  /**
+   * Returns a new summary of the same instances, with all counts set to 0.
+   */
+  @NotNull
+  public AllocationSummary createEmptyCopy() {
+    return new AllocationSummary(myClassEntry, myClassTag, myHeapId, myStackId, myThreadTag, myThreadId, myCallstack);
+  }
+
+  /**
+   * Updates the counts as the instances at the baseline snapshot (e.g. live objects at the left of a selection range) change.
+   */
+  public void addSnapshotInstances(int count, long size) {
+    mySnapshotCount += count;
+    myTotalShallowSize += count * size;
+  }
+
+  /**
+   * Updates the counts as the allocations within the selection range change.
+   */
+  public void addAllocations(int count, long size) {
+    myAllocationCount += count;
+    myTotalShallowSize += count * size;
+  }
+
+  /**
+   * Updates the counts as the deallocations within the selection range change.
+   */
+  public void addDeallocations(int count, long size) {
+    myDeallocationCount += count;
+    myTotalShallowSize -= count * size;
+  }
+
+  /**
+   * Adds the counts of the given summary, which is expected to summarize the same instances, to this one.
+   */
+  public void add(@NotNull AllocationSummary summary) {
+    mySnapshotCount += summary.mySnapshotCount;
+    myAllocationCount += summary.myAllocationCount;
+    myDeallocationCount += summary.myDeallocationCount;
+    myTotalShallowSize += summary.myTotalShallowSize;
+  }
+
+  public int getSnapshotCount() {
+    return mySnapshotCount;
+  }
+
+  public int getAllocationCount() {
+    return myAllocationCount;
+  }
+
+  public int getDeallocationCount() {
+    return myDeallocationCount;
+  }
+
+  public long getTotalShallowSize() {
+    return myTotalShallowSize;
+  }
+
+  public int getClassTag() {
+    return myClassTag;
+  }
+
+  public int getStackId() {
+    return myStackId;
+  }
+
+  public int getThreadTag() {
+    return myThreadTag;
+  }
+
+  @NotNull
+  @Override
+  public String getName() {
+    return myClassEntry.getSimpleClassName();
+  }
+
+  @Override
+  public int getHeapId() {
+    return myHeapId;
+  }
+
+  @NotNull
+  @Override
+  public ClassDb.ClassEntry getClassEntry() {
+    return myClassEntry;
+  }
+
+  @Nullable
+  @Override
+  public InstanceObject getClassObject() {
+    return null;
+  }
+
+  @NotNull
+  @Override
+  public ThreadId getAllocationThreadId() {
+    return myThreadId;
+  }
+
+  @Nullable
+  @Override
+  public AllocationStack getAllocationCallStack() {
+    return myCallstack;
+  }
+
+  @NotNull
+  @Override
+  public ValueType getValueType() {
+    return ValueType.CLASS;
+  }
+}
@@ -154,6 +154,15 @@ public interface CaptureObject extends MemoryObject {
    */
   boolean load(@Nullable Range queryRange, @Nullable Executor queryJoiner);
 
+  /**
+   * Loads the instances of a {@link ClassSet} which only holds {@link AllocationSummary}s (see {@link ClassSet#needsInstances()}).
+   * The instances are set on the {@link ClassSet} through the queryJoiner passed to {@link #load(Range, Executor)}, after which
+   * {@link com.android.tools.profilers.memory.MemoryProfilerAspect#CURRENT_CLASS_INSTANCES} is fired. Only
+   * {@link LiveAllocationCaptureObject} creates summaries at the moment.
+   */
+  default void loadInstances(@NotNull ClassSet classSet) {
+  }
+
   boolean isDoneLoading();
 
   boolean isError();
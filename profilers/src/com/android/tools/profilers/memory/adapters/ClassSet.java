@@ -23,6 +23,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Classifies {@link InstanceObject}s based on their {@link Class}.
@@ -31,6 +32,8 @@ public class ClassSet extends ClassifierSet {
   public static final ClassSet EMPTY_SET = new ClassSet(new ClassDb.ClassEntry("null"));
 
   @NotNull private final ClassDb.ClassEntry myClassEntry;
+  // The instances loaded for the allocation summaries of this set, or null if they have not been loaded since the summaries last changed.
+  @Nullable private List<InstanceObject> myLoadedInstances;
 
   @NotNull
   public static Classifier createDefaultClassifier() {
@@ -47,6 +50,59 @@ public class ClassSet extends ClassifierSet {
     return myClassEntry;
   }
 
+  /**
+   * @return true if the instances of this set are only known through allocation summaries, and need to be loaded to be listed.
+   */
+  public boolean needsInstances() {
+    return myLoadedInstances == null && !myAllocationSummaries.isEmpty();
+  }
+
+  /**
+   * Sets the instances loaded for the allocation summaries of this set. They are listed by {@link #getInstancesStream()} until the
+   * summaries change, but are not accounted in the counts and sizes of this set, which already come from the summaries.
+   */
+  public void setLoadedInstances(@NotNull List<InstanceObject> instances) {
+    myLoadedInstances = instances;
+  }
+
+  @Override
+  public void addAllocationSummary(@NotNull AllocationSummary summary, @NotNull AllocationSummary changes) {
+    super.addAllocationSummary(summary, changes);
+    myLoadedInstances = null;
+  }
+
+  @Override
+  public void clearClassifierSets() {
+    super.clearClassifierSets();
+    myLoadedInstances = null;
+  }
+
+  @Override
+  public int getInstancesCount() {
+    if (myAllocationSummaries.isEmpty()) {
+      return super.getInstancesCount();
+    }
+    return myLoadedInstances == null ? 0 : myLoadedInstances.size();
+  }
+
+  @NotNull
+  @Override
+  public Stream<InstanceObject> getInstancesStream() {
+    if (myAllocationSummaries.isEmpty()) {
+      return super.getInstancesStream();
+    }
+    return myLoadedInstances == null ? Stream.empty() : myLoadedInstances.stream();
+  }
+
+  @Nullable
+  @Override
+  public ClassifierSet findContainingClassifierSet(@NotNull InstanceObject target) {
+    if (myLoadedInstances != null && myLoadedInstances.contains(target)) {
+      return this;
+    }
+    return super.findContainingClassifierSet(target);
+  }
+
   @NotNull
   @Override
   public Classifier createSubClassifier() {
@@ -39,6 +39,8 @@ public abstract class ClassifierSet implements MemoryObject {
   // Note that instances here can also appear in the set of snapshot instances (e.g. when a instance is allocated before the selection
   // and deallocation within the selection).
   @NotNull protected final Set<InstanceObject> myDeltaInstances = new LinkedHashSet<>(0);
+  // The allocation summaries standing for instances which are not loaded (e.g. in the aggregate live allocation mode).
+  @NotNull protected final Set<AllocationSummary> myAllocationSummaries = new LinkedHashSet<>(0);
 
   // Lazily create the Classifier, as it is configurable and isn't necessary until nodes under this node needs to be classified.
   @Nullable protected Classifier myClassifier = null;
@@ -264,9 +266,32 @@ public abstract class ClassifierSet implements MemoryObject {
     return instanceRemoved;
   }
 
+  /**
+   * Add the {@code changes} of an {@link AllocationSummary} into the ClassifierSet, adding the summary itself if it isn't there yet.
+   * Note that the counts of {@code summary} are not updated here, and {@code changes} only provides the counts to add.
+   */
+  public void addAllocationSummary(@NotNull AllocationSummary summary, @NotNull AllocationSummary changes) {
+    if (myClassifier != null && !myClassifier.isTerminalClassifier()) {
+      myClassifier.getClassifierSet(summary, true).addAllocationSummary(summary, changes);
+    }
+    else {
+      myAllocationSummaries.add(summary);
+    }
+
+    mySnapshotObjectCount += changes.getSnapshotCount();
+    myDeltaAllocations += changes.getAllocationCount();
+    myDeltaDeallocations += changes.getDeallocationCount();
+    myTotalShallowSize += changes.getTotalShallowSize();
+    if (summary.getCallStackDepth() > 0) {
+      myInstancesWithStackInfoCount += changes.getSnapshotCount() + changes.getAllocationCount();
+    }
+    myNeedsRefiltering = true;
+  }
+
   public void clearClassifierSets() {
     mySnapshotInstances.clear();
     myDeltaInstances.clear();
+    myAllocationSummaries.clear();
     myClassifier = createSubClassifier();
     mySnapshotObjectCount = 0;
     myDeltaAllocations = 0;
@@ -334,6 +359,24 @@ public abstract class ClassifierSet implements MemoryObject {
     }
   }
 
+  /**
+   * Gets a stream of all allocation summaries (including all descendants) in this ClassifierSet.
+   */
+  @NotNull
+  public Stream<AllocationSummary> getAllocationSummaryStream() {
+    if (myClassifier == null) {
+      return myAllocationSummaries.stream();
+    }
+    else {
+      return Stream.concat(myClassifier.getAllClassifierSets().stream().flatMap(ClassifierSet::getAllocationSummaryStream),
+                           myAllocationSummaries.stream());
+    }
+  }
+
+  public boolean hasAllocationSummaries() {
+    return getAllocationSummaryStream().findAny().isPresent();
+  }
+
   public boolean hasStackInfo() {
     return myInstancesWithStackInfoCount > 0;
   }
@@ -386,6 +429,12 @@ public abstract class ClassifierSet implements MemoryObject {
    */
   public boolean isSupersetOf(@NotNull ClassifierSet targetSet) {
     // TODO perhaps not use getImmediateInstances if we want this to work across all inheritors of ClassifierSet?
+    if (targetSet.hasAllocationSummaries()) {
+      // The instances are loaded separately for every set, so only the summaries are compared.
+      Set<AllocationSummary> summaries = getAllocationSummaryStream().collect(Collectors.toSet());
+      return targetSet.getAllocationSummaryStream().allMatch(summaries::contains);
+    }
+
     if (getInstancesCount() < targetSet.getInstancesCount()) {
       return false;
     }
@@ -401,6 +450,7 @@ public abstract class ClassifierSet implements MemoryObject {
     if (myClassifier == null) {
       myClassifier = createSubClassifier();
       myClassifier.partition(mySnapshotInstances, myDeltaInstances);
+      myClassifier.partition(myAllocationSummaries);
     }
   }
 
@@ -547,5 +597,18 @@ public abstract class ClassifierSet implements MemoryObject {
       snapshotInstances.clear();
       deltaInstances.clear();
     }
+
+    /**
+     * Partitions the {@link AllocationSummary}s in {@code summaries} according to the current {@link ClassifierSet}'s strategy. This will
+     * consume the summaries from the input.
+     */
+    public final void partition(@NotNull Collection<AllocationSummary> summaries) {
+      if (isTerminalClassifier()) {
+        return;
+      }
+
+      summaries.forEach(summary -> getClassifierSet(summary, true).addAllocationSummary(summary, summary));
+      summaries.clear();
+    }
   }
 }
@@ -49,11 +49,14 @@ public class HeapSet extends ClassifierSet {
     // Subsequent calls to getChildrenClassifierSets will re-partition them to the correct child ClassifierSet.
     List<InstanceObject> snapshotStream = getSnapshotInstanceStream().collect(Collectors.toList());
     List<InstanceObject> deltaStream = getDeltaInstanceStream().collect(Collectors.toList());
+    List<AllocationSummary> summaries = getAllocationSummaryStream().collect(Collectors.toList());
     myDeltaInstances.clear();
     mySnapshotInstances.clear();
+    myAllocationSummaries.clear();
     myClassifier = null;
     myDeltaInstances.addAll(deltaStream);
     mySnapshotInstances.addAll(snapshotStream);
+    myAllocationSummaries.addAll(summaries);
     myNeedsRefiltering = true;
   }
 
@@ -40,6 +40,7 @@ import java.io.OutputStream;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static com.android.tools.profilers.memory.adapters.CaptureObject.ClassifierAttribute.*;
@@ -75,6 +76,12 @@ public class LiveAllocationCaptureObject implements CaptureObject {
   private final List<HeapSet> myHeapSets;
   private final AspectObserver myAspectObserver;
   private final boolean myEnableJniRefsTracking;
+  // Whether allocations are only loaded as AllocationSummary objects, instead of one InstanceObject per allocated object.
+  private final boolean myAggregateAllocations;
+  // The summaries added to myHeapSets, which are only updated via the query joiner.
+  private final Map<SummaryKey, AllocationSummary> mySummaryMap;
+  // Incremented via the query joiner whenever the summaries change.
+  private int mySummaryGeneration;
 
   private long myEventsEndTimeNs;
   private long myContextEndTimeNs;
@@ -85,6 +92,11 @@ public class LiveAllocationCaptureObject implements CaptureObject {
 
   private Future myCurrentTask;
 
+  private Executor myQueryJoiner;
+  private Future myInstancesTask;
+  private ClassSet myInstancesClassSet;
+  private int myInstancesGeneration;
+
   public LiveAllocationCaptureObject(@NotNull MemoryServiceBlockingStub client,
                                      @NotNull Common.Session session,
                                      long captureStartTime,
@@ -103,6 +115,7 @@ public class LiveAllocationCaptureObject implements CaptureObject {
     myCallstackMap = new TIntObjectHashMap<>();
     myThreadIdMap = new TIntObjectHashMap<>();
     myFrameInfoResponseMap = new TLongObjectHashMap<>();
+    mySummaryMap = new HashMap<>();
 
     myClient = client;
     mySession = session;
@@ -120,6 +133,9 @@ public class LiveAllocationCaptureObject implements CaptureObject {
     if (myEnableJniRefsTracking) {
       myHeapSets.add(new HeapSet(this, JNI_HEAP_NAME, JNI_HEAP_ID));
     }
+    // JNI references are tracked through the instances of the objects they reference, so they need all instances to be loaded.
+    myAggregateAllocations =
+      stage.getStudioProfilers().getIdeServices().getFeatureConfig().isLiveAllocationAggregationEnabled() && !myEnableJniRefsTracking;
 
     myEventsEndTimeNs = Long.MIN_VALUE;
     myContextEndTimeNs = Long.MIN_VALUE;
@@ -177,7 +193,7 @@ public class LiveAllocationCaptureObject implements CaptureObject {
   @Override
   public Collection<HeapSet> getHeapSets() {
     // Exclude DEFAULT_HEAP since it shouldn't show up in use in devices that support live allocation tracking.
-    if (myHeapSets.get(0).getInstancesCount() > 0) {
+    if (myHeapSets.get(0).getInstancesCount() > 0 || myHeapSets.get(0).hasAllocationSummaries()) {
       // But handle the unexpected, just in case....
       return myHeapSets;
     }
@@ -211,6 +227,7 @@ public class LiveAllocationCaptureObject implements CaptureObject {
     assert queryRange != null;
     assert queryJoiner != null;
     myQueryRange = queryRange;
+    myQueryJoiner = queryJoiner;
     // TODO There's a problem with this, as the datastore is effectively a real-time system.
     // TODO In other words, when we query for some range, we may not get back entries that are still being inserted, and we don't re-query.
     myQueryRange.addDependency(myAspectObserver).onChange(Range.Aspect.RANGE, () -> loadTimeRange(myQueryRange, queryJoiner));
@@ -221,6 +238,47 @@ public class LiveAllocationCaptureObject implements CaptureObject {
     return true;
   }
 
+  /**
+   * Loads the instances of the given {@link ClassSet} from the allocation events of the current range, keeping the ones matching the
+   * {@link AllocationSummary}s of the set. Must be called on the thread of the query joiner.
+   */
+  @Override
+  public void loadInstances(@NotNull ClassSet classSet) {
+    if (!classSet.needsInstances()) {
+      return;
+    }
+    if (classSet == myInstancesClassSet && mySummaryGeneration == myInstancesGeneration && myInstancesTask != null &&
+        !myInstancesTask.isDone()) {
+      // Already loading.
+      return;
+    }
+
+    Set<SummaryKey> keys = classSet.getAllocationSummaryStream().map(SummaryKey::new).collect(Collectors.toSet());
+    int generation = mySummaryGeneration;
+    try {
+      if (myInstancesTask != null) {
+        myInstancesTask.cancel(false);
+      }
+      myInstancesClassSet = classSet;
+      myInstancesGeneration = generation;
+      myInstancesTask = myExecutorService.submit(() -> {
+        List<InstanceObject> instances = queryInstances(keys, myPreviousQueryStartTimeNs, myPreviousQueryEndTimeNs);
+        myQueryJoiner.execute(() -> {
+          // Drop the instances if the summaries have changed in the meantime, they will be loaded again for the new ones.
+          if (generation != mySummaryGeneration) {
+            return;
+          }
+          classSet.setLoadedInstances(instances);
+          myStage.getAspect().changed(MemoryProfilerAspect.CURRENT_CLASS_INSTANCES);
+        });
+        return null;
+      });
+    }
+    catch (RejectedExecutionException e) {
+      getLogger().debug(e);
+    }
+  }
+
   @Nullable
   @Override
   public MemoryProfiler.StackFrameInfoResponse getStackFrameInfoResponse(long methodId) {
@@ -315,6 +373,11 @@ public class LiveAllocationCaptureObject implements CaptureObject {
           }
         }
 
+        if (myAggregateAllocations) {
+          loadAllocationSummaries(newStartTimeNs, newEndTimeNs, joiner);
+          return null;
+        }
+
         // Snapshots data
         List<InstanceObject> snapshotList = new ArrayList<>();
         List<InstanceObject> resetSnapshotList = new ArrayList<>();
@@ -416,29 +479,250 @@ public class LiveAllocationCaptureObject implements CaptureObject {
     }
   }
 
+  /**
+   * Counterpart of the instance loading of {@link #loadTimeRange(Range, Executor)} for the aggregate mode: the allocation events are only
+   * counted into one {@link AllocationSummary} per heap, class, thread and callstack, and the instances themselves are loaded for one
+   * {@link ClassSet} at a time via {@link #loadInstances(ClassSet)}. Must be called on myExecutorService.
+   */
+  private void loadAllocationSummaries(long newStartTimeNs, long newEndTimeNs, @NotNull Executor joiner) {
+    boolean snapshotEnabled = myStage.getStudioProfilers().getIdeServices().getFeatureConfig().isMemorySnapshotEnabled();
+    int snapshotSign = snapshotEnabled ? 1 : 0;
+    // The changes to apply to the summaries, in the order they were first seen.
+    Map<SummaryKey, AllocationSummary> changes = new LinkedHashMap<>();
+
+    // Clear and recreate the summaries/heap sets if previous range does not intersect with the new one
+    boolean clear = myPreviousQueryEndTimeNs <= newStartTimeNs || newEndTimeNs <= myPreviousQueryStartTimeNs;
+    if (clear) {
+      if (snapshotEnabled) {
+        querySnapshotSummaries(newStartTimeNs, changes);
+      }
+      queryDeltaSummaries(newStartTimeNs, newEndTimeNs, 1, 0, changes);
+    }
+    else {
+      if (newStartTimeNs < myPreviousQueryStartTimeNs) {
+        // Selection's min shifts left: add data within this range to the deltas, and revert it from the snapshot
+        queryDeltaSummaries(newStartTimeNs, myPreviousQueryStartTimeNs, 1, snapshotSign, changes);
+      }
+      else if (newStartTimeNs > myPreviousQueryStartTimeNs) {
+        // Selection's min shifts right: remove data within this range from the deltas, and apply it to the snapshot
+        queryDeltaSummaries(myPreviousQueryStartTimeNs, newStartTimeNs, -1, -snapshotSign, changes);
+      }
+
+      if (newEndTimeNs < myPreviousQueryEndTimeNs) {
+        // Selection's max shifts left: remove data within this range from the deltas
+        queryDeltaSummaries(newEndTimeNs, myPreviousQueryEndTimeNs, -1, 0, changes);
+      }
+      else if (newEndTimeNs > myPreviousQueryEndTimeNs) {
+        // Selection's max shifts right: add data within this range to the deltas
+        queryDeltaSummaries(myPreviousQueryEndTimeNs, newEndTimeNs, 1, 0, changes);
+      }
+    }
+
+    myPreviousQueryStartTimeNs = newStartTimeNs;
+    myPreviousQueryEndTimeNs = newEndTimeNs;
+
+    joiner.execute(() -> {
+      myStage.getAspect().changed(MemoryProfilerAspect.CURRENT_HEAP_UPDATED);
+      if (clear || !changes.isEmpty()) {
+        if (clear) {
+          mySummaryMap.clear();
+          myHeapSets.forEach(heap -> heap.clearClassifierSets());
+          if (myStage.getSelectedClassSet() != null) {
+            myStage.selectClassSet(ClassSet.EMPTY_SET);
+          }
+        }
+        changes.forEach((key, change) -> {
+          AllocationSummary summary = mySummaryMap.computeIfAbsent(key, k -> change.createEmptyCopy());
+          myHeapSets.get(summary.getHeapId()).addAllocationSummary(summary, change);
+          summary.add(change);
+        });
+        mySummaryGeneration++;
+        myStage.refreshSelectedHeap();
+      }
+    });
+  }
+
+  /**
+   * Counts the objects alive at the given time into the snapshot counts of {@code changes}.
+   */
+  private void querySnapshotSummaries(long newTimeNs, @NotNull Map<SummaryKey, AllocationSummary> changes) {
+    BatchAllocationSample sampleResponse = myClient.getAllocations(AllocationSnapshotRequest.newBuilder().setSession(mySession)
+                                                                     .setEndTime(newTimeNs).setLiveObjectsOnly(true).build());
+
+    for (AllocationEvent event : sampleResponse.getEventsList()) {
+      if (event.getEventCase() == AllocationEvent.EventCase.ALLOC_DATA) {
+        AllocationEvent.Allocation allocation = event.getAllocData();
+        getOrCreateSummary(changes, allocation.getClassTag(), allocation.getStackId(), allocation.getThreadId(), allocation.getHeapId())
+          .addSnapshotInstances(1, allocation.getSize());
+      }
+      else {
+        assert false;
+      }
+    }
+  }
+
+  /**
+   * Counts the allocation events within the query range into {@code changes}.
+   *
+   * @param deltaSign    1 if the events are added to the deltas, -1 if they are removed from them.
+   * @param snapshotSign 1 if the events are reverted from the snapshot (an allocation removes an instance from it, and a deallocation
+   *                     adds one back), -1 if they are applied to it, 0 if the snapshot doesn't change.
+   */
+  private void queryDeltaSummaries(long startTimeNs,
+                                   long endTimeNs,
+                                   int deltaSign,
+                                   int snapshotSign,
+                                   @NotNull Map<SummaryKey, AllocationSummary> changes) {
+    if (startTimeNs == endTimeNs) {
+      return;
+    }
+
+    BatchAllocationSample sampleResponse = myClient.getAllocations(
+      AllocationSnapshotRequest.newBuilder().setSession(mySession).setStartTime(startTimeNs).setEndTime(endTimeNs).build());
+
+    for (AllocationEvent event : sampleResponse.getEventsList()) {
+      if (event.getEventCase() == AllocationEvent.EventCase.ALLOC_DATA) {
+        AllocationEvent.Allocation allocation = event.getAllocData();
+        AllocationSummary change =
+          getOrCreateSummary(changes, allocation.getClassTag(), allocation.getStackId(), allocation.getThreadId(), allocation.getHeapId());
+        change.addAllocations(deltaSign, allocation.getSize());
+        change.addSnapshotInstances(-snapshotSign, allocation.getSize());
+      }
+      else if (event.getEventCase() == AllocationEvent.EventCase.FREE_DATA) {
+        AllocationEvent.Deallocation deallocation = event.getFreeData();
+        AllocationSummary change = getOrCreateSummary(changes, deallocation.getClassTag(), deallocation.getStackId(),
+                                                      deallocation.getThreadId(), deallocation.getHeapId());
+        change.addDeallocations(deltaSign, deallocation.getSize());
+        change.addSnapshotInstances(snapshotSign, deallocation.getSize());
+      }
+      else {
+        assert false;
+      }
+    }
+  }
+
   @NotNull
-  private LiveAllocationInstanceObject getOrCreateInstanceObject(int tag, int classTag, int stackId, int threadId, long size, int heapId) {
-    LiveAllocationInstanceObject instance = myInstanceMap.get(tag);
-    if (instance == null) {
+  private AllocationSummary getOrCreateSummary(@NotNull Map<SummaryKey, AllocationSummary> summaries,
+                                               int classTag,
+                                               int stackId,
+                                               int threadId,
+                                               int heapId) {
+    SummaryKey key = new SummaryKey(classTag, stackId, threadId, heapId);
+    AllocationSummary summary = summaries.get(key);
+    if (summary == null) {
       ClassDb.ClassEntry entry = myClassDb.getEntry(classTag);
       assert myClassMap.containsKey(entry);
-      AllocationStack callstack = null;
-      if (stackId != 0) {
-        assert myCallstackMap.containsKey(stackId);
-        callstack = myCallstackMap.get(stackId);
+      summary = new AllocationSummary(entry, classTag, heapId, stackId, threadId, getThreadId(threadId), getCallstack(stackId));
+      summaries.put(key, summary);
+    }
+    return summary;
+  }
+
+  /**
+   * Creates the instances matching the given summary keys from the allocation events of the given range: the objects alive at its start,
+   * and the ones allocated or deallocated within it. Must be called on myExecutorService.
+   */
+  @NotNull
+  private List<InstanceObject> queryInstances(@NotNull Set<SummaryKey> keys, long startTimeNs, long endTimeNs) {
+    TIntObjectHashMap<LiveAllocationInstanceObject> instanceMap = new TIntObjectHashMap<>();
+    List<InstanceObject> instances = new ArrayList<>();
+    if (startTimeNs >= endTimeNs) {
+      return instances;
+    }
+
+    if (myStage.getStudioProfilers().getIdeServices().getFeatureConfig().isMemorySnapshotEnabled()) {
+      BatchAllocationSample snapshotResponse = myClient.getAllocations(AllocationSnapshotRequest.newBuilder().setSession(mySession)
+                                                                         .setEndTime(startTimeNs).setLiveObjectsOnly(true).build());
+      for (AllocationEvent event : snapshotResponse.getEventsList()) {
+        if (event.getEventCase() != AllocationEvent.EventCase.ALLOC_DATA) {
+          continue;
+        }
+        AllocationEvent.Allocation allocation = event.getAllocData();
+        if (keys.contains(new SummaryKey(allocation.getClassTag(), allocation.getStackId(), allocation.getThreadId(),
+                                         allocation.getHeapId()))) {
+          LiveAllocationInstanceObject instance =
+            createInstanceObject(allocation.getClassTag(), allocation.getStackId(), allocation.getThreadId(), allocation.getSize(),
+                                 allocation.getHeapId());
+          instance.setAllocationTime(event.getTimestamp());
+          instanceMap.put(allocation.getTag(), instance);
+          instances.add(instance);
+        }
+      }
+    }
+
+    BatchAllocationSample sampleResponse = myClient.getAllocations(
+      AllocationSnapshotRequest.newBuilder().setSession(mySession).setStartTime(startTimeNs).setEndTime(endTimeNs).build());
+    for (AllocationEvent event : sampleResponse.getEventsList()) {
+      if (event.getEventCase() == AllocationEvent.EventCase.ALLOC_DATA) {
+        AllocationEvent.Allocation allocation = event.getAllocData();
+        if (!keys.contains(new SummaryKey(allocation.getClassTag(), allocation.getStackId(), allocation.getThreadId(),
+                                          allocation.getHeapId()))) {
+          continue;
+        }
+        LiveAllocationInstanceObject instance = instanceMap.get(allocation.getTag());
+        if (instance == null) {
+          instance = createInstanceObject(allocation.getClassTag(), allocation.getStackId(), allocation.getThreadId(), allocation.getSize(),
+                                          allocation.getHeapId());
+          instanceMap.put(allocation.getTag(), instance);
+          instances.add(instance);
+        }
+        instance.setAllocationTime(event.getTimestamp());
       }
-      ThreadId thread = null;
-      if (threadId != 0) {
-        assert myThreadIdMap.containsKey(threadId);
-        thread = myThreadIdMap.get(threadId);
+      else if (event.getEventCase() == AllocationEvent.EventCase.FREE_DATA) {
+        AllocationEvent.Deallocation deallocation = event.getFreeData();
+        if (!keys.contains(new SummaryKey(deallocation.getClassTag(), deallocation.getStackId(), deallocation.getThreadId(),
+                                          deallocation.getHeapId()))) {
+          continue;
+        }
+        LiveAllocationInstanceObject instance = instanceMap.get(deallocation.getTag());
+        if (instance == null) {
+          instance = createInstanceObject(deallocation.getClassTag(), deallocation.getStackId(), deallocation.getThreadId(),
+                                          deallocation.getSize(), deallocation.getHeapId());
+          instanceMap.put(deallocation.getTag(), instance);
+          instances.add(instance);
+        }
+        instance.setDeallocTime(event.getTimestamp());
       }
-      instance = new LiveAllocationInstanceObject(this, entry, myClassMap.get(entry), thread, callstack, size, heapId);
+    }
+    return instances;
+  }
+
+  @NotNull
+  private LiveAllocationInstanceObject getOrCreateInstanceObject(int tag, int classTag, int stackId, int threadId, long size, int heapId) {
+    LiveAllocationInstanceObject instance = myInstanceMap.get(tag);
+    if (instance == null) {
+      instance = createInstanceObject(classTag, stackId, threadId, size, heapId);
       myInstanceMap.put(tag, instance);
     }
 
     return instance;
   }
 
+  @NotNull
+  private LiveAllocationInstanceObject createInstanceObject(int classTag, int stackId, int threadId, long size, int heapId) {
+    ClassDb.ClassEntry entry = myClassDb.getEntry(classTag);
+    assert myClassMap.containsKey(entry);
+    return new LiveAllocationInstanceObject(this, entry, myClassMap.get(entry), getThreadId(threadId), getCallstack(stackId), size, heapId);
+  }
+
+  @Nullable
+  private AllocationStack getCallstack(int stackId) {
+    if (stackId == 0) {
+      return null;
+    }
+    assert myCallstackMap.containsKey(stackId);
+    return myCallstackMap.get(stackId);
+  }
+
+  @Nullable
+  private ThreadId getThreadId(int threadId) {
+    if (threadId == 0) {
+      return null;
+    }
+    assert myThreadIdMap.containsKey(threadId);
+    return myThreadIdMap.get(threadId);
+  }
+
   @Nullable
   private AllocationStack convertNativeCallstack(@Nullable NativeBacktrace backtrace) {
     if (backtrace == null) return null;
@@ -611,4 +895,39 @@ public class LiveAllocationCaptureObject implements CaptureObject {
       }
     }
   }
+
+  /**
+   * Identifies the {@link AllocationSummary} an allocation event is counted into.
+   */
+  private static final class SummaryKey {
+    private final int myClassTag;
+    private final int myStackId;
+    private final int myThreadId;
+    private final int myHeapId;
+
+    SummaryKey(int classTag, int stackId, int threadId, int heapId) {
+      myClassTag = classTag;
+      myStackId = stackId;
+      myThreadId = threadId;
+      myHeapId = heapId;
+    }
+
+    SummaryKey(@NotNull AllocationSummary summary) {
+      this(summary.getClassTag(), summary.getStackId(), summary.getThreadTag(), summary.getHeapId());
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof SummaryKey)) {
+        return false;
+      }
+      SummaryKey other = (SummaryKey)obj;
+      return myClassTag == other.myClassTag && myStackId == other.myStackId && myThreadId == other.myThreadId && myHeapId == other.myHeapId;
+    }
+
+    @Override
+    public int hashCode() {
+      return ((myClassTag * 31 + myStackId) * 31 + myThreadId) * 31 + myHeapId;
+    }
+  }
 }
@@ -68,6 +68,11 @@ public final class FakeIdeProfilerServices implements IdeProfilerServices {
    */
   private boolean myIsJniReferenceTrackingEnabled = false;
 
+  /**
+   * Toggle for aggregating live allocations in tests.
+   */
+  private boolean myLiveAllocationAggregationEnabled = false;
+
   /**
    * Toggle for faking live allocation tracking support in tests.
    */
@@ -181,6 +186,11 @@ public final class FakeIdeProfilerServices implements IdeProfilerServices {
         return myJvmtiAgentEnabled;
       }
 
+      @Override
+      public boolean isLiveAllocationAggregationEnabled() {
+        return myLiveAllocationAggregationEnabled;
+      }
+
       @Override
       public boolean isLiveAllocationsEnabled() {
         return myLiveTrackingEnabled;
@@ -295,6 +305,10 @@ public final class FakeIdeProfilerServices implements IdeProfilerServices {
 
   public void enableJniReferenceTracking(boolean enabled) { myIsJniReferenceTrackingEnabled = enabled; }
 
+  public void enableLiveAllocationAggregation(boolean enabled) {
+    myLiveAllocationAggregationEnabled = enabled;
+  }
+
   public void enableLiveAllocationTracking(boolean enabled) {
     myLiveTrackingEnabled = enabled;
   }
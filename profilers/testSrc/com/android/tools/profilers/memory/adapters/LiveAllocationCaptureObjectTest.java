@@ -567,6 +567,128 @@ public class LiveAllocationCaptureObjectTest {
     }
   }
 
+  public static class AggregateTest extends LiveAllocationCaptureObjectTest {
+
+    @Before
+    @Override
+    public void before() {
+      super.before();
+      myIdeProfilerServices.enableLiveAllocationAggregation(true);
+    }
+
+    // Check that the summaries give the same counts as the instances, without loading any instance.
+    @Test
+    public void testAggregatedDataLoad() throws Exception {
+      boolean[] loadSuccess = new boolean[1];
+      LiveAllocationCaptureObject capture = new LiveAllocationCaptureObject(myGrpcChannel.getClient().getMemoryClient(),
+                                                                            ProfilersTestData.SESSION_DATA,
+                                                                            CAPTURE_START_TIME,
+                                                                            LOAD_SERVICE,
+                                                                            myStage);
+
+      // Heap set should start out empty.
+      HeapSet heapSet = capture.getHeapSet(DEFAULT_HEAP_ID);
+      assertThat(heapSet.getChildrenClassifierSets().size()).isEqualTo(0);
+      heapSet.setClassGrouping(MemoryProfilerConfiguration.ClassGrouping.ARRANGE_BY_PACKAGE);
+
+      myStage.getAspect().addDependency(myAspectObserver).onChange(MemoryProfilerAspect.CURRENT_HEAP_CONTENTS, () -> loadSuccess[0] = true);
+
+      Queue<ClassifierSetTestData> expected_0_to_4 = new LinkedList<>();
+      expected_0_to_4.add(new ClassifierSetTestData(0, DEFAULT_HEAP_NAME, 4, 2, 2, 0, 2, true));
+      expected_0_to_4.add(new ClassifierSetTestData(1, "This", 2, 1, 1, 0, 2, true));
+      expected_0_to_4.add(new ClassifierSetTestData(2, "Is", 1, 1, 0, 0, 1, true));
+      expected_0_to_4.add(new ClassifierSetTestData(3, "Foo", 1, 1, 0, 0, 0, true));
+      expected_0_to_4.add(new ClassifierSetTestData(2, "Also", 1, 0, 1, 0, 1, true));
+      expected_0_to_4.add(new ClassifierSetTestData(3, "Foo", 1, 0, 1, 0, 0, true));
+      expected_0_to_4.add(new ClassifierSetTestData(1, "That", 2, 1, 1, 0, 2, true));
+      expected_0_to_4.add(new ClassifierSetTestData(2, "Is", 1, 1, 0, 0, 1, true));
+      expected_0_to_4.add(new ClassifierSetTestData(3, "Bar", 1, 1, 0, 0, 0, true));
+      expected_0_to_4.add(new ClassifierSetTestData(2, "Also", 1, 0, 1, 0, 1, true));
+      expected_0_to_4.add(new ClassifierSetTestData(3, "Bar", 1, 0, 1, 0, 0, true));
+      Range loadRange = new Range(CAPTURE_START_TIME, CAPTURE_START_TIME + 4);
+      loadSuccess[0] = false;
+      capture.load(loadRange, LOAD_JOINER);
+      assertThat(loadSuccess[0]).isTrue();
+      verifyClassifierResult(heapSet, new LinkedList<>(expected_0_to_4), 0);
+
+      Queue<ClassifierSetTestData> expected_2_to_4 = new LinkedList<>();
+      expected_2_to_4.add(new ClassifierSetTestData(0, DEFAULT_HEAP_NAME, 2, 2, 2, 0, 2, true));
+      expected_2_to_4.add(new ClassifierSetTestData(1, "This", 1, 1, 1, 0, 2, true));
+      expected_2_to_4.add(new ClassifierSetTestData(2, "Is", 0, 1, 0, 0, 1, true));
+      expected_2_to_4.add(new ClassifierSetTestData(3, "Foo", 0, 1, 0, 0, 0, true));
+      expected_2_to_4.add(new ClassifierSetTestData(2, "Also", 1, 0, 1, 0, 1, true));
+      expected_2_to_4.add(new ClassifierSetTestData(3, "Foo", 1, 0, 1, 0, 0, true));
+      expected_2_to_4.add(new ClassifierSetTestData(1, "That", 1, 1, 1, 0, 2, true));
+      expected_2_to_4.add(new ClassifierSetTestData(2, "Is", 0, 1, 0, 0, 1, true));
+      expected_2_to_4.add(new ClassifierSetTestData(3, "Bar", 0, 1, 0, 0, 0, true));
+      expected_2_to_4.add(new ClassifierSetTestData(2, "Also", 1, 0, 1, 0, 1, true));
+      expected_2_to_4.add(new ClassifierSetTestData(3, "Bar", 1, 0, 1, 0, 0, true));
+
+      // Shrink selection to {2,4}
+      loadSuccess[0] = false;
+      loadRange.setMin(CAPTURE_START_TIME + 2);
+      assertThat(loadSuccess[0]).isTrue();
+      verifyClassifierResult(heapSet, new LinkedList<>(expected_2_to_4), 0);
+
+      // Restore selection back to {0,4}
+      loadSuccess[0] = false;
+      loadRange.setMin(CAPTURE_START_TIME);
+      assertThat(loadSuccess[0]).isTrue();
+      verifyClassifierResult(heapSet, new LinkedList<>(expected_0_to_4), 0);
+    }
+
+    // Check that the instances of a class are only loaded on demand, and loaded again after the selection changes.
+    @Test
+    public void testLoadInstances() throws Exception {
+      boolean[] instancesLoaded = new boolean[1];
+      LiveAllocationCaptureObject capture = new LiveAllocationCaptureObject(myGrpcChannel.getClient().getMemoryClient(),
+                                                                            ProfilersTestData.SESSION_DATA,
+                                                                            CAPTURE_START_TIME,
+                                                                            LOAD_SERVICE,
+                                                                            myStage);
+
+      HeapSet heapSet = capture.getHeapSet(DEFAULT_HEAP_ID);
+      heapSet.setClassGrouping(MemoryProfilerConfiguration.ClassGrouping.ARRANGE_BY_PACKAGE);
+      myStage.getAspect().addDependency(myAspectObserver)
+        .onChange(MemoryProfilerAspect.CURRENT_CLASS_INSTANCES, () -> instancesLoaded[0] = true);
+
+      Range loadRange = new Range(CAPTURE_START_TIME + 2, CAPTURE_START_TIME + 4);
+      capture.load(loadRange, LOAD_JOINER);
+
+      // This.Is.Foo: allocated at 0 (in the snapshot) and deallocated at 2.
+      ClassifierSet isSet = heapSet.getChildrenClassifierSets().get(0).getChildrenClassifierSets().get(0);
+      assertThat(isSet.getName()).isEqualTo("Is");
+      ClassSet fooSet = (ClassSet)isSet.getChildrenClassifierSets().get(0);
+      assertThat(fooSet.getName()).isEqualTo("Foo");
+      assertThat(fooSet.needsInstances()).isTrue();
+      assertThat(fooSet.getInstancesCount()).isEqualTo(0);
+
+      instancesLoaded[0] = false;
+      capture.loadInstances(fooSet);
+      assertThat(instancesLoaded[0]).isTrue();
+      assertThat(fooSet.needsInstances()).isFalse();
+      assertThat(fooSet.getInstancesCount()).isEqualTo(1);
+      InstanceObject instance = fooSet.getInstancesStream().findFirst().get();
+      assertThat(instance.getClassEntry().getClassName()).isEqualTo("This.Is.Foo");
+      assertThat(instance.getAllocTime()).isEqualTo(TimeUnit.MICROSECONDS.toNanos(0));
+      assertThat(instance.getDeallocTime()).isEqualTo(TimeUnit.MICROSECONDS.toNanos(2));
+      assertThat(heapSet.findContainingClassifierSet(instance)).isEqualTo(fooSet);
+      // The loaded instances are not accounted twice.
+      assertThat(fooSet.getDeltaDeallocationCount()).isEqualTo(1);
+      assertThat(fooSet.getTotalObjectCount()).isEqualTo(0);
+
+      // The instances are dropped when the summaries change. This.Is.Foo gets an allocation at 4 and a deallocation at 6.
+      loadRange.setMax(CAPTURE_START_TIME + 8);
+      assertThat(fooSet.needsInstances()).isTrue();
+      instancesLoaded[0] = false;
+      capture.loadInstances(fooSet);
+      assertThat(instancesLoaded[0]).isTrue();
+      assertThat(fooSet.getInstancesCount()).isEqualTo(2);
+      assertThat(fooSet.getDeltaAllocationCount()).isEqualTo(1);
+      assertThat(fooSet.getDeltaDeallocationCount()).isEqualTo(2);
+    }
+  }
+
   private static boolean verifyClassifierResult(@NotNull ClassifierSet node,
                                                 @NotNull Queue<ClassifierSetTestData> expected,
                                                 int currentDepth) {
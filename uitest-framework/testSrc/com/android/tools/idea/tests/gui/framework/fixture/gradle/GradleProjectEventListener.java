@@ -15,6 +15,7 @@
  */
 package com.android.tools.idea.tests.gui.framework.fixture.gradle;
 
+import com.android.ide.common.blame.Message;
 import com.android.tools.idea.gradle.project.build.BuildContext;
 import com.android.tools.idea.gradle.project.build.BuildStatus;
 import com.android.tools.idea.gradle.project.build.GradleBuildListener;
@@ -78,6 +79,10 @@ public class GradleProjectEventListener extends GradleSyncListener.Adapter imple
   public void buildExecutorCreated(@NotNull GradleBuildInvoker.Request request) {
   }
 
+  @Override
+  public void buildMessageParsed(@NotNull Message message) {
+  }
+
   @Override
   public void buildStarted(@NotNull BuildContext context) {
   }
@@ -15,6 +15,8 @@
  */
 package com.android.tools.idea.sdk.updater;
 
+import com.android.annotations.VisibleForTesting;
+import com.android.repository.api.ConsoleProgressIndicator;
 import com.android.repository.api.ProgressIndicator;
 import com.google.common.collect.ImmutableMap;
 import com.intellij.updater.*;
@@ -26,20 +28,52 @@ import java.net.URI;
 import java.nio.file.FileSystem;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 /**
- * Utilities for generating "patches" that install or uninstall complete packages (that is, not diffs).
+ * Utilities for generating "patches" that install or uninstall complete packages, or that update a package from its previous version
+ * with binary diffs.
  *
- * Currently this is a naive implementation that just diffs two packages and generates the diff package, with all files marked
- * as critical (so no binary diffs are done). A more sophisticated implementation could modify the complete package zip in-place, to be
- * updater-compatible, but this would require significant refactoring of the updater framework, or significant code duplication.
+ * {@link #generateFullPackage} is a naive implementation that just diffs two packages and generates the diff package, with all files
+ * marked as critical (so no binary diffs are done). A more sophisticated implementation could modify the complete package zip in-place,
+ * to be updater-compatible, but this would require significant refactoring of the updater framework, or significant code duplication.
+ *
+ * {@link #generateDiffPackage} builds the patches published with a new version of a package, and is run through {@link #main}. Patches
+ * generated on the fly by {@code PatchRunner} when installing a package always use {@link #generateFullPackage}.
  */
 @SuppressWarnings("unused")  // Invoked by reflection
 public class PatchGenerator {
+  /** Number of threads hashing the files of the packages compared by {@link #generateDiffPackage} */
+  private static final int HASHING_THREADS = Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors()));
+
+  /** Changed files smaller than this are included completely instead of being diffed */
+  @VisibleForTesting
+  static final long MIN_DIFF_SIZE = 4 * 1024;
+
+  /** Changed files larger than this are included completely, since diffing them takes several times their size in memory */
+  private static final long MAX_DIFF_SIZE = 64 * 1024 * 1024;
+
+  /**
+   * Generates the patch updating the previous version of a package to a new version with binary diffs, for distribution.
+   *
+   * Usage: {@code PatchGenerator <new package dir> <previous package dir> <output jar> <previous description> <new description>}
+   */
+  public static void main(@NotNull String[] args) {
+    if (args.length != 5) {
+      System.err.println(
+        "Usage: PatchGenerator <new package dir> <previous package dir> <output jar> <previous description> <new description>");
+      System.exit(1);
+    }
+    ProgressIndicator progress = new ConsoleProgressIndicator();
+    boolean success = generateDiffPackage(new File(args[0]), new File(args[1]), new File(args[2]), args[3], args[4], progress);
+    System.exit(success ? 0 : 1);
+  }
 
   /**
    * Read a zip containing a complete sdk package and generate an equivalent patch that includes the complete content of the package.
@@ -101,6 +135,174 @@ public class PatchGenerator {
       .setCriticalFiles(new ArrayList<>(srcFiles))
       .setDeleteFiles(deleteFiles)
       .setHashAlgorithm("md5");
+    return createPatchJar(spec, outputJar, progress);
+  }
+
+  /**
+   * Compares a complete sdk package with the previous version of the package, and generates a patch that updates the previous version
+   * with binary diffs of the files that changed, along with the files that were added.
+   *
+   * Both packages are hashed in parallel, and only the files with different hashes are diffed: files that didn't change are left out of
+   * the patch (and aren't hashed again by the updater). Changed files which are too small for a diff to be worth it, or too large to be
+   * diffed in memory, are included completely.
+   */
+  public static boolean generateDiffPackage(@NotNull File srcRoot,
+                                            @NotNull File existingRoot,
+                                            @NotNull File outputJar,
+                                            @NotNull String oldDescription,
+                                            @NotNull String description,
+                                            @NotNull ProgressIndicator progress) {
+    Runner.initLogger();
+    PackageDiff diff = comparePackages(srcRoot, existingRoot, progress);
+    if (diff == null) {
+      return false;
+    }
+    progress.logInfo(String.format("%1$d changed files (%2$d included completely), %3$d added, %4$d deleted, %5$d unchanged",
+                                   diff.diffedFiles.size() + diff.fullFiles.size(), diff.fullFiles.size(), diff.addedFiles.size(),
+                                   diff.deletedFiles.size(), diff.unchangedFiles.size()));
+
+    PatchSpec spec = new PatchSpec()
+      .setOldVersionDescription(oldDescription)
+      .setNewVersionDescription(description)
+      .setRoot("")
+      .setBinary(true)
+      .setOldFolder(existingRoot.getAbsolutePath())
+      .setNewFolder(srcRoot.getAbsolutePath())
+      .setStrict(true)
+      .setIgnoredFiles(diff.unchangedFiles)
+      .setCriticalFiles(diff.fullFiles)
+      .setDeleteFiles(diff.deletedFiles)
+      .setHashAlgorithm("md5");
+    return createPatchJar(spec, outputJar, progress);
+  }
+
+  /**
+   * The files of a package compared with the previous version of the package, by path relative to the package root.
+   */
+  @VisibleForTesting
+  static class PackageDiff {
+    final List<String> unchangedFiles = new ArrayList<>();
+    /** Changed files which are diffed */
+    final List<String> diffedFiles = new ArrayList<>();
+    /** Changed files which are included completely */
+    final List<String> fullFiles = new ArrayList<>();
+    final List<String> addedFiles = new ArrayList<>();
+    final List<String> deletedFiles = new ArrayList<>();
+  }
+
+  /**
+   * Hashes both packages in parallel and sorts their files by how they changed. Returns null if hashing failed or was cancelled.
+   */
+  @VisibleForTesting
+  @Nullable
+  static PackageDiff comparePackages(@NotNull File srcRoot, @NotNull File existingRoot, @NotNull ProgressIndicator progress) {
+    progress.logInfo("Hashing packages...");
+    Map<String, String> newHashes;
+    Map<String, String> oldHashes;
+    ExecutorService executor = Executors.newFixedThreadPool(HASHING_THREADS);
+    try {
+      // Both trees are submitted before waiting for either, so that they are hashed at the same time
+      Map<String, Future<String>> newFutures = hashTree(srcRoot, executor);
+      Map<String, Future<String>> oldFutures = hashTree(existingRoot, executor);
+      newHashes = getHashes(newFutures, progress);
+      oldHashes = getHashes(oldFutures, progress);
+    }
+    catch (IOException | ExecutionException e) {
+      progress.logWarning("Failed to hash package files!", e);
+      return null;
+    }
+    catch (InterruptedException | CancellationException e) {
+      progress.logInfo("Cancelled");
+      return null;
+    }
+    finally {
+      executor.shutdownNow();
+    }
+    if (progress.isCanceled()) {
+      progress.logInfo("Cancelled");
+      return null;
+    }
+
+    PackageDiff diff = new PackageDiff();
+    for (Map.Entry<String, String> entry : newHashes.entrySet()) {
+      String path = entry.getKey();
+      String oldHash = oldHashes.get(path);
+      if (oldHash == null) {
+        diff.addedFiles.add(path);
+      }
+      else if (oldHash.equals(entry.getValue())) {
+        diff.unchangedFiles.add(path);
+      }
+      else {
+        long size = new File(srcRoot, path).length();
+        if (size < MIN_DIFF_SIZE || size > MAX_DIFF_SIZE) {
+          diff.fullFiles.add(path);
+        }
+        else {
+          diff.diffedFiles.add(path);
+        }
+      }
+    }
+    for (String path : oldHashes.keySet()) {
+      if (!newHashes.containsKey(path)) {
+        diff.deletedFiles.add(path);
+      }
+    }
+    return diff;
+  }
+
+  /**
+   * Starts hashing the files under the given root with the given executor, and returns their hashes by path relative to the root.
+   */
+  @NotNull
+  private static Map<String, Future<String>> hashTree(@NotNull File root, @NotNull ExecutorService executor) throws IOException {
+    Map<String, Future<String>> hashes = new HashMap<>();
+    Path rootPath = root.toPath();
+    Files.walkFileTree(rootPath, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+        String path = rootPath.relativize(file).toString().replace(File.separatorChar, '/');
+        hashes.put(path, executor.submit(() -> hash(file)));
+        return FileVisitResult.CONTINUE;
+      }
+    });
+    return hashes;
+  }
+
+  @NotNull
+  private static Map<String, String> getHashes(@NotNull Map<String, Future<String>> futures, @NotNull ProgressIndicator progress)
+    throws InterruptedException, ExecutionException {
+    Map<String, String> hashes = new HashMap<>();
+    for (Map.Entry<String, Future<String>> entry : futures.entrySet()) {
+      if (progress.isCanceled()) {
+        throw new CancellationException();
+      }
+      hashes.put(entry.getKey(), entry.getValue().get());
+    }
+    return hashes;
+  }
+
+  @NotNull
+  private static String hash(@NotNull Path file) throws IOException, NoSuchAlgorithmException {
+    MessageDigest digest = MessageDigest.getInstance("MD5");
+    byte[] buffer = new byte[64 * 1024];
+    try (InputStream in = Files.newInputStream(file)) {
+      int read;
+      while ((read = in.read(buffer)) > 0) {
+        digest.update(buffer, 0, read);
+      }
+    }
+    StringBuilder hash = new StringBuilder();
+    for (byte b : digest.digest()) {
+      hash.append(String.format("%02x", b));
+    }
+    return hash.toString();
+  }
+
+  /**
+   * Creates the patch described by the given spec, and writes it into the given package jar.
+   */
+  private static boolean createPatchJar(@NotNull PatchSpec spec, @NotNull File outputJar, @NotNull ProgressIndicator progress) {
     ProgressUI ui = new ProgressUI(progress);
     File patchZip = new File(outputJar.getParent(), "patch-file.zip");
     try {
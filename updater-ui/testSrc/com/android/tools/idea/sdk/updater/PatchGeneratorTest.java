@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.sdk.updater;
+
+import com.android.repository.testframework.FakeProgressIndicator;
+import com.android.tools.idea.sdk.updater.PatchGenerator.PackageDiff;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link PatchGenerator}.
+ */
+public class PatchGeneratorTest {
+  @Rule public TemporaryFolder myTempFolder = new TemporaryFolder();
+
+  @Test
+  public void comparePackages() throws Exception {
+    File oldRoot = myTempFolder.newFolder("old");
+    File newRoot = myTempFolder.newFolder("new");
+    byte[] large = new byte[(int)PatchGenerator.MIN_DIFF_SIZE * 2];
+    Arrays.fill(large, (byte)'a');
+
+    write(oldRoot, "unchanged.txt", "same".getBytes());
+    write(newRoot, "unchanged.txt", "same".getBytes());
+    write(oldRoot, "lib/small.txt", "old".getBytes());
+    write(newRoot, "lib/small.txt", "new".getBytes());
+    write(oldRoot, "lib/large.bin", large);
+    large[0] = 'b';
+    write(newRoot, "lib/large.bin", large);
+    write(newRoot, "added.txt", "added".getBytes());
+    write(oldRoot, "deleted.txt", "deleted".getBytes());
+
+    FakeProgressIndicator progress = new FakeProgressIndicator();
+    PackageDiff diff = PatchGenerator.comparePackages(newRoot, oldRoot, progress);
+    progress.assertNoErrorsOrWarnings();
+    assertNotNull(diff);
+    assertEquals(Collections.singletonList("unchanged.txt"), diff.unchangedFiles);
+    // Changed files too small for a diff to be worth it are included completely
+    assertEquals(Collections.singletonList("lib/small.txt"), diff.fullFiles);
+    assertEquals(Collections.singletonList("lib/large.bin"), diff.diffedFiles);
+    assertEquals(Collections.singletonList("added.txt"), diff.addedFiles);
+    assertEquals(Collections.singletonList("deleted.txt"), diff.deletedFiles);
+  }
+
+  @Test
+  public void comparePackagesCancelled() throws Exception {
+    File oldRoot = myTempFolder.newFolder("old");
+    File newRoot = myTempFolder.newFolder("new");
+    write(oldRoot, "file.txt", "old".getBytes());
+    write(newRoot, "file.txt", "new".getBytes());
+
+    FakeProgressIndicator progress = new FakeProgressIndicator();
+    progress.cancel();
+    assertNull(PatchGenerator.comparePackages(newRoot, oldRoot, progress));
+  }
+
+  private static void write(@NotNull File root, @NotNull String path, @NotNull byte[] content) throws IOException {
+    File file = new File(root, path);
+    Files.createDirectories(file.getParentFile().toPath());
+    Files.write(file.toPath(), content);
+  }
+}